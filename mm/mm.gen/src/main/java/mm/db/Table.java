@@ -27,6 +27,8 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
+import mm.io.MappedRandomAccessFile;
+
 /**
  * @author benno
  * 
@@ -192,7 +194,7 @@ public class Table {
 		recordsPerPage = (pageSize - pageOffset) / alignedRecordLength;
 		try {
 			final byte header[] = new byte[pageSize];
-			tempRao = new RandomAccessFile(f, "rw");
+			tempRao = new MappedRandomAccessFile(f, "rw");
 			numberOfPages = (int) tempRao.length() / pageSize - 1;
 			if (numberOfPages < 0) {
 				tempRao.write(header);
@@ -248,6 +248,7 @@ public class GenGroupFile {
 						break;
 					}
 				}
+				iterator.recycle(way);
 			}
 			for (final StreamableWriter<Carrier> streamableWriter : writers) {
 				streamableWriter.close();
@@ -337,6 +338,7 @@ public class GenGroupFile {
 					} else {
 						System.out.println("Drop Element : " + carrier.toJSON().toString());
 					}
+					iter.recycle(carrier);
 				}
 				writer.close();
 				temp.delete();
@@ -78,6 +78,7 @@ public class GenMultiWayFile {
 					multiWay.addOuterWay(way);
 					wayWriter.writeStreamable(multiWay);
 				}
+				wayIter.recycle(rawWay);
 			}
 		} catch (final Exception e) {
 			e.printStackTrace();
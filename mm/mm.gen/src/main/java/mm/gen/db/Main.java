@@ -21,12 +21,15 @@ package mm.gen.db;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.zip.Deflater;
 
 import mm.gen.config.MapConfig;
 import mm.gen.config.inst.CopyStaticFiles;
 import mm.gen.config.inst.MyMapConfig;
 import mm.gen.imi.ImiGenerator;
+import mm.io.StreamFormat;
 import mm.lay.RelCoordConverter;
+import mm.tile.gen.Extractor;
 import mm.tile.gen.Generator;
 
 /**
@@ -43,6 +46,11 @@ public class Main {
 	static File outputFile = null;
 	static File inputFile = null;
 	static File tempFile = null;
+	static File changeFile = null;
+	static boolean keepStores = false;
+	static boolean extract = false;
+	static int readerThreads = 1;
+	static double margin = 0.05;
 
 	
 	protected static RelCoordConverter getConverter(){
@@ -69,9 +77,19 @@ public class Main {
 	
 	public static Generator generateRawFiles() throws IOException{
 		Generator generator = new Generator(tempFile);
+		generator.setReaderThreads(readerThreads);
+		generator.setBoundingBox(minLat, minLon, maxLat, maxLon, margin);
+		generator.setKeepStores(keepStores);
 		generator.readFile(inputFile);
 		return generator;
 	}
+
+	public static Generator applyChanges() throws IOException{
+		Generator generator = new Generator(tempFile);
+		generator.setBoundingBox(minLat, minLon, maxLat, maxLon, margin);
+		generator.applyChanges(changeFile);
+		return generator;
+	}
 	
 	
 	protected static void genMap(final RelCoordConverter converter, final File rawWayFile, final File rawRelationFile) {
@@ -136,6 +154,9 @@ public class Main {
 		boolean expectOutputFile = false;
 		boolean expectTempFolder = false;
 		boolean expectBoundingBox = false;
+		boolean expectThreads = false;
+		boolean expectMargin = false;
+		boolean expectChangeFile = false;
 		boolean noBoundingBox = true;
 		boolean printUsage = false;
 		String error = null;
@@ -148,15 +169,46 @@ public class Main {
 				expectBoundingBox = true;
 			} else if ("-t".equals(arg)){
 				expectTempFolder = true;
+			} else if ("-p".equals(arg)){
+				expectThreads = true;
+			} else if ("-m".equals(arg)){
+				expectMargin = true;
+			} else if ("-c".equals(arg)){
+				expectChangeFile = true;
+			} else if ("-k".equals(arg)){
+				keepStores = true;
+			} else if ("-x".equals(arg)){
+				extract = true;
+			} else if ("-z".equals(arg)){
+				StreamFormat.setCompressionLevel(Deflater.BEST_SPEED);
+			} else if ("-j".equals(arg)){
+				StreamFormat.setSelected(StreamFormat.JSON_LINES);
 			} else if (expectInputFile){
 				expectInputFile = false;
 				inputFile = new File(arg);
+			} else if (expectChangeFile){
+				expectChangeFile = false;
+				changeFile = new File(arg);
 			} else if (expectOutputFile){
 				expectOutputFile = false;
 				outputFile = new File(arg);
 			} else if (expectTempFolder){
 				expectTempFolder = false;
 				tempFile = new File(arg);
+			} else if (expectThreads){
+				expectThreads = false;
+				try {
+					readerThreads = Integer.parseInt(arg);
+				} catch (NumberFormatException e) {
+					error = "Wrong number of reader threads : " + arg;
+				}
+			} else if (expectMargin){
+				expectMargin = false;
+				try {
+					margin = Double.parseDouble(arg);
+				} catch (NumberFormatException e) {
+					error = "Wrong margin : " + arg;
+				}
 			} else if (expectBoundingBox){
 				expectBoundingBox = false;
 				String coord[] = arg.split(",");
@@ -185,10 +237,10 @@ public class Main {
 		} else if (outputFile == null){
 			System.out.println("Missing Output File");
 			printUsage = true;
-		} else if (inputFile == null){
+		} else if (inputFile == null && (changeFile == null || extract)){
 			System.out.println("Missing Input File");
 			printUsage = true;
-		} else if (tempFile == null){
+		} else if (tempFile == null && !extract){
 			System.out.println("Missing temp File");
 			printUsage = true;
 		} 
@@ -198,10 +250,17 @@ public class Main {
 		} 
 		
 		if (printUsage){
-			System.out.println("usage : java -jar mm.gen.jar -i [Input File] -o [Output File] -t [Temp Folder] -b minLat,minLon,maxLat,maxLon");
+			System.out.println("usage : java -jar mm.gen.jar -i [Input File .o5m or .pbf] -o [Output File] -t [Temp Folder] -b minLat,minLon,maxLat,maxLon [-p Reader Threads] [-m Margin in Degrees] [-k] [-c Change File] [-x] [-z] [-j]");
+			System.out.println("  -k keeps the intermediate files, so change files can be applied later");
+			System.out.println("  -c applies an o5c change file to the kept files instead of importing the input file");
+			System.out.println("  -x extracts the bounding box plus margin from the input file into the output file as o5m");
+			System.out.println("  -z compresses the intermediate files in the temp folder");
+			System.out.println("  -j writes the intermediate files as json lines for debugging");
+		} else if (extract) {
+			new Extractor(minLat, minLon, maxLat, maxLon, margin).extract(inputFile, outputFile);
 		} else {
 			RelCoordConverter converter = getConverter();
-			Generator generator = generateRawFiles();
+			Generator generator = changeFile == null ? generateRawFiles() : applyChanges();
 			genMap(converter, generator.getResolvedFilteredWayFile(), generator.getResolvedRelationFile());
 		}
 	}
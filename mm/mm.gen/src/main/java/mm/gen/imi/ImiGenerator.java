@@ -28,6 +28,8 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
+import mm.io.MappedRandomAccessFile;
+
 /**
  * @author benno
  * 
@@ -78,7 +80,7 @@ public class ImiGenerator {
 			final byte b[] = new byte[10000];
 			int start = 40 + dd.size() * 24;
 			header = new byte[start];
-			final RandomAccessFile rao = new RandomAccessFile(destFile, "rw");
+			final RandomAccessFile rao = new MappedRandomAccessFile(destFile, "rw");
 
 			headerBuffer = ByteBuffer.wrap(header);
 			headerBuffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -10,15 +10,17 @@ import java.util.Map;
 import java.util.Set;
 
 import mm.gen.db.BoundingBox;
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
+import mm.io.base.MemoryBudget;
 import mm.lay.LatLng;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class MultiWay implements Streamable {
+public class MultiWay implements Streamable, SizeEstimable {
 	/**
 	 * 
 	 */
@@ -232,6 +234,24 @@ public class MultiWay implements Streamable {
 		return !notEmpty;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		long size = MemoryBudget.OBJECT + 40 + MemoryBudget.sizeOf(props) + 4
+				* MemoryBudget.OBJECT;
+		for (final Way way : outerWays) {
+			size += MemoryBudget.REFERENCE + way.estimatedSize();
+		}
+		for (final Way way : innerWays) {
+			size += MemoryBudget.REFERENCE + way.estimatedSize();
+		}
+		return size;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -263,26 +283,34 @@ public class MultiWay implements Streamable {
 	@Override
 	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
 		props.clear();
-		innerWays.clear();
-		outerWays.clear();
 		id = in.readLong();
-		int size = in.readInt();
+		final int size = in.readInt();
 		for (int i = 0; i < size; ++i) {
 			final String key = StreamIo.readString(in);
 			final String value = StreamIo.readString(in);
 			props.put(key, value);
 		}
-		size = in.readInt();
-		for (int i = 0; i < size; ++i) {
-			final Way way = new Way();
-			way.readExternal(in);
-			outerWays.add(way);
+		readWays(in, outerWays);
+		readWays(in, innerWays);
+	}
+
+	/**
+	 * reads ways into the list, refilling the ways of a recycled MultiWay
+	 */
+	private static void readWays(final ObjectInput in, final List<Way> ways) throws IOException,
+			ClassNotFoundException {
+		final int size = in.readInt();
+		final int reused = Math.min(size, ways.size());
+		for (int i = 0; i < reused; ++i) {
+			ways.get(i).readExternal(in);
 		}
-		size = in.readInt();
-		for (int i = 0; i < size; ++i) {
+		if (ways.size() > size) {
+			ways.subList(size, ways.size()).clear();
+		}
+		for (int i = reused; i < size; ++i) {
 			final Way way = new Way();
 			way.readExternal(in);
-			innerWays.add(way);
+			ways.add(way);
 		}
 	}
 }
@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import mm.gen.db.WayClassifier.Graphics;
+import mm.io.MappedRandomAccessFile;
 import mm.lay.types.Carrier;
 
 /**
@@ -93,7 +94,7 @@ public class Layer {
 		if (f.exists()) {
 			f.delete();
 		}
-		rao = new RandomAccessFile(f, "rw");
+		rao = new MappedRandomAccessFile(f, "rw");
 		cellTable = new CellTable(new File(path));
 		lonLeft = (float) coordConverter.getMinLon();
 		lonRight = (float) coordConverter.getMaxLon();
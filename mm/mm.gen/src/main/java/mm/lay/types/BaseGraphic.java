@@ -26,8 +26,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import mm.gen.db.WayClassifier.Graphics;
 import mm.gen.db.WayClassifier.LayerType;
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
+import mm.io.base.MemoryBudget;
 import mm.lay.Point;
 
 import org.json.JSONException;
@@ -37,7 +39,7 @@ import org.json.JSONObject;
  * @author benno
  * 
  */
-public abstract class BaseGraphic implements Streamable {
+public abstract class BaseGraphic implements Streamable, SizeEstimable {
 	protected static AtomicInteger lineIdCounter = new AtomicInteger(1);
 	protected Graphics graphics = Graphics.POLYLINE;
 	protected LayerType layer = LayerType.HIGHWAY;
@@ -68,6 +70,16 @@ public abstract class BaseGraphic implements Streamable {
 		return ret;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		return MemoryBudget.OBJECT + 40 + MemoryBudget.sizeOf(name);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -24,7 +24,9 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 import mm.gen.db.WayClassifier.Graphics;
+import mm.io.SizeEstimable;
 import mm.io.Streamable;
+import mm.io.base.MemoryBudget;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -33,7 +35,7 @@ import org.json.JSONObject;
  * @author benno
  * 
  */
-public class Carrier implements Streamable {
+public class Carrier implements Streamable, SizeEstimable {
 	protected Graphics graphics = Graphics.POLYLINE;
 	protected BaseGraphic baseElement = null;
 
@@ -98,6 +100,17 @@ public class Carrier implements Streamable {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		return MemoryBudget.OBJECT + 16
+				+ (baseElement == null ? 0 : baseElement.estimatedSize());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
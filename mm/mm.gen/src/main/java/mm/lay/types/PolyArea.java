@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import mm.gen.db.WayClassifier.Graphics;
+import mm.io.base.MemoryBudget;
 import mm.lay.Point;
 
 import org.json.JSONArray;
@@ -123,6 +124,23 @@ public class PolyArea extends BaseGraphic {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		long size = super.estimatedSize() + 4 * MemoryBudget.OBJECT;
+		for (final SubPolyArea area : outerAreas) {
+			size += MemoryBudget.REFERENCE + area.estimatedSize();
+		}
+		for (final SubPolyArea area : innerAreas) {
+			size += MemoryBudget.REFERENCE + area.estimatedSize();
+		}
+		return size;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
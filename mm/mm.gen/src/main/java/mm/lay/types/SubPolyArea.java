@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import mm.gen.db.WayClassifier.Graphics;
+import mm.io.base.MemoryBudget;
 import mm.lay.Point;
 
 import org.json.JSONArray;
@@ -127,6 +128,18 @@ public class SubPolyArea extends BaseGraphic {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		// the points with their reference plus bottomLeft and topRight
+		return super.estimatedSize() + 2 * MemoryBudget.OBJECT + (points.size() + 2)
+				* (MemoryBudget.REFERENCE + MemoryBudget.OBJECT + 16);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
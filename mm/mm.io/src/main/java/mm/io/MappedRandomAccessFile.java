@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * This class extends the RandomAccessFile of the package java.io by mapping
+ * the file into memory. It can be used in place of the
+ * {@link RandomAccessFile}, the reads and writes are copies from and to the
+ * mapped segments without a system call per access.
+ * 
+ * The file is mapped in segments of {@link #SEGMENT_SIZE} bytes, which are
+ * mapped when they are accessed the first time. A writable file grows by
+ * whole segments, so writes behind the end of the file go through the mapping
+ * as well. The length of the file is kept apart from the mapped length, and
+ * {@link #close()} forces the segments, unmaps them and truncates the file to
+ * its length. A file that is not closed keeps the padding of its last
+ * segment.
+ * 
+ * @author benno
+ */
+public class MappedRandomAccessFile extends java.io.RandomAccessFile {
+
+	private static final int SEGMENT_SHIFT = 26;
+	public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private static final Object unsafe;
+	private static final Method invokeCleaner;
+
+	static {
+		Object theUnsafe = null;
+		Method cleaner = null;
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			theUnsafe = field.get(null);
+			cleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (final Exception e) {
+			// before java 9, the cleaner of the buffer is used
+		}
+		unsafe = theUnsafe;
+		invokeCleaner = cleaner;
+	}
+
+	private final FileChannel channel;
+	private final boolean writable;
+	private MappedByteBuffer segments[] = new MappedByteBuffer[4];
+	private long position = 0;
+	private long fileLength = 0;
+
+	/**
+	 * Overwrites the constructor of the super class.
+	 * 
+	 * @param name
+	 *            name of the file
+	 * @param mode
+	 *            mode in which the file shall be opened
+	 * @throws IOException
+	 */
+	public MappedRandomAccessFile(final String name, final String mode) throws IOException {
+		this(new File(name), mode);
+	}
+
+	/**
+	 * Overwrites the constructor of the super class.
+	 * 
+	 * @param file
+	 *            file to create or use if exists
+	 * @param mode
+	 *            mode in which the file shall be opened
+	 * @throws IOException
+	 */
+	public MappedRandomAccessFile(final File file, final String mode) throws IOException {
+		super(file, mode);
+		channel = getChannel();
+		writable = !"r".equals(mode);
+		fileLength = channel.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (position >= fileLength) {
+			return -1;
+		}
+		final int value = getSegment(position).get((int) (position & SEGMENT_MASK)) & 0xff;
+		position++;
+		return value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#read(byte[])
+	 */
+	@Override
+	public int read(final byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= fileLength) {
+			return -1;
+		}
+		final int total = (int) Math.min(len, fileLength - position);
+		int done = 0;
+		while (done < total) {
+			final MappedByteBuffer segment = getSegment(position);
+			final int offset = (int) (position & SEGMENT_MASK);
+			final int n = Math.min(total - done, segment.capacity() - offset);
+			segment.position(offset);
+			segment.get(b, off + done, n);
+			done += n;
+			position += n;
+		}
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#skipBytes(int)
+	 */
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skip = (int) Math.max(0, Math.min(n, fileLength - position));
+		position += skip;
+		return skip;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#write(int)
+	 */
+	@Override
+	public void write(final int b) throws IOException {
+		checkWritable();
+		getSegment(position).put((int) (position & SEGMENT_MASK), (byte) b);
+		position++;
+		fileLength = Math.max(fileLength, position);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#write(byte[])
+	 */
+	@Override
+	public void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		checkWritable();
+		int done = 0;
+		while (done < len) {
+			final MappedByteBuffer segment = getSegment(position);
+			final int offset = (int) (position & SEGMENT_MASK);
+			final int n = Math.min(len - done, SEGMENT_SIZE - offset);
+			segment.position(offset);
+			segment.put(b, off + done, n);
+			done += n;
+			position += n;
+		}
+		fileLength = Math.max(fileLength, position);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#getFilePointer()
+	 */
+	@Override
+	public long getFilePointer() throws IOException {
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#seek(long)
+	 */
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (pos < 0) {
+			throw new IOException("Negative seek offset");
+		}
+		position = pos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.RandomAccessFile#length()
+	 */
+	@Override
+	public long length() throws IOException {
+		return fileLength;
+	}
+
+	/**
+	 * sets the length of the file. An extended part reads as zeros. The
+	 * segments behind the new length are unmapped before the file is
+	 * shortened.
+	 * 
+	 * @see java.io.RandomAccessFile#setLength(long)
+	 */
+	@Override
+	public void setLength(final long newLength) throws IOException {
+		checkWritable();
+		if (newLength < 0) {
+			throw new IOException("Negative length");
+		}
+		if (newLength < fileLength) {
+			final int first = (int) Math.min(newLength >>> SEGMENT_SHIFT, segments.length);
+			for (int i = first; i < segments.length; ++i) {
+				unmap(segments[i]);
+				segments[i] = null;
+			}
+			channel.truncate(newLength);
+		}
+		fileLength = newLength;
+		position = Math.min(position, newLength);
+	}
+
+	/**
+	 * forces the written segments to the file, unmaps them and truncates the
+	 * file to its length. The truncation fails on platforms which do not allow
+	 * it for a mapped file, if the running VM can not unmap the segments.
+	 * 
+	 * @see java.io.RandomAccessFile#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (writable && channel.isOpen()) {
+				for (final MappedByteBuffer segment : segments) {
+					if (segment != null) {
+						segment.force();
+					}
+				}
+				for (int i = 0; i < segments.length; ++i) {
+					unmap(segments[i]);
+					segments[i] = null;
+				}
+				if (channel.size() > fileLength) {
+					channel.truncate(fileLength);
+				}
+			}
+		} finally {
+			Arrays.fill(segments, null);
+			super.close();
+		}
+	}
+
+	private void checkWritable() throws IOException {
+		if (!writable) {
+			throw new IOException("The file is opened for reading only");
+		}
+	}
+
+	/**
+	 * @return the segment containing the position. It is mapped if it is not
+	 *         mapped yet. A writable file is mapped in whole segments and grows
+	 *         to the end of the segment, a file opened for reading is mapped up
+	 *         to its end.
+	 * @throws IOException
+	 */
+	private MappedByteBuffer getSegment(final long pos) throws IOException {
+		final long index = pos >>> SEGMENT_SHIFT;
+		if (index >= Integer.MAX_VALUE) {
+			throw new IOException("Position " + pos + " is too far behind the start");
+		}
+		if (index >= segments.length) {
+			segments = Arrays.copyOf(segments, Math.max((int) index + 1, 2 * segments.length));
+		}
+		MappedByteBuffer segment = segments[(int) index];
+		if (segment == null) {
+			final long start = index << SEGMENT_SHIFT;
+			if (writable) {
+				segment = channel.map(MapMode.READ_WRITE, start, SEGMENT_SIZE);
+			} else {
+				segment = channel.map(MapMode.READ_ONLY, start,
+						Math.min(SEGMENT_SIZE, fileLength - start));
+			}
+			segments[(int) index] = segment;
+		}
+		return segment;
+	}
+
+	/**
+	 * releases the mapping of the segment at once instead of waiting for the
+	 * garbage collector. The segment must not be used afterwards. Nothing is
+	 * done if the running VM does not allow it.
+	 */
+	private static void unmap(final MappedByteBuffer segment) {
+		if (segment == null) {
+			return;
+		}
+		try {
+			if (invokeCleaner != null) {
+				invokeCleaner.invoke(unsafe, segment);
+			} else {
+				final Method cleanerMethod = segment.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				final Object cleaner = cleanerMethod.invoke(segment);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (final Exception e) {
+			// the mapping is released by the garbage collector
+		}
+	}
+}
@@ -21,44 +21,62 @@ package mm.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class extends the RandomAccessFile of the package java.io by using
  * buffers for read and write operations.
  * 
+ * The pages are read and written with positional operations of the file
+ * channel, so they can be moved on background threads. When a page is missed
+ * right behind the page missed before, the access is taken as sequential and
+ * the next pages are read ahead. A dirty page dropped from the cache is
+ * written behind, it stays pending until it is written, so it is taken back
+ * instead of being read again from the file. Errors of the background
+ * operations are thrown by the next access to the page or by {@link #close()}.
+ * 
  * @author benno
  */
 public class RandomAccessFile extends java.io.RandomAccessFile {
 
+	public static final int DEFAULT_PAGE_SIZE = 1 << 14;
+	public static final int DEFAULT_PAGE_NUMBER = 1024;
+	/** number of pages read ahead of a sequential access */
+	private static final int READ_AHEAD = 4;
+	/** number of pages read ahead or written behind at the same time */
+	private static final int MAX_PENDING = 16;
+	private static final ExecutorService PAGE_IO = Executors.newFixedThreadPool(2,
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "page io");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	private long position = 0;
-	private static final int quotient = 14;
-	private static final int PageSize = 1 << quotient;
-	private static final int PageNumber = 1024;
+	private final int quotient;
+	private final int pageSize;
+	private final int pageNumber;
+	private final FileChannel channel;
 	private long fileLength = 0;
-	@SuppressWarnings("serial")
-	private final LinkedHashMap<Long, Page> pageMap = new LinkedHashMap<Long, Page>(16, 0.75f, true) {
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
-		 */
-		@Override
-		protected boolean removeEldestEntry(final Entry<Long, Page> eldest) {
-			if (size() > PageNumber) {
-				try {
-					final Page page = eldest.getValue();
-					if (page.isDirty()) {
-						page.flushToFile();
-					}
-				} catch (final Exception e) {
-				}
-				return true;
-			}
-			return false;
-		}
-	};
+	private long lastMissed = -2;
+	private final LinkedHashMap<Long, Page> pageMap = new LinkedHashMap<Long, Page>(16, 0.75f,
+			true);
+	/** pages read ahead or written behind, in the order they were started */
+	private final LinkedHashMap<Long, Page> pending = new LinkedHashMap<Long, Page>();
 
 	/**
 	 * Overwrites the constructor of the super class. This constructor
@@ -85,7 +103,36 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 	 * @throws IOException
 	 */
 	public RandomAccessFile(final File file, final String mode) throws IOException {
+		this(file, mode, DEFAULT_PAGE_SIZE, DEFAULT_PAGE_NUMBER);
+	}
+
+	/**
+	 * Constructor with the size of the cache
+	 * 
+	 * @param file
+	 *            file to create or use if exists
+	 * @param mode
+	 *            mode in which the file shall be opened
+	 * @param pageSize
+	 *            number of bytes of a page, a power of two
+	 * @param pageNumber
+	 *            number of pages kept in the cache
+	 * @throws IOException
+	 */
+	public RandomAccessFile(final File file, final String mode, final int pageSize,
+			final int pageNumber) throws IOException {
 		super(file, mode);
+		if (pageSize <= 0 || Integer.bitCount(pageSize) != 1) {
+			throw new IllegalArgumentException("The page size " + pageSize
+					+ " is not a power of two");
+		}
+		if (pageNumber <= 0) {
+			throw new IllegalArgumentException("At least one page is needed");
+		}
+		this.pageSize = pageSize;
+		this.pageNumber = pageNumber;
+		quotient = Integer.numberOfTrailingZeros(pageSize);
+		channel = getChannel();
 		position = 0;
 		fileLength = super.length();
 	}
@@ -233,17 +280,35 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		throw new UnsupportedOperationException();
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * waits for the pages read ahead or written behind and flushes the dirty
+	 * pages
 	 * 
 	 * @see java.io.RandomAccessFile#close()
 	 */
 	@Override
 	public void close() throws IOException {
-		for (final Entry<Long, Page> set : pageMap.entrySet()) {
-			set.getValue().flushToFile();
+		try {
+			IOException error = null;
+			for (final Page page : pending.values()) {
+				try {
+					page.await();
+				} catch (final IOException e) {
+					error = error == null ? e : error;
+				}
+			}
+			pending.clear();
+			if (error != null) {
+				throw error;
+			}
+			for (final Entry<Long, Page> set : pageMap.entrySet()) {
+				if (set.getValue().isDirty()) {
+					set.getValue().flushToFile();
+				}
+			}
+		} finally {
+			super.close();
 		}
-		super.close();
 	}
 
 	/**
@@ -252,16 +317,69 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 	 */
 	private Page getCurrentPage() throws IOException {
 		final long pageId = position >> quotient;
-		Page page = pageMap.get(Long.valueOf(pageId));
+		final Long key = Long.valueOf(pageId);
+		Page page = pageMap.get(key);
 		if (page == null) {
-			page = new Page();
-			page.setStartPos(pageId << quotient);
-			page.readFromFile();
-			pageMap.put(Long.valueOf(pageId), page);
+			page = pending.remove(key);
+			if (page != null) {
+				page.await();
+			} else {
+				page = new Page();
+				page.setStartPos(pageId << quotient);
+				page.readFromFile();
+			}
+			pageMap.put(key, page);
+			if (pageMap.size() > pageNumber) {
+				final Iterator<Entry<Long, Page>> eldest = pageMap.entrySet().iterator();
+				final Entry<Long, Page> entry = eldest.next();
+				eldest.remove();
+				if (entry.getValue().isDirty()) {
+					entry.getValue().flushBehind();
+					addPending(entry.getKey(), entry.getValue());
+				}
+			}
+			if (pageId == lastMissed + 1) {
+				readAhead(pageId + 1);
+			}
+			lastMissed = pageId;
 		}
 		return page;
 	}
 
+	/**
+	 * starts reading the pages behind a sequential access, which are neither
+	 * cached nor pending
+	 */
+	private void readAhead(final long firstPageId) throws IOException {
+		for (long pageId = firstPageId; pageId < firstPageId + READ_AHEAD; pageId++) {
+			final long startPos = pageId << quotient;
+			if (startPos >= fileLength) {
+				return;
+			}
+			final Long key = Long.valueOf(pageId);
+			if (!pageMap.containsKey(key) && !pending.containsKey(key)) {
+				final Page page = new Page();
+				page.setStartPos(startPos);
+				page.readAhead();
+				addPending(key, page);
+			}
+		}
+	}
+
+	/**
+	 * keeps a page read ahead or written behind. The eldest pending page is
+	 * waited for and dropped, if there are too many.
+	 */
+	private void addPending(final Long key, final Page page) throws IOException {
+		pending.put(key, page);
+		if (pending.size() > MAX_PENDING) {
+			final Iterator<Page> eldest = pending.values().iterator();
+			final Page dropped = eldest.next();
+			eldest.remove();
+			dropped.await();
+		}
+	}
+
 	/**
 	 * flushes a byte buffer back to the underlying file system.
 	 * 
@@ -275,8 +393,10 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 	 */
 	private void flushToFile0(final long position, final byte buffer[], final int length)
 			throws IOException {
-		super.seek(position);
-		super.write(buffer, 0, length);
+		final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, length);
+		while (bb.hasRemaining()) {
+			channel.write(bb, position + bb.position());
+		}
 	}
 
 	/**
@@ -292,14 +412,11 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 	 * @throws IOException
 	 */
 	private int readFromFile0(final long position, final byte buffer[]) throws IOException {
-		super.seek(position);
-		int got = super.read(buffer);
-		int count = 0;
-		while (got > 0) {
-			count += got;
-			got = super.read(buffer, count, buffer.length - count);
+		final ByteBuffer bb = ByteBuffer.wrap(buffer);
+		while (bb.hasRemaining() && channel.read(bb, position + bb.position()) >= 0) {
+			// read until the page is full or the file ends
 		}
-		return count;
+		return bb.position();
 	}
 
 	/**
@@ -312,10 +429,12 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 	 * @author benno
 	 */
 	protected class Page {
-		private final byte buffer[] = new byte[PageSize];
+		private final byte buffer[] = new byte[pageSize];
 		private long startPos = 0;
 		private boolean dirty = false;
-		private int length = PageSize;
+		private int length = pageSize;
+		/** the read or write running on a background thread */
+		private Future<?> operation = null;
 
 		/**
 		 * Reads a portion of data from this page.
@@ -332,7 +451,7 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		 * @return number of bytes read, or -1 when EOF is reached.
 		 */
 		public int read(final long currentPos, final byte b[], final int off, final int len) {
-			final int pageOffset = (int) (currentPos % PageSize);
+			final int pageOffset = (int) (currentPos % pageSize);
 			int bytesToRead = Math.min(b.length, off + len) - off;
 			if (bytesToRead > 0) {
 				bytesToRead = Math.min(length, pageOffset + bytesToRead) - pageOffset;
@@ -355,7 +474,7 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		 *         reached.
 		 */
 		public int read(final long currentPos) {
-			final int pageOffset = (int) (currentPos % PageSize);
+			final int pageOffset = (int) (currentPos % pageSize);
 			if (pageOffset < length) {
 				return buffer[pageOffset] & 0xff;
 			}
@@ -377,10 +496,10 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		 * @return number of bytes written
 		 */
 		public int write(final long currentPos, final byte b[], final int off, final int len) {
-			final int pageOffset = (int) (currentPos % PageSize);
+			final int pageOffset = (int) (currentPos % pageSize);
 			int bytesToWrite = Math.min(b.length, off + len) - off;
 			if (bytesToWrite > 0) {
-				bytesToWrite = Math.min(PageSize, pageOffset + bytesToWrite) - pageOffset;
+				bytesToWrite = Math.min(pageSize, pageOffset + bytesToWrite) - pageOffset;
 				if (bytesToWrite > 0) {
 					System.arraycopy(b, off, buffer, pageOffset, bytesToWrite);
 					length = Math.max(length, pageOffset + bytesToWrite);
@@ -402,8 +521,8 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		 * @return -1 when position is not within this page
 		 */
 		public int write(final long currentPos, final int b) {
-			final int pageOffset = (int) (currentPos % PageSize);
-			if (pageOffset < PageSize) {
+			final int pageOffset = (int) (currentPos % pageSize);
+			if (pageOffset < pageSize) {
 				dirty = true;
 				length = Math.max(length, pageOffset + 1);
 				fileLength = Math.max(fileLength, currentPos + 1);
@@ -446,12 +565,63 @@ public class RandomAccessFile extends java.io.RandomAccessFile {
 		}
 
 		/**
-		 * reads this page from FileSystem
+		 * reads this page from FileSystem, a page behind the end of the file
+		 * is empty without reading
 		 * 
 		 * @throws IOException
 		 */
 		public void readFromFile() throws IOException {
-			length = readFromFile0(startPos, buffer);
+			length = startPos < fileLength ? readFromFile0(startPos, buffer) : 0;
+		}
+
+		/**
+		 * flushes this page back to FileSystem on a background thread
+		 */
+		public void flushBehind() {
+			operation = PAGE_IO.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					flushToFile();
+					return null;
+				}
+			});
+		}
+
+		/**
+		 * reads this page from FileSystem on a background thread
+		 */
+		public void readAhead() {
+			operation = PAGE_IO.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					length = readFromFile0(startPos, buffer);
+					return null;
+				}
+			});
+		}
+
+		/**
+		 * waits for the background operation of this page
+		 * 
+		 * @throws IOException
+		 *             if the operation failed
+		 */
+		public void await() throws IOException {
+			if (operation == null) {
+				return;
+			}
+			try {
+				operation.get();
+			} catch (final InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while waiting for a page");
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("Page io failed", e.getCause());
+			} finally {
+				operation = null;
+			}
 		}
 
 		/**
@@ -27,6 +27,8 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+import mm.io.base.MemoryBudget;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -191,7 +193,7 @@ public class ReferenceResolver<One extends Streamable, Many extends Streamable>
 	 *            class
 	 * @param maxSize
 	 *            maximum size for initial SorterFiles in number of elements.
-	 *            Default is 50000, but there is space for rather more.
+	 *            By default they are only limited by the MemoryBudget.
 	 * @throws IOException
 	 */
 	public static <One extends Streamable, Many extends Streamable> void resolveReferences(
@@ -555,7 +557,7 @@ public class ReferenceResolver<One extends Streamable, Many extends Streamable>
 	 * 
 	 * @author benno
 	 */
-	private class Reference implements Streamable {
+	private class Reference implements Streamable, SizeEstimable {
 		private long oneId;
 		private long manyId;
 		private Many manyInstance;
@@ -587,6 +589,17 @@ public class ReferenceResolver<One extends Streamable, Many extends Streamable>
 			this.manyInstance = manyInstance;
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.io.SizeEstimable#estimatedSize()
+		 */
+		@Override
+		public long estimatedSize() {
+			return MemoryBudget.OBJECT + 16 + MemoryBudget.REFERENCE
+					+ MemoryBudget.sizeOf(manyInstance);
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
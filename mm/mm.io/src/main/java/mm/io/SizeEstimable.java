@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import mm.io.base.MemoryBudget;
+
+/**
+ * Implemented by Streamables that can tell how much heap they take, so the
+ * {@link MemoryBudget} can size sort runs and buffers by bytes instead of by
+ * a number of elements. Streamables not implementing it are taken as
+ * {@link MemoryBudget#DEFAULT_ELEMENT_SIZE}.
+ * 
+ * @author benno
+ */
+public interface SizeEstimable {
+
+	/**
+	 * @return the approximate number of heap bytes of this object including
+	 *         the objects it contains
+	 */
+	long estimatedSize();
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import mm.io.base.BlockReader;
+import mm.io.base.BlockWriter;
+import mm.io.base.CompactObjectInput;
+import mm.io.base.CompactObjectOutput;
+import mm.io.base.JsonObjectInput;
+import mm.io.base.JsonObjectOutput;
+
+/**
+ * The formats the {@link StreamableWriter} writes and the
+ * {@link StreamableIterator} reads. Files have to be read in the format they
+ * were written in, there is nothing in a file telling its format.
+ * 
+ * @author benno
+ */
+public enum StreamFormat {
+	/** one json object per line */
+	JSON,
+	/**
+	 * the Externalizable form in an ObjectOutputStream without its header,
+	 * behind {@link #OBJECT_STREAM_MAGIC} and {@link #OBJECT_STREAM_VERSION}.
+	 * Files without the magic were written with a length int and the platform
+	 * charset for the strings, they are still read in that form.
+	 */
+	OBJECT_STREAM,
+	/**
+	 * the Externalizable form written by {@link CompactObjectOutput} and read
+	 * by {@link CompactObjectInput}
+	 */
+	COMPACT,
+	/**
+	 * the compact form with every Streamable as record of a
+	 * {@link BlockWriter}, read by the {@link BlockReader}. Blocks are
+	 * checksummed and the file ends with a trailer, so truncated files are
+	 * detected and files can be split at block boundaries.
+	 */
+	FRAMED,
+	/**
+	 * one json array per line with the values of the Externalizable form,
+	 * written by {@link JsonObjectOutput} and read by {@link JsonObjectInput}
+	 * without building json objects. This is the text form for looking into
+	 * the files of a whole run.
+	 */
+	JSON_LINES;
+
+	/** first int of the {@link #OBJECT_STREAM} files with a version */
+	public static final int OBJECT_STREAM_MAGIC = 0x4d4d4f53;
+	/**
+	 * version of the {@link #OBJECT_STREAM} files written now, their strings
+	 * are UTF-8 behind a variable length number. The files without version
+	 * are version 1.
+	 */
+	public static final int OBJECT_STREAM_VERSION = 2;
+
+	private static volatile StreamFormat selected = FRAMED;
+	private static volatile int compressionLevel = -1;
+
+	/**
+	 * @return the format used by writers and iterators that are not given
+	 *         one. This is JSON if {@link Streamable#jsonSupport} is set,
+	 *         otherwise {@link #FRAMED} unless another format was selected.
+	 */
+	public static StreamFormat getSelected() {
+		return Streamable.jsonSupport ? JSON : selected;
+	}
+
+	/**
+	 * @param format
+	 *            the format for writers and iterators created from now on
+	 */
+	public static void setSelected(final StreamFormat format) {
+		selected = format;
+	}
+
+	/**
+	 * @return level of the Deflater for the blocks of {@link #FRAMED} files,
+	 *         -1 if they are not compressed
+	 */
+	public static int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * Compressed blocks are read like uncompressed ones, so the level can be
+	 * changed any time.
+	 * 
+	 * @param level
+	 *            level of the Deflater for the blocks of {@link #FRAMED}
+	 *            files written from now on, -1 for uncompressed blocks
+	 */
+	public static void setCompressionLevel(final int level) {
+		compressionLevel = level;
+	}
+}
@@ -22,6 +22,12 @@ package mm.io;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+
+import mm.io.base.CompactObjectInput;
+import mm.io.base.CompactObjectOutput;
+import mm.io.base.JsonObjectInput;
+import mm.io.base.JsonObjectOutput;
 
 /**
  * @author benno
@@ -34,7 +40,11 @@ public final class StreamIo {
 	}
 
 	/**
-	 * Writes a String to an ObjectOutput
+	 * Writes a String to an ObjectOutput as UTF-8 bytes behind their number
+	 * as variable length number. The {@link CompactObjectOutput} writes
+	 * strings it has written shortly before as reference into its string
+	 * table, other ObjectOutputs write 0 in front of every string, as it is
+	 * written for a string that is not in the table.
 	 * 
 	 * @param out
 	 *            the destination for the string
@@ -43,14 +53,25 @@ public final class StreamIo {
 	 * @throws IOException
 	 */
 	public static void writeString(final ObjectOutput out, final String str) throws IOException {
-		final byte b[] = str.getBytes();
-		out.writeInt(b.length);
+		if (out instanceof CompactObjectOutput) {
+			((CompactObjectOutput) out).writeString(str);
+			return;
+		}
+		if (out instanceof JsonObjectOutput) {
+			((JsonObjectOutput) out).writeString(str);
+			return;
+		}
+		final byte b[] = str.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, 0);
+		writeVarLong(out, b.length);
 		out.write(b);
 	}
 
 	/**
 	 * opposite function for write string. This method reads a string that was
-	 * written with writeString
+	 * written with writeString. The strings of {@link StreamFormat#OBJECT_STREAM}
+	 * files without version are read with their length int and the platform
+	 * charset they were written with.
 	 * 
 	 * @param in
 	 *            source from which the string will be read.
@@ -58,9 +79,119 @@ public final class StreamIo {
 	 * @throws IOException
 	 */
 	public static String readString(final ObjectInput in) throws IOException {
-		final int length = in.readInt();
-		final byte b[] = new byte[length];
+		if (in instanceof CompactObjectInput) {
+			return ((CompactObjectInput) in).readString();
+		}
+		if (in instanceof JsonObjectInput) {
+			return ((JsonObjectInput) in).readString();
+		}
+		if (in instanceof StreamableIterator.HeaderlessObjectInput
+				&& ((StreamableIterator.HeaderlessObjectInput) in).getVersion() < 2) {
+			// written before the strings were UTF-8
+			final byte b[] = new byte[in.readInt()];
+			in.readFully(b);
+			return new String(b);
+		}
+		if (readVarLong(in) != 0) {
+			throw new IOException("Reference to a string without string table");
+		}
+		final long length = readVarLong(in);
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt string length " + length);
+		}
+		final byte b[] = new byte[(int) length];
 		in.readFully(b);
-		return new String(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes an unsigned number in seven bit groups, small numbers take less
+	 * room than with writeLong. Works for every ObjectOutput, the
+	 * {@link CompactObjectOutput} writes it directly into its buffer, the
+	 * {@link JsonObjectOutput} writes it as plain number.
+	 * 
+	 * @param out
+	 *            the destination for the number
+	 * @param value
+	 *            the number, negative numbers take ten bytes
+	 * @throws IOException
+	 */
+	public static void writeVarLong(final ObjectOutput out, final long value)
+			throws IOException {
+		if (out instanceof CompactObjectOutput) {
+			((CompactObjectOutput) out).writeVarLong(value);
+			return;
+		}
+		if (out instanceof JsonObjectOutput) {
+			out.writeLong(value);
+			return;
+		}
+		long v = value;
+		while ((v & ~0x7fL) != 0) {
+			out.write((int) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Writes a signed number zigzag coded in seven bit groups, so numbers near
+	 * 0 take few bytes.
+	 * 
+	 * @param out
+	 *            the destination for the number
+	 * @param value
+	 *            the number
+	 * @throws IOException
+	 */
+	public static void writeSignedVarLong(final ObjectOutput out, final long value)
+			throws IOException {
+		if (out instanceof JsonObjectOutput) {
+			out.writeLong(value);
+			return;
+		}
+		writeVarLong(out, value << 1 ^ value >> 63);
+	}
+
+	/**
+	 * opposite function for writeVarLong
+	 * 
+	 * @param in
+	 *            source from which the number will be read.
+	 * @return the number
+	 * @throws IOException
+	 */
+	public static long readVarLong(final ObjectInput in) throws IOException {
+		if (in instanceof CompactObjectInput) {
+			return ((CompactObjectInput) in).readVarLong();
+		}
+		if (in instanceof JsonObjectInput) {
+			return in.readLong();
+		}
+		int shift = 0;
+		int b = in.readUnsignedByte();
+		long ret = b & 0x7f;
+		while ((b & 0x80) != 0) {
+			shift += 7;
+			b = in.readUnsignedByte();
+			ret |= (long) (b & 0x7f) << shift;
+		}
+		return ret;
+	}
+
+	/**
+	 * opposite function for writeSignedVarLong
+	 * 
+	 * @param in
+	 *            source from which the number will be read.
+	 * @return the number
+	 * @throws IOException
+	 */
+	public static long readSignedVarLong(final ObjectInput in) throws IOException {
+		if (in instanceof JsonObjectInput) {
+			return in.readLong();
+		}
+		final long u = readVarLong(in);
+		return (u >>> 1) ^ -(u & 1);
 	}
 }
@@ -36,7 +36,9 @@ public interface Streamable extends Externalizable {
 	 * This flag is checked by any of the streaming class from this package.
 	 * When flag is set to true, it is expected that the json methods shall be
 	 * called and that all files where Streamables are read from are in json
-	 * format
+	 * format. Otherwise the format is the one selected in
+	 * {@link StreamFormat}. The json objects are slow to build, for big files
+	 * {@link StreamFormat#JSON_LINES} is the faster text form.
 	 */
 	public static boolean jsonSupport = false;
 
@@ -25,6 +25,8 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Comparator;
 
+import mm.io.base.MemoryBudget;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -64,19 +66,23 @@ public class StreamableFilter<T extends Streamable> {
 				if (!whiteList) {
 					destWriter.writeStreamable(source);
 				}
+				sourceIter.recycle(source);
 				source = sourceIter.hasNext() ? sourceIter.next() : null;
 			}
 			if (source != null && sourceHandler.getId(source) == id.getId()) {
 				if (whiteList) {
 					destWriter.writeStreamable(source);
 				}
+				sourceIter.recycle(source);
 				source = sourceIter.hasNext() ? sourceIter.next() : null;
 			}
+			idIter.recycle(id);
 			id = idIter.hasNext() ? idIter.next() : null;
 		}
 		if (!whiteList) {
 			while (source != null) {
 				destWriter.writeStreamable(source);
+				sourceIter.recycle(source);
 				source = sourceIter.hasNext() ? sourceIter.next() : null;
 			}
 		}
@@ -93,7 +99,7 @@ public class StreamableFilter<T extends Streamable> {
 		filter.filter();
 	}
 
-	public static class ID implements Streamable {
+	public static class ID implements Streamable, SizeEstimable {
 		private long id = -1;
 
 		public ID() {
@@ -105,6 +111,16 @@ public class StreamableFilter<T extends Streamable> {
 			this.id = id;
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.io.SizeEstimable#estimatedSize()
+		 */
+		@Override
+		public long estimatedSize() {
+			return MemoryBudget.OBJECT + 8;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -20,15 +20,21 @@
 package mm.io;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.PushbackInputStream;
 import java.io.StreamCorruptedException;
 
+import mm.io.base.BlockReader;
+import mm.io.base.CompactObjectInput;
 import mm.io.base.DecoupledInputStream;
+import mm.io.base.JsonObjectInput;
 
 /**
  * This class iterates over a file or an InputStream containing Streamables. It
@@ -37,13 +43,25 @@ import mm.io.base.DecoupledInputStream;
  * When there is no need to consume all contained objects the stream can also be
  * closed using the close method.
  * 
+ * The stream has to be in the {@link StreamFormat} it was written in.
+ * 
+ * A consumer handling one element at a time can hand an element it is done
+ * with back by {@link #recycle(Streamable)}, the element is then refilled by
+ * readExternal instead of constructing a new one. Together with the element
+ * read ahead there are two instances in use.
+ * 
  * @author benno
  */
 public class StreamableIterator<T extends Streamable> {
 
-	private final ObjectInputStream ois;
+	private final StreamFormat format;
+	private final ObjectInput ois;
 	private final BufferedReader br;
+	private final BlockReader blockReader;
+	private final CompactObjectInput record;
+	private final JsonObjectInput jsonLines;
 	private T next = null;
+	private T spare = null;
 	private boolean brOpen = true;
 	private final StreamableFactory<T> factory;
 
@@ -62,7 +80,7 @@ public class StreamableIterator<T extends Streamable> {
 	}
 
 	/**
-	 * Constructor for iterating over an InputStream
+	 * Constructor for iterating over an InputStream in the selected format
 	 * 
 	 * @param in
 	 *            InputStream containing streamable object representations.
@@ -73,20 +91,90 @@ public class StreamableIterator<T extends Streamable> {
 	 */
 	public StreamableIterator(final InputStream in, final StreamableFactory<T> factory)
 			throws IOException {
+		this(in, factory, StreamFormat.getSelected());
+	}
+
+	/**
+	 * Constructor for iterating over an InputStream
+	 * 
+	 * @param in
+	 *            InputStream containing streamable object representations.
+	 * @param factory
+	 *            Factory constructing the concrete implementation of the
+	 *            Streamable
+	 * @param format
+	 *            the format of the stream
+	 * @throws IOException
+	 */
+	public StreamableIterator(final InputStream in, final StreamableFactory<T> factory,
+			final StreamFormat format) throws IOException {
+		this(in, factory, format, -1);
+	}
+
+	/**
+	 * Constructor for iterating over a part of a file in the
+	 * {@link StreamFormat#FRAMED} format, so several iterators can read one
+	 * file. The part has to start and end at the offsets returned by
+	 * {@link BlockReader#getBlockOffsets(File)}.
+	 * 
+	 * @param f
+	 *            File containing streamable object representations.
+	 * @param factory
+	 *            Factory constructing the concrete implementation of the
+	 *            Streamable
+	 * @param start
+	 *            offset of the first block
+	 * @param end
+	 *            offset behind the last block
+	 * @throws IOException
+	 */
+	public StreamableIterator(final File f, final StreamableFactory<T> factory,
+			final long start, final long end) throws IOException {
+		this(open(f, start), factory, StreamFormat.FRAMED, end - start);
+	}
+
+	private StreamableIterator(final InputStream in, final StreamableFactory<T> factory,
+			final StreamFormat format, final long length) throws IOException {
 		BufferedReader tempBr = null;
-		ObjectInputStream tempOis = null;
+		ObjectInput tempOis = null;
+		BlockReader tempBlockReader = null;
+		CompactObjectInput tempRecord = null;
+		JsonObjectInput tempJsonLines = null;
 		this.factory = factory;
-		if (Streamable.jsonSupport) {
+		this.format = format;
+		switch (format) {
+		case JSON:
 			tempBr = new BufferedReader(new InputStreamReader(new DecoupledInputStream(in)));
-		} else {
-			tempOis = new HeaderlessObjectInput(new DecoupledInputStream(in));
+			break;
+		case OBJECT_STREAM:
+			tempOis = HeaderlessObjectInput.open(new DecoupledInputStream(in));
+			break;
+		case FRAMED:
+			tempBlockReader = new BlockReader(new DecoupledInputStream(in), length);
+			tempRecord = new CompactObjectInput(null, 16);
+			break;
+		case JSON_LINES:
+			tempJsonLines = new JsonObjectInput(new DecoupledInputStream(in));
+			tempOis = tempJsonLines;
+			break;
+		default:
+			tempOis = new CompactObjectInput(new DecoupledInputStream(in));
 		}
 		brOpen = true;
 		br = tempBr;
 		ois = tempOis;
+		blockReader = tempBlockReader;
+		record = tempRecord;
+		jsonLines = tempJsonLines;
 		next = findNext();
 	}
 
+	private static InputStream open(final File f, final long start) throws IOException {
+		final FileInputStream fis = new FileInputStream(f);
+		fis.getChannel().position(start);
+		return fis;
+	}
+
 	/**
 	 * @return true when there is at least one element that can be returned
 	 *         calling next
@@ -118,7 +206,11 @@ public class StreamableIterator<T extends Streamable> {
 		String json = null;
 		try {
 			if (brOpen) {
-				if (Streamable.jsonSupport) {
+				if (format == StreamFormat.FRAMED) {
+					ret = nextRecord();
+				} else if (format == StreamFormat.JSON_LINES) {
+					ret = nextLine();
+				} else if (format == StreamFormat.JSON) {
 					json = br.readLine();
 					if (json == null) {
 						br.close();
@@ -128,7 +220,7 @@ public class StreamableIterator<T extends Streamable> {
 						ret.fromJSON(json);
 					}
 				} else {
-					ret = factory.construct();
+					ret = construct();
 					try {
 						ret.readExternal(ois);
 					} catch (final IOException e) {
@@ -141,12 +233,78 @@ public class StreamableIterator<T extends Streamable> {
 
 				}
 			}
+		} catch (final IOException e) {
+			throw e;
 		} catch (final Exception e) {
 			throw new IOException("Error reading next", e);
 		}
 		return ret;
 	}
 
+	/**
+	 * reads the next record of a framed stream. Unlike the other formats a
+	 * broken stream is not taken for its end.
+	 */
+	private T nextRecord() throws IOException, ClassNotFoundException {
+		if (!blockReader.nextRecord()) {
+			blockReader.close();
+			brOpen = false;
+			return null;
+		}
+		if (blockReader.isFirstRecord()) {
+			record.resetStrings();
+		}
+		record.wrap(blockReader.getData(), blockReader.getRecordOffset(),
+				blockReader.getRecordLength());
+		final T ret = construct();
+		ret.readExternal(record);
+		if (record.remaining() != 0) {
+			throw new IOException("Record " + blockReader.getRecordCount() + " has "
+					+ record.remaining() + " unread bytes");
+		}
+		return ret;
+	}
+
+	/**
+	 * reads the next line of a json lines stream, like framed streams a
+	 * broken stream is not taken for its end
+	 */
+	private T nextLine() throws IOException, ClassNotFoundException {
+		if (!jsonLines.nextRecord()) {
+			jsonLines.close();
+			brOpen = false;
+			return null;
+		}
+		final T ret = construct();
+		ret.readExternal(jsonLines);
+		jsonLines.endRecord();
+		return ret;
+	}
+
+	/**
+	 * hands an element returned by {@link #next()} back, so it is reused for
+	 * one of the next elements. The element and all objects it contains must
+	 * not be used afterwards, as they are overwritten. Elements of JSON
+	 * streams are not reused.
+	 * 
+	 * @param element
+	 *            the element that is no longer needed
+	 */
+	public void recycle(final T element) {
+		if (element != next) {
+			spare = element;
+		}
+	}
+
+	private T construct() {
+		final T ret = spare;
+		if (ret == null) {
+			return factory.construct();
+		}
+		spare = null;
+		return ret;
+	}
+
 	/**
 	 * Closes the underlaying stream when no more objects are needed. Its not
 	 * necessary to call this method when the iterator is called until hasNext
@@ -155,8 +313,10 @@ public class StreamableIterator<T extends Streamable> {
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		if (Streamable.jsonSupport) {
+		if (format == StreamFormat.JSON) {
 			br.close();
+		} else if (format == StreamFormat.FRAMED) {
+			blockReader.close();
 		} else {
 			ois.close();
 		}
@@ -165,18 +325,71 @@ public class StreamableIterator<T extends Streamable> {
 
 	/**
 	 * ObjectInputStream that reads a stream created by the ObjectOutputStream
-	 * within StreamableWriter
+	 * within StreamableWriter. Streams without version are read with the
+	 * strings of version 1.
 	 * 
 	 * @author benno
 	 */
-	private static class HeaderlessObjectInput extends ObjectInputStream {
+	static class HeaderlessObjectInput extends ObjectInputStream {
+
+		private final int version;
 
 		/**
 		 * @param in
+		 * @param version
+		 *            version of the {@link StreamFormat#OBJECT_STREAM}
 		 * @throws IOException
 		 */
-		public HeaderlessObjectInput(final InputStream in) throws IOException {
+		private HeaderlessObjectInput(final InputStream in, final int version)
+				throws IOException {
 			super(in);
+			this.version = version;
+		}
+
+		/**
+		 * reads the version in front of the stream
+		 * 
+		 * @param in
+		 *            the stream written by the StreamableWriter
+		 * @return the input for the version found
+		 * @throws IOException
+		 *             if the version is newer than the one known
+		 */
+		static HeaderlessObjectInput open(final InputStream in) throws IOException {
+			final PushbackInputStream pin = new PushbackInputStream(in, 4);
+			final byte magic[] = new byte[4];
+			int length = 0;
+			while (length < magic.length) {
+				final int n = pin.read(magic, length, magic.length - length);
+				if (n < 0) {
+					break;
+				}
+				length += n;
+			}
+			if (length < magic.length || getInt(magic) != StreamFormat.OBJECT_STREAM_MAGIC) {
+				pin.unread(magic, 0, length);
+				return new HeaderlessObjectInput(pin, 1);
+			}
+			final byte b[] = new byte[4];
+			new DataInputStream(pin).readFully(b);
+			final int version = getInt(b);
+			if (version < 2 || version > StreamFormat.OBJECT_STREAM_VERSION) {
+				throw new StreamCorruptedException("Object stream version " + version
+						+ " is not supported, the newest version known is "
+						+ StreamFormat.OBJECT_STREAM_VERSION);
+			}
+			return new HeaderlessObjectInput(pin, version);
+		}
+
+		private static int getInt(final byte b[]) {
+			return (b[0] & 0xff) << 24 | (b[1] & 0xff) << 16 | (b[2] & 0xff) << 8 | b[3] & 0xff;
+		}
+
+		/**
+		 * @return version of the {@link StreamFormat#OBJECT_STREAM}
+		 */
+		int getVersion() {
+			return version;
 		}
 
 		/*
@@ -186,7 +399,7 @@ public class StreamableIterator<T extends Streamable> {
 		 */
 		@Override
 		protected void readStreamHeader() throws IOException, StreamCorruptedException {
-			// StreamableWriter is not writing an ObjectInputStream Header
+			// the version is read in front of the ObjectInputStream
 		}
 	}
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import mm.io.StreamableFilter.ID;
+import mm.io.StreamableFilter.IDFactory;
+import mm.io.StreamableFilter.SourceHandler;
+
+/**
+ * Applies changes to a file of Streamables sorted by id. The changed
+ * instances replace the instances with the same id or are added in id order,
+ * the instances whose ids are in the delete file are dropped. All three input
+ * files have to be sorted by id, so the merge is a single pass over each of
+ * them.
+ * 
+ * When a changed instance appears more than once, the last one wins.
+ * 
+ * @author benno
+ */
+public class StreamableMerger<T extends Streamable> {
+
+	private final File sourceFile;
+	private final File changeFile;
+	private final File deleteFile;
+	private final File destFile;
+	private final StreamableFactory<T> factory;
+	private final SourceHandler<T> sourceHandler;
+	private T lookahead = null;
+	private long changed = 0;
+	private long added = 0;
+	private long deleted = 0;
+
+	private StreamableMerger(final File sourceFile, final File changeFile,
+			final File deleteFile, final File destFile, final StreamableFactory<T> factory,
+			final SourceHandler<T> sourceHandler) {
+		super();
+		this.sourceFile = sourceFile;
+		this.changeFile = changeFile;
+		this.deleteFile = deleteFile;
+		this.destFile = destFile;
+		this.factory = factory;
+		this.sourceHandler = sourceHandler;
+	}
+
+	private void merge() throws IOException {
+		final StreamableIterator<T> sourceIter = new StreamableIterator<>(sourceFile, factory);
+		final StreamableIterator<T> changeIter = new StreamableIterator<>(changeFile, factory);
+		final StreamableIterator<ID> deleteIter = new StreamableIterator<>(deleteFile,
+				new IDFactory());
+		final StreamableWriter<T> destWriter = new StreamableWriter<>(destFile);
+		try {
+			T source = sourceIter.hasNext() ? sourceIter.next() : null;
+			T change = nextChange(changeIter);
+			ID delete = deleteIter.hasNext() ? deleteIter.next() : null;
+			while (source != null || change != null) {
+				final long sourceId = source == null ? Long.MAX_VALUE : sourceHandler
+						.getId(source);
+				final long changeId = change == null ? Long.MAX_VALUE : sourceHandler
+						.getId(change);
+				final long id = Math.min(sourceId, changeId);
+				while (delete != null && delete.getId() < id) {
+					delete = deleteIter.hasNext() ? deleteIter.next() : null;
+				}
+				final boolean isDeleted = delete != null && delete.getId() == id;
+				if (isDeleted) {
+					deleted++;
+				} else if (changeId == id) {
+					if (sourceId == id) {
+						changed++;
+					} else {
+						added++;
+					}
+					destWriter.writeStreamable(change);
+				} else {
+					destWriter.writeStreamable(source);
+				}
+				if (sourceId == id) {
+					source = sourceIter.hasNext() ? sourceIter.next() : null;
+				}
+				if (changeId == id) {
+					change = nextChange(changeIter);
+				}
+			}
+		} finally {
+			sourceIter.close();
+			changeIter.close();
+			deleteIter.close();
+			destWriter.close();
+		}
+	}
+
+	/**
+	 * @return the next changed instance, only the last one of several
+	 *         instances with the same id
+	 * @throws IOException
+	 *             when the changes are not sorted
+	 */
+	private T nextChange(final StreamableIterator<T> changeIter) throws IOException {
+		T ret = lookahead;
+		lookahead = null;
+		if (ret == null) {
+			ret = changeIter.hasNext() ? changeIter.next() : null;
+		}
+		while (ret != null && changeIter.hasNext()) {
+			final T next = changeIter.next();
+			final long nextId = sourceHandler.getId(next);
+			if (nextId < sourceHandler.getId(ret)) {
+				throw new IOException("Changes are not sorted by id at " + nextId);
+			} else if (nextId > sourceHandler.getId(ret)) {
+				lookahead = next;
+				break;
+			}
+			ret = next;
+		}
+		return ret;
+	}
+
+	/**
+	 * merges the changes into the source file.
+	 * 
+	 * @param sourceFile
+	 *            Streamables sorted by id
+	 * @param changeFile
+	 *            changed and added Streamables sorted by id
+	 * @param deleteFile
+	 *            sorted {@link ID}s of the Streamables to drop
+	 * @param destFile
+	 *            gets the merged Streamables. It may not be one of the input
+	 *            files.
+	 * @param factory
+	 *            Factory for creating instances of T
+	 * @param sourceHandler
+	 *            gets the id of an instance
+	 * @return number of changed, added and deleted instances
+	 * @throws IOException
+	 */
+	public static <T extends Streamable> long[] merge(final File sourceFile,
+			final File changeFile, final File deleteFile, final File destFile,
+			final StreamableFactory<T> factory, final SourceHandler<T> sourceHandler)
+			throws IOException {
+		final StreamableMerger<T> merger = new StreamableMerger<>(sourceFile, changeFile,
+				deleteFile, destFile, factory, sourceHandler);
+		merger.merge();
+		return new long[] { merger.changed, merger.added, merger.deleted };
+	}
+}
@@ -28,7 +28,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
-import mm.io.base.MemoryReservoir;
+import mm.io.base.HeapWatch;
+import mm.io.base.MemoryBudget;
 
 /**
  * MergeSort implementation that is able to sort a complete file of Streamable
@@ -45,8 +46,10 @@ public class StreamableSorter<T extends Streamable> {
 	protected final StreamableFactory<T> factory;
 	protected final int maxSize;
 	protected LinkedList<File> splittedFiles = new LinkedList<>();
-	protected static final int MaxSize = 50000;
-	protected static final int reservoireSize = 20 * 1024 * 1024; // 20 MB
+	/** no limit of the number of elements, the runs are sized by bytes */
+	protected static final int MaxSize = Integer.MAX_VALUE;
+	/** number of added elements between two looks at the heap */
+	protected static final int HEAP_CHECK_INTERVAL = 1024;
 
 	/**
 	 * Constructor for a MergeSorter with DefaulMaxSize first level sorted files
@@ -79,8 +82,8 @@ public class StreamableSorter<T extends Streamable> {
 	 * @param comparator
 	 *            Comparator that shall be used for sorting
 	 * @param maxSize
-	 *            Size of the first generated files. Note: the bigger this
-	 *            number is, the faster the sorter will work.
+	 *            Maximal number of elements of the first generated files.
+	 *            They are limited by the {@link MemoryBudget} as well.
 	 */
 	public StreamableSorter(final File f, final File tempDir, final StreamableFactory<T> factory,
 			final Comparator<T> comparator, final int maxSize) {
@@ -109,6 +112,14 @@ public class StreamableSorter<T extends Streamable> {
 		splittedFiles.add(nextFile);
 	}
 
+	/**
+	 * @return the watch that ends a first level file early when the heap is
+	 *         low
+	 */
+	protected HeapWatch createHeapWatch() {
+		return new HeapWatch();
+	}
+
 	/**
 	 * presorts the complete file to the first level files.
 	 * 
@@ -117,21 +128,35 @@ public class StreamableSorter<T extends Streamable> {
 	protected void presortFile() throws IOException {
 		final TreeSet<T> preSorter = new TreeSet<>(comparator);
 		final StreamableIterator<T> iter = new StreamableIterator<>(f, factory);
-		MemoryReservoir reservoir = new MemoryReservoir(reservoireSize);
-		while (iter.hasNext()) {
-			preSorter.add(iter.next());
-			boolean isInReservoir = reservoir.isInReservoir();
-			if (preSorter.size() >= maxSize || isInReservoir) {
+		final MemoryBudget budget = MemoryBudget.getDefault();
+		final HeapWatch heap = createHeapWatch();
+		final long runBudget = budget.reserve(budget.getBudget() / 2);
+		try {
+			long runSize = 0;
+			int unchecked = 0;
+			while (iter.hasNext()) {
+				final T element = iter.next();
+				if (preSorter.add(element)) {
+					runSize += MemoryBudget.MAP_ENTRY + MemoryBudget.sizeOf(element);
+				}
+				// the memory pool beans are too expensive to ask per element
+				final boolean checkHeap = ++unchecked >= HEAP_CHECK_INTERVAL;
+				if (checkHeap) {
+					unchecked = 0;
+				}
+				if (preSorter.size() >= maxSize || runSize >= runBudget
+						|| (checkHeap && heap.isHeapLow())) {
+					storeToTempFile(preSorter);
+					preSorter.clear();
+					runSize = 0;
+				}
+			}
+			if (preSorter.size() > 0) {
 				storeToTempFile(preSorter);
 				preSorter.clear();
-				if (isInReservoir || reservoir.isInReservoir()){
-					reservoir = new MemoryReservoir(reservoireSize);	
-				}
 			}
-		}
-		if (preSorter.size() > 0) {
-			storeToTempFile(preSorter);
-			preSorter.clear();
+		} finally {
+			budget.release(runBudget);
 		}
 	}
 
@@ -159,11 +184,14 @@ public class StreamableSorter<T extends Streamable> {
 			final int compare = comparator.compare(element1, element2);
 			if (compare < 0) {
 				writer.writeStreamable(element1);
+				iter1.recycle(element1);
 				element1 = iter1.hasNext() ? iter1.next() : null;
 			} else if (compare == 0) {
+				iter1.recycle(element1);
 				element1 = iter1.hasNext() ? iter1.next() : null;
 			} else {
 				writer.writeStreamable(element2);
+				iter2.recycle(element2);
 				element2 = iter2.hasNext() ? iter2.next() : null;
 			}
 		}
@@ -174,10 +202,14 @@ public class StreamableSorter<T extends Streamable> {
 			writer.writeStreamable(element2);
 		}
 		while (iter1.hasNext()) {
-			writer.writeStreamable(iter1.next());
+			final T element = iter1.next();
+			writer.writeStreamable(element);
+			iter1.recycle(element);
 		}
 		while (iter2.hasNext()) {
-			writer.writeStreamable(iter2.next());
+			final T element = iter2.next();
+			writer.writeStreamable(element);
+			iter2.recycle(element);
 		}
 		writer.close();
 	}
@@ -196,6 +228,7 @@ public class StreamableSorter<T extends Streamable> {
 			final SortNode smallest = sortedSet.pollFirst();
 			final T element = smallest.next();
 			writer.writeStreamable(element);
+			smallest.iter.recycle(element);
 			if (smallest.hasNext()) {
 				sortedSet.add(smallest);
 			}
@@ -237,7 +270,9 @@ public class StreamableSorter<T extends Streamable> {
 			final StreamableWriter<T> writer = new StreamableWriter<>(f);
 			final StreamableIterator<T> iter = new StreamableIterator<>(source1, factory);
 			while (iter.hasNext()) {
-				writer.writeStreamable(iter.next());
+				final T element = iter.next();
+				writer.writeStreamable(element);
+				iter.recycle(element);
 			}
 			writer.close();
 			source1.delete();
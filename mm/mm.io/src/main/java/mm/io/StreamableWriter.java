@@ -24,53 +24,107 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 
+import mm.io.base.BlockWriter;
+import mm.io.base.CompactObjectOutput;
+import mm.io.base.DecoupledOutputStream;
+import mm.io.base.JsonObjectOutput;
+
 import org.json.JSONException;
 
 /**
  * Writer that writes Objects derived from Streamable to a file or an
  * OutputStream. Files written with this Writer can be read using
- * StreamableIterator.
+ * StreamableIterator using the same {@link StreamFormat}.
  * 
  * @author benno
  */
 public class StreamableWriter<T extends Streamable> {
-	private final ObjectOutputStream oos;
+	private final StreamFormat format;
+	private final ObjectOutput oos;
 	private final BufferedWriter bw;
+	private final BlockWriter blockWriter;
+	private final CompactObjectOutput record;
+	private final JsonObjectOutput jsonLines;
 
 	/**
 	 * Constructor for writing Streamable Objects to a File.
 	 * 
 	 * @param f
 	 *            File that is used for writing Streamables to. An existing file
-	 *            will be overwritten.
+	 *            will be overwritten. It is written by the threads of the
+	 *            {@link mm.io.base.WriteBehindService}.
 	 * @throws IOException
 	 */
 	public StreamableWriter(final File f) throws IOException {
-		this(new FileOutputStream(f));
+		this(new DecoupledOutputStream(new FileOutputStream(f)));
 	}
 
 	/**
-	 * Constructor for writing the Streamable Objects to any OutputStream.
+	 * Constructor for writing the Streamable Objects to any OutputStream in
+	 * the selected format.
 	 * 
 	 * @param os
 	 *            destination for the Streamables.
 	 * @throws IOException
 	 */
 	public StreamableWriter(final OutputStream os) throws IOException {
-		ObjectOutputStream tempOos = null;
+		this(os, StreamFormat.getSelected());
+	}
+
+	/**
+	 * Constructor for writing the Streamable Objects to any OutputStream.
+	 * 
+	 * @param os
+	 *            destination for the Streamables.
+	 * @param format
+	 *            the format to write
+	 * @throws IOException
+	 */
+	public StreamableWriter(final OutputStream os, final StreamFormat format)
+			throws IOException {
+		ObjectOutput tempOos = null;
 		BufferedWriter tempBw = null;
-		if (Streamable.jsonSupport) {
+		BlockWriter tempBlockWriter = null;
+		CompactObjectOutput tempRecord = null;
+		JsonObjectOutput tempJsonLines = null;
+		switch (format) {
+		case JSON:
 			tempBw = new BufferedWriter(new OutputStreamWriter(os));
-		} else {
-			tempOos = new HeaderLessObjectOutput(new BufferedOutputStream(os, 1 << 20));
+			break;
+		case OBJECT_STREAM:
+			tempOos = new HeaderLessObjectOutput(buffered(os));
+			break;
+		case FRAMED:
+			tempBlockWriter = new BlockWriter(buffered(os),
+					BlockWriter.DEFAULT_BLOCK_SIZE, StreamFormat.getCompressionLevel());
+			tempRecord = new CompactObjectOutput();
+			tempOos = tempRecord;
+			break;
+		case JSON_LINES:
+			tempJsonLines = new JsonObjectOutput(buffered(os));
+			tempOos = tempJsonLines;
+			break;
+		default:
+			tempOos = new CompactObjectOutput(os, 1 << 20);
 		}
-
+		this.format = format;
 		this.oos = tempOos;
 		this.bw = tempBw;
+		this.blockWriter = tempBlockWriter;
+		this.record = tempRecord;
+		this.jsonLines = tempJsonLines;
+	}
+
+	/**
+	 * a DecoupledOutputStream collects the bytes in chunks already
+	 */
+	private static OutputStream buffered(final OutputStream os) {
+		return os instanceof DecoupledOutputStream ? os : new BufferedOutputStream(os, 1 << 20);
 	}
 
 	/**
@@ -82,10 +136,27 @@ public class StreamableWriter<T extends Streamable> {
 	 */
 	public void writeStreamable(final T streamable) throws IOException {
 		try {
-			if (Streamable.jsonSupport) {
+			if (format == StreamFormat.JSON) {
 				final String json = streamable.toJSON().toString();
 				bw.write(json);
 				bw.write("\r\n");
+			} else if (format == StreamFormat.FRAMED) {
+				// every block starts with an empty string table, so it can be read alone
+				if (blockWriter.isBlockEmpty()) {
+					record.resetStrings();
+				}
+				record.reset();
+				streamable.writeExternal(record);
+				if (!blockWriter.fits(record.size())) {
+					blockWriter.flushBlock();
+					record.resetStrings();
+					record.reset();
+					streamable.writeExternal(record);
+				}
+				blockWriter.writeRecord(record.getBuffer(), 0, record.size());
+			} else if (format == StreamFormat.JSON_LINES) {
+				streamable.writeExternal(jsonLines);
+				jsonLines.endRecord();
 			} else {
 				streamable.writeExternal(oos);
 			}
@@ -100,15 +171,18 @@ public class StreamableWriter<T extends Streamable> {
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		if (Streamable.jsonSupport) {
+		if (format == StreamFormat.JSON) {
 			bw.close();
+		} else if (format == StreamFormat.FRAMED) {
+			blockWriter.close();
 		} else {
 			oos.close();
 		}
 	}
 
 	/**
-	 * ObjectOutputStream that is not having a stream header.
+	 * ObjectOutputStream that writes the version of the
+	 * {@link StreamFormat#OBJECT_STREAM} instead of its stream header.
 	 * 
 	 * @author benno
 	 */
@@ -129,7 +203,8 @@ public class StreamableWriter<T extends Streamable> {
 		 */
 		@Override
 		protected void writeStreamHeader() throws IOException {
-			// Do not write a header, that the stream is connectable .
+			writeInt(StreamFormat.OBJECT_STREAM_MAGIC);
+			writeInt(StreamFormat.OBJECT_STREAM_VERSION);
 		}
 	}
 }
@@ -0,0 +1,369 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the records written by the {@link BlockWriter}. Every block is read at
+ * once and checked against its CRC, the records are then taken from the
+ * block without further reads. Deflated blocks are inflated on reading. The end of the records is the trailer, a
+ * stream ending without it is reported as truncated.
+ * 
+ * A reader can also read a part of a file from one block boundary to
+ * another, see {@link #getBlockOffsets(File)}. Such a part ends after the
+ * given number of bytes.
+ * 
+ * @author benno
+ */
+public class BlockReader implements Closeable {
+
+	private final InputStream in;
+	private final long length;
+	private final CRC32 crc = new CRC32();
+	private final byte header[] = new byte[BlockWriter.HEADER_SIZE];
+	private byte block[] = new byte[BlockWriter.DEFAULT_BLOCK_SIZE + 16];
+	private byte packed[] = null;
+	private Inflater inflater = null;
+	private long consumed = 0;
+	private int size = 0;
+	private int pos = 0;
+	private int blockRecords = 0;
+	private int recordIndex = 0;
+	private int recordOffset = 0;
+	private int recordLength = 0;
+	private int blocks = 0;
+	private long records = 0;
+	private boolean end = false;
+
+	/**
+	 * Constructor for reading a whole stream up to the trailer
+	 * 
+	 * @param in
+	 *            the blocks, it is closed by {@link #close()}
+	 */
+	public BlockReader(final InputStream in) {
+		this(in, -1);
+	}
+
+	/**
+	 * Constructor for reading a part of a file
+	 * 
+	 * @param in
+	 *            the blocks, starting at a block boundary
+	 * @param length
+	 *            number of bytes to read up to the next block boundary, -1
+	 *            for reading up to the trailer
+	 */
+	public BlockReader(final InputStream in, final long length) {
+		super();
+		this.in = in;
+		this.length = length;
+	}
+
+	/**
+	 * steps to the next record
+	 * 
+	 * @return false if there are no more records
+	 * @throws IOException
+	 *             if the stream is truncated or corrupt
+	 */
+	public boolean nextRecord() throws IOException {
+		while (recordIndex == blockRecords) {
+			if (!nextBlock(true)) {
+				return false;
+			}
+		}
+		int shift = 0;
+		int b;
+		int len = 0;
+		do {
+			if (pos == size) {
+				throw new IOException("Record " + recordIndex + " of block " + blocks
+						+ " is truncated");
+			}
+			b = block[pos++];
+			len |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		if (len < 0 || len > size - pos) {
+			throw new IOException("Record " + recordIndex + " of block " + blocks
+					+ " is longer than the block");
+		}
+		recordOffset = pos;
+		recordLength = len;
+		pos += len;
+		recordIndex++;
+		if (recordIndex == blockRecords && pos != size) {
+			throw new IOException("Block " + blocks + " has " + (size - pos)
+					+ " bytes behind its last record");
+		}
+		return true;
+	}
+
+	/**
+	 * skips the remaining records of the current block, or the next block if
+	 * all records of the current one are read. A skipped block is not read
+	 * into memory.
+	 * 
+	 * @return false if there are no more blocks
+	 * @throws IOException
+	 */
+	public boolean skipBlock() throws IOException {
+		if (recordIndex < blockRecords) {
+			recordIndex = blockRecords;
+			return true;
+		}
+		return nextBlock(false);
+	}
+
+	/**
+	 * @return true if the current record is the first one of its block
+	 */
+	public boolean isFirstRecord() {
+		return recordIndex == 1;
+	}
+
+	/**
+	 * @return the array containing the current record
+	 */
+	public byte[] getData() {
+		return block;
+	}
+
+	/**
+	 * @return offset of the current record within {@link #getData()}
+	 */
+	public int getRecordOffset() {
+		return recordOffset;
+	}
+
+	/**
+	 * @return number of bytes of the current record
+	 */
+	public int getRecordLength() {
+		return recordLength;
+	}
+
+	/**
+	 * @return number of records of the blocks read or skipped so far
+	 */
+	public long getRecordCount() {
+		return records;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		end = true;
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		in.close();
+	}
+
+	/**
+	 * reads the header of the next block and its records, unless they are
+	 * skipped
+	 */
+	private boolean nextBlock(final boolean read) throws IOException {
+		if (end) {
+			return false;
+		}
+		if (length >= 0 && consumed >= length) {
+			end = true;
+			return false;
+		}
+		if (!readFully(header, 0, 4, true)) {
+			throw new EOFException("Missing trailer, the stream is truncated after "
+					+ consumed + " bytes");
+		}
+		final int magic = BlockWriter.getInt(header, 0);
+		if (magic == BlockWriter.END_MAGIC) {
+			readFully(header, 4, BlockWriter.TRAILER_SIZE - 4, false);
+			final long total = (long) BlockWriter.getInt(header, 8) << 32
+					| BlockWriter.getInt(header, 12) & 0xffffffffL;
+			if (length < 0 && (BlockWriter.getInt(header, 4) != blocks || total != records)) {
+				throw new IOException("The trailer counts " + total + " records, but "
+						+ records + " were found");
+			}
+			end = true;
+			return false;
+		}
+		if (magic != BlockWriter.BLOCK_MAGIC && magic != BlockWriter.DEFLATED_MAGIC) {
+			throw new IOException("No block at offset " + (consumed - 4));
+		}
+		readFully(header, 4, BlockWriter.HEADER_SIZE - 4, false);
+		final int blockSize = BlockWriter.getInt(header, 4);
+		final int count = BlockWriter.getInt(header, 8);
+		if (blockSize < 0 || count < 0) {
+			throw new IOException("Corrupt header of block " + blocks);
+		}
+		if (read) {
+			size = magic == BlockWriter.DEFLATED_MAGIC ? inflate(blockSize) : readBlock(blockSize);
+			crc.reset();
+			crc.update(block, 0, size);
+			if ((int) crc.getValue() != BlockWriter.getInt(header, 12)) {
+				throw new IOException("Checksum error in block " + blocks);
+			}
+			blockRecords = count;
+		} else {
+			long skipped = 0;
+			while (skipped < blockSize) {
+				final long n = in.skip(blockSize - skipped);
+				if (n <= 0) {
+					throw new EOFException("Block " + blocks + " is truncated");
+				}
+				skipped += n;
+			}
+			consumed += blockSize;
+			size = 0;
+			blockRecords = 0;
+		}
+		pos = 0;
+		recordIndex = 0;
+		blocks++;
+		records += count;
+		return true;
+	}
+
+	private int readBlock(final int blockSize) throws IOException {
+		if (block.length < blockSize) {
+			block = new byte[blockSize];
+		}
+		readFully(block, 0, blockSize, false);
+		return blockSize;
+	}
+
+	/**
+	 * reads a deflated block and inflates it into the block array
+	 * 
+	 * @return number of bytes of the records
+	 */
+	private int inflate(final int blockSize) throws IOException {
+		if (blockSize < 4) {
+			throw new IOException("Corrupt header of block " + blocks);
+		}
+		if (packed == null || packed.length < blockSize) {
+			packed = new byte[Math.max(blockSize, BlockWriter.DEFAULT_BLOCK_SIZE)];
+		}
+		readFully(packed, 0, blockSize, false);
+		final int length = BlockWriter.getInt(packed, 0);
+		if (length < 0) {
+			throw new IOException("Corrupt deflated block " + blocks);
+		}
+		if (block.length < length) {
+			block = new byte[length];
+		}
+		if (inflater == null) {
+			inflater = new Inflater(true);
+		}
+		inflater.reset();
+		inflater.setInput(packed, 4, blockSize - 4);
+		try {
+			int done = 0;
+			while (done < length && !inflater.finished()) {
+				final int n = inflater.inflate(block, done, length - done);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				done += n;
+			}
+			if (done != length) {
+				throw new IOException("Corrupt deflated block " + blocks);
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt deflated block " + blocks, e);
+		}
+		return length;
+	}
+
+	/**
+	 * @return false if the stream ended before the first byte and that is
+	 *         allowed
+	 */
+	private boolean readFully(final byte b[], final int offset, final int len,
+			final boolean endAllowed) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = in.read(b, offset + done, len - done);
+			if (n < 0) {
+				if (done == 0 && endAllowed) {
+					return false;
+				}
+				throw new EOFException("Block " + blocks + " is truncated");
+			}
+			done += n;
+		}
+		consumed += len;
+		return true;
+	}
+
+	/**
+	 * finds the blocks of a file by reading their headers only, so the file
+	 * can be read in parts by several readers.
+	 * 
+	 * @param f
+	 *            a file written by the {@link BlockWriter}
+	 * @return the offsets of the blocks followed by the offset of the trailer
+	 * @throws IOException
+	 *             if the file is not complete
+	 */
+	public static long[] getBlockOffsets(final File f) throws IOException {
+		long offsets[] = new long[64];
+		int count = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+			final long fileLength = raf.length();
+			long offset = 0;
+			while (true) {
+				if (offset + 4 > fileLength) {
+					throw new EOFException("Missing trailer in " + f);
+				}
+				raf.seek(offset);
+				final int magic = raf.readInt();
+				if (count == offsets.length) {
+					offsets = Arrays.copyOf(offsets, 2 * count);
+				}
+				offsets[count++] = offset;
+				if (magic == BlockWriter.END_MAGIC) {
+					return Arrays.copyOf(offsets, count);
+				}
+				if (magic != BlockWriter.BLOCK_MAGIC && magic != BlockWriter.DEFLATED_MAGIC) {
+					throw new IOException("No block at offset " + offset + " of " + f);
+				}
+				offset += BlockWriter.HEADER_SIZE + (raf.readInt() & 0xffffffffL);
+			}
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes records in blocks. Every record is prefixed by its length as
+ * variable length number. The records are collected until a block is full,
+ * then the block is written behind a header with
+ * <ul>
+ * <li>the magic number {@link #BLOCK_MAGIC}</li>
+ * <li>the number of bytes of the records</li>
+ * <li>the number of records</li>
+ * <li>the CRC32 of the bytes of the records</li>
+ * </ul>
+ * each as big endian int. The file ends with a trailer of the magic number
+ * {@link #END_MAGIC}, the number of blocks as int and the number of records as
+ * long, so a reader can tell a complete file from a truncated one. The
+ * {@link BlockReader} reads the records, whole blocks can be skipped by their
+ * length and a file can be split at block boundaries.
+ * 
+ * With a compression level the blocks are deflated by a pool of threads
+ * shared by all writers while the next block is filled. The thread adding
+ * the records writes the deflated blocks in their order. A deflated block has
+ * the magic number {@link #DEFLATED_MAGIC}, its size is the number of stored
+ * bytes, which are the number of bytes of the records as int followed by the
+ * deflated records. The CRC is taken from the records before compression.
+ * Blocks that do not get smaller are stored uncompressed.
+ * 
+ * @author benno
+ */
+public class BlockWriter implements Closeable {
+
+	/** "MMBK" */
+	public static final int BLOCK_MAGIC = 0x4d4d424b;
+	/** "MMEN" */
+	public static final int END_MAGIC = 0x4d4d454e;
+	/** "MMBZ" */
+	public static final int DEFLATED_MAGIC = 0x4d4d425a;
+	public static final int HEADER_SIZE = 16;
+	public static final int TRAILER_SIZE = 16;
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+	/** number of blocks waiting for compression before the writer waits */
+	private static final int MAX_PENDING = 2;
+	private static final ExecutorService COMPRESSORS = Executors.newFixedThreadPool(Runtime
+			.getRuntime().availableProcessors(), new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "block compressor");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	/** deflaters of the compressor threads by level */
+	private static final ThreadLocal<Deflater[]> DEFLATERS = new ThreadLocal<Deflater[]>() {
+		@Override
+		protected Deflater[] initialValue() {
+			return new Deflater[Deflater.BEST_COMPRESSION + 1];
+		}
+	};
+
+	private final OutputStream out;
+	private final int blockSize;
+	private final int level;
+	private final byte header[] = new byte[HEADER_SIZE];
+	private Block block;
+	private int size = 0;
+	private int blockRecords = 0;
+	private int blocks = 0;
+	private long records = 0;
+	private final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+
+	/**
+	 * @param out
+	 *            gets the blocks, it is closed by {@link #close()}
+	 */
+	public BlockWriter(final OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param out
+	 *            gets the blocks, it is closed by {@link #close()}
+	 * @param blockSize
+	 *            the size a block is written at. Records are not split, so a
+	 *            block gets bigger for a bigger record.
+	 */
+	public BlockWriter(final OutputStream out, final int blockSize) {
+		this(out, blockSize, -1);
+	}
+
+	/**
+	 * @param out
+	 *            gets the blocks, it is closed by {@link #close()}
+	 * @param blockSize
+	 *            the size a block is written at. Records are not split, so a
+	 *            block gets bigger for a bigger record.
+	 * @param level
+	 *            level of the {@link Deflater} for the blocks, -1 for
+	 *            uncompressed blocks
+	 */
+	public BlockWriter(final OutputStream out, final int blockSize, final int level) {
+		super();
+		this.out = out;
+		this.blockSize = blockSize;
+		this.level = Math.min(level, Deflater.BEST_COMPRESSION);
+		block = new Block(blockSize + 16);
+	}
+
+	/**
+	 * adds a record to the current block
+	 * 
+	 * @param data
+	 *            the bytes of the record
+	 * @param offset
+	 *            offset of the first byte
+	 * @param length
+	 *            number of bytes
+	 * @throws IOException
+	 */
+	public void writeRecord(final byte data[], final int offset, final int length)
+			throws IOException {
+		if (blockRecords > 0 && size + length + 5 > blockSize) {
+			flushBlock();
+		}
+		if (size + length + 5 > block.data.length) {
+			block.data = Arrays.copyOf(block.data, size + length + 5);
+		}
+		final byte target[] = block.data;
+		int v = length;
+		while ((v & ~0x7f) != 0) {
+			target[size++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		target[size++] = (byte) v;
+		System.arraycopy(data, offset, target, size, length);
+		size += length;
+		blockRecords++;
+		records++;
+		if (size >= blockSize) {
+			flushBlock();
+		}
+	}
+
+	/**
+	 * @return true if no record was added to the current block yet
+	 */
+	public boolean isBlockEmpty() {
+		return blockRecords == 0;
+	}
+
+	/**
+	 * @param length
+	 *            number of bytes of a record
+	 * @return true if the record would be added to the current block, false
+	 *         if the current block would be written before
+	 */
+	public boolean fits(final int length) {
+		return blockRecords == 0 || size + length + 5 <= blockSize;
+	}
+
+	/**
+	 * writes the collected records as block
+	 * 
+	 * @throws IOException
+	 */
+	public void flushBlock() throws IOException {
+		if (blockRecords == 0) {
+			return;
+		}
+		block.length = size;
+		block.count = blockRecords;
+		if (level < 0) {
+			block.pack(null);
+			writeBlock(block);
+		} else {
+			final Block full = block;
+			final int blockLevel = level;
+			pending.add(COMPRESSORS.submit(new Callable<Block>() {
+				@Override
+				public Block call() {
+					full.pack(deflater(blockLevel));
+					return full;
+				}
+			}));
+			if (pending.size() > MAX_PENDING) {
+				// reuse the arrays of a written block
+				block = await(pending.poll());
+				writeBlock(block);
+			} else {
+				block = new Block(blockSize + 16);
+			}
+		}
+		size = 0;
+		blockRecords = 0;
+		blocks++;
+	}
+
+	/**
+	 * @return the deflater of the compressor thread for the level
+	 */
+	private static Deflater deflater(final int level) {
+		final Deflater deflaters[] = DEFLATERS.get();
+		if (deflaters[level] == null) {
+			deflaters[level] = new Deflater(level, true);
+		}
+		return deflaters[level];
+	}
+
+	/**
+	 * writes a packed block, deflated if it got smaller
+	 */
+	private void writeBlock(final Block b) throws IOException {
+		putInt(header, 8, b.count);
+		putInt(header, 12, b.crc);
+		if (b.packedSize > 0) {
+			putInt(header, 0, DEFLATED_MAGIC);
+			putInt(header, 4, b.packedSize);
+			out.write(header);
+			out.write(b.packed, 0, b.packedSize);
+		} else {
+			putInt(header, 0, BLOCK_MAGIC);
+			putInt(header, 4, b.length);
+			out.write(header);
+			out.write(b.data, 0, b.length);
+		}
+	}
+
+	/**
+	 * waits for a block given to the compressor
+	 * 
+	 * @return the block with its deflated form
+	 */
+	private static Block await(final Future<Block> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Compressing a block failed", e.getCause());
+		}
+	}
+
+	/**
+	 * @return number of records written so far
+	 */
+	public long getRecordCount() {
+		return records;
+	}
+
+	/**
+	 * writes the last block and the trailer and closes the stream
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBlock();
+			while (!pending.isEmpty()) {
+				writeBlock(await(pending.poll()));
+			}
+			final byte trailer[] = new byte[TRAILER_SIZE];
+			putInt(trailer, 0, END_MAGIC);
+			putInt(trailer, 4, blocks);
+			putInt(trailer, 8, (int) (records >>> 32));
+			putInt(trailer, 12, (int) records);
+			out.write(trailer);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The records of a block with their CRC and the deflated form.
+	 */
+	private static final class Block {
+		private byte data[];
+		private int length;
+		private int count;
+		private int crc;
+		private byte packed[];
+		/** 0 if the block is stored uncompressed */
+		private int packedSize;
+
+		Block(final int capacity) {
+			data = new byte[capacity];
+		}
+
+		/**
+		 * takes the CRC and deflates the records, a block that does not get
+		 * smaller is stored uncompressed
+		 * 
+		 * @param deflater
+		 *            null for uncompressed blocks
+		 */
+		void pack(final Deflater deflater) {
+			final CRC32 checksum = new CRC32();
+			checksum.update(data, 0, length);
+			crc = (int) checksum.getValue();
+			packedSize = 0;
+			if (deflater == null) {
+				return;
+			}
+			deflater.reset();
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			if (packed == null || packed.length < length) {
+				packed = new byte[length];
+			}
+			int n = 4;
+			while (!deflater.finished() && n < length) {
+				n += deflater.deflate(packed, n, length - n);
+			}
+			if (deflater.finished() && n < length) {
+				putInt(packed, 0, length);
+				packedSize = n;
+			}
+		}
+	}
+
+	static void putInt(final byte b[], final int offset, final int v) {
+		b[offset] = (byte) (v >>> 24);
+		b[offset + 1] = (byte) (v >>> 16);
+		b[offset + 2] = (byte) (v >>> 8);
+		b[offset + 3] = (byte) v;
+	}
+
+	static int getInt(final byte b[], final int offset) {
+		return b[offset] << 24 | (b[offset + 1] & 0xff) << 16 | (b[offset + 2] & 0xff) << 8
+				| b[offset + 3] & 0xff;
+	}
+}
@@ -0,0 +1,541 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ObjectInput reading what {@link CompactObjectOutput} wrote. The stream is
+ * read in big chunks into a byte array the values are decoded from, so
+ * reading an int or long is a few array accesses instead of a call chain
+ * through the block data input of the ObjectInputStream. Reading behind the
+ * end of the stream throws an EOFException.
+ * 
+ * With {@link #wrap(byte[], int, int)} the values are read from a byte array
+ * instead, e.g. from a record of a block.
+ * 
+ * The strings of {@link CompactObjectOutput#writeString(String)} are read by
+ * {@link #readString()}, which keeps the same string table as the writer.
+ * 
+ * @author benno
+ */
+public class CompactObjectInput implements ObjectInput {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private InputStream in;
+	private byte buffer[];
+	private int pos = 0;
+	private int limit = 0;
+	private char chars[] = new char[64];
+	private final String strings[] = new String[CompactObjectOutput.STRING_TABLE_SIZE];
+	/** number of strings put into the table */
+	private int stringCount = 0;
+
+	/**
+	 * @param in
+	 *            the bytes to read
+	 */
+	public CompactObjectInput(final InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in
+	 *            the bytes to read
+	 * @param bufferSize
+	 *            size of the buffer, at least 16 bytes
+	 */
+	public CompactObjectInput(final InputStream in, final int bufferSize) {
+		super();
+		this.in = in;
+		buffer = new byte[Math.max(16, bufferSize)];
+	}
+
+	/**
+	 * reads from a byte array instead of the stream, the end of the bytes is
+	 * the end of the input
+	 * 
+	 * @param data
+	 *            the bytes
+	 * @param offset
+	 *            offset of the first byte
+	 * @param length
+	 *            number of bytes
+	 */
+	public void wrap(final byte data[], final int offset, final int length) {
+		in = null;
+		buffer = data;
+		pos = offset;
+		limit = offset + length;
+	}
+
+	/**
+	 * @return number of bytes left in the buffer
+	 */
+	public int remaining() {
+		return limit - pos;
+	}
+
+	/**
+	 * reads from the stream, -1 at its end or without stream
+	 */
+	private int fill(final byte b[], final int off, final int len) throws IOException {
+		return in == null ? -1 : in.read(b, off, len);
+	}
+
+	/**
+	 * makes sure the next bytes of a value are in the buffer
+	 * 
+	 * @param length
+	 *            number of bytes, at most 16
+	 * @throws EOFException
+	 *             if the stream ends before
+	 */
+	private void require(final int length) throws IOException {
+		if (limit - pos >= length) {
+			return;
+		}
+		if (in == null) {
+			throw new EOFException();
+		}
+		System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+		limit -= pos;
+		pos = 0;
+		while (limit < length) {
+			final int read = fill(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			limit += read;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (pos == limit) {
+			if (in == null) {
+				return -1;
+			}
+			pos = 0;
+			limit = Math.max(0, fill(buffer, 0, buffer.length));
+			if (limit == 0) {
+				return -1;
+			}
+		}
+		return buffer[pos++] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#read(byte[])
+	 */
+	@Override
+	public int read(final byte b[]) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte b[], final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == limit) {
+			if (in == null || len >= buffer.length) {
+				return fill(b, off, len);
+			}
+			pos = 0;
+			limit = Math.max(0, fill(buffer, 0, buffer.length));
+			if (limit == 0) {
+				return -1;
+			}
+		}
+		final int n = Math.min(len, limit - pos);
+		System.arraycopy(buffer, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFully(byte[])
+	 */
+	@Override
+	public void readFully(final byte b[]) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFully(byte[], int, int)
+	 */
+	@Override
+	public void readFully(final byte b[], final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int read = read(b, off + done, len - done);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			done += read;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#skip(long)
+	 */
+	@Override
+	public long skip(final long n) throws IOException {
+		final int buffered = (int) Math.min(n, limit - pos);
+		pos += buffered;
+		return buffered < n && in != null ? buffered + in.skip(n - buffered) : buffered;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#skipBytes(int)
+	 */
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		return (int) skip(n);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readBoolean()
+	 */
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readByte()
+	 */
+	@Override
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer[pos++];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readUnsignedByte()
+	 */
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readShort()
+	 */
+	@Override
+	public short readShort() throws IOException {
+		return (short) readUnsignedShort();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readUnsignedShort()
+	 */
+	@Override
+	public int readUnsignedShort() throws IOException {
+		require(2);
+		final int ret = (buffer[pos] & 0xff) << 8 | buffer[pos + 1] & 0xff;
+		pos += 2;
+		return ret;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readChar()
+	 */
+	@Override
+	public char readChar() throws IOException {
+		return (char) readUnsignedShort();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readInt()
+	 */
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		final byte b[] = buffer;
+		final int p = pos;
+		pos += 4;
+		return b[p] << 24 | (b[p + 1] & 0xff) << 16 | (b[p + 2] & 0xff) << 8 | b[p + 3] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readLong()
+	 */
+	@Override
+	public long readLong() throws IOException {
+		require(8);
+		final byte b[] = buffer;
+		final int p = pos;
+		pos += 8;
+		return (long) b[p] << 56 | (b[p + 1] & 0xffL) << 48 | (b[p + 2] & 0xffL) << 40
+				| (b[p + 3] & 0xffL) << 32 | (b[p + 4] & 0xffL) << 24 | (b[p + 5] & 0xffL) << 16
+				| (b[p + 6] & 0xffL) << 8 | b[p + 7] & 0xffL;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFloat()
+	 */
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readDouble()
+	 */
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	/**
+	 * reads the bytes up to a line end like the DataInputStream, the
+	 * counterpart of {@link CompactObjectOutput#writeBytes(String)}
+	 * 
+	 * @return the line without its end, null at the end of the stream
+	 * @see java.io.DataInput#readLine()
+	 */
+	@Override
+	public String readLine() throws IOException {
+		final StringBuilder line = new StringBuilder();
+		int c = read();
+		if (c < 0) {
+			return null;
+		}
+		while (c >= 0 && c != '\n') {
+			if (c == '\r') {
+				final int next = read();
+				if (next >= 0 && next != '\n') {
+					// the byte after the carriage return is still in the buffer
+					--pos;
+				}
+				break;
+			}
+			line.append((char) c);
+			c = read();
+		}
+		return line.toString();
+	}
+
+	/**
+	 * reads a string in the modified UTF-8 of the DataInput
+	 * 
+	 * @see java.io.DataInput#readUTF()
+	 */
+	@Override
+	public String readUTF() throws IOException {
+		final int length = readUnsignedShort();
+		if (chars.length < length) {
+			chars = new char[Math.max(length, 2 * chars.length)];
+		}
+		int count = 0;
+		int read = 0;
+		while (read < length) {
+			final int c = readUnsignedByte();
+			read++;
+			if (c < 0x80) {
+				chars[count++] = (char) c;
+			} else if ((c & 0xe0) == 0xc0) {
+				chars[count++] = (char) ((c & 0x1f) << 6 | readUnsignedByte() & 0x3f);
+				read++;
+			} else if ((c & 0xf0) == 0xe0) {
+				final int c2 = readUnsignedByte();
+				chars[count++] = (char) ((c & 0x0f) << 12 | (c2 & 0x3f) << 6 | readUnsignedByte()
+						& 0x3f);
+				read += 2;
+			} else {
+				throw new UTFDataFormatException("Malformed input around byte " + read);
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * reads a number written by {@link CompactObjectOutput#writeVarLong(long)}
+	 * 
+	 * @return the number
+	 * @throws IOException
+	 */
+	public long readVarLong() throws IOException {
+		if (limit - pos < 10) {
+			int shift = 0;
+			int b = readUnsignedByte();
+			long ret = b & 0x7f;
+			while ((b & 0x80) != 0) {
+				shift += 7;
+				b = readUnsignedByte();
+				ret |= (long) (b & 0x7f) << shift;
+			}
+			return ret;
+		}
+		final byte data[] = buffer;
+		int p = pos;
+		int shift = 0;
+		byte b = data[p++];
+		long ret = b & 0x7f;
+		while ((b & 0x80) != 0) {
+			shift += 7;
+			b = data[p++];
+			ret |= (long) (b & 0x7f) << shift;
+		}
+		pos = p;
+		return ret;
+	}
+
+	/**
+	 * reads a number written by
+	 * {@link CompactObjectOutput#writeSignedVarLong(long)}
+	 * 
+	 * @return the number
+	 * @throws IOException
+	 */
+	public long readSignedVarLong() throws IOException {
+		final long u = readVarLong();
+		return (u >>> 1) ^ -(u & 1);
+	}
+
+	/**
+	 * reads a string written by {@link CompactObjectOutput#writeString(String)}
+	 * 
+	 * @return the string
+	 * @throws IOException
+	 *             if the string refers to a string that is not in the table
+	 */
+	public String readString() throws IOException {
+		final long reference = readVarLong();
+		if (reference != 0) {
+			if (reference < 0 || reference > strings.length || stringCount >= 0
+					&& reference > stringCount) {
+				throw new IOException("Reference " + reference + " to an unknown string");
+			}
+			return strings[stringCount - (int) reference & strings.length - 1];
+		}
+		final long length = readVarLong();
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt string length " + length);
+		}
+		final String s;
+		if (limit - pos >= length) {
+			s = new String(buffer, pos, (int) length, StandardCharsets.UTF_8);
+			pos += (int) length;
+		} else {
+			final byte b[] = new byte[(int) length];
+			readFully(b);
+			s = new String(b, StandardCharsets.UTF_8);
+		}
+		if (length <= CompactObjectOutput.MAX_TABLE_STRING) {
+			strings[stringCount & strings.length - 1] = s;
+			stringCount++;
+		}
+		return s;
+	}
+
+	/**
+	 * empties the string table like
+	 * {@link CompactObjectOutput#resetStrings()}
+	 */
+	public void resetStrings() {
+		if (stringCount != 0) {
+			Arrays.fill(strings, null);
+			stringCount = 0;
+		}
+	}
+
+	/**
+	 * Objects are not supported
+	 * 
+	 * @see java.io.ObjectInput#readObject()
+	 */
+	@Override
+	public Object readObject() throws ClassNotFoundException, IOException {
+		throw new NotSerializableException("Objects can not be read from the compact format");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		return limit - pos + (in == null ? 0 : in.available());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+	}
+}
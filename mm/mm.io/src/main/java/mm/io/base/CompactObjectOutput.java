@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * ObjectOutput writing the primitive values straight into a byte array that
+ * is handed to the stream when it is full. Unlike the ObjectOutputStream there
+ * is no block data framing, no handle table and no synchronization, the
+ * values are written in the byte order of the DataOutputStream. Objects can
+ * not be written, Externalizables write their fields themselves.
+ * 
+ * Besides the fixed size values, variable length and zigzag coded numbers can
+ * be written, which {@link CompactObjectInput} reads.
+ * 
+ * Without a stream the bytes are collected in a growing array, e.g. for
+ * framing them as a record.
+ * 
+ * Strings written by {@link #writeString(String)} are kept in a table of the
+ * last {@link #STRING_TABLE_SIZE} strings like the string table of o5m. A
+ * string found in the table is written as its distance to the end of the
+ * table, otherwise as 0 followed by its length and its UTF-8 bytes. Strings
+ * longer than {@link #MAX_TABLE_STRING} bytes are not kept.
+ * 
+ * @author benno
+ */
+public class CompactObjectOutput implements ObjectOutput {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	/** number of strings in the table, a power of two */
+	public static final int STRING_TABLE_SIZE = 1 << 12;
+	/** number of UTF-8 bytes of the longest string kept in the table */
+	public static final int MAX_TABLE_STRING = 250;
+
+	private final OutputStream out;
+	private byte buffer[];
+	private int pos = 0;
+	private String strings[] = null;
+	private HashMap<String, Integer> stringIndex = null;
+	/** number of strings put into the table */
+	private int stringCount = 0;
+
+	/**
+	 * Constructor collecting the bytes in a growing array, see
+	 * {@link #getBuffer()}
+	 */
+	public CompactObjectOutput() {
+		this(null, 256);
+	}
+
+	/**
+	 * @param out
+	 *            gets the written bytes
+	 */
+	public CompactObjectOutput(final OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param out
+	 *            gets the written bytes
+	 * @param bufferSize
+	 *            size of the buffer, at least 16 bytes
+	 */
+	public CompactObjectOutput(final OutputStream out, final int bufferSize) {
+		super();
+		this.out = out;
+		buffer = new byte[Math.max(16, bufferSize)];
+	}
+
+	/**
+	 * makes room for a value, at most 16 bytes
+	 */
+	private void ensure(final int length) throws IOException {
+		if (pos + length > buffer.length) {
+			if (out == null) {
+				buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, pos + length));
+			} else {
+				drain();
+			}
+		}
+	}
+
+	private void drain() throws IOException {
+		if (pos > 0 && out != null) {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		}
+	}
+
+	/**
+	 * @return the collected bytes when there is no stream, only the first
+	 *         {@link #size()} are valid
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return number of bytes in the buffer
+	 */
+	public int size() {
+		return pos;
+	}
+
+	/**
+	 * forgets the bytes in the buffer without writing them
+	 */
+	public void reset() {
+		pos = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeBoolean(boolean)
+	 */
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeByte(int)
+	 */
+	@Override
+	public void writeByte(final int v) throws IOException {
+		write(v);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#write(int)
+	 */
+	@Override
+	public void write(final int b) throws IOException {
+		ensure(1);
+		buffer[pos++] = (byte) b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#write(byte[])
+	 */
+	@Override
+	public void write(final byte b[]) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte b[], final int off, final int len) throws IOException {
+		if (len > buffer.length - pos) {
+			if (out == null) {
+				ensure(len);
+			}
+			drain();
+			if (len > buffer.length) {
+				out.write(b, off, len);
+				return;
+			}
+		}
+		System.arraycopy(b, off, buffer, pos, len);
+		pos += len;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeShort(int)
+	 */
+	@Override
+	public void writeShort(final int v) throws IOException {
+		ensure(2);
+		buffer[pos++] = (byte) (v >>> 8);
+		buffer[pos++] = (byte) v;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeChar(int)
+	 */
+	@Override
+	public void writeChar(final int v) throws IOException {
+		writeShort(v);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeInt(int)
+	 */
+	@Override
+	public void writeInt(final int v) throws IOException {
+		ensure(4);
+		buffer[pos++] = (byte) (v >>> 24);
+		buffer[pos++] = (byte) (v >>> 16);
+		buffer[pos++] = (byte) (v >>> 8);
+		buffer[pos++] = (byte) v;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeLong(long)
+	 */
+	@Override
+	public void writeLong(final long v) throws IOException {
+		ensure(8);
+		buffer[pos++] = (byte) (v >>> 56);
+		buffer[pos++] = (byte) (v >>> 48);
+		buffer[pos++] = (byte) (v >>> 40);
+		buffer[pos++] = (byte) (v >>> 32);
+		buffer[pos++] = (byte) (v >>> 24);
+		buffer[pos++] = (byte) (v >>> 16);
+		buffer[pos++] = (byte) (v >>> 8);
+		buffer[pos++] = (byte) v;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeFloat(float)
+	 */
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeDouble(double)
+	 */
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeBytes(java.lang.String)
+	 */
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		for (int i = 0; i < s.length(); ++i) {
+			write(s.charAt(i));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeChars(java.lang.String)
+	 */
+	@Override
+	public void writeChars(final String s) throws IOException {
+		for (int i = 0; i < s.length(); ++i) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	/**
+	 * writes the string in the modified UTF-8 of the DataOutput
+	 * 
+	 * @see java.io.DataOutput#writeUTF(java.lang.String)
+	 */
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		int length = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+		}
+		if (length > 0xffff) {
+			throw new UTFDataFormatException("String too long: " + length + " bytes");
+		}
+		writeShort(length);
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007f) {
+				write(c);
+			} else if (c <= 0x07ff) {
+				ensure(2);
+				buffer[pos++] = (byte) (0xc0 | c >> 6);
+				buffer[pos++] = (byte) (0x80 | c & 0x3f);
+			} else {
+				ensure(3);
+				buffer[pos++] = (byte) (0xe0 | c >> 12);
+				buffer[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+				buffer[pos++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	/**
+	 * writes an unsigned number in seven bit groups, small numbers take less
+	 * than the fixed size
+	 * 
+	 * @param v
+	 *            the number, negative numbers take ten bytes
+	 * @throws IOException
+	 */
+	public void writeVarLong(final long v) throws IOException {
+		ensure(10);
+		long value = v;
+		while ((value & ~0x7fL) != 0) {
+			buffer[pos++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+	}
+
+	/**
+	 * writes a signed number zigzag coded, so numbers near 0 take few bytes
+	 * 
+	 * @param v
+	 *            the number
+	 * @throws IOException
+	 */
+	public void writeSignedVarLong(final long v) throws IOException {
+		writeVarLong(v << 1 ^ v >> 63);
+	}
+
+	/**
+	 * writes a string as reference into the string table or as UTF-8 bytes,
+	 * which {@link CompactObjectInput#readString()} reads
+	 * 
+	 * @param s
+	 *            the string
+	 * @throws IOException
+	 */
+	public void writeString(final String s) throws IOException {
+		if (stringIndex == null) {
+			strings = new String[STRING_TABLE_SIZE];
+			stringIndex = new HashMap<>();
+		}
+		final Integer index = stringIndex.get(s);
+		if (index != null) {
+			writeVarLong(stringCount - index.intValue());
+			return;
+		}
+		final byte b[] = s.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(0);
+		writeVarLong(b.length);
+		write(b);
+		if (b.length <= MAX_TABLE_STRING) {
+			final int slot = stringCount & STRING_TABLE_SIZE - 1;
+			if (strings[slot] != null) {
+				stringIndex.remove(strings[slot]);
+			}
+			strings[slot] = s;
+			stringIndex.put(s, Integer.valueOf(stringCount));
+			stringCount++;
+		}
+	}
+
+	/**
+	 * empties the string table, e.g. at the start of a block that has to be
+	 * readable on its own
+	 */
+	public void resetStrings() {
+		if (stringCount != 0) {
+			Arrays.fill(strings, null);
+			stringIndex.clear();
+			stringCount = 0;
+		}
+	}
+
+	/**
+	 * Objects are not supported
+	 * 
+	 * @see java.io.ObjectOutput#writeObject(java.lang.Object)
+	 */
+	@Override
+	public void writeObject(final Object obj) throws IOException {
+		throw new NotSerializableException(obj == null ? "null" : obj.getClass().getName());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+	}
+}
@@ -21,8 +21,11 @@ package mm.io.base;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This inputStream uses a second thread for reading the data from the source
@@ -31,42 +34,111 @@ import java.io.PipedOutputStream;
  * of the buffer. Only when buffer is empty it must wait until the reader thread
  * has gathered enough data for continuing.
  * 
+ * The reader thread reads whole chunks into a ring, which has one producer and
+ * one consumer, so the chunks are handed over by two volatile counters without
+ * locks. A waiting side parks until the other side has moved its counter. The
+ * chunks are recycled, an exception of the source is thrown to the consumer
+ * when it reaches the chunks read before. The reader threads are daemon threads
+ * of a pool shared by all streams.
+ * 
  * @author benno
  */
 public class DecoupledInputStream extends InputStream {
 
-	private final PipedInputStream in;
-	private final Thread readerThread;
+	private static final int CHUNKS = 16;
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final ExecutorService READERS = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "decoupled reader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	private final InputStream source;
-	private static int defaultBufferSize = 1 << 20;
-	private static int defaultReadBufferSize = 1 << 16;
+	private final byte chunks[][] = new byte[CHUNKS][CHUNK_SIZE];
+	/** number of bytes of a chunk, -1 for the end of the source */
+	private final int lengths[] = new int[CHUNKS];
+	/** number of chunks filled by the reader */
+	private volatile long head = 0;
+	/** number of chunks handed back by the consumer */
+	private volatile long tail = 0;
+	private volatile Thread waitingConsumer = null;
+	private volatile Thread producer = null;
+	private volatile boolean closed = false;
+	private volatile Throwable error = null;
+	private byte current[] = null;
+	private int pos = 0;
+	private int limit = 0;
+	private boolean end = false;
 
 	public DecoupledInputStream(final InputStream source) throws IOException {
 		super();
 		this.source = source;
-		in = new PipedInputStream(defaultBufferSize);
-		readerThread = new Thread(new SourceReader(source, new PipedOutputStream(in)));
-		readerThread.start();
+		READERS.execute(new SourceReader());
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * makes the next chunk the current one
 	 * 
-	 * @see java.io.InputStream#read()
+	 * @return false at the end of the source
 	 */
-	@Override
-	public int read() throws IOException {
-		return in.read();
+	private boolean nextChunk() throws IOException {
+		if (end) {
+			return false;
+		}
+		if (current != null) {
+			current = null;
+			tail = tail + 1;
+			LockSupport.unpark(producer);
+		}
+		final long index = tail;
+		if (head == index) {
+			waitingConsumer = Thread.currentThread();
+			while (head == index) {
+				if (closed) {
+					waitingConsumer = null;
+					throw new IOException("Stream closed");
+				}
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					waitingConsumer = null;
+					throw new InterruptedIOException();
+				}
+			}
+			waitingConsumer = null;
+		}
+		final int slot = (int) (index % CHUNKS);
+		if (lengths[slot] < 0) {
+			end = true;
+			final Throwable e = error;
+			if (e != null) {
+				throw e instanceof IOException ? (IOException) e : new IOException(
+						"Reading the source failed", e);
+			}
+			return false;
+		}
+		current = chunks[slot];
+		pos = 0;
+		limit = lengths[slot];
+		return true;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see java.io.InputStream#read(byte[])
+	 * @see java.io.InputStream#read()
 	 */
 	@Override
-	public int read(final byte[] b) throws IOException {
-		return in.read(b);
+	public int read() throws IOException {
+		while (current == null || pos == limit) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		return current[pos++] & 0xff;
 	}
 
 	/*
@@ -76,7 +148,18 @@ public class DecoupledInputStream extends InputStream {
 	 */
 	@Override
 	public int read(final byte[] b, final int off, final int len) throws IOException {
-		return in.read(b, off, len);
+		if (len == 0) {
+			return 0;
+		}
+		while (current == null || pos == limit) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		final int n = Math.min(len, limit - pos);
+		System.arraycopy(current, pos, b, off, n);
+		pos += n;
+		return n;
 	}
 
 	/*
@@ -86,7 +169,19 @@ public class DecoupledInputStream extends InputStream {
 	 */
 	@Override
 	public long skip(final long n) throws IOException {
-		return in.skip(n);
+		long skipped = 0;
+		while (skipped < n) {
+			if (current == null || pos == limit) {
+				if (!nextChunk()) {
+					break;
+				}
+				continue;
+			}
+			final int step = (int) Math.min(n - skipped, limit - pos);
+			pos += step;
+			skipped += step;
+		}
+		return skipped;
 	}
 
 	/*
@@ -96,62 +191,26 @@ public class DecoupledInputStream extends InputStream {
 	 */
 	@Override
 	public int available() throws IOException {
-		return in.available();
+		return current == null ? 0 : limit - pos;
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * stops the reader thread, which closes the source
 	 * 
 	 * @see java.io.InputStream#close()
 	 */
 	@Override
 	public void close() throws IOException {
-		synchronized (source) {
-			source.close();
-		}
-		in.close();
-		readerThread.interrupt();
+		closed = true;
+		end = true;
+		current = null;
+		LockSupport.unpark(producer);
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.io.InputStream#mark(int)
+	/**
+	 * fills the chunks of the ring from the source
 	 */
-	@Override
-	public synchronized void mark(final int readlimit) {
-		in.mark(readlimit);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.io.InputStream#reset()
-	 */
-	@Override
-	public synchronized void reset() throws IOException {
-		in.reset();
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.io.InputStream#markSupported()
-	 */
-	@Override
-	public boolean markSupported() {
-		return in.markSupported();
-	}
-
-	private static class SourceReader implements Runnable {
-		private final PipedOutputStream dest;
-		private final InputStream source;
-
-		public SourceReader(final InputStream source, final PipedOutputStream dest) {
-			super();
-			this.source = source;
-			this.dest = dest;
-		}
+	private class SourceReader implements Runnable {
 
 		/*
 		 * (non-Javadoc)
@@ -160,24 +219,73 @@ public class DecoupledInputStream extends InputStream {
 		 */
 		@Override
 		public void run() {
-			final byte buffer[] = new byte[defaultReadBufferSize];
+			producer = Thread.currentThread();
 			try {
-				int got;
-				synchronized (source) {
-					got = source.read(buffer);
-				}
-				while (got > 0) {
-					dest.write(buffer, 0, got);
-					synchronized (source) {
-						got = source.read(buffer);
+				long index = head;
+				while (!closed) {
+					waitForSpace(index);
+					if (closed) {
+						break;
+					}
+					final int slot = (int) (index % CHUNKS);
+					final int got = fill(chunks[slot]);
+					lengths[slot] = got > 0 ? got : -1;
+					head = ++index;
+					LockSupport.unpark(waitingConsumer);
+					if (got <= 0) {
+						break;
 					}
 				}
-			} catch (final IOException e) {
+			} catch (final Throwable e) {
+				error = e;
+				publishEnd();
 			} finally {
+				producer = null;
 				try {
-					dest.close();
-				} catch (final Throwable e1) {
+					source.close();
+				} catch (final IOException e) {
+					// nothing more to read
+				}
+			}
+		}
+
+		/**
+		 * reads until the chunk is full or the source ends
+		 * 
+		 * @return number of bytes read, 0 at the end of the source
+		 */
+		private int fill(final byte chunk[]) throws IOException {
+			int got = 0;
+			while (got < chunk.length) {
+				final int n = source.read(chunk, got, chunk.length - got);
+				if (n < 0) {
+					break;
 				}
+				got += n;
+				if (got > 0 && source.available() <= 0) {
+					// do not hold back what is there
+					break;
+				}
+			}
+			return got;
+		}
+
+		private void waitForSpace(final long index) {
+			while (index - tail >= CHUNKS && !closed) {
+				LockSupport.park(this);
+			}
+		}
+
+		/**
+		 * hands an end marker to the consumer after an error
+		 */
+		private void publishEnd() {
+			final long index = head;
+			waitForSpace(index);
+			if (!closed) {
+				lengths[(int) (index % CHUNKS)] = -1;
+				head = index + 1;
+				LockSupport.unpark(waitingConsumer);
 			}
 		}
 	}
@@ -20,32 +20,61 @@
 package mm.io.base;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * @author benno
+ * OutputStream collecting the written bytes in chunks, which are written to
+ * the destination by the threads of a {@link WriteBehindService}. The chunks of
+ * one stream are written in order by one thread at a time. {@link #flush()}
+ * and {@link #close()} wait until all chunks are written, an exception of the
+ * destination is thrown by the next call of the writer.
+ * 
+ * A stream is used by one writer, it is not thread safe.
  * 
+ * @author benno
  */
 public class DecoupledOutputStream extends OutputStream {
 
-	private static int defaultBufferSize = 1 << 20;
-	private static int defaultReadBufferSize = 1 << 16;
-	private final Thread readerThread;
-	private final PipedOutputStream out;
 	private final OutputStream dest;
-	private final AtomicInteger bufferSize = new AtomicInteger(0);
+	private final WriteBehindService service;
+	private final ConcurrentLinkedQueue<Chunk> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	/** number of queued chunks not written yet */
+	private final AtomicInteger pending = new AtomicInteger(0);
+	private final Runnable drainer = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+	private volatile IOException error = null;
+	private byte chunk[];
+	private int pos = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param dest
+	 *            gets the bytes, it is closed by {@link #close()}
+	 */
+	public DecoupledOutputStream(final OutputStream dest) {
+		this(dest, WriteBehindService.getDefault());
+	}
 
-	public DecoupledOutputStream(final OutputStream dest) throws IOException {
+	/**
+	 * @param dest
+	 *            gets the bytes, it is closed by {@link #close()}
+	 * @param service
+	 *            the threads writing the bytes
+	 */
+	public DecoupledOutputStream(final OutputStream dest, final WriteBehindService service) {
 		super();
 		this.dest = dest;
-
-		out = new PipedOutputStream();
-		readerThread = new Thread(new SourceReader(new PipedInputStream(out, defaultBufferSize),
-				dest));
-		readerThread.start();
+		this.service = service;
+		chunk = service.allocate();
 	}
 
 	/*
@@ -55,30 +84,10 @@ public class DecoupledOutputStream extends OutputStream {
 	 */
 	@Override
 	public void write(final int b) throws IOException {
-		bufferSize.addAndGet(1);
-		try {
-			out.write(b);
-		} catch (final Exception e) {
-			bufferSize.set(0);
-			throw e;
+		if (pos == chunk.length) {
+			submit();
 		}
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.io.OutputStream#write(byte[])
-	 */
-	@Override
-	public void write(final byte[] b) throws IOException {
-		bufferSize.addAndGet(b.length);
-		try {
-			out.write(b);
-		} catch (final Exception e) {
-			bufferSize.set(0);
-			throw e;
-		}
-
+		chunk[pos++] = (byte) b;
 	}
 
 	/*
@@ -88,89 +97,131 @@ public class DecoupledOutputStream extends OutputStream {
 	 */
 	@Override
 	public void write(final byte[] b, final int off, final int len) throws IOException {
-		bufferSize.addAndGet(len);
-		try {
-			out.write(b, off, len);
-		} catch (final Exception e) {
-			bufferSize.set(0);
-			throw e;
+		int done = 0;
+		while (done < len) {
+			if (pos == chunk.length) {
+				submit();
+			}
+			final int n = Math.min(len - done, chunk.length - pos);
+			System.arraycopy(b, off + done, chunk, pos, n);
+			pos += n;
+			done += n;
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * waits until all bytes are written to the destination and flushes it
 	 * 
 	 * @see java.io.OutputStream#flush()
 	 */
 	@Override
 	public void flush() throws IOException {
-		out.flush();
+		submit();
+		await();
+		dest.flush();
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * waits until all bytes are written and closes the destination
 	 * 
 	 * @see java.io.OutputStream#close()
 	 */
 	@Override
 	public void close() throws IOException {
-		int retry = 1;
-		final int maxRetry = 200;
-		while (bufferSize.get() > 0 && retry < maxRetry) {
-			out.flush();
-			try {
-				Thread.sleep(10 * retry);
-			} catch (final Exception e) {
-			}
-			retry++;
+		if (closed) {
+			return;
 		}
-		out.close();
-		synchronized (dest) {
-
+		try {
+			submit();
+			await();
+		} finally {
+			closed = true;
+			service.recycle(chunk);
+			chunk = null;
 			dest.close();
 		}
-		readerThread.interrupt();
-		if (retry >= maxRetry) {
-			throw new IOException("Stream didn't close intime");
+	}
+
+	/**
+	 * queues the current chunk
+	 */
+	private void submit() throws IOException {
+		checkError();
+		if (closed) {
+			throw new IOException("Stream closed");
 		}
+		if (pos == 0) {
+			return;
+		}
+		service.reserve();
+		pending.incrementAndGet();
+		queue.add(new Chunk(chunk, pos));
+		if (scheduled.compareAndSet(false, true)) {
+			service.schedule(drainer);
+		}
+		chunk = service.allocate();
+		pos = 0;
 	}
 
-	private class SourceReader implements Runnable {
-		private final OutputStream dest;
-		private final PipedInputStream source;
+	/**
+	 * waits until the queued chunks are written
+	 */
+	private void await() throws IOException {
+		synchronized (pending) {
+			while (pending.get() > 0) {
+				try {
+					pending.wait();
+				} catch (final InterruptedException e) {
+					throw new InterruptedIOException("Interrupted while waiting for the write behind");
+				}
+			}
+		}
+		checkError();
+	}
 
-		public SourceReader(final PipedInputStream source, final OutputStream dest) {
-			super();
-			this.source = source;
-			this.dest = dest;
+	private void checkError() throws IOException {
+		final IOException e = error;
+		if (e != null) {
+			throw new IOException("Writing behind failed", e);
 		}
+	}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see java.lang.Runnable#run()
-		 */
-		@Override
-		public void run() {
-			final byte buffer[] = new byte[defaultReadBufferSize];
-			try {
-				int got = source.read(buffer);
-				bufferSize.addAndGet(got > 0 ? -got : 0);
-				while (got > 0) {
-					synchronized (dest) {
-						dest.write(buffer, 0, got);
+	/**
+	 * writes the queued chunks, runs on a thread of the service
+	 */
+	private void drain() {
+		do {
+			Chunk next;
+			while ((next = queue.poll()) != null) {
+				if (error == null) {
+					try {
+						dest.write(next.data, 0, next.length);
+					} catch (final IOException e) {
+						error = e;
+					} catch (final RuntimeException e) {
+						error = new IOException(e);
 					}
-					got = source.read(buffer);
-					bufferSize.addAndGet(got > 0 ? -got : 0);
 				}
-			} catch (final IOException e) {
-			} finally {
-				try {
-					source.close();
-					bufferSize.set(0);
-				} catch (final Throwable e1) {
+				service.release(next.data);
+				if (pending.decrementAndGet() == 0) {
+					synchronized (pending) {
+						pending.notifyAll();
+					}
 				}
 			}
+			scheduled.set(false);
+			// a chunk queued after the last poll has to be written as well
+		} while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+	}
+
+	private static class Chunk {
+		private final byte data[];
+		private final int length;
+
+		public Chunk(final byte data[], final int length) {
+			super();
+			this.data = data;
+			this.length = length;
 		}
 	}
 }
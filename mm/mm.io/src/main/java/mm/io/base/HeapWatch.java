@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+
+/**
+ * Tells a user of the heap when the old generation was filled above the
+ * threshold of the {@link MemoryBudget} after a collection. The flag of the
+ * pool stays set until a later collection ends below the threshold, so every
+ * collection is reported once only. A user that spilled what it holds is not
+ * told again before the collector had a chance to free the spilled objects.
+ * 
+ * Every user needs its own watch, it is not thread safe.
+ * 
+ * @author benno
+ */
+public class HeapWatch {
+
+	private final MemoryPoolMXBean pool;
+	private long reported = -1;
+
+	/**
+	 * watches the old generation
+	 */
+	public HeapWatch() {
+		this(MemoryBudget.getOldGeneration());
+	}
+
+	/**
+	 * @param pool
+	 *            pool with a collection usage threshold, null for none
+	 */
+	public HeapWatch(final MemoryPoolMXBean pool) {
+		super();
+		this.pool = pool;
+	}
+
+	/**
+	 * @return true if the pool was filled above the threshold after a
+	 *         collection that was not reported yet, the user should spill
+	 *         what it holds
+	 */
+	public boolean isHeapLow() {
+		if (!isThresholdExceeded()) {
+			return false;
+		}
+		final long collections = getCollectionCount();
+		if (collections == reported) {
+			return false;
+		}
+		reported = collections;
+		return true;
+	}
+
+	/**
+	 * @return true if the usage after the last collection of the pool was
+	 *         above its threshold
+	 */
+	protected boolean isThresholdExceeded() {
+		return pool != null && pool.isCollectionUsageThresholdExceeded();
+	}
+
+	/**
+	 * @return number of collections done by the collectors of the pool
+	 */
+	protected long getCollectionCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean collector : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			for (final String name : collector.getMemoryPoolNames()) {
+				if (name.equals(pool.getName())) {
+					count += Math.max(0, collector.getCollectionCount());
+				}
+			}
+		}
+		return count;
+	}
+}
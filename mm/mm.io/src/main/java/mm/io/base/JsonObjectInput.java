@@ -0,0 +1,538 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ObjectInput reading the json text of {@link JsonObjectOutput}. The values
+ * are parsed one by one as the Externalizable asks for them, there are no
+ * json objects built. A record is started by {@link #nextRecord()} and has to
+ * be read completely before {@link #endRecord()}. Reading behind the last
+ * value of a record throws an EOFException.
+ * 
+ * @author benno
+ */
+public class JsonObjectInput implements ObjectInput {
+
+	private final Reader in;
+	private final char buffer[] = new char[1 << 16];
+	private int pos = 0;
+	private int limit = 0;
+	private boolean first = true;
+	private final StringBuilder token = new StringBuilder();
+
+	/**
+	 * @param in
+	 *            the text as UTF-8
+	 */
+	public JsonObjectInput(final InputStream in) {
+		super();
+		this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * starts reading the next record
+	 * 
+	 * @return false at the end of the stream
+	 * @throws IOException
+	 *             if there is no record
+	 */
+	public boolean nextRecord() throws IOException {
+		final int c = skipWhitespace();
+		if (c < 0) {
+			return false;
+		}
+		if (c != '[') {
+			throw new StreamCorruptedException("Record expected instead of '" + (char) c + "'");
+		}
+		pos++;
+		first = true;
+		return true;
+	}
+
+	/**
+	 * ends the current record
+	 * 
+	 * @throws IOException
+	 *             if there are values left
+	 */
+	public void endRecord() throws IOException {
+		if (skipWhitespace() != ']') {
+			throw new StreamCorruptedException("The record has unread values");
+		}
+		pos++;
+	}
+
+	/**
+	 * @return the next char that is no whitespace without consuming it, -1
+	 *         at the end of the stream
+	 */
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			if (pos == limit) {
+				pos = 0;
+				limit = Math.max(0, in.read(buffer, 0, buffer.length));
+				if (limit == 0) {
+					return -1;
+				}
+			}
+			final char c = buffer[pos];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				return c;
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * @return the next char, which is consumed
+	 */
+	private char next() throws IOException {
+		if (pos == limit) {
+			pos = 0;
+			limit = Math.max(0, in.read(buffer, 0, buffer.length));
+			if (limit == 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * skips the separator in front of a value
+	 * 
+	 * @return the first char of the value, not consumed
+	 * @throws EOFException
+	 *             if the record has no more values
+	 */
+	private int startValue() throws IOException {
+		int c = skipWhitespace();
+		if (c == ']' || c < 0) {
+			throw new EOFException("No more values in the record");
+		}
+		if (!first) {
+			if (c != ',') {
+				throw new StreamCorruptedException("Separator expected instead of '" + (char) c
+						+ "'");
+			}
+			pos++;
+			c = skipWhitespace();
+		}
+		first = false;
+		return c;
+	}
+
+	/**
+	 * collects the chars of a number or literal into the token
+	 */
+	private void readToken() throws IOException {
+		token.setLength(0);
+		while (true) {
+			if (pos == limit) {
+				pos = 0;
+				limit = Math.max(0, in.read(buffer, 0, buffer.length));
+				if (limit == 0) {
+					break;
+				}
+			}
+			final char c = buffer[pos];
+			if (c == ',' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				break;
+			}
+			token.append(c);
+			pos++;
+		}
+		if (token.length() == 0) {
+			throw new StreamCorruptedException("Value expected");
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		final int c = skipWhitespace();
+		if (c == ']' || c < 0) {
+			return -1;
+		}
+		return readUnsignedByte();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#read(byte[])
+	 */
+	@Override
+	public int read(final byte b[]) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	/**
+	 * reads bytes up to the end of the record
+	 * 
+	 * @see java.io.ObjectInput#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte b[], final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int done = 0;
+		while (done < len) {
+			final int c = skipWhitespace();
+			if (c == ']' || c < 0) {
+				break;
+			}
+			b[off + done++] = readByte();
+		}
+		return done == 0 ? -1 : done;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFully(byte[])
+	 */
+	@Override
+	public void readFully(final byte b[]) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFully(byte[], int, int)
+	 */
+	@Override
+	public void readFully(final byte b[], final int off, final int len) throws IOException {
+		for (int i = off; i < off + len; ++i) {
+			b[i] = readByte();
+		}
+	}
+
+	/**
+	 * skips values, every byte is a value
+	 * 
+	 * @see java.io.ObjectInput#skip(long)
+	 */
+	@Override
+	public long skip(final long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			final int c = skipWhitespace();
+			if (c == ']' || c < 0) {
+				break;
+			}
+			if (startValue() == '"') {
+				readQuoted();
+			} else {
+				readToken();
+			}
+			skipped++;
+		}
+		return skipped;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#skipBytes(int)
+	 */
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		return (int) skip(n);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readBoolean()
+	 */
+	@Override
+	public boolean readBoolean() throws IOException {
+		startValue();
+		readToken();
+		if (token.length() == 4 && "true".contentEquals(token)) {
+			return true;
+		}
+		if (token.length() == 5 && "false".contentEquals(token)) {
+			return false;
+		}
+		throw new StreamCorruptedException("Boolean expected instead of " + token);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readByte()
+	 */
+	@Override
+	public byte readByte() throws IOException {
+		return (byte) readLong();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readUnsignedByte()
+	 */
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readShort()
+	 */
+	@Override
+	public short readShort() throws IOException {
+		return (short) readLong();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readUnsignedShort()
+	 */
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readChar()
+	 */
+	@Override
+	public char readChar() throws IOException {
+		return (char) readLong();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readInt()
+	 */
+	@Override
+	public int readInt() throws IOException {
+		return (int) readLong();
+	}
+
+	/**
+	 * parses the number digit by digit
+	 * 
+	 * @see java.io.DataInput#readLong()
+	 */
+	@Override
+	public long readLong() throws IOException {
+		startValue();
+		boolean negative = false;
+		long value = 0;
+		int digits = 0;
+		while (true) {
+			if (pos == limit) {
+				pos = 0;
+				limit = Math.max(0, in.read(buffer, 0, buffer.length));
+				if (limit == 0) {
+					break;
+				}
+			}
+			final char c = buffer[pos];
+			if (c >= '0' && c <= '9') {
+				value = value * 10 - (c - '0');
+				digits++;
+			} else if (c == '-' && digits == 0 && !negative) {
+				negative = true;
+			} else if (c == ',' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				break;
+			} else {
+				throw new StreamCorruptedException("Number expected instead of '" + c + "'");
+			}
+			pos++;
+		}
+		if (digits == 0 || digits > 19) {
+			throw new StreamCorruptedException("Number expected");
+		}
+		// the value is collected negative, so Long.MIN_VALUE fits
+		return negative ? value : -value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readFloat()
+	 */
+	@Override
+	public float readFloat() throws IOException {
+		return (float) readDouble();
+	}
+
+	/**
+	 * reads a number or the string of a number that is not finite
+	 * 
+	 * @see java.io.DataInput#readDouble()
+	 */
+	@Override
+	public double readDouble() throws IOException {
+		final String s;
+		if (startValue() == '"') {
+			s = readQuoted();
+		} else {
+			readToken();
+			s = token.toString();
+		}
+		try {
+			return Double.parseDouble(s);
+		} catch (final NumberFormatException e) {
+			throw new StreamCorruptedException("Number expected instead of " + s);
+		}
+	}
+
+	/**
+	 * not supported, the lines are the records
+	 * 
+	 * @throws IOException
+	 *             always
+	 * @see java.io.DataInput#readLine()
+	 */
+	@Override
+	public String readLine() throws IOException {
+		throw new IOException("The JSON lines format does not support readLine, "
+				+ "its lines are the records");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataInput#readUTF()
+	 */
+	@Override
+	public String readUTF() throws IOException {
+		return readString();
+	}
+
+	/**
+	 * reads a string written by {@link JsonObjectOutput#writeString(String)}
+	 * 
+	 * @return the string
+	 * @throws IOException
+	 */
+	public String readString() throws IOException {
+		if (startValue() != '"') {
+			throw new StreamCorruptedException("String expected");
+		}
+		return readQuoted();
+	}
+
+	/**
+	 * reads a json string starting at the quote
+	 */
+	private String readQuoted() throws IOException {
+		pos++;
+		token.setLength(0);
+		while (true) {
+			final char c = next();
+			if (c == '"') {
+				return token.toString();
+			}
+			if (c != '\\') {
+				token.append(c);
+				continue;
+			}
+			final char e = next();
+			switch (e) {
+			case 'n':
+				token.append('\n');
+				break;
+			case 'r':
+				token.append('\r');
+				break;
+			case 't':
+				token.append('\t');
+				break;
+			case 'b':
+				token.append('\b');
+				break;
+			case 'f':
+				token.append('\f');
+				break;
+			case 'u':
+				int u = 0;
+				for (int i = 0; i < 4; ++i) {
+					final int digit = Character.digit(next(), 16);
+					if (digit < 0) {
+						throw new StreamCorruptedException("Wrong unicode escape");
+					}
+					u = u << 4 | digit;
+				}
+				token.append((char) u);
+				break;
+			default:
+				token.append(e);
+			}
+		}
+	}
+
+	/**
+	 * Objects are not supported
+	 * 
+	 * @see java.io.ObjectInput#readObject()
+	 */
+	@Override
+	public Object readObject() throws ClassNotFoundException, IOException {
+		throw new NotSerializableException("Objects can not be read from json values");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		return limit - pos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectInput#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ObjectOutput writing the values of the Externalizable form as json text.
+ * The values of a record are the elements of a json array, every record is a
+ * line ended by {@link #endRecord()}. The values are written straight into a
+ * char buffer, there are no json objects built, so the text can be written
+ * at nearly the speed of the binary forms and read by
+ * {@link JsonObjectInput}.
+ * 
+ * Numbers are written as json numbers, strings as json strings. Single bytes
+ * are numbers as well, so byte arrays become a sequence of numbers. Floating
+ * point numbers that are not finite are written as strings. Objects can not
+ * be written.
+ * 
+ * @author benno
+ */
+public class JsonObjectOutput implements ObjectOutput {
+
+	private static final char HEX[] = "0123456789abcdef".toCharArray();
+
+	private final Writer out;
+	private final char buffer[] = new char[1 << 16];
+	private int pos = 0;
+	private boolean first = true;
+
+	/**
+	 * @param out
+	 *            gets the text as UTF-8
+	 */
+	public JsonObjectOutput(final OutputStream out) {
+		super();
+		this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * ends the current record, the next value starts the next line
+	 * 
+	 * @throws IOException
+	 */
+	public void endRecord() throws IOException {
+		ensure(3);
+		if (first) {
+			buffer[pos++] = '[';
+		}
+		buffer[pos++] = ']';
+		buffer[pos++] = '\n';
+		first = true;
+	}
+
+	/**
+	 * makes room for some chars in the buffer
+	 */
+	private void ensure(final int length) throws IOException {
+		if (buffer.length - pos < length) {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		}
+	}
+
+	/**
+	 * starts a value with the bracket of the record or the separator
+	 */
+	private void separate() throws IOException {
+		ensure(32);
+		buffer[pos++] = first ? '[' : ',';
+		first = false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeBoolean(boolean)
+	 */
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		separate();
+		final String s = v ? "true" : "false";
+		s.getChars(0, s.length(), buffer, pos);
+		pos += s.length();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeByte(int)
+	 */
+	@Override
+	public void writeByte(final int v) throws IOException {
+		writeLong((byte) v);
+	}
+
+	/**
+	 * writes the byte as number
+	 * 
+	 * @see java.io.ObjectOutput#write(int)
+	 */
+	@Override
+	public void write(final int b) throws IOException {
+		writeLong((byte) b);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#write(byte[])
+	 */
+	@Override
+	public void write(final byte b[]) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte b[], final int off, final int len) throws IOException {
+		for (int i = off; i < off + len; ++i) {
+			writeLong(b[i]);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeShort(int)
+	 */
+	@Override
+	public void writeShort(final int v) throws IOException {
+		writeLong((short) v);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeChar(int)
+	 */
+	@Override
+	public void writeChar(final int v) throws IOException {
+		writeLong((char) v);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeInt(int)
+	 */
+	@Override
+	public void writeInt(final int v) throws IOException {
+		writeLong(v);
+	}
+
+	/**
+	 * writes the number digit by digit into the buffer
+	 * 
+	 * @see java.io.DataOutput#writeLong(long)
+	 */
+	@Override
+	public void writeLong(final long v) throws IOException {
+		separate();
+		if (v == Long.MIN_VALUE) {
+			final String s = Long.toString(v);
+			s.getChars(0, s.length(), buffer, pos);
+			pos += s.length();
+			return;
+		}
+		long value = v;
+		if (value < 0) {
+			buffer[pos++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long rest = value / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		pos += digits;
+		int p = pos;
+		do {
+			buffer[--p] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeFloat(float)
+	 */
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		writeDouble(v);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.DataOutput#writeDouble(double)
+	 */
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		if (Double.isNaN(v) || Double.isInfinite(v)) {
+			writeString(Double.toString(v));
+			return;
+		}
+		separate();
+		final String s = Double.toString(v);
+		s.getChars(0, s.length(), buffer, pos);
+		pos += s.length();
+	}
+
+	/**
+	 * writes the low bytes of the chars as numbers
+	 * 
+	 * @see java.io.DataOutput#writeBytes(java.lang.String)
+	 */
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		for (int i = 0; i < s.length(); ++i) {
+			writeLong((byte) s.charAt(i));
+		}
+	}
+
+	/**
+	 * writes the chars as numbers
+	 * 
+	 * @see java.io.DataOutput#writeChars(java.lang.String)
+	 */
+	@Override
+	public void writeChars(final String s) throws IOException {
+		for (int i = 0; i < s.length(); ++i) {
+			writeLong(s.charAt(i));
+		}
+	}
+
+	/**
+	 * writes the string as json string
+	 * 
+	 * @see java.io.DataOutput#writeUTF(java.lang.String)
+	 */
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		writeString(s);
+	}
+
+	/**
+	 * writes a string as json string, the counterpart is
+	 * {@link JsonObjectInput#readString()}
+	 * 
+	 * @param s
+	 *            the string
+	 * @throws IOException
+	 */
+	public void writeString(final String s) throws IOException {
+		separate();
+		buffer[pos++] = '"';
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			ensure(7);
+			if (c == '"' || c == '\\') {
+				buffer[pos++] = '\\';
+				buffer[pos++] = c;
+			} else if (c == '\n') {
+				buffer[pos++] = '\\';
+				buffer[pos++] = 'n';
+			} else if (c < 0x20) {
+				buffer[pos++] = '\\';
+				buffer[pos++] = 'u';
+				buffer[pos++] = '0';
+				buffer[pos++] = '0';
+				buffer[pos++] = HEX[c >> 4];
+				buffer[pos++] = HEX[c & 0xf];
+			} else {
+				buffer[pos++] = c;
+			}
+		}
+		ensure(1);
+		buffer[pos++] = '"';
+	}
+
+	/**
+	 * Objects are not supported
+	 * 
+	 * @see java.io.ObjectOutput#writeObject(java.lang.Object)
+	 */
+	@Override
+	public void writeObject(final Object obj) throws IOException {
+		throw new NotSerializableException("Objects can not be written as json values");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.write(buffer, 0, pos);
+		pos = 0;
+		out.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.ObjectOutput#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		} finally {
+			out.close();
+		}
+	}
+}
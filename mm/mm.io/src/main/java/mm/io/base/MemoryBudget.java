@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mm.io.SizeEstimable;
+
+/**
+ * Bytes of the heap that sort runs, caches and buffers can reserve. The
+ * default budget is a part of the maximum heap (-Xmx). As estimates are never
+ * exact, a {@link HeapWatch} also tells when the old generation is still
+ * filled above a threshold after a collection.
+ * 
+ * The size helpers give rough numbers for a 64 bit VM with compressed
+ * references, they are meant for {@link SizeEstimable#estimatedSize()}.
+ * 
+ * @author benno
+ */
+public class MemoryBudget {
+
+	/** size taken for objects that are not {@link SizeEstimable} */
+	public static final long DEFAULT_ELEMENT_SIZE = 128;
+	/** header of an object */
+	public static final long OBJECT = 16;
+	/** a reference field or array element */
+	public static final long REFERENCE = 8;
+	/** an entry of a HashMap, TreeMap or TreeSet without key and value */
+	public static final long MAP_ENTRY = 40;
+	/** part of the heap used for the default budget */
+	private static final double HEAP_PART = 0.4;
+	/** part of the old generation that is low on heap after a collection */
+	private static final double LOW_HEAP_THRESHOLD = 0.8;
+	/** smallest amount a reservation gets */
+	private static final long MIN_RESERVATION = 1 << 20;
+
+	private static final MemoryBudget DEFAULT = new MemoryBudget((long) (Runtime.getRuntime()
+			.maxMemory() * HEAP_PART));
+	private static final MemoryPoolMXBean OLD_GENERATION = findOldGeneration();
+
+	private final long budget;
+	private final AtomicLong reserved = new AtomicLong(0);
+
+	/**
+	 * @param budget
+	 *            number of bytes that can be reserved
+	 */
+	public MemoryBudget(final long budget) {
+		super();
+		this.budget = budget;
+	}
+
+	/**
+	 * @return the budget derived from the maximum heap
+	 */
+	public static MemoryBudget getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return number of bytes of the budget
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return number of bytes not reserved
+	 */
+	public long getAvailable() {
+		return budget - reserved.get();
+	}
+
+	/**
+	 * reserves up to the wanted number of bytes, but at least
+	 * {@link #MIN_RESERVATION}, so a user can always make progress
+	 * 
+	 * @param wanted
+	 *            number of bytes wanted
+	 * @return number of bytes reserved, to be released by
+	 *         {@link #release(long)}
+	 */
+	public long reserve(final long wanted) {
+		while (true) {
+			final long current = reserved.get();
+			final long granted = Math.max(Math.min(MIN_RESERVATION, wanted), Math.min(wanted,
+					budget - current));
+			if (reserved.compareAndSet(current, current + granted)) {
+				return granted;
+			}
+		}
+	}
+
+	/**
+	 * @param bytes
+	 *            number of bytes returned by {@link #reserve(long)}
+	 */
+	public void release(final long bytes) {
+		reserved.addAndGet(-bytes);
+	}
+
+	/**
+	 * @return the heap pool watched by {@link HeapWatch}, its collection usage
+	 *         threshold is set. It is null if the VM has no such pool.
+	 */
+	static MemoryPoolMXBean getOldGeneration() {
+		return OLD_GENERATION;
+	}
+
+	/**
+	 * @return the estimated size of the object
+	 */
+	public static long sizeOf(final Object o) {
+		if (o == null) {
+			return 0;
+		}
+		return o instanceof SizeEstimable ? ((SizeEstimable) o).estimatedSize()
+				: DEFAULT_ELEMENT_SIZE;
+	}
+
+	/**
+	 * @return the size of a string with its char array
+	 */
+	public static long sizeOf(final String s) {
+		return s == null ? 0 : OBJECT + 8 + OBJECT + 2 * s.length();
+	}
+
+	/**
+	 * @return the size of a map of strings with its entries
+	 */
+	public static long sizeOf(final Map<String, String> map) {
+		if (map == null) {
+			return 0;
+		}
+		long size = 3 * OBJECT + REFERENCE * map.size() * 2;
+		for (final Map.Entry<String, String> entry : map.entrySet()) {
+			size += MAP_ENTRY + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+		}
+		return size;
+	}
+
+	/**
+	 * finds the heap pool with the biggest maximum that can tell its usage
+	 * after a collection and sets its threshold
+	 */
+	private static MemoryPoolMXBean findOldGeneration() {
+		MemoryPoolMXBean ret = null;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+					&& pool.getUsage().getMax() > 0
+					&& (ret == null || pool.getUsage().getMax() > ret.getUsage().getMax())) {
+				ret = pool;
+			}
+		}
+		if (ret != null) {
+			ret.setCollectionUsageThreshold((long) (ret.getUsage().getMax() * LOW_HEAP_THRESHOLD));
+		}
+		return ret;
+	}
+}
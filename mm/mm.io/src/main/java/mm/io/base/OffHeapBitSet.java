@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A set of bits addressed by long values, kept outside of the java heap. The
+ * memory is allocated in pages of one MB when a bit in it is set for the
+ * first time, so sparse sets of big ids stay small. Negative values are
+ * allowed, they are kept in pages of their own.
+ * 
+ * The set is not thread safe.
+ * 
+ * @author benno
+ */
+public class OffHeapBitSet {
+
+	private static final int PAGE_SHIFT = 23;
+	private static final long PAGE_MASK = (1L << PAGE_SHIFT) - 1;
+	private static final int PAGE_BYTES = 1 << (PAGE_SHIFT - 3);
+
+	private LongBuffer pages[] = new LongBuffer[16];
+	private LongBuffer negativePages[] = new LongBuffer[1];
+
+	/**
+	 * @param index
+	 *            the bit to set
+	 */
+	public void set(final long index) {
+		final long bit = index < 0 ? ~index : index;
+		final int page = (int) (bit >>> PAGE_SHIFT);
+		LongBuffer words = getPage(index, page);
+		if (words == null) {
+			words = ByteBuffer.allocateDirect(PAGE_BYTES).asLongBuffer();
+			if (index < 0) {
+				negativePages = grow(negativePages, page);
+				negativePages[page] = words;
+			} else {
+				pages = grow(pages, page);
+				pages[page] = words;
+			}
+		}
+		final int word = (int) ((bit & PAGE_MASK) >>> 6);
+		words.put(word, words.get(word) | (1L << bit));
+	}
+
+	/**
+	 * @param index
+	 *            the bit to clear
+	 */
+	public void clear(final long index) {
+		final long bit = index < 0 ? ~index : index;
+		final LongBuffer words = getPage(index, (int) (bit >>> PAGE_SHIFT));
+		if (words != null) {
+			final int word = (int) ((bit & PAGE_MASK) >>> 6);
+			words.put(word, words.get(word) & ~(1L << bit));
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the bit to test
+	 * @return true if the bit is set
+	 */
+	public boolean get(final long index) {
+		final long bit = index < 0 ? ~index : index;
+		final LongBuffer words = getPage(index, (int) (bit >>> PAGE_SHIFT));
+		if (words == null) {
+			return false;
+		}
+		return (words.get((int) ((bit & PAGE_MASK) >>> 6)) & (1L << bit)) != 0;
+	}
+
+	/**
+	 * @return the number of bytes allocated outside of the heap
+	 */
+	public long getAllocatedBytes() {
+		long ret = 0;
+		for (final LongBuffer page : pages) {
+			if (page != null) {
+				ret += PAGE_BYTES;
+			}
+		}
+		for (final LongBuffer page : negativePages) {
+			if (page != null) {
+				ret += PAGE_BYTES;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the page of the positive or negative values, null if it is not
+	 *         allocated
+	 */
+	private LongBuffer getPage(final long index, final int page) {
+		final LongBuffer array[] = index < 0 ? negativePages : pages;
+		return page < array.length ? array[page] : null;
+	}
+
+	private static LongBuffer[] grow(final LongBuffer array[], final int page) {
+		if (page < array.length) {
+			return array;
+		}
+		return Arrays.copyOf(array, Math.max(page + 1, 2 * array.length));
+	}
+}
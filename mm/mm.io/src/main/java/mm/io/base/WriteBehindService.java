@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io.base;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A few I/O threads writing the chunks of all {@link DecoupledOutputStream}s
+ * behind their writers, so the number of open streams does not turn into a
+ * number of threads. The chunks waiting for a thread are limited by a memory
+ * budget, a writer waits when it is used up. Written chunks are recycled, but
+ * only as many as the budget holds, the others are left to the collector.
+ * Besides the queued chunks every open stream holds the chunk it fills.
+ * 
+ * @author benno
+ */
+public class WriteBehindService {
+
+	public static final int CHUNK_SIZE = 1 << 18;
+
+	private static final WriteBehindService DEFAULT = new WriteBehindService(2, 64 << 20);
+
+	private final ExecutorService threads;
+	private final Semaphore budget;
+	private final ArrayBlockingQueue<byte[]> free;
+
+	/**
+	 * @param threadCount
+	 *            number of I/O threads
+	 * @param memory
+	 *            number of bytes that may wait for being written
+	 */
+	public WriteBehindService(final int threadCount, final long memory) {
+		super();
+		final int chunks = (int) Math.max(1, memory / CHUNK_SIZE);
+		budget = new Semaphore(chunks);
+		free = new ArrayBlockingQueue<>(chunks);
+		threads = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "write behind");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the service used by streams that are not given one
+	 */
+	public static WriteBehindService getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return an empty chunk
+	 */
+	byte[] allocate() {
+		final byte chunk[] = free.poll();
+		return chunk == null ? new byte[CHUNK_SIZE] : chunk;
+	}
+
+	/**
+	 * hands a chunk back that was not queued, it is dropped when enough
+	 * chunks are free
+	 */
+	void recycle(final byte chunk[]) {
+		free.offer(chunk);
+	}
+
+	/**
+	 * waits for the budget of a chunk that is about to be queued
+	 */
+	void reserve() throws InterruptedIOException {
+		try {
+			budget.acquire();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for the write behind");
+		}
+	}
+
+	/**
+	 * hands a written chunk back
+	 */
+	void release(final byte chunk[]) {
+		free.offer(chunk);
+		budget.release();
+	}
+
+	/**
+	 * lets a thread write the queued chunks of the stream
+	 */
+	void schedule(final Runnable drainer) {
+		threads.execute(drainer);
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import mm.io.base.CompactObjectInput;
+import mm.io.base.CompactObjectOutput;
+import mm.io.base.JsonObjectInput;
+import mm.io.base.JsonObjectOutput;
+import mm.io.help.TestStreamable;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class CompactObjectStreamTestCase {
+
+	private static final long NUMBERS[] = { 0, 1, -1, 63, 64, -64, -65, 127, 128, 300,
+			Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+
+	@Test
+	public void testValues() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// a small buffer, so values cross the buffer boundaries
+		final CompactObjectOutput out = new CompactObjectOutput(bytes, 16);
+		final byte big[] = new byte[100];
+		for (int i = 0; i < big.length; ++i) {
+			big[i] = (byte) i;
+		}
+		for (final long n : NUMBERS) {
+			out.writeLong(n);
+			out.writeInt((int) n);
+			out.writeShort((int) n);
+			out.writeByte((int) n);
+			out.writeVarLong(n);
+			out.writeSignedVarLong(n);
+			out.writeDouble(n / 3.0);
+			out.writeBoolean(n > 0);
+		}
+		out.write(big);
+		out.writeUTF("Stra\u00dfe \u20ac\u0000");
+		out.close();
+
+		final CompactObjectInput in = new CompactObjectInput(new ByteArrayInputStream(bytes
+				.toByteArray()), 16);
+		for (final long n : NUMBERS) {
+			assertEquals(n, in.readLong());
+			assertEquals((int) n, in.readInt());
+			assertEquals((short) n, in.readShort());
+			assertEquals((byte) n, in.readByte());
+			assertEquals(n, in.readVarLong());
+			assertEquals(n, in.readSignedVarLong());
+			assertEquals(n / 3.0, in.readDouble(), 0);
+			assertEquals(n > 0, in.readBoolean());
+		}
+		final byte read[] = new byte[big.length];
+		in.readFully(read);
+		assertArrayEquals(big, read);
+		assertEquals("Stra\u00dfe \u20ac\u0000", in.readUTF());
+		try {
+			in.readInt();
+			fail("reading behind the end has to fail");
+		} catch (final EOFException e) {
+			// expected
+		}
+		in.close();
+	}
+
+	/**
+	 * lines written as bytes are read like by the DataInputStream
+	 */
+	@Test
+	public void testReadLine() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CompactObjectOutput out = new CompactObjectOutput(bytes, 16);
+		out.writeBytes("first line\nsecond line, longer than the buffer\r\n\rlast\r");
+		out.close();
+		final CompactObjectInput in = new CompactObjectInput(new ByteArrayInputStream(bytes
+				.toByteArray()), 16);
+		assertEquals("first line", in.readLine());
+		assertEquals("second line, longer than the buffer", in.readLine());
+		assertEquals("", in.readLine());
+		assertEquals("last", in.readLine());
+		assertEquals(null, in.readLine());
+		in.close();
+	}
+
+	/**
+	 * the fixed size values are compatible with the DataOutputStream
+	 */
+	@Test
+	public void testDataOutputCompatible() throws IOException {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(data);
+		final ByteArrayOutputStream compact = new ByteArrayOutputStream();
+		final CompactObjectOutput out = new CompactObjectOutput(compact);
+		for (final long n : NUMBERS) {
+			dos.writeLong(n);
+			out.writeLong(n);
+			dos.writeInt((int) n);
+			out.writeInt((int) n);
+		}
+		dos.writeUTF("Stra\u00dfe");
+		out.writeUTF("Stra\u00dfe");
+		dos.close();
+		out.close();
+		assertArrayEquals(data.toByteArray(), compact.toByteArray());
+	}
+
+	@Test
+	public void testFormats() throws IOException {
+		for (final StreamFormat format : StreamFormat.values()) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final StreamableWriter<TestStreamable> writer = new StreamableWriter<>(bytes, format);
+			for (int i = 0; i < 1000; ++i) {
+				writer.writeStreamable(new TestStreamable(i));
+			}
+			writer.close();
+			final StreamableIterator<TestStreamable> iter = new StreamableIterator<>(
+					new ByteArrayInputStream(bytes.toByteArray()),
+					new StreamableFactory<TestStreamable>() {
+						@Override
+						public TestStreamable construct() {
+							return new TestStreamable();
+						}
+					}, format);
+			for (int i = 0; i < 1000; ++i) {
+				assertEquals(format.name(), i, iter.next().getMyId());
+			}
+			assertFalse(iter.hasNext());
+		}
+	}
+
+	@Test
+	public void testRecycle() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final StreamableWriter<TestStreamable> writer = new StreamableWriter<>(bytes);
+		for (int i = 0; i < 1000; ++i) {
+			writer.writeStreamable(new TestStreamable(i));
+		}
+		writer.close();
+		final Set<TestStreamable> instances = Collections
+				.newSetFromMap(new IdentityHashMap<TestStreamable, Boolean>());
+		final StreamableIterator<TestStreamable> iter = new StreamableIterator<>(
+				new ByteArrayInputStream(bytes.toByteArray()),
+				new StreamableFactory<TestStreamable>() {
+					@Override
+					public TestStreamable construct() {
+						return new TestStreamable();
+					}
+				});
+		for (int i = 0; i < 1000; ++i) {
+			final TestStreamable element = iter.next();
+			assertEquals(i, element.getMyId());
+			instances.add(element);
+			iter.recycle(element);
+		}
+		assertFalse(iter.hasNext());
+		// the element read ahead and the recycled one
+		assertEquals(2, instances.size());
+	}
+
+	@Test
+	public void testStrings() throws IOException {
+		final String strings[] = { "highway", "name", "Stra\u00dfe \u20ac", "", "highway" };
+		final ByteArrayOutputStream compact = new ByteArrayOutputStream();
+		final CompactObjectOutput out = new CompactObjectOutput(compact, 16);
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		final ObjectOutputStream oos = new ObjectOutputStream(plain);
+		for (int i = 0; i < 100; ++i) {
+			for (final String str : strings) {
+				StreamIo.writeString(out, str);
+				StreamIo.writeString(oos, str);
+			}
+		}
+		out.flush();
+		oos.flush();
+		assertTrue(compact.size() < plain.size() / 2);
+		// more strings than the table keeps, "highway" is written again
+		for (int i = 0; i <= CompactObjectOutput.STRING_TABLE_SIZE; ++i) {
+			StreamIo.writeString(out, Integer.toString(i));
+		}
+		StreamIo.writeString(out, "highway");
+		out.resetStrings();
+		StreamIo.writeString(out, "name");
+		out.close();
+		oos.close();
+
+		final CompactObjectInput in = new CompactObjectInput(new ByteArrayInputStream(compact
+				.toByteArray()), 16);
+		final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(plain
+				.toByteArray()));
+		for (int i = 0; i < 100; ++i) {
+			for (final String str : strings) {
+				assertEquals(str, StreamIo.readString(in));
+				assertEquals(str, StreamIo.readString(ois));
+			}
+		}
+		for (int i = 0; i <= CompactObjectOutput.STRING_TABLE_SIZE; ++i) {
+			assertEquals(Integer.toString(i), StreamIo.readString(in));
+		}
+		assertEquals("highway", StreamIo.readString(in));
+		in.resetStrings();
+		assertEquals("name", StreamIo.readString(in));
+		assertEquals(-1, in.read());
+		in.close();
+		ois.close();
+	}
+
+	@Test
+	public void testJsonLines() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final JsonObjectOutput out = new JsonObjectOutput(bytes);
+		out.writeInt(-12);
+		StreamIo.writeString(out, "a\"b\\c\n\u00e4\u0001");
+		StreamIo.writeSignedVarLong(out, -3);
+		out.endRecord();
+		out.endRecord();
+		for (final long n : NUMBERS) {
+			out.writeLong(n);
+			out.writeShort((int) n);
+			out.writeByte((int) n);
+			out.writeDouble(n / 3.0);
+			out.writeBoolean(n > 0);
+			StreamIo.writeVarLong(out, n);
+		}
+		out.writeDouble(Double.NaN);
+		out.write(new byte[] { 1, -1 });
+		out.endRecord();
+		out.close();
+		final String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(text, text.startsWith("[-12,\"a\\\"b\\\\c\\n\u00e4\\u0001\",-3]\n[]\n["));
+
+		final JsonObjectInput in = new JsonObjectInput(new ByteArrayInputStream(bytes
+				.toByteArray()));
+		assertTrue(in.nextRecord());
+		assertEquals(-12, in.readInt());
+		assertEquals("a\"b\\c\n\u00e4\u0001", StreamIo.readString(in));
+		assertEquals(-3, StreamIo.readSignedVarLong(in));
+		in.endRecord();
+		assertTrue(in.nextRecord());
+		in.endRecord();
+		assertTrue(in.nextRecord());
+		for (final long n : NUMBERS) {
+			assertEquals(n, in.readLong());
+			assertEquals((short) n, in.readShort());
+			assertEquals((byte) n, in.readByte());
+			assertEquals(n / 3.0, in.readDouble(), 0);
+			assertEquals(n > 0, in.readBoolean());
+			assertEquals(n, StreamIo.readVarLong(in));
+		}
+		assertTrue(Double.isNaN(in.readDouble()));
+		final byte b[] = new byte[2];
+		in.readFully(b);
+		assertArrayEquals(new byte[] { 1, -1 }, b);
+		try {
+			in.readInt();
+			fail("reading behind the end of the record has to fail");
+		} catch (final EOFException e) {
+			// expected
+		}
+		in.endRecord();
+		assertFalse(in.nextRecord());
+		try {
+			in.readLine();
+			fail("the lines are the records");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("readLine"));
+		}
+		in.close();
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import mm.io.base.DecoupledInputStream;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class DecoupledInputStreamTestCase {
+
+	@Test
+	public void testRead() throws IOException {
+		final byte data[] = new byte[3000000];
+		new Random(42).nextBytes(data);
+		final InputStream in = new DecoupledInputStream(new ByteArrayInputStream(data));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte buffer[] = new byte[1000];
+		final Random random = new Random(7);
+		assertEquals(data[0] & 0xff, in.read());
+		out.write(data[0]);
+		assertEquals(100, in.skip(100));
+		out.write(data, 1, 100);
+		int got;
+		while ((got = in.read(buffer, 0, 1 + random.nextInt(buffer.length))) >= 0) {
+			out.write(buffer, 0, got);
+		}
+		assertEquals(-1, in.read());
+		in.close();
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void testError() throws IOException {
+		final InputStream failing = new InputStream() {
+			private int count = 0;
+
+			@Override
+			public int read() throws IOException {
+				if (++count > 200000) {
+					throw new IOException("broken source");
+				}
+				return count & 0xff;
+			}
+		};
+		final InputStream in = new DecoupledInputStream(failing);
+		int count = 0;
+		try {
+			while (in.read() >= 0) {
+				count++;
+			}
+			fail("the error of the source has to reach the consumer");
+		} catch (final IOException e) {
+			assertEquals("broken source", e.getMessage());
+		}
+		assertEquals(200000, count);
+		in.close();
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		final boolean closed[] = new boolean[1];
+		final InputStream endless = new InputStream() {
+			@Override
+			public int read() {
+				return 1;
+			}
+
+			@Override
+			public void close() {
+				synchronized (closed) {
+					closed[0] = true;
+					closed.notifyAll();
+				}
+			}
+		};
+		final InputStream in = new DecoupledInputStream(endless);
+		assertEquals(1, in.read());
+		in.close();
+		synchronized (closed) {
+			final long end = System.currentTimeMillis() + 10000;
+			while (!closed[0] && System.currentTimeMillis() < end) {
+				try {
+					closed.wait(100);
+				} catch (final InterruptedException e) {
+					break;
+				}
+			}
+		}
+		assertTrue("the reader thread has to close the source", closed[0]);
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import mm.io.base.DecoupledOutputStream;
+import mm.io.base.WriteBehindService;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class DecoupledOutputStreamTestCase {
+
+	@Test
+	public void testManyStreams() throws IOException {
+		// less budget and threads than streams
+		final WriteBehindService service = new WriteBehindService(1,
+				2 * WriteBehindService.CHUNK_SIZE);
+		final byte data[] = new byte[1000000];
+		new Random(42).nextBytes(data);
+		final ByteArrayOutputStream dests[] = new ByteArrayOutputStream[10];
+		final OutputStream streams[] = new OutputStream[dests.length];
+		for (int i = 0; i < dests.length; ++i) {
+			dests[i] = new ByteArrayOutputStream();
+			streams[i] = new DecoupledOutputStream(dests[i], service);
+		}
+		final Random random = new Random(7);
+		int pos = 0;
+		while (pos < data.length) {
+			final int len = Math.min(data.length - pos, random.nextInt(5000));
+			for (final OutputStream stream : streams) {
+				if (len == 1) {
+					stream.write(data[pos]);
+				} else {
+					stream.write(data, pos, len);
+				}
+			}
+			pos += len;
+		}
+		for (final OutputStream stream : streams) {
+			stream.close();
+		}
+		for (final ByteArrayOutputStream dest : dests) {
+			assertArrayEquals(data, dest.toByteArray());
+		}
+	}
+
+	@Test
+	public void testError() throws IOException {
+		final OutputStream failing = new OutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				throw new IOException("disk full");
+			}
+		};
+		final OutputStream out = new DecoupledOutputStream(failing);
+		out.write(new byte[10]);
+		try {
+			out.close();
+			fail("the error of the destination has to reach the writer");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.RandomAccessFile;
+
+import mm.io.base.BlockReader;
+import mm.io.help.TestStreamable;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class FramedStreamTestCase {
+
+	private static final int COUNT = 100000;
+
+	@Test
+	public void testSplit() throws IOException {
+		final File f = write();
+		final long offsets[] = BlockReader.getBlockOffsets(f);
+		assertTrue("several blocks expected", offsets.length > 3);
+		assertEquals(f.length() - 16, offsets[offsets.length - 1]);
+		// read the file in two parts
+		final int middle = offsets.length / 2;
+		int expected = 0;
+		expected = read(new StreamableIterator<>(f, new TestFactory(), 0, offsets[middle]),
+				expected);
+		assertTrue(expected > 0 && expected < COUNT);
+		expected = read(new StreamableIterator<>(f, new TestFactory(), offsets[middle],
+				offsets[offsets.length - 1]), expected);
+		assertEquals(COUNT, expected);
+		f.delete();
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		final File f = write();
+		final long offsets[] = BlockReader.getBlockOffsets(f);
+		// cut the trailer off, all blocks are complete
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.setLength(offsets[offsets.length - 1]);
+		}
+		assertFails(f);
+		// cut within a block
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.setLength(offsets[1] + 100);
+		}
+		assertFails(f);
+		f.delete();
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		final File f = write();
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.seek(1000);
+			final int b = raf.read();
+			raf.seek(1000);
+			raf.write(b ^ 1);
+		}
+		assertFails(f);
+		f.delete();
+	}
+
+	@Test
+	public void testCompressed() throws IOException {
+		final File plain = write();
+		StreamFormat.setCompressionLevel(1);
+		final File f;
+		try {
+			f = write();
+		} finally {
+			StreamFormat.setCompressionLevel(-1);
+		}
+		assertTrue(f.length() < plain.length() / 2);
+		final long offsets[] = BlockReader.getBlockOffsets(f);
+		final int middle = offsets.length / 2;
+		int expected = read(new StreamableIterator<>(f, new TestFactory(), 0, offsets[middle]),
+				0);
+		expected = read(new StreamableIterator<>(f, new TestFactory(), offsets[middle],
+				offsets[offsets.length - 1]), expected);
+		assertEquals(COUNT, expected);
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.seek(offsets[1] + 100);
+			final int b = raf.read();
+			raf.seek(offsets[1] + 100);
+			raf.write(b ^ 1);
+		}
+		assertFails(f);
+		plain.delete();
+		f.delete();
+	}
+
+	@Test
+	public void testStrings() throws IOException {
+		final File f = File.createTempFile("framed", "dat");
+		final StreamableWriter<NamedStreamable> writer = new StreamableWriter<>(
+				new FileOutputStream(f), StreamFormat.FRAMED);
+		for (int i = 0; i < COUNT; ++i) {
+			writer.writeStreamable(new NamedStreamable(i));
+		}
+		writer.close();
+		final long offsets[] = BlockReader.getBlockOffsets(f);
+		assertTrue("several blocks expected", offsets.length > 3);
+		// every block has to be readable without the strings of the blocks before
+		int expected = 0;
+		for (int block = 0; block < offsets.length - 1; ++block) {
+			final StreamableIterator<NamedStreamable> iter = new StreamableIterator<>(f,
+					new StreamableFactory<NamedStreamable>() {
+						@Override
+						public NamedStreamable construct() {
+							return new NamedStreamable();
+						}
+					}, offsets[block], offsets[block + 1]);
+			while (iter.hasNext()) {
+				final NamedStreamable element = iter.next();
+				assertEquals(expected, element.getMyId());
+				assertEquals(NamedStreamable.name(expected), element.name);
+				expected++;
+			}
+		}
+		assertEquals(COUNT, expected);
+		f.delete();
+	}
+
+	private static File write() throws IOException {
+		final File f = File.createTempFile("framed", "dat");
+		final StreamableWriter<TestStreamable> writer = new StreamableWriter<>(
+				new FileOutputStream(f), StreamFormat.FRAMED);
+		for (int i = 0; i < COUNT; ++i) {
+			writer.writeStreamable(new TestStreamable(i));
+		}
+		writer.close();
+		return f;
+	}
+
+	private static int read(final StreamableIterator<TestStreamable> iter, final int first)
+			throws IOException {
+		int expected = first;
+		while (iter.hasNext()) {
+			assertEquals(expected++, iter.next().getMyId());
+		}
+		return expected;
+	}
+
+	private static void assertFails(final File f) throws IOException {
+		try {
+			final StreamableIterator<TestStreamable> iter = new StreamableIterator<>(
+					new FileInputStream(f), new TestFactory(), StreamFormat.FRAMED);
+			read(iter, 0);
+			fail("reading a broken file has to fail");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	private static class TestFactory implements StreamableFactory<TestStreamable> {
+		@Override
+		public TestStreamable construct() {
+			return new TestStreamable();
+		}
+	}
+
+	private static class NamedStreamable extends TestStreamable {
+		private String name = null;
+
+		public NamedStreamable() {
+			super();
+		}
+
+		public NamedStreamable(final int myId) {
+			super(myId);
+			name = name(myId);
+		}
+
+		static String name(final int myId) {
+			return "name\u00e4" + myId % 100;
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			super.writeExternal(out);
+			StreamIo.writeString(out, name);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+			super.readExternal(in);
+			name = StreamIo.readString(in);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class MappedRandomAccessFileTestCase {
+
+	@Test
+	public void testWrite() throws IOException {
+		final long numberOfWrites = 8000;
+		final File f = File.createTempFile("mapped", "test");
+		final MappedRandomAccessFile raf = new MappedRandomAccessFile(f, "rw");
+		for (long i = 0; i < numberOfWrites; ++i) {
+			raf.writeLong(i);
+		}
+		raf.seek(8);
+		assertEquals(1, raf.readLong());
+		raf.close();
+		assertEquals(numberOfWrites * 8, f.length());
+		final java.io.RandomAccessFile testRaf = new java.io.RandomAccessFile(f, "r");
+		for (long i = 0; i < numberOfWrites; ++i) {
+			assertEquals(i, testRaf.readLong());
+		}
+		testRaf.close();
+		f.delete();
+	}
+
+	/**
+	 * the file grows by whole segments while it is open and is truncated to
+	 * its length by close
+	 */
+	@Test
+	public void testGrowth() throws IOException {
+		final File f = File.createTempFile("mapped", "test");
+		final MappedRandomAccessFile raf = new MappedRandomAccessFile(f, "rw");
+		raf.writeLong(1);
+		raf.seek(0);
+		assertEquals(1, raf.readLong());
+		raf.writeInt(2);
+		assertEquals(12, raf.length());
+		assertEquals(MappedRandomAccessFile.SEGMENT_SIZE, f.length());
+		raf.seek(8);
+		assertEquals(2, raf.readInt());
+		assertEquals(-1, raf.read());
+		raf.seek(4);
+		raf.writeLong(3);
+		assertEquals(12, raf.length());
+		raf.seek(4);
+		assertEquals(3, raf.readLong());
+		raf.setLength(4);
+		assertEquals(4, raf.length());
+		assertEquals(-1, raf.read());
+		raf.seek(8);
+		raf.writeInt(5);
+		raf.seek(4);
+		assertEquals(0, raf.readInt());
+		assertEquals(5, raf.readInt());
+		raf.close();
+		assertEquals(12, f.length());
+		f.delete();
+	}
+
+	@Test
+	public void testSegments() throws IOException {
+		final File f = File.createTempFile("mapped", "test");
+		final long start = MappedRandomAccessFile.SEGMENT_SIZE - 4;
+		final MappedRandomAccessFile raf = new MappedRandomAccessFile(f, "rw");
+		raf.seek(start);
+		raf.writeLong(0x0102030405060708L);
+		raf.writeInt(42);
+		raf.close();
+		assertEquals(start + 12, f.length());
+		final MappedRandomAccessFile reader = new MappedRandomAccessFile(f, "r");
+		reader.seek(start);
+		assertEquals(0x0102030405060708L, reader.readLong());
+		assertEquals(42, reader.readInt());
+		assertEquals(-1, reader.read());
+		try {
+			reader.write(1);
+			fail("the file is opened for reading only");
+		} catch (final IOException e) {
+			// expected
+		}
+		reader.close();
+		f.delete();
+	}
+}
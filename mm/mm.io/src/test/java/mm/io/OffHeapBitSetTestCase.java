@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import mm.io.base.OffHeapBitSet;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class OffHeapBitSetTestCase {
+
+	@Test
+	public void testSetAndGet() {
+		final OffHeapBitSet bits = new OffHeapBitSet();
+		final long values[] = new long[] { 0, 1, 63, 64, -1, -64, 4000000000L, 12000000000L };
+		for (final long value : values) {
+			assertFalse(bits.get(value));
+			bits.set(value);
+		}
+		for (final long value : values) {
+			assertTrue(bits.get(value));
+		}
+		assertFalse(bits.get(2));
+		assertFalse(bits.get(-2));
+		assertFalse(bits.get(4000000001L));
+		bits.clear(64);
+		assertFalse(bits.get(64));
+		assertTrue(bits.get(63));
+		assertEquals(4 << 20, bits.getAllocatedBytes());
+	}
+
+	@Test
+	public void testDense() {
+		final OffHeapBitSet bits = new OffHeapBitSet();
+		final long count = 8L << 20;
+		for (long i = 0; i < count; i += 3) {
+			bits.set(i);
+		}
+		assertEquals(1 << 20, bits.getAllocatedBytes());
+		for (long i = 0; i < count; ++i) {
+			assertEquals(i % 3 == 0, bits.get(i));
+		}
+		bits.set(-count);
+		assertEquals(2 << 20, bits.getAllocatedBytes());
+	}
+}
@@ -72,4 +72,30 @@ public class RandomAccessFileTestCase {
 		}
 		testRaf.close();
 	}
+
+	@Test
+	public void testSmallCache() throws IOException {
+		final int numberOfWrites = 100000;
+		final File f = File.createTempFile("random", "test");
+		RandomAccessFile raf = new RandomAccessFile(f, "rw", 256, 8);
+		for (long i = 0; i < numberOfWrites; ++i) {
+			raf.writeLong(i);
+		}
+		// write into evicted pages, which may still be written behind
+		for (long i = 0; i < numberOfWrites; i += 997) {
+			raf.seek(i * 8);
+			raf.writeLong(-i);
+		}
+		raf.close();
+		assertEquals(numberOfWrites * 8, f.length());
+		raf = new RandomAccessFile(f, "r", 512, 4);
+		for (long i = 0; i < numberOfWrites; ++i) {
+			assertEquals(i % 997 == 0 ? -i : i, raf.readLong());
+		}
+		assertEquals(-1, raf.read());
+		raf.seek(8 * 5000);
+		assertEquals(5000, raf.readLong());
+		raf.close();
+		f.delete();
+	}
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mm.io.StreamableFilter.ID;
+import mm.io.StreamableFilter.SourceHandler;
+import mm.io.help.TestManyStreamable;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class StreamableMergerTestCase {
+
+	private static final SourceHandler<TestManyStreamable> HANDLER = new SourceHandler<TestManyStreamable>() {
+		@Override
+		public long getId(final TestManyStreamable instance) {
+			return instance.getMyId();
+		}
+	};
+
+	private static final StreamableFactory<TestManyStreamable> FACTORY = new StreamableFactory<TestManyStreamable>() {
+		@Override
+		public TestManyStreamable construct() {
+			return new TestManyStreamable();
+		}
+	};
+
+	private File write(final int ids[], final boolean changed[]) throws IOException {
+		final File f = File.createTempFile("merge", "dat");
+		f.deleteOnExit();
+		final StreamableWriter<TestManyStreamable> writer = new StreamableWriter<>(f);
+		for (int i = 0; i < ids.length; ++i) {
+			writer.writeStreamable(new TestManyStreamable(ids[i], changed[i]));
+		}
+		writer.close();
+		return f;
+	}
+
+	private File writeIds(final long ids[]) throws IOException {
+		final File f = File.createTempFile("merge", "id");
+		f.deleteOnExit();
+		final StreamableWriter<ID> writer = new StreamableWriter<>(f);
+		for (final long id : ids) {
+			writer.writeStreamable(new ID(id));
+		}
+		writer.close();
+		return f;
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+		final int sourceIds[] = new int[50];
+		for (int i = 0; i < sourceIds.length; ++i) {
+			sourceIds[i] = 2 * i;
+		}
+		final File source = write(sourceIds, new boolean[sourceIds.length]);
+		// id 4 is changed twice, the last change wins
+		final File changes = write(new int[] { 4, 4, 5, 98, 150 }, new boolean[] { false, true,
+				true, true, true });
+		final File deletes = writeIds(new long[] { 0, 10, 150 });
+		final File dest = File.createTempFile("merged", "dat");
+		dest.deleteOnExit();
+
+		final long counts[] = StreamableMerger.merge(source, changes, deletes, dest, FACTORY,
+				HANDLER);
+		assertArrayEquals(new long[] { 2, 1, 3 }, counts);
+
+		final List<Integer> ids = new ArrayList<>();
+		final StreamableIterator<TestManyStreamable> iter = new StreamableIterator<>(dest,
+				FACTORY);
+		while (iter.hasNext()) {
+			final TestManyStreamable merged = iter.next();
+			ids.add(Integer.valueOf(merged.getMyId()));
+			final int id = merged.getMyId();
+			assertEquals(id == 4 || id == 5 || id == 98, merged.isResolved());
+		}
+		assertEquals(49, ids.size());
+		assertEquals(Integer.valueOf(2), ids.get(0));
+		assertEquals(Integer.valueOf(4), ids.get(1));
+		assertEquals(Integer.valueOf(5), ids.get(2));
+		assertEquals(Integer.valueOf(6), ids.get(3));
+		assertEquals(Integer.valueOf(8), ids.get(4));
+		assertEquals(Integer.valueOf(12), ids.get(5));
+		assertEquals(Integer.valueOf(98), ids.get(48));
+	}
+
+	@Test
+	public void testUnsortedChanges() throws IOException {
+		final File source = write(new int[] { 1, 2, 3 }, new boolean[3]);
+		final File changes = write(new int[] { 3, 2 }, new boolean[2]);
+		final File dest = File.createTempFile("merged", "dat");
+		dest.deleteOnExit();
+		try {
+			StreamableMerger.merge(source, changes, writeIds(new long[0]), dest, FACTORY,
+					HANDLER);
+			fail("unsorted changes have to be reported");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+}
@@ -19,6 +19,7 @@
  */
 package mm.io;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -27,11 +28,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 import mm.io.StreamableFactory;
 import mm.io.StreamableIterator;
 import mm.io.StreamableSorter;
 import mm.io.StreamableWriter;
+import mm.io.base.HeapWatch;
 import mm.io.help.TestStreamable;
 
 import org.junit.Test;
@@ -85,6 +88,66 @@ public class StreamableSorterTestCase {
 		tempDir.delete();
 	}
 
+	/**
+	 * The old generation stays above its threshold, but there is no further
+	 * collection. The sorter must not write a first level file per element
+	 * and looks at the heap only every {@link StreamableSorter#HEAP_CHECK_INTERVAL}
+	 * elements.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testStickyHeapLow() throws IOException {
+		final File tempFile = File.createTempFile("sorter", "dat");
+		final File tempDir = File.createTempFile("sortertemp", "");
+		tempDir.delete();
+		tempDir.mkdirs();
+		final StreamableWriter<TestStreamable> writer = new StreamableWriter<>(tempFile);
+		for (int i = 3000; i > 0; --i) {
+			writer.writeStreamable(new TestStreamable(i));
+		}
+		writer.close();
+		final int runs[] = new int[1];
+		final int checks[] = new int[1];
+		final StreamableSorter<TestStreamable> sorter = new StreamableSorter<TestStreamable>(
+				tempFile, tempDir, new TestFactory(), new TestComparator()) {
+
+			@Override
+			protected HeapWatch createHeapWatch() {
+				return new HeapWatch(null) {
+
+					@Override
+					protected boolean isThresholdExceeded() {
+						checks[0]++;
+						return true;
+					}
+
+					@Override
+					protected long getCollectionCount() {
+						return 7;
+					}
+				};
+			}
+
+			@Override
+			protected void storeToTempFile(final Set<TestStreamable> data) throws IOException {
+				runs[0]++;
+				super.storeToTempFile(data);
+			}
+		};
+		sorter.process();
+		assertEquals(2, runs[0]);
+		assertEquals(3000 / StreamableSorter.HEAP_CHECK_INTERVAL, checks[0]);
+		int expected = 1;
+		for (final StreamableIterator<TestStreamable> iter = new StreamableIterator<>(tempFile,
+				new TestFactory()); iter.hasNext();) {
+			assertEquals(expected++, iter.next().getMyId());
+		}
+		assertEquals(3001, expected);
+		tempFile.delete();
+		tempDir.delete();
+	}
+
 	private static class TestFactory implements StreamableFactory<TestStreamable> {
 
 		@Override
@@ -19,8 +19,13 @@
  */
 package mm.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 
 import mm.io.StreamableFactory;
 import mm.io.StreamableIterator;
@@ -61,4 +66,85 @@ public class TestStreamWriteAndRead {
 			count++;
 		}
 	}
+
+	/**
+	 * the object streams written before the version was added are read with
+	 * the strings they were written with, unknown versions are rejected
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testObjectStreamVersions() throws IOException {
+		final ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+		final ObjectOutputStream oos = new ObjectOutputStream(legacy) {
+			@Override
+			protected void writeStreamHeader() throws IOException {
+				// the old writer had no header
+			}
+		};
+		final ByteArrayOutputStream current = new ByteArrayOutputStream();
+		final StreamableWriter<NamedStreamable> writer = new StreamableWriter<>(current,
+				StreamFormat.OBJECT_STREAM);
+		for (int i = 0; i < NUMBER_OF_TEST_ELEMENTS; ++i) {
+			final byte name[] = ("name " + i).getBytes();
+			oos.writeInt(i);
+			oos.writeInt(name.length);
+			oos.write(name);
+			writer.writeStreamable(new NamedStreamable(i, "name " + i));
+		}
+		oos.close();
+		writer.close();
+		assertNames(legacy.toByteArray());
+		assertNames(current.toByteArray());
+
+		final byte newer[] = current.toByteArray();
+		newer[7] = StreamFormat.OBJECT_STREAM_VERSION + 1;
+		try {
+			assertNames(newer);
+			Assert.fail("the version is not known");
+		} catch (final IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("version"));
+		}
+	}
+
+	private static void assertNames(final byte data[]) throws IOException {
+		final StreamableIterator<NamedStreamable> iter = new StreamableIterator<>(
+				new ByteArrayInputStream(data), new StreamableFactory<NamedStreamable>() {
+					@Override
+					public NamedStreamable construct() {
+						return new NamedStreamable(0, null);
+					}
+				}, StreamFormat.OBJECT_STREAM);
+		int count = 0;
+		while (iter.hasNext()) {
+			final NamedStreamable test = iter.next();
+			Assert.assertEquals(count, test.getMyId());
+			Assert.assertEquals("name " + count, test.name);
+			count++;
+		}
+		Assert.assertEquals(NUMBER_OF_TEST_ELEMENTS, count);
+	}
+
+	private static class NamedStreamable extends TestStreamable {
+
+		private String name;
+
+		public NamedStreamable(final int myId, final String name) {
+			super(myId);
+			this.name = name;
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			super.writeExternal(out);
+			StreamIo.writeString(out, name);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException,
+				ClassNotFoundException {
+			super.readExternal(in);
+			name = StreamIo.readString(in);
+		}
+	}
 }
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a file of two million tagged nodes with the O5mReader and with the
+ * ParallelO5mReader on one and more threads. On a machine with several cores
+ * the time of the ParallelO5mReader goes down with the threads, the ordered
+ * delivery on the calling thread included.
+ * 
+ * @author benno
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelO5mReaderBenchmark {
+
+	private static final int NUMBER_OF_NODES = 2000000;
+	private static final int RESET_INTERVAL = 10000;
+
+	@Param({ "1", "2", "4" })
+	public int threads;
+
+	private File f;
+
+	/**
+	 * writes a reset block in front of every 10000 nodes. The first node
+	 * behind a reset carries new tags, the others refer to them through the
+	 * string table.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		f = File.createTempFile("benchmark", ".o5m");
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(f));
+		out.write(new byte[] { (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			data.reset();
+			if (i % RESET_INTERVAL == 0) {
+				out.write(O5mReader.RESET);
+				// absolute id, no version, absolute lon and lat, inline tags
+				final long id = i + 1;
+				writeSigned(data, id);
+				data.write(0x00);
+				writeSigned(data, id);
+				writeSigned(data, id);
+				data.write(new byte[] { 0x00, 'n', 'a', 'm', 'e', 0x00, 'x', 0x00 });
+				data.write(new byte[] { 0x00, 'k', 0x00, 'v', 0x00 });
+			} else {
+				// id delta 1, no version, lon and lat delta +1, tags from table
+				data.write(new byte[] { 0x02, 0x00, 0x02, 0x02, 0x02, 0x01 });
+			}
+			out.write(O5mReader.NODE_ENTRY);
+			out.write(data.size());
+			data.writeTo(out);
+		}
+		out.write(O5mReader.END_OF_FILE);
+		out.close();
+	}
+
+	@TearDown
+	public void tearDown() {
+		f.delete();
+	}
+
+	private static void writeSigned(final ByteArrayOutputStream out, final long value) {
+		long u = value < 0 ? (~value << 1) | 1 : value << 1;
+		while (u >= 0x80) {
+			out.write((int) (u & 0x7f) | 0x80);
+			u >>>= 7;
+		}
+		out.write((int) u);
+	}
+
+	@Benchmark
+	public long sequential() throws IOException {
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		final CountingHandler handler = new CountingHandler();
+		reader.readFile(f, handler);
+		return handler.sum;
+	}
+
+	@Benchmark
+	public long parallel() throws IOException {
+		final ParallelO5mReader reader = new ParallelO5mReader(threads);
+		reader.setSegmentSize(1 << 20);
+		final CountingHandler handler = new CountingHandler();
+		reader.readFile(f, handler);
+		return handler.sum;
+	}
+
+	private static class CountingHandler implements O5mHandler {
+		private long sum = 0;
+
+		@Override
+		public void newNode(final O5mNode node) {
+			sum += node.getLat() + node.getProps().size();
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+		}
+	}
+}
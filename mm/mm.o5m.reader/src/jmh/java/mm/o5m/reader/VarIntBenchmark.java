@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the word at a time decoding of {@link VarInt} with the byte by
+ * byte decoding the O5mReader used before. The numbers look like the deltas
+ * of the node references of ways: mostly one or two bytes, some long jumps.
+ * 
+ * @author benno
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarIntBenchmark {
+
+	private static final int NUMBERS = 4096;
+
+	/** percentage of numbers with more than two bytes */
+	@Param({ "5", "50" })
+	public int longNumbers;
+
+	private ByteBuffer buffer;
+	private final long target[] = new long[NUMBERS];
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(4711);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < NUMBERS; ++i) {
+			final long delta = random.nextInt(100) < longNumbers ? random.nextInt() : random
+					.nextInt(8000) - 4000;
+			long u = delta < 0 ? (~delta << 1) | 1 : delta << 1;
+			while ((u & ~0x7fL) != 0) {
+				out.write((int) (u & 0x7f) | 0x80);
+				u >>>= 7;
+			}
+			out.write((int) u);
+		}
+		buffer = ByteBuffer.wrap(out.toByteArray());
+	}
+
+	/**
+	 * the signed decoding of the O5mReader before {@link VarInt}
+	 */
+	private static long readSigned64Bytewise(final ByteBuffer buffer) {
+		int shift = 6;
+		byte b = buffer.get();
+		long ret = (b & 0x7e) >> 1;
+		final long sign = b & 0x01;
+		while ((b & 0x80) == 0x80) {
+			b = buffer.get();
+			ret += ((long) b & 0x7f) << shift;
+			shift += 7;
+		}
+		if (sign == 1) {
+			ret = -1 - ret;
+		}
+		return ret;
+	}
+
+	@Benchmark
+	public void unsignedBytewise(final Blackhole blackhole) {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			blackhole.consume(VarInt.readUnsigned64Bytewise(buffer));
+		}
+	}
+
+	@Benchmark
+	public void unsignedWordwise(final Blackhole blackhole) {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			blackhole.consume(VarInt.readUnsigned64(buffer));
+		}
+	}
+
+	@Benchmark
+	public void signedBytewise(final Blackhole blackhole) {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			blackhole.consume(readSigned64Bytewise(buffer));
+		}
+	}
+
+	@Benchmark
+	public void signedWordwise(final Blackhole blackhole) {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			blackhole.consume(VarInt.readSigned64(buffer));
+		}
+	}
+
+	/**
+	 * the references of a way as they were decoded before
+	 */
+	@Benchmark
+	public List<Long> deltasIntoList() {
+		buffer.clear();
+		final List<Long> refs = new ArrayList<>();
+		long last = 0;
+		while (buffer.hasRemaining()) {
+			last += readSigned64Bytewise(buffer);
+			refs.add(Long.valueOf(last));
+		}
+		return refs;
+	}
+
+	@Benchmark
+	public long[] deltasIntoArray() {
+		buffer.clear();
+		VarInt.readDeltas(buffer, buffer.limit(), 0, target, 0);
+		return target;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.util.Date;
+
+/**
+ * Prints the progress of a read on the console: a dot for every million
+ * entities and a summary at the end.
+ * 
+ * @author benno
+ */
+public class ConsoleReadListener implements O5mReadListener {
+
+	private static final long ENTITIES_PER_DOT = 1000000;
+	private static final long DOTS_PER_LINE = 50;
+
+	private long dots = 0;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadListener#readStarted(mm.o5m.reader.O5mReadStatistics)
+	 */
+	@Override
+	public synchronized void readStarted(final O5mReadStatistics statistics) {
+		dots = 0;
+		System.out.println(new Date());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadListener#progress(mm.o5m.reader.O5mReadStatistics)
+	 */
+	@Override
+	public synchronized void progress(final O5mReadStatistics statistics) {
+		final long target = statistics.getEntities() / ENTITIES_PER_DOT;
+		while (dots < target) {
+			System.out.print(".");
+			dots++;
+			if (dots % DOTS_PER_LINE == 0) {
+				System.out.println();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadListener#readFinished(mm.o5m.reader.O5mReadStatistics)
+	 */
+	@Override
+	public synchronized void readFinished(final O5mReadStatistics statistics) {
+		System.out.println();
+		System.out.println("There are so many Nodes :" + statistics.getNodes());
+		System.out.println("There are so many Ways :" + statistics.getWays());
+		System.out.println("There are so many Relations :" + statistics.getRelations());
+		System.out.println("Read " + statistics.getBytesRead() + " bytes in "
+				+ statistics.getElapsedMillis() + " ms (io " + statistics.getIoTimeMillis()
+				+ " ms, decoding " + statistics.getDecodeTimeMillis() + " ms, handler "
+				+ statistics.getHandleTimeMillis() + " ms), "
+				+ statistics.getEntitiesPerSecond() + " entities/s");
+		System.out.println(new Date());
+	}
+}
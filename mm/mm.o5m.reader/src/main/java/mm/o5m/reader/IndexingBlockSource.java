@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Block source collecting the {@link O5mIndex} of the file while another
+ * source is read from the beginning of the file to its end, so a reader can
+ * store the index without scanning the file once more.
+ * 
+ * @author benno
+ */
+class IndexingBlockSource implements O5mBlockSource {
+
+	private final File f;
+	private final O5mBlockSource source;
+	private final long length;
+	private final long modified;
+	private long lastReset = 0;
+	private long ways = -1;
+	private long relations = -1;
+	private long firstWay = -1;
+	private long firstRelation = -1;
+	private long jumps[] = new long[16];
+	private int jumpCount = 0;
+	private long syncs[] = new long[16];
+	private int syncCount = 0;
+	private boolean complete = false;
+
+	/**
+	 * @param f
+	 *            the o5m file
+	 * @param source
+	 *            source reading the file from its beginning
+	 */
+	public IndexingBlockSource(final File f, final O5mBlockSource source) {
+		super();
+		this.f = f;
+		this.source = source;
+		this.length = f.length();
+		this.modified = f.lastModified();
+	}
+
+	/**
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset reading starts at
+	 * @param end
+	 *            offset reading stops at, -1 for the end of the file
+	 * @return true when the read sees all blocks of the file and there is no
+	 *         up to date index yet
+	 * @throws IOException
+	 */
+	static boolean isNeeded(final File f, final long start, final long end)
+			throws IOException {
+		return start == 0 && end < 0 && O5mIndex.load(f) == null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#nextBlock()
+	 */
+	@Override
+	public int nextBlock() throws IOException {
+		final int blockType = source.nextBlock();
+		final long offset = source.getBlockOffset();
+		switch (blockType) {
+		case -1:
+		case O5mReader.END_OF_FILE:
+			complete = true;
+			break;
+		case O5mReader.RESET:
+			lastReset = offset;
+			break;
+		case O5mReader.WAY_ENTRY:
+			if (ways < 0) {
+				ways = lastReset;
+				firstWay = offset;
+			}
+			break;
+		case O5mReader.RELATION_ENTRY:
+			if (relations < 0) {
+				relations = lastReset;
+				firstRelation = offset;
+			}
+			break;
+		case O5mReader.JUMP_POINT:
+			if (jumpCount == jumps.length) {
+				jumps = Arrays.copyOf(jumps, 2 * jumpCount);
+			}
+			jumps[jumpCount++] = offset;
+			break;
+		case O5mReader.SYNC_POINT:
+			if (syncCount == syncs.length) {
+				syncs = Arrays.copyOf(syncs, 2 * syncCount);
+			}
+			syncs[syncCount++] = offset;
+			break;
+		default:
+			break;
+		}
+		return blockType;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockData()
+	 */
+	@Override
+	public ByteBuffer getBlockData() {
+		return source.getBlockData();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockOffset()
+	 */
+	@Override
+	public long getBlockOffset() {
+		return source.getBlockOffset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	/**
+	 * @return true when the end of the file has been reached
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return the index of the blocks read so far, which is the index of the
+	 *         file when the source is complete
+	 */
+	public O5mIndex getIndex() {
+		// a missing section starts at the end, reading it finds nothing
+		final long relationOffset = relations < 0 ? length : relations;
+		final long wayEnd = relations < 0 ? length : firstRelation;
+		final long wayOffset = ways < 0 ? relationOffset : ways;
+		final long nodeEnd = ways < 0 ? wayEnd : firstWay;
+		return new O5mIndex(length, modified, wayOffset, relationOffset, nodeEnd, wayEnd,
+				Arrays.copyOf(jumps, jumpCount), Arrays.copyOf(syncs, syncCount));
+	}
+
+	/**
+	 * stores the index next to the file when the end of the file has been
+	 * reached. An index that can not be stored is left out, like
+	 * {@link O5mIndex#forFile(File)} does.
+	 */
+	public void writeIndex() {
+		if (!complete) {
+			return;
+		}
+		final File indexFile = O5mIndex.getIndexFile(f);
+		try {
+			getIndex().write(indexFile);
+		} catch (final IOException e) {
+			// the readers find no index and read the whole file
+			indexFile.delete();
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Block source mapping the o5m file into memory. The file is mapped in
+ * sliding windows and the block data is handed out as a view of the mapped
+ * region, so no block is copied before it is decoded.
+ * 
+ * @author benno
+ */
+public class MappedBlockSource implements O5mBlockSource {
+
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+	/** type byte plus the longest length that fits into an int */
+	private static final int MAX_HEADER_LENGTH = 6;
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long fileSize;
+	private final int windowSize;
+	private MappedByteBuffer window = null;
+	private ByteBuffer view = null;
+	private long windowStart = 0;
+	private long offset = 0;
+	private long blockOffset = 0;
+	private ByteBuffer data = null;
+
+	/**
+	 * @param f
+	 *            o5m file to read
+	 * @throws IOException
+	 */
+	public MappedBlockSource(final File f) throws IOException {
+		this(f, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param f
+	 *            o5m file to read
+	 * @param windowSize
+	 *            size of the region that is mapped at once. Blocks that are
+	 *            bigger get a window of their own size.
+	 * @throws IOException
+	 */
+	public MappedBlockSource(final File f, final int windowSize) throws IOException {
+		this(f, 0, -1, windowSize);
+	}
+
+	/**
+	 * Constructor for reading a part of the file only.
+	 * 
+	 * @param f
+	 *            o5m file to read
+	 * @param start
+	 *            offset of the first block that shall be read
+	 * @param end
+	 *            offset behind the last block that shall be read, -1 for the
+	 *            end of the file
+	 * @param windowSize
+	 *            size of the region that is mapped at once.
+	 * @throws IOException
+	 */
+	public MappedBlockSource(final File f, final long start, final long end,
+			final int windowSize) throws IOException {
+		super();
+		raf = new RandomAccessFile(f, "r");
+		channel = raf.getChannel();
+		fileSize = end < 0 ? channel.size() : Math.min(end, channel.size());
+		offset = start;
+		blockOffset = start;
+		this.windowSize = Math.max(windowSize, MAX_HEADER_LENGTH);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#nextBlock()
+	 */
+	@Override
+	public int nextBlock() throws IOException {
+		blockOffset = offset;
+		data = null;
+		if (offset >= fileSize) {
+			return -1;
+		}
+		ensureMapped(offset, MAX_HEADER_LENGTH);
+		view.limit(view.capacity());
+		view.position((int) (offset - windowStart));
+		final int blockType = view.get() & 0xff;
+		if (blockType <= 0xEF) {
+			int shift = 0;
+			int b = readByte();
+			int blockLength = b & 0x7f;
+			while ((b & 0x80) == 0x80) {
+				shift += 7;
+				b = readByte();
+				blockLength += (b & 0x7f) << shift;
+			}
+			final long dataStart = windowStart + view.position();
+			if (dataStart + blockLength > fileSize) {
+				throw new EOFException("Block at " + blockOffset + " is truncated");
+			}
+			ensureMapped(dataStart, blockLength);
+			final int start = (int) (dataStart - windowStart);
+			view.limit(start + blockLength);
+			view.position(start);
+			data = view;
+			offset = dataStart + blockLength;
+		} else {
+			offset = windowStart + view.position();
+		}
+		return blockType;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockData()
+	 */
+	@Override
+	public ByteBuffer getBlockData() {
+		return data;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockOffset()
+	 */
+	@Override
+	public long getBlockOffset() {
+		return blockOffset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		window = null;
+		view = null;
+		data = null;
+		raf.close();
+	}
+
+	private int readByte() throws IOException {
+		if (!view.hasRemaining()) {
+			throw new EOFException("Block at " + blockOffset + " is truncated");
+		}
+		return view.get() & 0xff;
+	}
+
+	/**
+	 * Makes sure that the given region of the file lays within the current
+	 * window. Otherwise a new window starting at pos is mapped. Regions behind
+	 * the end of the file are cut to the file size.
+	 * 
+	 * @param pos
+	 *            start of the region within the file
+	 * @param length
+	 *            length of the region
+	 * @throws IOException
+	 */
+	private void ensureMapped(final long pos, final int length) throws IOException {
+		final long end = Math.min(fileSize, pos + length);
+		if (window == null || pos < windowStart || end > windowStart + window.capacity()) {
+			final long size = Math.min(fileSize - pos, Math.max(windowSize, length));
+			window = channel.map(MapMode.READ_ONLY, pos, size);
+			view = window.duplicate();
+			windowStart = pos;
+		}
+	}
+}
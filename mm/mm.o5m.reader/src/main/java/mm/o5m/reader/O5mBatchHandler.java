@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.IOException;
+
+/**
+ * Handler getting the nodes in batches instead of one by one. The readers
+ * call newNodes instead of newNode for such a handler. The order of the file
+ * is kept, all nodes in front of a way or relation are delivered before it.
+ * 
+ * @author benno
+ */
+public interface O5mBatchHandler extends O5mHandler {
+
+	/**
+	 * @param batch
+	 *            the next nodes of the file, only valid during the call
+	 * @throws IOException
+	 */
+	void newNodes(O5mNodeBatch batch) throws IOException;
+}
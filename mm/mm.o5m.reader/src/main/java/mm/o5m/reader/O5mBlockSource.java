@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Splits an o5m file into its blocks. A block consists of a type byte and,
+ * for the types 0x00 to 0xEF, a length and the data belonging to it.
+ * 
+ * @author benno
+ */
+public interface O5mBlockSource extends Closeable {
+
+	/**
+	 * Moves to the next block of the file.
+	 * 
+	 * @return the type of the block or -1 when the end of the input is
+	 *         reached.
+	 * @throws IOException
+	 */
+	int nextBlock() throws IOException;
+
+	/**
+	 * The data of the block returned by the last call of nextBlock. The buffer
+	 * is positioned at the first byte of the data and limited to its end. It
+	 * is only valid until nextBlock is called again.
+	 * 
+	 * @return the data or null when the block type carries no data
+	 */
+	ByteBuffer getBlockData();
+
+	/**
+	 * @return the position of the type byte of the current block within the
+	 *         file
+	 */
+	long getBlockOffset();
+}
@@ -21,9 +21,17 @@ package mm.o5m.reader;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
+ * Base of the decoded o5m entities. The tags and the author are kept as slots
+ * of the string table and are only turned into Strings when they are asked
+ * for. They are valid until the next entity is decoded.
+ * 
+ * Besides the props map the tags can be read by index, as Strings or as ids
+ * of the {@link TagDictionary}.
+ * 
  * @author benno
  * 
  */
@@ -35,43 +43,209 @@ public class O5mDataObject {
 	private int lastChangeSet;
 	private String author;
 	private String uid;
+	private int authorSlot = -1;
+	private O5mStringTable strings = null;
+	private int tagSlots[] = new int[16];
+	private String tagStrings[] = null;
+	private int tagCount = 0;
+	private boolean propsValid = true;
+	private boolean deleted = false;
 	protected HashMap<String, String> props = new HashMap<>();
 
 	public void readFromBuffer(final ByteBuffer buffer, final O5mReader reader) throws IOException {
-		props.clear();
+		strings = reader.getStringTable();
+		strings.clearScratch();
+		tagCount = 0;
+		propsValid = false;
+		deleted = true;
+		authorSlot = -1;
+		author = null;
+		uid = null;
 	}
 
 	public void readUidAuthorTSFromBuffer(final ByteBuffer buffer, final O5mReader reader)
 			throws IOException {
+		final boolean metadata = reader.getDecodeHints().isMetadata();
 		version = reader.readUnsigned32(buffer);
 		if (version != 0) {
 			lastTimeStamp = timeStamp = lastTimeStamp + reader.readSigned32(buffer);
 			if (timeStamp != 0) {
-				lastChangeSet = changeSet = reader.readSigned32(buffer) + lastChangeSet;
-				final String author[] = reader.readAuthor(buffer);
-				uid = author[0];
-				this.author = author[1];
+				if (metadata) {
+					lastChangeSet = changeSet = reader.readSigned32(buffer) + lastChangeSet;
+					authorSlot = reader.getStringTable().readPair(buffer);
+				} else {
+					reader.skipVarint(buffer);
+					reader.getStringTable().readPair(buffer);
+				}
 			}
 		}
 	}
 
 	public void readProps(final ByteBuffer buffer, final O5mReader reader) throws IOException {
+		readProps(buffer, reader, true);
+	}
+
+	/**
+	 * reads the tags at the end of an entity
+	 * 
+	 * @param buffer
+	 * @param reader
+	 * @param wanted
+	 *            false if the tags only have to be put into the string table
+	 * @throws IOException
+	 */
+	protected void readProps(final ByteBuffer buffer, final O5mReader reader,
+			final boolean wanted) throws IOException {
+		final O5mDecodeHints hints = reader.getDecodeHints();
+		final boolean allKeys = hints.isAllKeys();
 		while (buffer.hasRemaining()) {
-			final String prop[] = reader.readStringPair(buffer);
-			final String key = prop[0];
-			final String val = prop[1];
-			if (prop[1] == null) {
-				System.out.println();
+			final int slot = strings.readPair(buffer);
+			if (wanted && (allKeys || hints.isKeyWanted(strings.getFirstId(slot)))) {
+				if (tagCount == tagSlots.length) {
+					tagSlots = Arrays.copyOf(tagSlots, 2 * tagCount);
+				}
+				tagSlots[tagCount++] = slot;
+			}
+		}
+	}
+
+	/**
+	 * steps over an entity the handler is not interested in. Only the strings
+	 * are put into the string table, nothing else is decoded.
+	 * 
+	 * @param buffer
+	 * @param reader
+	 * @throws IOException
+	 */
+	public void skipFromBuffer(final ByteBuffer buffer, final O5mReader reader)
+			throws IOException {
+		final O5mStringTable table = reader.getStringTable();
+		table.clearScratch();
+		reader.skipVarint(buffer);
+		if (!buffer.hasRemaining()) {
+			return;
+		}
+		if (reader.readUnsigned32(buffer) != 0) {
+			lastTimeStamp += reader.readSigned32(buffer);
+			if (lastTimeStamp != 0) {
+				reader.skipVarint(buffer);
+				table.readPair(buffer);
 			}
-			props.put(key, val);
+		}
+		if (!buffer.hasRemaining()) {
+			return;
+		}
+		skipBody(buffer, reader);
+		while (buffer.hasRemaining()) {
+			table.readPair(buffer);
 		}
 	}
 
+	/**
+	 * steps over the part between the metadata and the tags
+	 * 
+	 * @param buffer
+	 * @param reader
+	 * @throws IOException
+	 */
+	protected void skipBody(final ByteBuffer buffer, final O5mReader reader) throws IOException {
+	}
+
 	public void reset() {
 		lastTimeStamp = 0;
 		lastChangeSet = 0;
 	}
 
+	/**
+	 * takes over the decoded values of another object, but not its delta
+	 * state.
+	 * 
+	 * @param other
+	 *            object to copy from
+	 */
+	protected void copyFrom(final O5mDataObject other) {
+		version = other.version;
+		deleted = other.deleted;
+		timeStamp = other.timeStamp;
+		changeSet = other.changeSet;
+		author = other.getAuthor();
+		uid = other.getUid();
+		authorSlot = -1;
+		tagCount = other.getTagCount();
+		tagStrings = new String[2 * tagCount];
+		for (int i = 0; i < tagCount; ++i) {
+			tagStrings[2 * i] = other.getTagKey(i);
+			tagStrings[2 * i + 1] = other.getTagValue(i);
+		}
+		strings = null;
+		propsValid = false;
+	}
+
+	/**
+	 * sets the metadata of an entity that is not decoded from an o5m buffer,
+	 * e.g. by a reader of another format.
+	 * 
+	 * @param version
+	 *            the version, 0 if unknown
+	 * @param timeStamp
+	 *            seconds since 1970
+	 * @param changeSet
+	 *            the changeset
+	 * @param uid
+	 *            the uid of the author
+	 * @param author
+	 *            the name of the author
+	 */
+	public void setMetadata(final int version, final long timeStamp, final int changeSet,
+			final String uid, final String author) {
+		this.version = version;
+		this.timeStamp = (int) timeStamp;
+		this.changeSet = changeSet;
+		this.uid = uid;
+		this.author = author;
+		authorSlot = -1;
+	}
+
+	/**
+	 * sets the tags of an entity that is not decoded from an o5m buffer. The
+	 * array is used as it is, not copied.
+	 * 
+	 * @param tags
+	 *            the key of the tag i at 2 * i, its value at 2 * i + 1
+	 * @param count
+	 *            the number of tags
+	 */
+	public void setTags(final String tags[], final int count) {
+		strings = null;
+		tagStrings = tags;
+		tagCount = count;
+		propsValid = false;
+	}
+
+	/**
+	 * @return true if the entity has no body. In a change file (o5c) this
+	 *         marks a deleted entity.
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * marks an entity that is not decoded from an o5m buffer as deleted, the
+	 * {@link O5mWriter} writes it without body. Setting the entity again
+	 * makes it present.
+	 */
+	public void setDeleted() {
+		deleted = true;
+	}
+
+	/**
+	 * called by the subclasses when the entity has a body
+	 */
+	protected void setPresent() {
+		deleted = false;
+	}
+
 	/**
 	 * @return the version
 	 */
@@ -97,6 +271,9 @@ public class O5mDataObject {
 	 * @return the author
 	 */
 	public String getAuthor() {
+		if (author == null && authorSlot >= 0) {
+			author = strings.getSecond(authorSlot);
+		}
 		return author;
 	}
 
@@ -104,6 +281,10 @@ public class O5mDataObject {
 	 * @return the uid
 	 */
 	public String getUid() {
+		if (uid == null && authorSlot >= 0) {
+			final long id = strings.getFirstAsUnsigned(authorSlot);
+			uid = id == 0 ? "" : Long.toString(id);
+		}
 		return uid;
 	}
 
@@ -111,6 +292,82 @@ public class O5mDataObject {
 	 * @return the props
 	 */
 	public HashMap<String, String> getProps() {
+		if (!propsValid) {
+			props.clear();
+			for (int i = 0; i < tagCount; ++i) {
+				props.put(getTagKey(i), getTagValue(i));
+			}
+			propsValid = true;
+		}
 		return props;
 	}
+
+	/**
+	 * @return the number of tags
+	 */
+	public int getTagCount() {
+		return tagCount;
+	}
+
+	/**
+	 * @param index
+	 *            index of the tag
+	 * @return the key of the tag
+	 */
+	public String getTagKey(final int index) {
+		return strings == null ? tagStrings[2 * index] : strings.getFirst(tagSlots[index]);
+	}
+
+	/**
+	 * @param index
+	 *            index of the tag
+	 * @return the value of the tag
+	 */
+	public String getTagValue(final int index) {
+		return strings == null ? tagStrings[2 * index + 1] : strings.getSecond(tagSlots[index]);
+	}
+
+	/**
+	 * @param index
+	 *            index of the tag
+	 * @return the id of the key of the tag within the {@link TagDictionary}
+	 *         or -1 if the dictionary does not know the key
+	 */
+	public int getTagKeyId(final int index) {
+		return strings == null ? id(tagStrings[2 * index]) : strings.getFirstId(tagSlots[index]);
+	}
+
+	/**
+	 * @param index
+	 *            index of the tag
+	 * @return the id of the value of the tag within the {@link TagDictionary}
+	 *         or -1 if the dictionary does not know the value
+	 */
+	public int getTagValueId(final int index) {
+		return strings == null ? id(tagStrings[2 * index + 1]) : strings
+				.getSecondId(tagSlots[index]);
+	}
+
+	/**
+	 * checks a tag by its ids. Only the values of matching keys are looked up
+	 * in the dictionary.
+	 * 
+	 * @param keyId
+	 *            id of the key
+	 * @param valueId
+	 *            id of the value
+	 * @return true if the entity has this tag
+	 */
+	public boolean hasTag(final int keyId, final int valueId) {
+		for (int i = 0; i < tagCount; ++i) {
+			if (getTagKeyId(i) == keyId && getTagValueId(i) == valueId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int id(final String s) {
+		return s == null ? -1 : TagDictionary.getDefault().lookup(s);
+	}
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells the reader which parts of the entities a handler needs. Parts that
+ * are not needed are skipped without being decoded. Strings of skipped parts
+ * still go into the string table, because later entities may refer to them.
+ * 
+ * By default everything is decoded.
+ * 
+ * @author benno
+ */
+public class O5mDecodeHints {
+
+	private boolean metadata = true;
+	private boolean nodes = true;
+	private boolean ways = true;
+	private boolean relations = true;
+	private boolean nodeTags = true;
+	private boolean wayTags = true;
+	private boolean relationTags = true;
+	private boolean roles = true;
+	private Set<String> keys = null;
+	private BitSet keyIds = null;
+
+	/**
+	 * @param handler
+	 *            a handler
+	 * @return the hints of the handler or hints decoding everything
+	 */
+	public static O5mDecodeHints forHandler(final O5mHandler handler) {
+		O5mDecodeHints ret = null;
+		if (handler instanceof SelectiveO5mHandler) {
+			ret = ((SelectiveO5mHandler) handler).getDecodeHints();
+		}
+		return ret == null ? new O5mDecodeHints() : ret;
+	}
+
+	/**
+	 * @return true if version, timestamp, changeset and author are decoded
+	 */
+	public boolean isMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * @param metadata
+	 *            false to skip version, timestamp, changeset and author
+	 */
+	public void setMetadata(final boolean metadata) {
+		this.metadata = metadata;
+	}
+
+	/**
+	 * @return true if nodes are given to the handler
+	 */
+	public boolean isNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @param nodes
+	 *            false to skip all nodes
+	 */
+	public void setNodes(final boolean nodes) {
+		this.nodes = nodes;
+	}
+
+	/**
+	 * @return true if ways are given to the handler
+	 */
+	public boolean isWays() {
+		return ways;
+	}
+
+	/**
+	 * @param ways
+	 *            false to skip all ways
+	 */
+	public void setWays(final boolean ways) {
+		this.ways = ways;
+	}
+
+	/**
+	 * @return true if relations are given to the handler
+	 */
+	public boolean isRelations() {
+		return relations;
+	}
+
+	/**
+	 * @param relations
+	 *            false to skip all relations
+	 */
+	public void setRelations(final boolean relations) {
+		this.relations = relations;
+	}
+
+	/**
+	 * @return true if the tags of nodes are decoded
+	 */
+	public boolean isNodeTags() {
+		return nodeTags;
+	}
+
+	/**
+	 * @param nodeTags
+	 *            false to skip the tags of nodes
+	 */
+	public void setNodeTags(final boolean nodeTags) {
+		this.nodeTags = nodeTags;
+	}
+
+	/**
+	 * @return true if the tags of ways are decoded
+	 */
+	public boolean isWayTags() {
+		return wayTags;
+	}
+
+	/**
+	 * @param wayTags
+	 *            false to skip the tags of ways
+	 */
+	public void setWayTags(final boolean wayTags) {
+		this.wayTags = wayTags;
+	}
+
+	/**
+	 * @return true if the tags of relations are decoded
+	 */
+	public boolean isRelationTags() {
+		return relationTags;
+	}
+
+	/**
+	 * @param relationTags
+	 *            false to skip the tags of relations
+	 */
+	public void setRelationTags(final boolean relationTags) {
+		this.relationTags = relationTags;
+	}
+
+	/**
+	 * @return true if the roles of relation members are decoded
+	 */
+	public boolean isRoles() {
+		return roles;
+	}
+
+	/**
+	 * @param roles
+	 *            false to skip the roles of relation members. The type of the
+	 *            members is decoded anyway.
+	 */
+	public void setRoles(final boolean roles) {
+		this.roles = roles;
+	}
+
+	/**
+	 * @return the keys of the tags that are decoded, null for all keys
+	 */
+	public Set<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * @param keys
+	 *            the keys of the tags that are decoded, null for all keys
+	 */
+	public void setKeys(final Set<String> keys) {
+		if (keys == null) {
+			this.keys = null;
+			keyIds = null;
+		} else {
+			this.keys = Collections.unmodifiableSet(new HashSet<>(keys));
+			final BitSet ids = new BitSet();
+			for (final String key : keys) {
+				ids.set(TagDictionary.getDefault().getId(key));
+			}
+			keyIds = ids;
+		}
+	}
+
+	/**
+	 * @param keyId
+	 *            id of a key within the {@link TagDictionary}
+	 * @return true if tags with this key are decoded
+	 */
+	public boolean isKeyWanted(final int keyId) {
+		return keyIds == null || keyId >= 0 && keyIds.get(keyId);
+	}
+
+	/**
+	 * @return true if no key filter is set
+	 */
+	public boolean isAllKeys() {
+		return keyIds == null;
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Index of the sections of an o5m file. It keeps the offsets reading has to
+ * start at for the ways and for the relations, the offsets reading may stop
+ * at for the nodes and for the ways, and the offsets of all jump and sync
+ * points. A section offset is the offset of the last reset block in front of
+ * the first entity of the section, because the decoding state starts from
+ * scratch there. A section ends at its first entity of the next section.
+ * 
+ * The index is stored next to the o5m file with the extension .idx and is
+ * only used as long as length and modification time of the o5m file did not
+ * change.
+ * 
+ * @author benno
+ */
+public final class O5mIndex {
+
+	public static final String EXTENSION = ".idx";
+
+	private static final int MAGIC = 0x6f356d69;
+	private static final int VERSION = 2;
+
+	private final long fileLength;
+	private final long lastModified;
+	private final long wayOffset;
+	private final long relationOffset;
+	private final long nodeEnd;
+	private final long wayEnd;
+	private final long jumpPoints[];
+	private final long syncPoints[];
+
+	O5mIndex(final long fileLength, final long lastModified, final long wayOffset,
+			final long relationOffset, final long nodeEnd, final long wayEnd,
+			final long jumpPoints[], final long syncPoints[]) {
+		super();
+		this.fileLength = fileLength;
+		this.lastModified = lastModified;
+		this.wayOffset = wayOffset;
+		this.relationOffset = relationOffset;
+		this.nodeEnd = nodeEnd;
+		this.wayEnd = wayEnd;
+		this.jumpPoints = jumpPoints;
+		this.syncPoints = syncPoints;
+	}
+
+	/**
+	 * @param f
+	 *            an o5m file
+	 * @return the file the index of the o5m file is stored in
+	 */
+	public static File getIndexFile(final File f) {
+		return new File(f.getPath() + EXTENSION);
+	}
+
+	/**
+	 * scans the blocks of an o5m file without decoding them.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @return the index of the file
+	 * @throws IOException
+	 */
+	public static O5mIndex build(final File f) throws IOException {
+		final IndexingBlockSource source = new IndexingBlockSource(f, new MappedBlockSource(f));
+		try {
+			int blockType = source.nextBlock();
+			while (blockType >= 0 && blockType != O5mReader.END_OF_FILE) {
+				blockType = source.nextBlock();
+			}
+		} finally {
+			source.close();
+		}
+		return source.getIndex();
+	}
+
+	/**
+	 * loads the index of an o5m file.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @return the index or null if there is no index or it is out of date
+	 * @throws IOException
+	 */
+	public static O5mIndex load(final File f) throws IOException {
+		final File indexFile = getIndexFile(f);
+		if (!indexFile.exists()) {
+			return null;
+		}
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			final long length = in.readLong();
+			final long modified = in.readLong();
+			if (length != f.length() || modified != f.lastModified()) {
+				return null;
+			}
+			final long ways = in.readLong();
+			final long relations = in.readLong();
+			final long nodeEnd = in.readLong();
+			final long wayEnd = in.readLong();
+			final long jumps[] = readOffsets(in);
+			final long syncs[] = readOffsets(in);
+			return new O5mIndex(length, modified, ways, relations, nodeEnd, wayEnd, jumps, syncs);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * loads the index of an o5m file and builds it when it is missing or out
+	 * of date. An index that can not be stored next to the file, e.g. in a
+	 * read only directory, is returned all the same.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @return the index of the file
+	 * @throws IOException
+	 */
+	public static O5mIndex forFile(final File f) throws IOException {
+		O5mIndex ret = load(f);
+		if (ret == null) {
+			ret = build(f);
+			final File indexFile = getIndexFile(f);
+			try {
+				ret.write(indexFile);
+			} catch (final IOException e) {
+				// the readers find no index and read the whole file
+				indexFile.delete();
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * the offset reading has to start at for the entities wanted by the
+	 * hints. The nodes are only skipped when there is an up to date index.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param hints
+	 *            the hints of the handler
+	 * @return the offset to start reading at
+	 * @throws IOException
+	 */
+	public static long getStartOffset(final File f, final O5mDecodeHints hints)
+			throws IOException {
+		if (hints.isNodes()) {
+			return 0;
+		}
+		final O5mIndex index = load(f);
+		if (index == null) {
+			return 0;
+		}
+		return hints.isWays() ? index.getWayOffset() : index.getRelationOffset();
+	}
+
+	/**
+	 * the offset reading may stop at for the entities wanted by the hints.
+	 * The ways and relations are only skipped when there is an up to date
+	 * index.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param hints
+	 *            the hints of the handler
+	 * @return the offset to stop reading at, -1 for the end of the file
+	 * @throws IOException
+	 */
+	public static long getEndOffset(final File f, final O5mDecodeHints hints)
+			throws IOException {
+		if (hints.isRelations()) {
+			return -1;
+		}
+		final O5mIndex index = load(f);
+		if (index == null) {
+			return -1;
+		}
+		return hints.isWays() ? index.getWayEnd() : index.getNodeEnd();
+	}
+
+	/**
+	 * @param indexFile
+	 *            the file the index is written to
+	 * @throws IOException
+	 */
+	public void write(final File indexFile) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(fileLength);
+			out.writeLong(lastModified);
+			out.writeLong(wayOffset);
+			out.writeLong(relationOffset);
+			out.writeLong(nodeEnd);
+			out.writeLong(wayEnd);
+			writeOffsets(out, jumpPoints);
+			writeOffsets(out, syncPoints);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the offset to start reading the ways at, the end of the file if
+	 *         there are no ways and relations
+	 */
+	public long getWayOffset() {
+		return wayOffset;
+	}
+
+	/**
+	 * @return the offset to start reading the relations at, the end of the
+	 *         file if there are no relations
+	 */
+	public long getRelationOffset() {
+		return relationOffset;
+	}
+
+	/**
+	 * @return the offset of the first way or relation, the end of the file if
+	 *         there are only nodes
+	 */
+	public long getNodeEnd() {
+		return nodeEnd;
+	}
+
+	/**
+	 * @return the offset of the first relation, the end of the file if there
+	 *         are no relations
+	 */
+	public long getWayEnd() {
+		return wayEnd;
+	}
+
+	/**
+	 * @return the offsets of the jump points
+	 */
+	public long[] getJumpPoints() {
+		return jumpPoints.clone();
+	}
+
+	/**
+	 * @return the offsets of the sync points
+	 */
+	public long[] getSyncPoints() {
+		return syncPoints.clone();
+	}
+
+	private static long[] readOffsets(final DataInputStream in) throws IOException {
+		final long ret[] = new long[in.readInt()];
+		for (int i = 0; i < ret.length; ++i) {
+			ret[i] = in.readLong();
+		}
+		return ret;
+	}
+
+	private static void writeOffsets(final DataOutputStream out, final long offsets[])
+			throws IOException {
+		out.writeInt(offsets.length);
+		for (final long offset : offsets) {
+			out.writeLong(offset);
+		}
+	}
+}
@@ -45,12 +45,25 @@ public class O5mNode extends O5mDataObject {
 			return;
 		}
 		if (buffer.hasRemaining()) {
+			setPresent();
 			lastLon = lon = lastLon + reader.readSigned32(buffer);
 			lastLat = lat = lastLat + reader.readSigned32(buffer);
 		} else {
 			return;
 		}
-		super.readProps(buffer, reader);
+		super.readProps(buffer, reader, reader.getDecodeHints().isNodeTags());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mDataObject#skipBody(java.nio.ByteBuffer,
+	 * mm.o5m.reader.O5mReader)
+	 */
+	@Override
+	protected void skipBody(final ByteBuffer buffer, final O5mReader reader) throws IOException {
+		reader.skipVarint(buffer);
+		reader.skipVarint(buffer);
 	}
 
 	@Override
@@ -61,6 +74,36 @@ public class O5mNode extends O5mDataObject {
 		super.reset();
 	}
 
+	/**
+	 * @return a detached copy of the values that were decoded last
+	 */
+	public O5mNode copy() {
+		final O5mNode ret = new O5mNode();
+		ret.copyFrom(this);
+		ret.nodeId = nodeId;
+		ret.lat = lat;
+		ret.lon = lon;
+		return ret;
+	}
+
+	/**
+	 * sets the node when it is not decoded from an o5m buffer. The tags are
+	 * set with {@link #setTags(String[], int)}.
+	 * 
+	 * @param nodeId
+	 *            the id
+	 * @param lat
+	 *            latitude in 100 nanodegrees
+	 * @param lon
+	 *            longitude in 100 nanodegrees
+	 */
+	public void set(final long nodeId, final int lat, final int lon) {
+		this.nodeId = nodeId;
+		this.lat = lat;
+		this.lon = lon;
+		setPresent();
+	}
+
 	/**
 	 * @return the nodeId
 	 */
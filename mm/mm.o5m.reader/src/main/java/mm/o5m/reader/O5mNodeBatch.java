@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.util.Arrays;
+
+/**
+ * A batch of nodes kept in parallel arrays. The node i has the id ids[i] and
+ * the position lats[i], lons[i]. Its tags are the tags from getTagStart(i) to
+ * getTagEnd(i) - 1. Untagged nodes, the vast majority, do not cost anything
+ * beyond the three array entries.
+ * 
+ * A batch is reused by the reader, it is only valid during the call of the
+ * handler.
+ * 
+ * @author benno
+ */
+public class O5mNodeBatch {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final long ids[];
+	private final int lats[];
+	private final int lons[];
+	private final int tagStarts[];
+	private String tags[] = new String[256];
+	private int size = 0;
+	private int tagCount = 0;
+
+	public O5mNodeBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximal number of nodes in the batch
+	 */
+	public O5mNodeBatch(final int capacity) {
+		super();
+		ids = new long[capacity];
+		lats = new int[capacity];
+		lons = new int[capacity];
+		tagStarts = new int[capacity + 1];
+	}
+
+	/**
+	 * takes over id, position and tags of a node
+	 * 
+	 * @param node
+	 *            the node
+	 */
+	public void add(final O5mNode node) {
+		ids[size] = node.getNodeId();
+		lats[size] = node.getLat();
+		lons[size] = node.getLon();
+		final int count = node.getTagCount();
+		if (2 * (tagCount + count) > tags.length) {
+			tags = Arrays.copyOf(tags, Math.max(2 * tags.length, 2 * (tagCount + count)));
+		}
+		for (int i = 0; i < count; ++i) {
+			tags[2 * tagCount] = node.getTagKey(i);
+			tags[2 * tagCount + 1] = node.getTagValue(i);
+			tagCount++;
+		}
+		size++;
+		tagStarts[size] = tagCount;
+	}
+
+	/**
+	 * @return a copy of the batch that is just big enough for its nodes
+	 */
+	public O5mNodeBatch copy() {
+		final O5mNodeBatch ret = new O5mNodeBatch(Math.max(1, size));
+		System.arraycopy(ids, 0, ret.ids, 0, size);
+		System.arraycopy(lats, 0, ret.lats, 0, size);
+		System.arraycopy(lons, 0, ret.lons, 0, size);
+		System.arraycopy(tagStarts, 0, ret.tagStarts, 0, size + 1);
+		ret.tags = Arrays.copyOf(tags, Math.max(2, 2 * tagCount));
+		ret.size = size;
+		ret.tagCount = tagCount;
+		return ret;
+	}
+
+	/**
+	 * empties the batch
+	 */
+	public void clear() {
+		Arrays.fill(tags, 0, 2 * tagCount, null);
+		size = 0;
+		tagCount = 0;
+	}
+
+	/**
+	 * @return true if no further node fits into the batch
+	 */
+	public boolean isFull() {
+		return size == ids.length;
+	}
+
+	/**
+	 * @return the number of nodes in the batch
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the ids of the nodes, only the first size() entries are valid
+	 */
+	public long[] getIds() {
+		return ids;
+	}
+
+	/**
+	 * @return the latitudes of the nodes in 100 nanodegrees, only the first
+	 *         size() entries are valid
+	 */
+	public int[] getLats() {
+		return lats;
+	}
+
+	/**
+	 * @return the longitudes of the nodes in 100 nanodegrees, only the first
+	 *         size() entries are valid
+	 */
+	public int[] getLons() {
+		return lons;
+	}
+
+	/**
+	 * @param index
+	 *            index of the node
+	 * @return index of the first tag of the node
+	 */
+	public int getTagStart(final int index) {
+		return tagStarts[index];
+	}
+
+	/**
+	 * @param index
+	 *            index of the node
+	 * @return index behind the last tag of the node
+	 */
+	public int getTagEnd(final int index) {
+		return tagStarts[index + 1];
+	}
+
+	/**
+	 * @param tag
+	 *            index of the tag
+	 * @return the key of the tag
+	 */
+	public String getTagKey(final int tag) {
+		return tags[2 * tag];
+	}
+
+	/**
+	 * @param tag
+	 *            index of the tag
+	 * @return the value of the tag
+	 */
+	public String getTagValue(final int tag) {
+		return tags[2 * tag + 1];
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+/**
+ * Listener following the progress of reading an o5m file. The progress is
+ * reported every few thousand entities. With the ParallelO5mReader the
+ * listener is called from the decoding threads.
+ * 
+ * @author benno
+ */
+public interface O5mReadListener {
+
+	/**
+	 * called before the first block is read
+	 * 
+	 * @param statistics
+	 *            the statistics of the read
+	 */
+	void readStarted(O5mReadStatistics statistics);
+
+	/**
+	 * called whenever further entities were counted
+	 * 
+	 * @param statistics
+	 *            the statistics of the read
+	 */
+	void progress(O5mReadStatistics statistics);
+
+	/**
+	 * called after the last block is read
+	 * 
+	 * @param statistics
+	 *            the statistics of the read
+	 */
+	void readFinished(O5mReadStatistics statistics);
+}
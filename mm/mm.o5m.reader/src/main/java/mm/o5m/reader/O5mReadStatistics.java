@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what a reader did: the entities per type, the bytes consumed and the
+ * time spent for fetching and for decoding blocks and in the handler. The readers count locally
+ * and add their counts every few thousand entities, so one statistics object
+ * can be shared by the threads of a ParallelO5mReader.
+ * 
+ * The io, decoding and handler times are measured for a sample of the blocks
+ * only and extrapolated, so they are estimates.
+ * 
+ * @author benno
+ */
+public class O5mReadStatistics implements O5mReadStatisticsMXBean {
+
+	public static final String JMX_DOMAIN = "mm.o5m.reader";
+
+	private final List<O5mReadListener> listeners = new CopyOnWriteArrayList<>();
+	private long nodes = 0;
+	private long ways = 0;
+	private long relations = 0;
+	private long bytesRead = 0;
+	private long ioNanos = 0;
+	private long decodeNanos = 0;
+	private long handleNanos = 0;
+	private long startTime = 0;
+	private long endTime = 0;
+	private boolean running = false;
+	private ObjectName objectName = null;
+
+	public void addListener(final O5mReadListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(final O5mReadListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * clears the counters and tells the listeners that a read started
+	 */
+	public void start() {
+		synchronized (this) {
+			nodes = 0;
+			ways = 0;
+			relations = 0;
+			bytesRead = 0;
+			ioNanos = 0;
+			decodeNanos = 0;
+			handleNanos = 0;
+			startTime = System.currentTimeMillis();
+			endTime = 0;
+			running = true;
+		}
+		for (final O5mReadListener listener : listeners) {
+			listener.readStarted(this);
+		}
+	}
+
+	/**
+	 * adds the counts of a reader and tells the listeners about the progress
+	 */
+	public void add(final long addedNodes, final long addedWays, final long addedRelations,
+			final long addedBytes, final long addedIoNanos, final long addedDecodeNanos,
+			final long addedHandleNanos) {
+		synchronized (this) {
+			nodes += addedNodes;
+			ways += addedWays;
+			relations += addedRelations;
+			bytesRead += addedBytes;
+			ioNanos += addedIoNanos;
+			decodeNanos += addedDecodeNanos;
+			handleNanos += addedHandleNanos;
+		}
+		for (final O5mReadListener listener : listeners) {
+			listener.progress(this);
+		}
+	}
+
+	/**
+	 * tells the listeners that the read is finished
+	 */
+	public void finish() {
+		synchronized (this) {
+			endTime = System.currentTimeMillis();
+			running = false;
+		}
+		for (final O5mReadListener listener : listeners) {
+			listener.readFinished(this);
+		}
+	}
+
+	/**
+	 * registers the statistics at the platform MBean server
+	 * 
+	 * @param name
+	 *            name of the statistics within the JMX domain, e.g. the name of
+	 *            the import
+	 * @throws JMException
+	 */
+	public synchronized void registerMBean(final String name) throws JMException {
+		unregisterMBean();
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName on = new ObjectName(JMX_DOMAIN + ":type=O5mReadStatistics,name="
+				+ ObjectName.quote(name));
+		server.registerMBean(this, on);
+		objectName = on;
+	}
+
+	/**
+	 * removes the statistics from the platform MBean server
+	 * 
+	 * @throws JMException
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (objectName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getNodes()
+	 */
+	@Override
+	public synchronized long getNodes() {
+		return nodes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getWays()
+	 */
+	@Override
+	public synchronized long getWays() {
+		return ways;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getRelations()
+	 */
+	@Override
+	public synchronized long getRelations() {
+		return relations;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getEntities()
+	 */
+	@Override
+	public synchronized long getEntities() {
+		return nodes + ways + relations;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getBytesRead()
+	 */
+	@Override
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getIoTimeMillis()
+	 */
+	@Override
+	public synchronized long getIoTimeMillis() {
+		return ioNanos / 1000000;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getDecodeTimeMillis()
+	 */
+	@Override
+	public synchronized long getDecodeTimeMillis() {
+		return decodeNanos / 1000000;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getHandleTimeMillis()
+	 */
+	@Override
+	public synchronized long getHandleTimeMillis() {
+		return handleNanos / 1000000;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getElapsedMillis()
+	 */
+	@Override
+	public synchronized long getElapsedMillis() {
+		if (startTime == 0) {
+			return 0;
+		}
+		return (running ? System.currentTimeMillis() : endTime) - startTime;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#getEntitiesPerSecond()
+	 */
+	@Override
+	public synchronized long getEntitiesPerSecond() {
+		return getEntities() * 1000 / Math.max(1, getElapsedMillis());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mReadStatisticsMXBean#isRunning()
+	 */
+	@Override
+	public synchronized boolean isRunning() {
+		return running;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+/**
+ * Management interface of the read statistics, so an import can be watched
+ * through JMX.
+ * 
+ * @author benno
+ */
+public interface O5mReadStatisticsMXBean {
+
+	long getNodes();
+
+	long getWays();
+
+	long getRelations();
+
+	long getEntities();
+
+	/**
+	 * @return bytes of the file consumed so far
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return estimated time spent fetching blocks from the file
+	 */
+	long getIoTimeMillis();
+
+	/**
+	 * @return estimated time spent decoding blocks
+	 */
+	long getDecodeTimeMillis();
+
+	/**
+	 * @return estimated time spent in the handler, including the copies of
+	 *         the entities a parallel reader hands over to the calling thread
+	 */
+	long getHandleTimeMillis();
+
+	/**
+	 * @return time since the read started, up to its end when it is finished
+	 */
+	long getElapsedMillis();
+
+	long getEntitiesPerSecond();
+
+	boolean isRunning();
+}
@@ -20,12 +20,9 @@
 package mm.o5m.reader;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Date;
 
 /**
  * @author benno
@@ -33,8 +30,8 @@ import java.util.Date;
  */
 public final class O5mReader {
 
-	public static final int STRING_PAIR_CACHE_SIZE = 15000;
-	public static final int MAX_CACHEABLE_STRING_LENGTH = 252;
+	public static final int STRING_PAIR_CACHE_SIZE = O5mStringTable.SIZE;
+	public static final int MAX_CACHEABLE_STRING_LENGTH = O5mStringTable.MAX_CACHEABLE_LENGTH;
 
 	public static final int NODE_ENTRY = 0x010;
 	public static final int WAY_ENTRY = 0x11;
@@ -47,84 +44,224 @@ public final class O5mReader {
 	public static final int END_OF_FILE = 0xFE;
 	public static final int RESET = 0xFF;
 
-	public String stringPairs[][] = new String[STRING_PAIR_CACHE_SIZE][2];
-	public int cacheWritePos = 0;
+	/** the time is measured for one of 64 blocks */
+	private static final long TIMING_SAMPLE_MASK = 63;
+	/** number of blocks after which the counts are added to the statistics */
+	private static final long STATISTICS_INTERVAL = 1 << 16;
+
+	private final O5mStringTable stringTable = new O5mStringTable();
+	private O5mDecodeHints hints = new O5mDecodeHints();
+	private boolean memoryMapped = false;
+	private boolean verbose = true;
+	private boolean writeIndex = false;
+	private O5mReadStatistics statistics = null;
 
 	public O5mReader() {
 
 	}
 
+	/**
+	 * Selects how the file is read. When set, the file is mapped into memory
+	 * and the blocks are decoded directly from the mapped region instead of
+	 * being copied into a read buffer first.
+	 * 
+	 * @param memoryMapped
+	 *            true for reading memory mapped
+	 */
+	public void setMemoryMapped(final boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * @return true when files are read memory mapped
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * @param writeIndex
+	 *            true for storing the {@link O5mIndex} of a file that is read
+	 *            as a whole and has no up to date index yet. The index is
+	 *            collected while reading, the file is not scanned once more.
+	 */
+	public void setWriteIndex(final boolean writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * @param verbose
+	 *            false suppresses the progress output on the console. Has to
+	 *            be set before the statistics are used.
+	 */
+	public void setVerbose(final boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * reads the file. When there is an up to date {@link O5mIndex} for the
+	 * file, reading starts behind the nodes if the handler does not want them
+	 * and stops in front of the ways or relations if it does not want them.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
 	public void readFile(final File f, final O5mHandler handler) throws IOException {
-		ByteBuffer buffer = null;
-		final BufferedInputStream raf = new BufferedInputStream(new FileInputStream(f), 1 << 16);
-		final int bufferSize = 1000;
-		byte readBuffer[] = new byte[bufferSize];
+		final O5mDecodeHints hints = O5mDecodeHints.forHandler(handler);
+		readFile(f, O5mIndex.getStartOffset(f, hints), O5mIndex.getEndOffset(f, hints), handler);
+	}
+
+	/**
+	 * reads the file from an offset on, e.g. from one of the offsets of the
+	 * {@link O5mIndex}. The offset has to be the offset of a reset block or
+	 * of the beginning of the file.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final O5mHandler handler)
+			throws IOException {
+		readFile(f, start, -1, handler);
+	}
+
+	/**
+	 * reads a part of the file. The start has to be the offset of a reset
+	 * block or of the beginning of the file, the end the offset of a block.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param end
+	 *            offset behind the last block to read, -1 for the end of the
+	 *            file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final long end,
+			final O5mHandler handler) throws IOException {
+		O5mBlockSource source = memoryMapped ? new MappedBlockSource(f, start, end,
+				MappedBlockSource.DEFAULT_WINDOW_SIZE) : new StreamBlockSource(f, start, end);
+		IndexingBlockSource indexing = null;
+		if (writeIndex && IndexingBlockSource.isNeeded(f, start, end)) {
+			source = indexing = new IndexingBlockSource(f, source);
+		}
+		try {
+			read(source, handler);
+		} finally {
+			source.close();
+		}
+		if (indexing != null) {
+			indexing.writeIndex();
+		}
+	}
+
+	public void read(final O5mBlockSource source, final O5mHandler handler) throws IOException {
+		final O5mReadStatistics stats = getStatistics();
+		stats.start();
+		try {
+			read(source, handler, stats);
+		} finally {
+			stats.finish();
+		}
+	}
+
+	/**
+	 * reads the blocks of the source without starting and finishing the
+	 * statistics, so several readers can count into the same statistics.
+	 * 
+	 * @param source
+	 *            the blocks to read
+	 * @param handler
+	 *            gets the entities
+	 * @param stats
+	 *            the counts are added to these statistics
+	 * @throws IOException
+	 */
+	void read(final O5mBlockSource source, final O5mHandler handler,
+			final O5mReadStatistics stats) throws IOException {
 		long numberOfNodes = 0;
 		long numberOfWays = 0;
 		long numberOfRelations = 0;
+		long ioNanos = 0;
+		long decodeNanos = 0;
+		long handleNanos = 0;
+		long blocks = 0;
+		long counted = 0;
+		long countedOffset = source.getBlockOffset();
 		boolean goOn = true;
-		System.out.println(new Date());
 		final O5mNode node = new O5mNode();
 		final O5mWay way = new O5mWay();
 		final O5mRelation relation = new O5mRelation();
+		hints = O5mDecodeHints.forHandler(handler);
+		final O5mBatchHandler batchHandler = handler instanceof O5mBatchHandler
+				? (O5mBatchHandler) handler : null;
+		final O5mNodeBatch batch = batchHandler == null ? null : new O5mNodeBatch();
+		resetStringTable();
 		while (goOn) {
-			final int blockType = raf.read();
-
-			if (blockType >= 0 && blockType <= 0xEF) {
-				final int blockLength = readUnsigned32(raf);
-				if (blockLength > readBuffer.length) {
-					readBuffer = new byte[blockLength + bufferSize];
-				}
-				int got = raf.read(readBuffer, 0, blockLength);
-				while (got < blockLength) {
-					got += raf.read(readBuffer, got, blockLength - got);
-				}
-				buffer = ByteBuffer.wrap(readBuffer, 0, blockLength);
-			}
+			final boolean timed = (blocks++ & TIMING_SAMPLE_MASK) == 0;
+			final long fetchStart = timed ? System.nanoTime() : 0;
+			final int blockType = source.nextBlock();
+			final long decodeStart = timed ? System.nanoTime() : 0;
+			// end of decoding and start of handling the entity of the block
+			long handleStart = 0;
+			final ByteBuffer buffer = source.getBlockData();
 			switch (blockType) {
 			case NODE_ENTRY:
 				numberOfNodes++;
-				if (numberOfNodes % 1000000 == 0) {
-					System.out.print(".");
-				}
-				if (numberOfNodes % 50000000 == 0) {
-					System.out.println();
-				}
-				if (numberOfNodes == 231944) {
-					System.out.println();
+				if (hints.isNodes()) {
+					node.readFromBuffer(buffer, this);
+					handleStart = timed ? System.nanoTime() : 0;
+					if (batch == null) {
+						handler.newNode(node);
+					} else if (node.isDeleted()) {
+						// batches only carry nodes with coordinates
+						flush(batch, batchHandler);
+						handler.newNode(node);
+					} else {
+						batch.add(node);
+						if (batch.isFull()) {
+							flush(batch, batchHandler);
+						}
+					}
+				} else {
+					node.skipFromBuffer(buffer, this);
 				}
-				node.readFromBuffer(buffer, this);
-				handler.newNode(node);
 				break;
 			case WAY_ENTRY:
-				if (numberOfWays == 0) {
-					System.out.println();
-					System.out.println("--------------   WAYS   -------------------");
-				}
 				numberOfWays++;
-				if (numberOfWays % 1000000 == 0) {
-					System.out.print(".");
+				if (hints.isWays()) {
+					way.readFromBuffer(buffer, this);
+				} else {
+					way.skipFromBuffer(buffer, this);
 				}
-				if (numberOfWays % 50000000 == 0) {
-					System.out.println();
+				handleStart = timed ? System.nanoTime() : 0;
+				flush(batch, batchHandler);
+				if (hints.isWays()) {
+					handler.newWay(way);
 				}
-				way.readFromBuffer(buffer, this);
-				handler.newWay(way);
 				break;
 			case RELATION_ENTRY:
-				if (numberOfRelations == 0) {
-					System.out.println();
-					System.out.println("--------------   RELATIONS   -------------------");
-				}
 				numberOfRelations++;
-				if (numberOfRelations % 1000000 == 0) {
-					System.out.print(".");
+				if (hints.isRelations()) {
+					relation.readFromBuffer(buffer, this);
+				} else {
+					relation.skipFromBuffer(buffer, this);
 				}
-				if (numberOfRelations % 50000000 == 0) {
-					System.out.println();
+				handleStart = timed ? System.nanoTime() : 0;
+				flush(batch, batchHandler);
+				if (hints.isRelations()) {
+					handler.newRelation(relation);
 				}
-				relation.readFromBuffer(buffer, this);
-				handler.newRelation(relation);
 				break;
 			case BOUNDING_BOX:
 				break;
@@ -133,141 +270,127 @@ public final class O5mReader {
 			case HEADER:
 				break;
 			case SYNC_POINT:
-				System.out.println("Here is a sync point");
 				break;
 			case JUMP_POINT:
-				System.out.println("Here is a jump point");
 				break;
 			case RESET:
 				node.reset();
 				way.reset();
 				relation.reset();
+				resetStringTable();
 				break;
 			case END_OF_FILE:
+			case -1:
+				handleStart = timed ? System.nanoTime() : 0;
+				flush(batch, batchHandler);
 				goOn = false;
 				break;
 			default:
 				throw new IOException("Unexpected Block Type in File " + blockType);
 			}
+			if (timed) {
+				final long handleEnd = System.nanoTime();
+				if (handleStart == 0) {
+					handleStart = handleEnd;
+				}
+				ioNanos += (decodeStart - fetchStart) * (TIMING_SAMPLE_MASK + 1);
+				decodeNanos += (handleStart - decodeStart) * (TIMING_SAMPLE_MASK + 1);
+				handleNanos += (handleEnd - handleStart) * (TIMING_SAMPLE_MASK + 1);
+			}
+			if (!goOn || blocks - counted >= STATISTICS_INTERVAL) {
+				final long offset = source.getBlockOffset();
+				stats.add(numberOfNodes, numberOfWays, numberOfRelations, offset - countedOffset,
+						ioNanos, decodeNanos, handleNanos);
+				numberOfNodes = 0;
+				numberOfWays = 0;
+				numberOfRelations = 0;
+				ioNanos = 0;
+				decodeNanos = 0;
+				handleNanos = 0;
+				counted = blocks;
+				countedOffset = offset;
+			}
 		}
-		System.out.println();
-		System.out.println("There are so many Nodes :" + numberOfNodes);
-		System.out.println("There are so many Ways :" + numberOfWays);
-		System.out.println(new Date());
 	}
 
-	public String[] getRelStringPair(final int rel) {
-		return stringPairs[(STRING_PAIR_CACHE_SIZE + cacheWritePos - rel) % STRING_PAIR_CACHE_SIZE];
+	/**
+	 * @param statistics
+	 *            the statistics the reads are counted in, null for statistics
+	 *            of its own
+	 */
+	public void setStatistics(final O5mReadStatistics statistics) {
+		this.statistics = statistics;
 	}
 
-	public void storeStringPair(final String pair[]) {
-		stringPairs[cacheWritePos][0] = pair[0];
-		stringPairs[cacheWritePos][1] = pair[1];
-		cacheWritePos++;
-		cacheWritePos %= STRING_PAIR_CACHE_SIZE;
+	/**
+	 * @return the statistics of the last or current read. Unless other
+	 *         statistics were set, they report to the console when the reader
+	 *         is verbose.
+	 */
+	public O5mReadStatistics getStatistics() {
+		if (statistics == null) {
+			statistics = new O5mReadStatistics();
+			if (verbose) {
+				statistics.addListener(new ConsoleReadListener());
+			}
+		}
+		return statistics;
 	}
 
-	public String[] readAuthor(final ByteBuffer buffer) throws IOException {
-		final ByteArrayOutputStream bao[] = new ByteArrayOutputStream[] {
-				new ByteArrayOutputStream(), new ByteArrayOutputStream() };
-		final int reference = readUnsigned32(buffer);
-		String ret[] = null;
-		if (reference == 0) {
-			int wc = 0; // Word Counter
-			int bc = 0; // Byte Counter
-			ret = new String[2];
-			while (wc < 2) {
-				final byte b = buffer.get();
-				bc++;
-				if (b == 0) {
-					wc++;
-				} else {
-					bao[wc].write(b);
-				}
-			}
-			if (bao[0].size() > 0) {
-				final long uid = readUnsigned64(ByteBuffer.wrap(bao[0].toByteArray()));
-				if (uid == 0) {
-					ret[0] = "";
-				} else {
-					ret[0] = Long.toString(uid);
-				}
-			} else {
-				ret[0] = "";
-			}
-			if (bao[1].size() > 0) {
-				ret[1] = new String(bao[1].toByteArray(), "UTF-8");
-			} else {
-				ret[1] = "";
-			}
-			if (bc <= MAX_CACHEABLE_STRING_LENGTH) {
-				storeStringPair(ret);
-			}
-		} else {
-			ret = getRelStringPair(reference);
+	/**
+	 * gives the collected nodes to the handler
+	 */
+	private void flush(final O5mNodeBatch batch, final O5mBatchHandler batchHandler)
+			throws IOException {
+		if (batch != null && batch.size() > 0) {
+			batchHandler.newNodes(batch);
+			batch.clear();
 		}
+	}
 
-		return ret;
+	/**
+	 * empties the string table. This is done for every reset block, because
+	 * the strings after a reset never refer to strings in front of it.
+	 */
+	public void resetStringTable() {
+		stringTable.reset();
+	}
 
+	/**
+	 * @return the string table the entities are decoded with
+	 */
+	public O5mStringTable getStringTable() {
+		return stringTable;
 	}
 
-	public String[] readStringPair(final ByteBuffer buffer) throws IOException {
-		final ByteArrayOutputStream bao[] = new ByteArrayOutputStream[] {
-				new ByteArrayOutputStream(), new ByteArrayOutputStream() };
-		final int reference = readUnsigned32(buffer);
-		String ret[] = null;
-		if (reference == 0) {
-			int wc = 0; // Word Counter
-			int bc = 0; // Byte Counter
-			ret = new String[2];
-			while (wc < 2) {
-				final byte b = buffer.get();
-				bc++;
-				if (b == 0) {
-					wc++;
-				} else {
-					bao[wc].write(b);
-				}
-			}
-			ret[0] = new String(bao[0].toByteArray(), "UTF-8");
-			ret[1] = new String(bao[1].toByteArray(), "UTF-8");
-			if (bc <= MAX_CACHEABLE_STRING_LENGTH) {
-				storeStringPair(ret);
-			}
-		} else {
-			ret = getRelStringPair(reference);
-		}
+	/**
+	 * @return the hints of the handler that is currently read for
+	 */
+	public O5mDecodeHints getDecodeHints() {
+		return hints;
+	}
 
-		return ret;
+	/**
+	 * reads uid and name of an author. The entities use the string table
+	 * directly and only create the strings when they are asked for.
+	 * 
+	 * @param buffer
+	 * @return uid and name
+	 * @throws IOException
+	 */
+	public String[] readAuthor(final ByteBuffer buffer) throws IOException {
+		final int slot = stringTable.readPair(buffer);
+		final long uid = stringTable.getFirstAsUnsigned(slot);
+		return new String[] { uid == 0 ? "" : Long.toString(uid), stringTable.getSecond(slot) };
 	}
 
-	public String readSingleString(final ByteBuffer buffer) throws IOException {
-		final ByteArrayOutputStream bao = new ByteArrayOutputStream();
-		final int reference = readUnsigned32(buffer);
-		String ret[] = null;
-		if (reference == 0) {
-			int wc = 0; // Word Counter
-			int bc = 0; // Byte Counter
-			ret = new String[2];
-			while (wc < 1) {
-				final byte b = buffer.get();
-				bc++;
-				if (b == 0) {
-					wc++;
-				} else {
-					bao.write(b);
-				}
-			}
-			ret[0] = new String(bao.toByteArray(), "UTF-8");
-			ret[1] = "";
-			if (bc <= MAX_CACHEABLE_STRING_LENGTH) {
-				storeStringPair(ret);
-			}
-		} else {
-			ret = getRelStringPair(reference);
-		}
+	public String[] readStringPair(final ByteBuffer buffer) throws IOException {
+		final int slot = stringTable.readPair(buffer);
+		return new String[] { stringTable.getFirst(slot), stringTable.getSecond(slot) };
+	}
 
-		return ret[0];
+	public String readSingleString(final ByteBuffer buffer) throws IOException {
+		return stringTable.getFirst(stringTable.readSingle(buffer));
 	}
 
 	/**
@@ -279,25 +402,22 @@ public final class O5mReader {
 	 * @return
 	 */
 	public int readUnsigned32(final ByteBuffer buffer) {
-		int shift = 0;
-		byte b = buffer.get();
-		int ret = b & 0x7f;
-		while ((b & 0x80) == 0x80) {
-			shift += 7;
-			b = buffer.get();
-			ret += (b & 0x7f) << shift;
+		return VarInt.readUnsigned32(buffer);
+	}
+
+	/**
+	 * skips a signed or unsigned number without decoding it
+	 * 
+	 * @param buffer
+	 */
+	public void skipVarint(final ByteBuffer buffer) {
+		while ((buffer.get() & 0x80) == 0x80) {
+			// nothing to do
 		}
-		return ret;
 	}
 
 	public int readSigned32(final ByteBuffer buffer) {
-		long ret = readUnsigned64(buffer);
-		if ((ret & 0x01) == 0x01) {
-			ret = -1 - (ret >> 1);
-		} else {
-			ret = ret >> 1;
-		}
-		return (int) ret;
+		return VarInt.readSigned32(buffer);
 	}
 
 	public long readUnsigned64(final BufferedInputStream raf) throws IOException {
@@ -325,30 +445,10 @@ public final class O5mReader {
 	}
 
 	public long readUnsigned64(final ByteBuffer buffer) {
-		int shift = 0;
-		byte b = buffer.get();
-		long ret = b & 0x7f;
-		while ((b & 0x80) == 0x80) {
-			shift += 7;
-			b = buffer.get();
-			ret += ((long) b & 0x7f) << shift;
-		}
-		return ret;
+		return VarInt.readUnsigned64(buffer);
 	}
 
 	public long readSigned64(final ByteBuffer buffer) {
-		int shift = 6;
-		byte b = buffer.get();
-		long ret = (b & 0x7e) >> 1;
-		final long sign = b & 0x01;
-		while ((b & 0x80) == 0x80) {
-			b = buffer.get();
-			ret += ((long) b & 0x7f) << shift;
-			shift += 7;
-		}
-		if (sign == 1) {
-			ret = -1 - ret;
-		}
-		return ret;
+		return VarInt.readSigned64(buffer);
 	}
 }
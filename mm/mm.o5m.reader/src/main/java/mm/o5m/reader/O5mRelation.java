@@ -30,6 +30,7 @@ import java.util.List;
  */
 public class O5mRelation extends O5mDataObject {
 
+	private static final RefType REF_TYPES[] = RefType.values();
 	private long lastRelationId;
 	private long relationId;
 	private final long lastReference[] = new long[RefType.MAX.ordinal()];
@@ -46,6 +47,7 @@ public class O5mRelation extends O5mDataObject {
 			return;
 		}
 		if (buffer.hasRemaining()) {
+			setPresent();
 			final int sizeOfRefs = reader.readUnsigned32(buffer);
 			final int refstart = buffer.position();
 			while (buffer.position() < sizeOfRefs + refstart) {
@@ -54,7 +56,23 @@ public class O5mRelation extends O5mDataObject {
 		} else {
 			return;
 		}
-		super.readProps(buffer, reader);
+		super.readProps(buffer, reader, reader.getDecodeHints().isRelationTags());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mDataObject#skipBody(java.nio.ByteBuffer,
+	 * mm.o5m.reader.O5mReader)
+	 */
+	@Override
+	protected void skipBody(final ByteBuffer buffer, final O5mReader reader) throws IOException {
+		final int sizeOfRefs = reader.readUnsigned32(buffer);
+		final int end = buffer.position() + sizeOfRefs;
+		while (buffer.position() < end) {
+			reader.skipVarint(buffer);
+			reader.getStringTable().readSingle(buffer);
+		}
 	}
 
 	@Override
@@ -68,6 +86,45 @@ public class O5mRelation extends O5mDataObject {
 		super.reset();
 	}
 
+	/**
+	 * @return a detached copy of the values that were decoded last
+	 */
+	public O5mRelation copy() {
+		final O5mRelation ret = new O5mRelation();
+		ret.copyFrom(this);
+		ret.relationId = relationId;
+		ret.refs.addAll(refs);
+		return ret;
+	}
+
+	/**
+	 * sets the relation when it is not decoded from an o5m buffer. The
+	 * members are added with {@link #addRef(long, RefType, String)}, the tags
+	 * are set with {@link #setTags(String[], int)}.
+	 * 
+	 * @param relationId
+	 *            the id
+	 */
+	public void set(final long relationId) {
+		this.relationId = relationId;
+		refs.clear();
+		setPresent();
+	}
+
+	/**
+	 * adds a member to a relation that is not decoded from an o5m buffer
+	 * 
+	 * @param id
+	 *            id of the member
+	 * @param type
+	 *            type of the member
+	 * @param role
+	 *            role of the member
+	 */
+	public void addRef(final long id, final RefType type, final String role) {
+		refs.add(new Reference(id, type, role));
+	}
+
 	/**
 	 * @return the wayId
 	 */
@@ -87,17 +144,24 @@ public class O5mRelation extends O5mDataObject {
 		private final RefType type;
 		private final String role;
 
+		public Reference(final long id, final RefType type, final String role) {
+			this.id = id;
+			this.type = type;
+			this.role = role;
+		}
+
 		public Reference(final ByteBuffer buffer, final O5mReader reader) throws IOException {
 			final long deltaId = reader.readSigned64(buffer);
-			final String rawRole = reader.readSingleString(buffer);
-			final int rawType = rawRole.charAt(0) - 0x30;
+			final O5mStringTable strings = reader.getStringTable();
+			final int slot = strings.readSingle(buffer);
+			final int rawType = strings.getFirstByte(slot) - 0x30;
 			if (rawType >= 0 && rawType < RefType.MAX.ordinal()) {
-				type = RefType.values()[rawType];
+				type = REF_TYPES[rawType];
 			} else {
 				type = RefType.MAX;
 			}
 			id = lastReference[type.ordinal()] += deltaId;
-			role = rawRole.substring(1);
+			role = reader.getDecodeHints().isRoles() ? strings.getFirst(slot, 1) : "";
 		}
 
 		/**
@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The string table of an o5m file. The strings are kept as bytes in a fixed
+ * arena, one slot of 256 bytes per table entry, so decoding a tag does not
+ * allocate anything. A decoded string or string pair is identified by its
+ * slot, Strings are only created when they are asked for. Equal strings that
+ * are materialized are shared by a small intern cache.
+ * 
+ * Strings too long for the table are kept in a scratch area that is cleared
+ * with {@link #clearScratch()} before the next entity is decoded. So are
+ * references to the oldest entries, which the inline strings following in
+ * the same entity could overwrite before they are created.
+ * 
+ * @author benno
+ */
+public final class O5mStringTable {
+
+	public static final int SIZE = 15000;
+	public static final int MAX_CACHEABLE_LENGTH = 252;
+
+	private static final int SLOT_SIZE = 256;
+	private static final int INTERN_CACHE_SIZE = 1 << 14;
+	private static final int MAX_INTERN_LENGTH = 64;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte arena[] = new byte[SIZE * SLOT_SIZE];
+	private final int firstLength[] = new int[SIZE];
+	private final int secondLength[] = new int[SIZE];
+	private final String first[] = new String[SIZE];
+	private final String second[] = new String[SIZE];
+	private final TagDictionary dictionary = TagDictionary.getDefault();
+	private int writePos = 0;
+
+	private byte scratch[] = new byte[1024];
+	private int scratchPos = 0;
+	/** offset, length of the first and length of the second string */
+	private int scratchEntries[] = new int[3 * 16];
+	private int scratchCount = 0;
+
+	private final byte internKeys[][] = new byte[INTERN_CACHE_SIZE][];
+	private final String internValues[] = new String[INTERN_CACHE_SIZE];
+
+	public O5mStringTable() {
+		reset();
+	}
+
+	/**
+	 * empties the table. The intern cache is kept.
+	 */
+	public void reset() {
+		Arrays.fill(firstLength, -1);
+		Arrays.fill(secondLength, -1);
+		Arrays.fill(first, null);
+		Arrays.fill(second, null);
+		writePos = 0;
+		clearScratch();
+	}
+
+	/**
+	 * forgets the strings that were too long for the table.
+	 */
+	public void clearScratch() {
+		scratchPos = 0;
+		scratchCount = 0;
+	}
+
+	/**
+	 * reads a string pair, either inline or as reference into the table.
+	 * 
+	 * @param buffer
+	 *            positioned at the pair
+	 * @return the slot of the pair
+	 */
+	public int readPair(final ByteBuffer buffer) {
+		return read(buffer, true);
+	}
+
+	/**
+	 * reads a single string, either inline or as reference into the table.
+	 * 
+	 * @param buffer
+	 *            positioned at the string
+	 * @return the slot of the string
+	 */
+	public int readSingle(final ByteBuffer buffer) {
+		return read(buffer, false);
+	}
+
+	private int read(final ByteBuffer buffer, final boolean pair) {
+		final int reference = readUnsigned32(buffer);
+		if (reference != 0) {
+			final int slot = (SIZE + writePos - reference) % SIZE;
+			// every inline string takes two bytes at least, so the rest of the
+			// entity may overwrite the slot before its strings are created
+			if (SIZE - reference < buffer.remaining() / 2 && firstLength[slot] >= 0) {
+				return copyToScratch(slot);
+			}
+			return slot;
+		}
+		final int start = buffer.position();
+		final int length1 = terminatedLength(buffer, start);
+		final int length2 = pair ? terminatedLength(buffer, start + length1 + 1) : 0;
+		final int byteCount = pair ? length1 + length2 + 2 : length1 + 1;
+		final int slot;
+		final byte target[];
+		final int offset;
+		if (byteCount <= MAX_CACHEABLE_LENGTH) {
+			slot = writePos;
+			writePos = (writePos + 1) % SIZE;
+			firstLength[slot] = length1;
+			secondLength[slot] = pair ? length2 : 0;
+			first[slot] = null;
+			second[slot] = null;
+			target = arena;
+			offset = slot * SLOT_SIZE;
+		} else {
+			slot = addScratch(length1, pair ? length2 : 0);
+			offset = scratchEntries[3 * (slot - SIZE)];
+			target = scratch;
+		}
+		buffer.get(target, offset, length1);
+		buffer.get();
+		if (pair) {
+			buffer.get(target, offset + length1, length2);
+			buffer.get();
+		}
+		return slot;
+	}
+
+	/**
+	 * reserves room for a string or string pair in the scratch area
+	 * 
+	 * @return the slot of the entry
+	 */
+	private int addScratch(final int length1, final int length2) {
+		final int byteCount = length1 + length2 + 2;
+		if (scratchPos + byteCount > scratch.length) {
+			scratch = Arrays.copyOf(scratch, Math.max(2 * scratch.length, scratchPos + byteCount));
+		}
+		if (3 * scratchCount + 3 > scratchEntries.length) {
+			scratchEntries = Arrays.copyOf(scratchEntries, 2 * scratchEntries.length);
+		}
+		scratchEntries[3 * scratchCount] = scratchPos;
+		scratchEntries[3 * scratchCount + 1] = length1;
+		scratchEntries[3 * scratchCount + 2] = length2;
+		scratchPos += byteCount;
+		return SIZE + scratchCount++;
+	}
+
+	/**
+	 * copies a table entry into the scratch area, so it stays valid until the
+	 * next entity even if the table slot is reused
+	 * 
+	 * @return the slot of the copy
+	 */
+	private int copyToScratch(final int slot) {
+		final int ret = addScratch(firstLength[slot], secondLength[slot]);
+		System.arraycopy(arena, slot * SLOT_SIZE, scratch, scratchEntries[3 * (ret - SIZE)],
+				firstLength[slot] + secondLength[slot]);
+		return ret;
+	}
+
+	/**
+	 * @return the first string of the slot or null for an empty table entry
+	 */
+	public String getFirst(final int slot) {
+		if (slot >= SIZE) {
+			final int entry = 3 * (slot - SIZE);
+			return new String(scratch, scratchEntries[entry], scratchEntries[entry + 1], UTF8);
+		}
+		String ret = first[slot];
+		if (ret == null && firstLength[slot] >= 0) {
+			ret = first[slot] = intern(arena, slot * SLOT_SIZE, firstLength[slot]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the second string of the slot or null for an empty table entry.
+	 *         For single strings this is an empty string.
+	 */
+	public String getSecond(final int slot) {
+		if (slot >= SIZE) {
+			final int entry = 3 * (slot - SIZE);
+			return new String(scratch, scratchEntries[entry] + scratchEntries[entry + 1],
+					scratchEntries[entry + 2], UTF8);
+		}
+		String ret = second[slot];
+		if (ret == null && secondLength[slot] >= 0) {
+			ret = second[slot] = intern(arena, slot * SLOT_SIZE + firstLength[slot],
+					secondLength[slot]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the id of the first string of the slot within the
+	 *         {@link TagDictionary} or -1 for an empty table entry or a string
+	 *         the dictionary does not know. The string is not added.
+	 */
+	public int getFirstId(final int slot) {
+		final String s = getFirst(slot);
+		return s == null ? -1 : dictionary.lookup(s);
+	}
+
+	/**
+	 * @return the id of the second string of the slot within the
+	 *         {@link TagDictionary} or -1 for an empty table entry or a string
+	 *         the dictionary does not know. The string is not added.
+	 */
+	public int getSecondId(final int slot) {
+		final String s = getSecond(slot);
+		return s == null ? -1 : dictionary.lookup(s);
+	}
+
+	/**
+	 * the first string of the slot without its leading bytes, as used for the
+	 * roles of relation members
+	 * 
+	 * @param slot
+	 *            the slot
+	 * @param skip
+	 *            number of bytes to skip
+	 * @return the string or null for an empty table entry
+	 */
+	public String getFirst(final int slot, final int skip) {
+		final int length = firstLength(slot);
+		if (length < 0) {
+			return null;
+		}
+		final int strip = Math.min(skip, length);
+		return intern(data(slot), offset(slot) + strip, length - strip);
+	}
+
+	/**
+	 * @return the first byte of the first string of the slot or -1 if the
+	 *         string is empty
+	 */
+	public int getFirstByte(final int slot) {
+		if (firstLength(slot) <= 0) {
+			return -1;
+		}
+		return data(slot)[offset(slot)] & 0xff;
+	}
+
+	/**
+	 * reads the first string of the slot as unsigned number, as used for the
+	 * uid of the author.
+	 * 
+	 * @return the number or 0 if the string is empty
+	 */
+	public long getFirstAsUnsigned(final int slot) {
+		final byte data[] = data(slot);
+		final int end = offset(slot) + Math.max(0, firstLength(slot));
+		int pos = offset(slot);
+		int shift = 0;
+		long ret = 0;
+		while (pos < end) {
+			final byte b = data[pos++];
+			ret += ((long) b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+		}
+		return ret;
+	}
+
+	private byte[] data(final int slot) {
+		return slot >= SIZE ? scratch : arena;
+	}
+
+	private int offset(final int slot) {
+		return slot >= SIZE ? scratchEntries[3 * (slot - SIZE)] : slot * SLOT_SIZE;
+	}
+
+	private int firstLength(final int slot) {
+		return slot >= SIZE ? scratchEntries[3 * (slot - SIZE) + 1] : firstLength[slot];
+	}
+
+	/**
+	 * returns a shared String for short byte sequences. The cache is direct
+	 * mapped, a collision simply replaces the older entry.
+	 */
+	private String intern(final byte data[], final int offset, final int length) {
+		if (length == 0) {
+			return "";
+		}
+		if (length > MAX_INTERN_LENGTH) {
+			return new String(data, offset, length, UTF8);
+		}
+		int hash = 0x811c9dc5;
+		for (int i = offset; i < offset + length; ++i) {
+			hash = (hash ^ data[i]) * 0x01000193;
+		}
+		final int index = (hash ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+		final byte key[] = internKeys[index];
+		if (key != null && key.length == length) {
+			int i = 0;
+			while (i < length && key[i] == data[offset + i]) {
+				i++;
+			}
+			if (i == length) {
+				return internValues[index];
+			}
+		}
+		final String ret = new String(data, offset, length, UTF8);
+		internKeys[index] = Arrays.copyOfRange(data, offset, offset + length);
+		internValues[index] = ret;
+		return ret;
+	}
+
+	private static int terminatedLength(final ByteBuffer buffer, final int start) {
+		final int limit = buffer.limit();
+		int pos = start;
+		while (pos < limit && buffer.get(pos) != 0) {
+			pos++;
+		}
+		if (pos >= limit) {
+			throw new BufferUnderflowException();
+		}
+		return pos - start;
+	}
+
+	private static int readUnsigned32(final ByteBuffer buffer) {
+		int shift = 0;
+		byte b = buffer.get();
+		int ret = b & 0x7f;
+		while ((b & 0x80) == 0x80) {
+			shift += 7;
+			b = buffer.get();
+			ret += (b & 0x7f) << shift;
+		}
+		return ret;
+	}
+}
@@ -21,7 +21,8 @@ package mm.o5m.reader;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -33,12 +34,13 @@ public class O5mWay extends O5mDataObject {
 	private long lastWayId;
 	private long wayId;
 	private long lastReference;
-	private final List<Long> refs = new ArrayList<>();
+	private long refs[] = new long[256];
+	private int refCount = 0;
 
 	@Override
 	public void readFromBuffer(final ByteBuffer buffer, final O5mReader reader) throws IOException {
 		super.readFromBuffer(buffer, reader);
-		refs.clear();
+		refCount = 0;
 		lastWayId = wayId = lastWayId + reader.readSigned64(buffer);
 		if (buffer.hasRemaining()) {
 			super.readUidAuthorTSFromBuffer(buffer, reader);
@@ -46,26 +48,75 @@ public class O5mWay extends O5mDataObject {
 			return;
 		}
 		if (buffer.hasRemaining()) {
+			setPresent();
 			final int sizeOfRefs = reader.readUnsigned32(buffer);
-			final int refstart = buffer.position();
-			while (buffer.position() < sizeOfRefs + refstart) {
-				lastReference += reader.readSigned64(buffer);
-				refs.add(Long.valueOf(lastReference));
+			final int end = buffer.position() + sizeOfRefs;
+			while (buffer.position() < end) {
+				if (refCount == refs.length) {
+					refs = Arrays.copyOf(refs, 2 * refCount);
+				}
+				refCount = VarInt.readDeltas(buffer, end, lastReference, refs, refCount);
+				lastReference = refs[refCount - 1];
 			}
 		} else {
 			return;
 		}
-		super.readProps(buffer, reader);
+		super.readProps(buffer, reader, reader.getDecodeHints().isWayTags());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mDataObject#skipBody(java.nio.ByteBuffer,
+	 * mm.o5m.reader.O5mReader)
+	 */
+	@Override
+	protected void skipBody(final ByteBuffer buffer, final O5mReader reader) throws IOException {
+		final int sizeOfRefs = reader.readUnsigned32(buffer);
+		buffer.position(buffer.position() + sizeOfRefs);
 	}
 
 	@Override
 	public void reset() {
 		lastWayId = 0;
 		lastReference = 0;
-		refs.clear();
+		refCount = 0;
 		super.reset();
 	}
 
+	/**
+	 * @return a detached copy of the values that were decoded last
+	 */
+	public O5mWay copy() {
+		final O5mWay ret = new O5mWay();
+		ret.copyFrom(this);
+		ret.wayId = wayId;
+		ret.refs = Arrays.copyOf(refs, refCount);
+		ret.refCount = refCount;
+		return ret;
+	}
+
+	/**
+	 * sets the way when it is not decoded from an o5m buffer. The tags are
+	 * set with {@link #setTags(String[], int)}.
+	 * 
+	 * @param wayId
+	 *            the id
+	 * @param refIds
+	 *            the ids of the nodes, they are copied
+	 * @param count
+	 *            the number of nodes
+	 */
+	public void set(final long wayId, final long refIds[], final int count) {
+		this.wayId = wayId;
+		if (refs.length < count) {
+			refs = new long[Math.max(count, 2 * refs.length)];
+		}
+		System.arraycopy(refIds, 0, refs, 0, count);
+		refCount = count;
+		setPresent();
+	}
+
 	/**
 	 * @return the wayId
 	 */
@@ -74,9 +125,47 @@ public class O5mWay extends O5mDataObject {
 	}
 
 	/**
-	 * @return the refs
+	 * @return the number of referenced nodes
 	 */
-	public List<Long> getRefs() {
+	public int getRefCount() {
+		return refCount;
+	}
+
+	/**
+	 * @param i
+	 *            index of the reference
+	 * @return the id of the referenced node
+	 */
+	public long getRef(final int i) {
+		return refs[i];
+	}
+
+	/**
+	 * @return the ids of the referenced nodes, only the first
+	 *         {@link #getRefCount()} are valid. The array is reused for the
+	 *         next way.
+	 */
+	public long[] getRefIds() {
 		return refs;
 	}
+
+	/**
+	 * @return the refs as a view of the decoded ids
+	 */
+	public List<Long> getRefs() {
+		return new AbstractList<Long>() {
+			@Override
+			public Long get(final int index) {
+				if (index >= refCount) {
+					throw new IndexOutOfBoundsException(String.valueOf(index));
+				}
+				return Long.valueOf(refs[index]);
+			}
+
+			@Override
+			public int size() {
+				return refCount;
+			}
+		};
+	}
 }
@@ -0,0 +1,428 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import mm.o5m.reader.O5mRelation.Reference;
+import mm.o5m.reader.O5mRelation.RefType;
+
+/**
+ * Writes o5m files. Ids, coordinates, node references, timestamps and
+ * changesets are delta coded, tags, authors and roles are written once and
+ * referenced by their distance in the string table afterwards, like the
+ * {@link O5mStringTable} of the reader expects it.
+ * 
+ * Nodes, ways and relations have to be written in this order. A reset block
+ * is written whenever the type of the entities changes, so every section
+ * starts with a fresh delta state and string table and can be found by the
+ * {@link O5mIndex}. Within a section a reset block is written every
+ * {@link #DEFAULT_RESET_INTERVAL} bytes, so the {@link ParallelO5mReader} can
+ * split the sections into segments.
+ * 
+ * As a handler the writer copies everything it gets, so reading into a writer
+ * copies a file.
+ * 
+ * @author benno
+ */
+public class O5mWriter implements O5mHandler, Closeable {
+
+	public static final long DEFAULT_RESET_INTERVAL = 1 << 20;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	private static final byte HEADER[] = { 'o', '5', 'm', '2' };
+	private static final int NONE = -1;
+
+	private final OutputStream out;
+	private final Block block = new Block();
+	private final Block strings = new Block();
+
+	/** insertion number of the strings still in the table */
+	private final HashMap<String, Integer> table = new HashMap<>();
+	private final String ring[] = new String[O5mStringTable.SIZE];
+	private int stringCount = 0;
+
+	private int entityType = NONE;
+	private long resetInterval = DEFAULT_RESET_INTERVAL;
+	/** bytes written since the last reset block */
+	private long written = 0;
+	private long lastId;
+	private long lastTimeStamp;
+	private long lastChangeSet;
+	private int lastLat;
+	private int lastLon;
+	private long lastReference;
+	private final long lastMember[] = new long[RefType.MAX.ordinal()];
+
+	/**
+	 * @param f
+	 *            the file to write
+	 * @throws IOException
+	 */
+	public O5mWriter(final File f) throws IOException {
+		this(new FileOutputStream(f));
+	}
+
+	/**
+	 * writes the header of the file
+	 * 
+	 * @param out
+	 *            gets the o5m data, it is closed by {@link #close()}
+	 * @throws IOException
+	 */
+	public O5mWriter(final OutputStream out) throws IOException {
+		super();
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.out.write(O5mReader.RESET);
+		block.clear();
+		block.write(HEADER, 0, HEADER.length);
+		writeBlock(O5mReader.HEADER);
+	}
+
+	/**
+	 * @param resetInterval
+	 *            number of bytes after which a reset block is written within a
+	 *            section, 0 for resets at the start of the sections only. Every
+	 *            reset starts the string table from scratch, so short intervals
+	 *            make the file longer.
+	 */
+	public void setResetInterval(final long resetInterval) {
+		this.resetInterval = resetInterval;
+	}
+
+	/**
+	 * writes the bounding box of the file. It has to be written before the
+	 * first entity.
+	 * 
+	 * @param minLat
+	 *            in 100 nanodegrees
+	 * @param minLon
+	 *            in 100 nanodegrees
+	 * @param maxLat
+	 *            in 100 nanodegrees
+	 * @param maxLon
+	 *            in 100 nanodegrees
+	 * @throws IOException
+	 */
+	public void writeBoundingBox(final int minLat, final int minLon, final int maxLat,
+			final int maxLon) throws IOException {
+		block.clear();
+		block.writeSigned(minLon);
+		block.writeSigned(minLat);
+		block.writeSigned(maxLon);
+		block.writeSigned(maxLat);
+		writeBlock(O5mReader.BOUNDING_BOX);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+	 */
+	@Override
+	public void newNode(final O5mNode node) throws IOException {
+		writeNode(node);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+	 */
+	@Override
+	public void newWay(final O5mWay way) throws IOException {
+		writeWay(way);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+	 */
+	@Override
+	public void newRelation(final O5mRelation relation) throws IOException {
+		writeRelation(relation);
+	}
+
+	/**
+	 * writes a node. A deleted node is written without coordinates and tags.
+	 * 
+	 * @param node
+	 *            the node
+	 * @throws IOException
+	 */
+	public void writeNode(final O5mNode node) throws IOException {
+		start(O5mReader.NODE_ENTRY, node.getNodeId());
+		writeMetadata(node);
+		if (!node.isDeleted()) {
+			block.writeSigned((long) node.getLon() - lastLon);
+			block.writeSigned((long) node.getLat() - lastLat);
+			lastLon = node.getLon();
+			lastLat = node.getLat();
+			writeTags(node);
+		}
+		writeBlock(O5mReader.NODE_ENTRY);
+	}
+
+	/**
+	 * writes a way. A deleted way is written without references and tags.
+	 * 
+	 * @param way
+	 *            the way
+	 * @throws IOException
+	 */
+	public void writeWay(final O5mWay way) throws IOException {
+		start(O5mReader.WAY_ENTRY, way.getWayId());
+		writeMetadata(way);
+		if (!way.isDeleted()) {
+			strings.clear();
+			final long refs[] = way.getRefIds();
+			for (int i = 0; i < way.getRefCount(); ++i) {
+				strings.writeSigned(refs[i] - lastReference);
+				lastReference = refs[i];
+			}
+			block.writeUnsigned(strings.size);
+			block.write(strings.data, 0, strings.size);
+			writeTags(way);
+		}
+		writeBlock(O5mReader.WAY_ENTRY);
+	}
+
+	/**
+	 * writes a relation. A deleted relation is written without members and
+	 * tags.
+	 * 
+	 * @param relation
+	 *            the relation
+	 * @throws IOException
+	 */
+	public void writeRelation(final O5mRelation relation) throws IOException {
+		start(O5mReader.RELATION_ENTRY, relation.getRelationId());
+		writeMetadata(relation);
+		if (!relation.isDeleted()) {
+			final int start = block.size;
+			final List<Reference> refs = relation.getRefs();
+			for (int i = 0; i < refs.size(); ++i) {
+				final Reference ref = refs.get(i);
+				final int type = ref.getType().ordinal();
+				if (type < lastMember.length) {
+					block.writeSigned(ref.getId() - lastMember[type]);
+					lastMember[type] = ref.getId();
+					strings.clear();
+					strings.write('0' + type);
+					strings.writeString(ref.getRole());
+					strings.write(0);
+					writeString(strings);
+				}
+			}
+			// the length of the members is in front of them
+			strings.clear();
+			strings.write(block.data, start, block.size - start);
+			block.size = start;
+			block.writeUnsigned(strings.size);
+			block.write(strings.data, 0, strings.size);
+			writeTags(relation);
+		}
+		writeBlock(O5mReader.RELATION_ENTRY);
+	}
+
+	/**
+	 * writes the end of the file and closes the stream
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			out.write(O5mReader.END_OF_FILE);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * starts the block of an entity, after a reset block if the type changes
+	 * or the reset interval is over
+	 */
+	private void start(final int type, final long id) throws IOException {
+		if (type != entityType) {
+			if (entityType != NONE) {
+				reset();
+			}
+			entityType = type;
+		} else if (resetInterval > 0 && written >= resetInterval) {
+			reset();
+		}
+		block.clear();
+		block.writeSigned(id - lastId);
+		lastId = id;
+	}
+
+	/**
+	 * writes a reset block and starts the deltas and the string table from
+	 * scratch
+	 */
+	private void reset() throws IOException {
+		out.write(O5mReader.RESET);
+		written = 0;
+		lastId = 0;
+		lastTimeStamp = 0;
+		lastChangeSet = 0;
+		lastLat = 0;
+		lastLon = 0;
+		lastReference = 0;
+		Arrays.fill(lastMember, 0);
+		table.clear();
+		Arrays.fill(ring, null);
+		stringCount = 0;
+	}
+
+	private void writeMetadata(final O5mDataObject entity) throws IOException {
+		final int version = entity.getVersion();
+		block.writeUnsigned(version);
+		if (version == 0) {
+			return;
+		}
+		final long timeStamp = entity.getTimeStamp();
+		block.writeSigned(timeStamp - lastTimeStamp);
+		lastTimeStamp = timeStamp;
+		if (timeStamp == 0) {
+			return;
+		}
+		block.writeSigned(entity.getChangeSet() - lastChangeSet);
+		lastChangeSet = entity.getChangeSet();
+		final String uid = entity.getUid();
+		strings.clear();
+		if (uid != null && uid.length() > 0) {
+			strings.writeUnsigned(Long.parseLong(uid));
+		}
+		strings.write(0);
+		strings.writeString(entity.getAuthor());
+		strings.write(0);
+		writeString(strings);
+	}
+
+	private void writeTags(final O5mDataObject entity) {
+		for (int i = 0; i < entity.getTagCount(); ++i) {
+			strings.clear();
+			strings.writeString(entity.getTagKey(i));
+			strings.write(0);
+			strings.writeString(entity.getTagValue(i));
+			strings.write(0);
+			writeString(strings);
+		}
+	}
+
+	/**
+	 * writes a string or string pair with its terminating zeros either as
+	 * reference into the string table or inline. Short strings written inline
+	 * are added to the table, the oldest entry is dropped when it is full.
+	 */
+	private void writeString(final Block s) {
+		final String key = new String(s.data, 0, s.size, LATIN1);
+		final Integer index = table.get(key);
+		if (index != null) {
+			block.writeUnsigned(stringCount - index.intValue());
+			return;
+		}
+		block.write(0);
+		block.write(s.data, 0, s.size);
+		if (s.size <= O5mStringTable.MAX_CACHEABLE_LENGTH) {
+			final int slot = stringCount % ring.length;
+			final String dropped = ring[slot];
+			if (dropped != null && table.get(dropped).intValue() == stringCount - ring.length) {
+				table.remove(dropped);
+			}
+			ring[slot] = key;
+			table.put(key, Integer.valueOf(stringCount++));
+		}
+	}
+
+	private void writeBlock(final int type) throws IOException {
+		out.write(type);
+		long length = block.size;
+		while ((length & ~0x7fL) != 0) {
+			out.write((int) ((length & 0x7f) | 0x80));
+			length >>>= 7;
+		}
+		out.write((int) length);
+		out.write(block.data, 0, block.size);
+		written += block.size + 2;
+	}
+
+	/**
+	 * growing byte array the blocks and strings are put together in
+	 */
+	private static final class Block {
+		private byte data[] = new byte[1024];
+		private int size = 0;
+
+		void clear() {
+			size = 0;
+		}
+
+		void write(final int b) {
+			ensure(1);
+			data[size++] = (byte) b;
+		}
+
+		void write(final byte bytes[], final int offset, final int length) {
+			ensure(length);
+			System.arraycopy(bytes, offset, data, size, length);
+			size += length;
+		}
+
+		void writeUnsigned(final long value) {
+			ensure(10);
+			long v = value;
+			while ((v & ~0x7fL) != 0) {
+				data[size++] = (byte) ((v & 0x7f) | 0x80);
+				v >>>= 7;
+			}
+			data[size++] = (byte) v;
+		}
+
+		void writeSigned(final long value) {
+			writeUnsigned(value << 1 ^ value >> 63);
+		}
+
+		void writeString(final String s) {
+			if (s != null && s.length() > 0) {
+				final byte bytes[] = s.getBytes(UTF8);
+				write(bytes, 0, bytes.length);
+			}
+		}
+
+		private void ensure(final int length) {
+			if (size + length > data.length) {
+				data = Arrays.copyOf(data, Math.max(2 * data.length, size + length));
+			}
+		}
+	}
+}
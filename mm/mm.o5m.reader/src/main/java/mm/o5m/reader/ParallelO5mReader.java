@@ -0,0 +1,586 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reader decoding an o5m file on several threads. All delta values and the
+ * string table start from scratch at a reset block, so the file is split into
+ * segments starting at reset blocks and each segment is decoded with its own
+ * O5mReader.
+ * 
+ * The entities are given to the handler in file order on the calling thread.
+ * Handlers implementing UnorderedO5mHandler are called directly by the
+ * decoding threads instead. Nodes for an O5mBatchHandler are collected into
+ * batches by the decoding threads, a batch never spans two segments.
+ * 
+ * The decoded batches waiting for delivery are limited by a budget shared by
+ * all segments, so while the calling thread is busy with a slow part of the
+ * file the threads decode the following segments as far as the budget goes.
+ * Besides the budget every segment may queue two batches of its own, so the
+ * segment being delivered goes on even if the later segments used up the
+ * budget.
+ * 
+ * All decoding threads count into the same O5mReadStatistics.
+ * 
+ * A file only containing a few reset blocks ends up in a few segments, so it
+ * is not decoded faster than with the O5mReader. A file that makes a single
+ * segment is read by a {@link PipelinedO5mReader} instead, which at least
+ * reads, decodes and handles on separate threads. The {@link O5mWriter}
+ * writes reset blocks at regular intervals for this reason.
+ * 
+ * @author benno
+ */
+public class ParallelO5mReader {
+
+	public static final long DEFAULT_SEGMENT_SIZE = 1 << 23;
+	private static final int BATCH_SIZE = 4096;
+	/** batches of the shared budget per thread */
+	private static final int BUDGET_BATCHES = 8;
+	/** batches a segment may queue besides the shared budget */
+	private static final int SEGMENT_BATCHES = 2;
+	private static final Batch END_OF_SEGMENT = new Batch(Collections.emptyList(), false);
+	/** put instead of the segments when the file makes a single segment only */
+	private static final Segment SINGLE_SEGMENT = new Segment(null, 0, 0, null, null, false,
+			null, null, true);
+	/** the string table of a reader is big, so every thread keeps its reader */
+	private static final ThreadLocal<O5mReader> READERS = new ThreadLocal<O5mReader>() {
+		@Override
+		protected O5mReader initialValue() {
+			final O5mReader reader = new O5mReader();
+			reader.setVerbose(false);
+			return reader;
+		}
+	};
+
+	private final int threads;
+	private long segmentSize = DEFAULT_SEGMENT_SIZE;
+	private boolean writeIndex = false;
+	private O5mReadStatistics statistics = new O5mReadStatistics();
+
+	public ParallelO5mReader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads used for decoding
+	 */
+	public ParallelO5mReader(final int threads) {
+		super();
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param segmentSize
+	 *            minimal size of a segment in bytes. Neighbouring resets are
+	 *            put into the same segment until it reaches this size.
+	 */
+	public void setSegmentSize(final long segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * @param writeIndex
+	 *            true for storing the {@link O5mIndex} of a file that is read
+	 *            as a whole and has no up to date index yet. The index is
+	 *            collected while the segments are searched, the file is not
+	 *            scanned once more.
+	 */
+	public void setWriteIndex(final boolean writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * @param statistics
+	 *            the statistics all decoding threads count in
+	 */
+	public void setStatistics(final O5mReadStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return the statistics of the last or current read
+	 */
+	public O5mReadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * reads the file. When there is an up to date {@link O5mIndex} for the
+	 * file, reading starts behind the nodes if the handler does not want them
+	 * and stops in front of the ways or relations if it does not want them.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final O5mHandler handler) throws IOException {
+		final O5mDecodeHints hints = O5mDecodeHints.forHandler(handler);
+		readFile(f, O5mIndex.getStartOffset(f, hints), O5mIndex.getEndOffset(f, hints), handler);
+	}
+
+	/**
+	 * reads the file from an offset on. The offset has to be the offset of a
+	 * reset block or of the beginning of the file.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final O5mHandler handler)
+			throws IOException {
+		readFile(f, start, -1, handler);
+	}
+
+	/**
+	 * reads a part of the file. The start has to be the offset of a reset
+	 * block or of the beginning of the file, the end the offset of a block.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param end
+	 *            offset behind the last block to read, -1 for the end of the
+	 *            file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final long end,
+			final O5mHandler handler) throws IOException {
+		final O5mReadStatistics stats = statistics;
+		final boolean ordered = !(handler instanceof UnorderedO5mHandler);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r, "o5m decoder");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final BlockingQueue<Segment> segments = new ArrayBlockingQueue<>(threads
+				* BUDGET_BATCHES);
+		final Semaphore budget = new Semaphore(threads * BUDGET_BATCHES);
+		final Thread scanner = new Thread(new Scanner(f, start, end, segments, executor,
+				ordered ? null : handler, O5mDecodeHints.forHandler(handler),
+				handler instanceof O5mBatchHandler, stats, budget), "o5m scanner");
+		scanner.setDaemon(true);
+		stats.start();
+		scanner.start();
+		try {
+			boolean goOn = true;
+			while (goOn) {
+				final Segment segment = segments.take();
+				if (segment == SINGLE_SEGMENT) {
+					final PipelinedO5mReader reader = new PipelinedO5mReader();
+					reader.setMemoryMapped(true);
+					reader.read(f, start, end, handler, stats);
+					goOn = false;
+				} else {
+					segment.deliver(handler);
+					goOn = !segment.isLast();
+				}
+			}
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException("Reading " + f + " was interrupted");
+		} finally {
+			scanner.interrupt();
+			executor.shutdownNow();
+			stats.finish();
+		}
+	}
+
+	/**
+	 * Finds the segments of the file and hands them over to the decoding
+	 * threads.
+	 */
+	private class Scanner implements Runnable {
+		private final File f;
+		private final long start;
+		private final long end;
+		private final BlockingQueue<Segment> segments;
+		private final ExecutorService executor;
+		private final O5mHandler directHandler;
+		private final O5mDecodeHints hints;
+		private final boolean batchNodes;
+		private final O5mReadStatistics stats;
+		private final Semaphore budget;
+
+		public Scanner(final File f, final long start, final long end,
+				final BlockingQueue<Segment> segments, final ExecutorService executor,
+				final O5mHandler directHandler, final O5mDecodeHints hints,
+				final boolean batchNodes, final O5mReadStatistics stats, final Semaphore budget) {
+			super();
+			this.f = f;
+			this.start = start;
+			this.end = end;
+			this.segments = segments;
+			this.executor = executor;
+			this.directHandler = directHandler;
+			this.hints = hints;
+			this.batchNodes = batchNodes;
+			this.stats = stats;
+			this.budget = budget;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				try {
+					scan();
+				} catch (final IOException | RuntimeException e) {
+					final Segment failed = new Segment(f, 0, 0, directHandler, hints,
+							batchNodes, stats, budget, true);
+					failed.fail(e);
+					segments.put(failed);
+				}
+			} catch (final InterruptedException e) {
+				// the consumer gave up, nobody waits for further segments
+			}
+		}
+
+		private void scan() throws IOException, InterruptedException {
+			O5mBlockSource source = new MappedBlockSource(f, start, end,
+					MappedBlockSource.DEFAULT_WINDOW_SIZE);
+			IndexingBlockSource indexing = null;
+			if (writeIndex && IndexingBlockSource.isNeeded(f, start, end)) {
+				source = indexing = new IndexingBlockSource(f, source);
+			}
+			try {
+				long segmentStart = start;
+				int blockType = source.nextBlock();
+				while (blockType >= 0 && blockType != O5mReader.END_OF_FILE) {
+					final long offset = source.getBlockOffset();
+					if (blockType == O5mReader.RESET && offset - segmentStart >= segmentSize) {
+						submit(new Segment(f, segmentStart, offset, directHandler, hints,
+								batchNodes, stats, budget, false));
+						segmentStart = offset;
+					}
+					blockType = source.nextBlock();
+				}
+				// stored before the last segment, so it is there when readFile returns
+				if (indexing != null) {
+					indexing.writeIndex();
+				}
+				if (segmentStart == start) {
+					segments.put(SINGLE_SEGMENT);
+				} else {
+					submit(new Segment(f, segmentStart, end, directHandler, hints, batchNodes,
+							stats, budget, true));
+				}
+			} finally {
+				source.close();
+			}
+		}
+
+		private void submit(final Segment segment) throws InterruptedException {
+			segments.put(segment);
+			executor.execute(segment);
+		}
+	}
+
+	/**
+	 * Decoded entities queued for delivery, with the permit they hold.
+	 */
+	private static final class Batch {
+		private final List<Object> entities;
+		/** true for a permit of the shared budget, false for one of the segment */
+		private final boolean budgeted;
+
+		public Batch(final List<Object> entities, final boolean budgeted) {
+			super();
+			this.entities = entities;
+			this.budgeted = budgeted;
+		}
+	}
+
+	/**
+	 * A part of the file starting at a reset block. It is decoded by one of
+	 * the threads and the decoded entities are queued in batches until the
+	 * reading thread delivers them.
+	 */
+	private static class Segment implements Runnable, SelectiveO5mHandler {
+		private final File f;
+		private final long start;
+		private final long end;
+		private final O5mHandler directHandler;
+		private final O5mDecodeHints hints;
+		private final boolean batchNodes;
+		private final O5mReadStatistics stats;
+		private final Semaphore budget;
+		private final boolean last;
+		private final Semaphore own = new Semaphore(SEGMENT_BATCHES);
+		private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+		private List<Object> batch = new ArrayList<>(BATCH_SIZE);
+		private volatile Exception error = null;
+
+		public Segment(final File f, final long start, final long end,
+				final O5mHandler directHandler, final O5mDecodeHints hints,
+				final boolean batchNodes, final O5mReadStatistics stats, final Semaphore budget,
+				final boolean last) {
+			super();
+			this.f = f;
+			this.start = start;
+			this.end = end;
+			this.directHandler = directHandler;
+			this.hints = hints;
+			this.batchNodes = batchNodes;
+			this.stats = stats;
+			this.budget = budget;
+			this.last = last;
+		}
+
+		public boolean isLast() {
+			return last;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		public void fail(final Exception e) throws InterruptedException {
+			error = e;
+			batches.put(END_OF_SEGMENT);
+		}
+
+		/**
+		 * @return the handler the segment is decoded with
+		 */
+		private O5mHandler getDecodingHandler() {
+			if (directHandler != null) {
+				return directHandler;
+			}
+			return batchNodes ? new NodeBatchCollector(this) : this;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				try {
+					final O5mReader reader = READERS.get();
+					final MappedBlockSource source = new MappedBlockSource(f, start, end,
+							MappedBlockSource.DEFAULT_WINDOW_SIZE);
+					try {
+						reader.read(source, getDecodingHandler(), stats);
+					} finally {
+						source.close();
+					}
+					if (!batch.isEmpty()) {
+						queue(batch);
+					}
+					batches.put(END_OF_SEGMENT);
+				} catch (final IOException | RuntimeException e) {
+					fail(e);
+				}
+			} catch (final InterruptedException e) {
+				// the reading thread gave up
+			}
+		}
+
+		/**
+		 * gives the decoded entities of this segment to the handler. Returns
+		 * when the segment is completely decoded.
+		 * 
+		 * @param handler
+		 *            the handler of the reader
+		 * @throws IOException
+		 * @throws InterruptedException
+		 */
+		public void deliver(final O5mHandler handler) throws IOException, InterruptedException {
+			Batch next = batches.take();
+			while (next != END_OF_SEGMENT) {
+				for (final Object entity : next.entities) {
+					if (entity instanceof O5mNodeBatch) {
+						((O5mBatchHandler) handler).newNodes((O5mNodeBatch) entity);
+					} else if (entity instanceof O5mNode) {
+						handler.newNode((O5mNode) entity);
+					} else if (entity instanceof O5mWay) {
+						handler.newWay((O5mWay) entity);
+					} else {
+						handler.newRelation((O5mRelation) entity);
+					}
+				}
+				(next.budgeted ? budget : own).release();
+				next = batches.take();
+			}
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			} else if (error != null) {
+				throw new IOException("Decoding failed at offset " + start, error);
+			}
+		}
+
+		/**
+		 * queues the entities with a permit of the shared budget or, when the
+		 * budget is used up, with one of the segment. Waits until the segment
+		 * gets a permit back from the delivery.
+		 */
+		private void queue(final List<Object> entities) throws InterruptedException {
+			final boolean budgeted = budget.tryAcquire();
+			if (!budgeted) {
+				own.acquire();
+			}
+			batches.put(new Batch(entities, budgeted));
+		}
+
+		private void add(final Object entity) throws IOException {
+			batch.add(entity);
+			if (batch.size() >= BATCH_SIZE) {
+				try {
+					queue(batch);
+				} catch (final InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode node) throws IOException {
+			add(node.copy());
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) throws IOException {
+			add(way.copy());
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) throws IOException {
+			add(relation.copy());
+		}
+	}
+
+	/**
+	 * Decoding handler of a segment for a batch handler. The node batches of
+	 * the reader are copied as a whole instead of copying every node.
+	 */
+	private static class NodeBatchCollector implements O5mBatchHandler, SelectiveO5mHandler {
+		private final Segment segment;
+
+		public NodeBatchCollector(final Segment segment) {
+			super();
+			this.segment = segment;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return segment.getDecodeHints();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mBatchHandler#newNodes(mm.o5m.reader.O5mNodeBatch)
+		 */
+		@Override
+		public void newNodes(final O5mNodeBatch batch) throws IOException {
+			segment.add(batch.copy());
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode node) throws IOException {
+			segment.newNode(node);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) throws IOException {
+			segment.newWay(way);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) throws IOException {
+			segment.newRelation(relation);
+		}
+	}
+}
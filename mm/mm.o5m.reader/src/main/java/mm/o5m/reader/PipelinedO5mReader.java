@@ -0,0 +1,595 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reader running the three steps of reading an o5m file on three threads:
+ * a reading thread splits the file into blocks, a decoding thread decodes the
+ * entities and the calling thread runs the handler. So reading the disk,
+ * decoding and writing the results of the handler overlap.
+ * 
+ * The reading thread copies the blocks into chunks that are recycled through
+ * a bounded queue, the decoded entities are handed over in batches through a
+ * bounded queue as well. A slow stage stops the stages in front of it when the
+ * queues are full. When a stage fails, the other stages are stopped and the
+ * error is thrown by readFile.
+ * 
+ * @author benno
+ */
+public class PipelinedO5mReader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	private static final int CHUNKS = 4;
+	private static final int MAX_BLOCKS_PER_CHUNK = 1 << 15;
+	private static final int BATCH_SIZE = 4096;
+	private static final int QUEUED_BATCHES = 4;
+	private static final List<Object> END_OF_ENTITIES = Collections.emptyList();
+
+	private final int chunkSize;
+	private boolean memoryMapped = false;
+	private boolean writeIndex = false;
+	private O5mReadStatistics statistics = new O5mReadStatistics();
+
+	public PipelinedO5mReader() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize
+	 *            size of the chunks the blocks are handed to the decoding
+	 *            thread in. Bigger blocks get a chunk of their own size.
+	 */
+	public PipelinedO5mReader(final int chunkSize) {
+		super();
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param memoryMapped
+	 *            true for reading the blocks from the memory mapped file
+	 */
+	public void setMemoryMapped(final boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * @param writeIndex
+	 *            true for storing the {@link O5mIndex} of a file that is read
+	 *            as a whole and has no up to date index yet. The index is
+	 *            collected while reading, the file is not scanned once more.
+	 */
+	public void setWriteIndex(final boolean writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * @param statistics
+	 *            the statistics the decoding thread counts in
+	 */
+	public void setStatistics(final O5mReadStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return the statistics of the last or current read
+	 */
+	public O5mReadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * reads the file. When there is an up to date {@link O5mIndex} for the
+	 * file, reading starts behind the nodes if the handler does not want them
+	 * and stops in front of the ways or relations if it does not want them.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final O5mHandler handler) throws IOException {
+		final O5mDecodeHints hints = O5mDecodeHints.forHandler(handler);
+		readFile(f, O5mIndex.getStartOffset(f, hints), O5mIndex.getEndOffset(f, hints), handler);
+	}
+
+	/**
+	 * reads the file from an offset on. The offset has to be the offset of a
+	 * reset block or of the beginning of the file.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final O5mHandler handler)
+			throws IOException {
+		readFile(f, start, -1, handler);
+	}
+
+	/**
+	 * reads a part of the file. The start has to be the offset of a reset
+	 * block or of the beginning of the file, the end the offset of a block.
+	 * 
+	 * @param f
+	 *            the o5m file
+	 * @param start
+	 *            offset of the first block to read
+	 * @param end
+	 *            offset behind the last block to read, -1 for the end of the
+	 *            file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final long start, final long end,
+			final O5mHandler handler) throws IOException {
+		final O5mReadStatistics stats = statistics;
+		stats.start();
+		try {
+			read(f, start, end, handler, stats);
+		} finally {
+			stats.finish();
+		}
+	}
+
+	/**
+	 * reads a part of the file without starting and finishing the statistics,
+	 * so a reader falling back to this one can count into its own statistics.
+	 */
+	void read(final File f, final long start, final long end, final O5mHandler handler,
+			final O5mReadStatistics stats) throws IOException {
+		O5mBlockSource source = memoryMapped ? new MappedBlockSource(f, start, end,
+				MappedBlockSource.DEFAULT_WINDOW_SIZE) : new StreamBlockSource(f, start, end);
+		IndexingBlockSource indexing = null;
+		if (writeIndex && IndexingBlockSource.isNeeded(f, start, end)) {
+			source = indexing = new IndexingBlockSource(f, source);
+		}
+		final Pipeline pipeline = new Pipeline(source, start, handler, stats);
+		final Thread blockReader = new Thread(pipeline.new BlockReader(), "o5m block reader");
+		final Thread decoder = new Thread(pipeline.new Decoder(), "o5m decoder");
+		blockReader.setDaemon(true);
+		decoder.setDaemon(true);
+		try {
+			blockReader.start();
+			decoder.start();
+			pipeline.deliver();
+			if (indexing != null) {
+				indexing.writeIndex();
+			}
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException("Reading " + f + " was interrupted");
+		} finally {
+			pipeline.stopped = true;
+			blockReader.interrupt();
+			decoder.interrupt();
+			try {
+				blockReader.join();
+				decoder.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			source.close();
+		}
+	}
+
+	/**
+	 * Blocks copied from the file. The last chunk of the file is marked by
+	 * last.
+	 */
+	private static final class Chunk {
+		private byte data[];
+		private final int types[];
+		private final int starts[];
+		private final int lengths[];
+		private final long offsets[];
+		private int count = 0;
+		private int used = 0;
+		private boolean last = false;
+
+		public Chunk(final int size) {
+			super();
+			data = new byte[size];
+			types = new int[MAX_BLOCKS_PER_CHUNK];
+			starts = new int[MAX_BLOCKS_PER_CHUNK];
+			lengths = new int[MAX_BLOCKS_PER_CHUNK];
+			offsets = new long[MAX_BLOCKS_PER_CHUNK];
+		}
+
+		public void clear() {
+			count = 0;
+			used = 0;
+			last = false;
+		}
+
+		public boolean isEmpty() {
+			return count == 0;
+		}
+
+		/**
+		 * @return false if the block does not fit into the chunk any more
+		 */
+		public boolean add(final int type, final ByteBuffer block, final long offset) {
+			final int length = block == null ? 0 : block.remaining();
+			if (count == types.length || (count > 0 && used + length > data.length)) {
+				return false;
+			}
+			if (length > data.length) {
+				data = new byte[length];
+			}
+			if (block != null) {
+				block.get(data, used, length);
+			}
+			types[count] = type;
+			starts[count] = used;
+			lengths[count] = length;
+			offsets[count] = offset;
+			used += length;
+			count++;
+			return true;
+		}
+	}
+
+	/**
+	 * The state shared by the three stages.
+	 */
+	private class Pipeline {
+		private final O5mBlockSource source;
+		private final long start;
+		private final O5mHandler handler;
+		private final O5mReadStatistics stats;
+		private final O5mDecodeHints hints;
+		private final boolean batchNodes;
+		private final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(CHUNKS);
+		private final BlockingQueue<Chunk> fullChunks = new ArrayBlockingQueue<>(CHUNKS);
+		private final BlockingQueue<List<Object>> batches = new ArrayBlockingQueue<>(
+				QUEUED_BATCHES);
+		private volatile Exception error = null;
+		/** set when the handler thread does not take any further entities */
+		private volatile boolean stopped = false;
+
+		public Pipeline(final O5mBlockSource source, final long start, final O5mHandler handler,
+				final O5mReadStatistics stats) {
+			super();
+			this.source = source;
+			this.start = start;
+			this.handler = handler;
+			this.stats = stats;
+			this.hints = O5mDecodeHints.forHandler(handler);
+			this.batchNodes = handler instanceof O5mBatchHandler;
+			for (int i = 0; i < CHUNKS; ++i) {
+				freeChunks.add(new Chunk(chunkSize));
+			}
+		}
+
+		/**
+		 * remembers the first error, it is thrown by the handler thread
+		 */
+		private void fail(final Exception e) {
+			if (error == null) {
+				error = e;
+			}
+		}
+
+		/**
+		 * runs the handler for the decoded entities until the decoder is
+		 * finished
+		 */
+		public void deliver() throws IOException, InterruptedException {
+			List<Object> next = batches.take();
+			while (next != END_OF_ENTITIES) {
+				for (final Object entity : next) {
+					if (entity instanceof O5mNodeBatch) {
+						((O5mBatchHandler) handler).newNodes((O5mNodeBatch) entity);
+					} else if (entity instanceof O5mNode) {
+						handler.newNode((O5mNode) entity);
+					} else if (entity instanceof O5mWay) {
+						handler.newWay((O5mWay) entity);
+					} else {
+						handler.newRelation((O5mRelation) entity);
+					}
+				}
+				next = batches.take();
+			}
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			} else if (error != null) {
+				throw new IOException("Decoding failed", error);
+			}
+		}
+
+		/**
+		 * First stage, splits the file into blocks.
+		 */
+		private class BlockReader implements Runnable {
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					Chunk chunk = freeChunks.take();
+					try {
+						boolean goOn = true;
+						while (goOn) {
+							final int blockType = source.nextBlock();
+							final ByteBuffer block = source.getBlockData();
+							final long offset = source.getBlockOffset();
+							if (!chunk.add(blockType, block, offset)) {
+								fullChunks.put(chunk);
+								chunk = freeChunks.take();
+								chunk.add(blockType, block, offset);
+							}
+							goOn = blockType >= 0 && blockType != O5mReader.END_OF_FILE;
+						}
+					} catch (final IOException | RuntimeException e) {
+						fail(e);
+					}
+					chunk.last = true;
+					if (!stopped) {
+						fullChunks.put(chunk);
+					}
+				} catch (final InterruptedException e) {
+					// the pipeline is stopped
+				}
+			}
+		}
+
+		/**
+		 * Second stage, decodes the blocks with an O5mReader and collects the
+		 * entities into batches.
+		 */
+		private class Decoder implements Runnable, O5mBlockSource, SelectiveO5mHandler {
+			private final ByteBuffer noData = ByteBuffer.allocate(0);
+			private Chunk chunk = null;
+			private ByteBuffer view = null;
+			private int index = 0;
+			private int blockType = -1;
+			private long blockOffset = start;
+			private List<Object> batch = new ArrayList<>(BATCH_SIZE);
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					try {
+						final O5mReader reader = new O5mReader();
+						reader.setVerbose(false);
+						reader.read(this, batchNodes ? new NodeBatchCollector(this) : this, stats);
+						if (!batch.isEmpty()) {
+							batches.put(batch);
+						}
+					} catch (final IOException | RuntimeException e) {
+						fail(e);
+					}
+					if (!stopped) {
+						batches.put(END_OF_ENTITIES);
+					}
+				} catch (final InterruptedException e) {
+					// the pipeline is stopped
+				}
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mBlockSource#nextBlock()
+			 */
+			@Override
+			public int nextBlock() throws IOException {
+				try {
+					while (chunk == null || index + 1 >= chunk.count) {
+						if (chunk != null) {
+							if (chunk.last) {
+								index = chunk.count;
+								blockType = -1;
+								blockOffset = chunk.count > 0 ? chunk.offsets[chunk.count - 1]
+										: blockOffset;
+								if (error instanceof IOException) {
+									throw (IOException) error;
+								} else if (error != null) {
+									throw new IOException("Reading failed", error);
+								}
+								return -1;
+							}
+							chunk.clear();
+							freeChunks.put(chunk);
+						}
+						chunk = fullChunks.take();
+						view = ByteBuffer.wrap(chunk.data);
+						index = -1;
+					}
+				} catch (final InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				index++;
+				blockType = chunk.types[index];
+				blockOffset = chunk.offsets[index];
+				view.limit(chunk.starts[index] + chunk.lengths[index]);
+				view.position(chunk.starts[index]);
+				return blockType;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mBlockSource#getBlockData()
+			 */
+			@Override
+			public ByteBuffer getBlockData() {
+				return blockType >= 0 && blockType <= 0xEF ? view : noData;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mBlockSource#getBlockOffset()
+			 */
+			@Override
+			public long getBlockOffset() {
+				return blockOffset;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.io.Closeable#close()
+			 */
+			@Override
+			public void close() {
+				// the block source is closed by the reading thread
+			}
+
+			private void add(final Object entity) throws IOException {
+				batch.add(entity);
+				if (batch.size() >= BATCH_SIZE) {
+					try {
+						batches.put(batch);
+					} catch (final InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+					batch = new ArrayList<>(BATCH_SIZE);
+				}
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+			 */
+			@Override
+			public O5mDecodeHints getDecodeHints() {
+				return hints;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+			 */
+			@Override
+			public void newNode(final O5mNode node) throws IOException {
+				add(node.copy());
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+			 */
+			@Override
+			public void newWay(final O5mWay way) throws IOException {
+				add(way.copy());
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+			 */
+			@Override
+			public void newRelation(final O5mRelation relation) throws IOException {
+				add(relation.copy());
+			}
+		}
+
+		/**
+		 * Decoding handler for a batch handler. The node batches of the reader
+		 * are copied as a whole instead of copying every node.
+		 */
+		private class NodeBatchCollector implements O5mBatchHandler, SelectiveO5mHandler {
+			private final Decoder decoder;
+
+			public NodeBatchCollector(final Decoder decoder) {
+				super();
+				this.decoder = decoder;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+			 */
+			@Override
+			public O5mDecodeHints getDecodeHints() {
+				return hints;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mBatchHandler#newNodes(mm.o5m.reader.O5mNodeBatch)
+			 */
+			@Override
+			public void newNodes(final O5mNodeBatch nodes) throws IOException {
+				decoder.add(nodes.copy());
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+			 */
+			@Override
+			public void newNode(final O5mNode node) throws IOException {
+				decoder.newNode(node);
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+			 */
+			@Override
+			public void newWay(final O5mWay way) throws IOException {
+				decoder.newWay(way);
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+			 */
+			@Override
+			public void newRelation(final O5mRelation relation) throws IOException {
+				decoder.newRelation(relation);
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Block source reading the o5m data through a buffered stream. Every block is
+ * copied into a read buffer that is reused for the following blocks.
+ * 
+ * @author benno
+ */
+public class StreamBlockSource implements O5mBlockSource {
+
+	private static final int BUFFER_SIZE = 1000;
+
+	private final InputStream in;
+	private byte readBuffer[] = new byte[BUFFER_SIZE];
+	private ByteBuffer data = null;
+	private long offset = 0;
+	private long blockOffset = 0;
+	private long end = -1;
+
+	/**
+	 * @param f
+	 *            o5m file to read
+	 * @throws IOException
+	 */
+	public StreamBlockSource(final File f) throws IOException {
+		this(new FileInputStream(f));
+	}
+
+	/**
+	 * Constructor for reading the file from an offset on.
+	 * 
+	 * @param f
+	 *            o5m file to read
+	 * @param start
+	 *            offset of the first block that shall be read
+	 * @throws IOException
+	 */
+	public StreamBlockSource(final File f, final long start) throws IOException {
+		this(f, start, -1);
+	}
+
+	/**
+	 * Constructor for reading a part of the file only.
+	 * 
+	 * @param f
+	 *            o5m file to read
+	 * @param start
+	 *            offset of the first block that shall be read
+	 * @param end
+	 *            offset behind the last block that shall be read, -1 for the
+	 *            end of the file
+	 * @throws IOException
+	 */
+	public StreamBlockSource(final File f, final long start, final long end)
+			throws IOException {
+		this(new FileInputStream(f));
+		this.end = end;
+		long skipped = 0;
+		while (skipped < start) {
+			final long n = in.skip(start - skipped);
+			if (n <= 0) {
+				break;
+			}
+			skipped += n;
+		}
+		offset = skipped;
+		blockOffset = skipped;
+	}
+
+	/**
+	 * @param in
+	 *            stream containing o5m data
+	 */
+	public StreamBlockSource(final InputStream in) {
+		super();
+		this.in = new BufferedInputStream(in, 1 << 16);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#nextBlock()
+	 */
+	@Override
+	public int nextBlock() throws IOException {
+		blockOffset = offset;
+		data = null;
+		if (end >= 0 && offset >= end) {
+			return -1;
+		}
+		final int blockType = in.read();
+		if (blockType < 0) {
+			return -1;
+		}
+		offset++;
+		if (blockType <= 0xEF) {
+			final int blockLength = readLength();
+			if (blockLength > readBuffer.length) {
+				readBuffer = new byte[blockLength + BUFFER_SIZE];
+			}
+			int got = 0;
+			while (got < blockLength) {
+				final int read = in.read(readBuffer, got, blockLength - got);
+				if (read < 0) {
+					throw new EOFException("Block at " + blockOffset + " is truncated");
+				}
+				got += read;
+			}
+			offset += blockLength;
+			data = ByteBuffer.wrap(readBuffer, 0, blockLength);
+		}
+		return blockType;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockData()
+	 */
+	@Override
+	public ByteBuffer getBlockData() {
+		return data;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.o5m.reader.O5mBlockSource#getBlockOffset()
+	 */
+	@Override
+	public long getBlockOffset() {
+		return blockOffset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * reads the length of a block from the stream
+	 * 
+	 * @return the length
+	 * @throws IOException
+	 */
+	private int readLength() throws IOException {
+		int shift = 0;
+		int b = readByte();
+		int ret = b & 0x7f;
+		while ((b & 0x80) == 0x80) {
+			shift += 7;
+			b = readByte();
+			ret += (b & 0x7f) << shift;
+		}
+		return ret;
+	}
+
+	private int readByte() throws IOException {
+		final int b = in.read();
+		if (b < 0) {
+			throw new EOFException("Block at " + blockOffset + " is truncated");
+		}
+		offset++;
+		return b;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns int ids to the keys and values of tags, so the tags a handler
+ * looks for can be compared by ids instead of Strings. The ids are only valid
+ * within the running program. The dictionary can be used from several
+ * threads.
+ * 
+ * Strings get an id by {@link #getId(String)}, e.g. the keys of a key filter
+ * or the tags a handler looks for. The readers only look the decoded strings
+ * up, so the dictionary does not grow with the names and values of a file. A
+ * decoded string without an id can not be one of the wanted strings.
+ * 
+ * @author benno
+ */
+public final class TagDictionary {
+
+	private static final TagDictionary DEFAULT = new TagDictionary();
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String strings[] = new String[1024];
+	private int size = 0;
+
+	/**
+	 * @return the dictionary shared by all readers
+	 */
+	public static TagDictionary getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * returns the id of a string. Unknown strings are added to the dictionary.
+	 * 
+	 * @param s
+	 *            the string
+	 * @return the id of the string
+	 */
+	public int getId(final String s) {
+		final Integer id = ids.get(s);
+		if (id != null) {
+			return id.intValue();
+		}
+		return add(s);
+	}
+
+	/**
+	 * returns the id of a string without adding it.
+	 * 
+	 * @param s
+	 *            the string
+	 * @return the id or -1 if the string is not known
+	 */
+	public int lookup(final String s) {
+		final Integer id = ids.get(s);
+		return id == null ? -1 : id.intValue();
+	}
+
+	/**
+	 * @param id
+	 *            an id returned by getId
+	 * @return the string belonging to the id
+	 */
+	public String getString(final int id) {
+		return strings[id];
+	}
+
+	/**
+	 * @return the number of known strings
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private synchronized int add(final String s) {
+		final Integer known = ids.get(s);
+		if (known != null) {
+			return known.intValue();
+		}
+		if (size == strings.length) {
+			strings = Arrays.copyOf(strings, 2 * size);
+		}
+		strings[size] = s;
+		ids.put(s, Integer.valueOf(size));
+		return size++;
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decoding of the variable length numbers of o5m. Seven bits are stored per
+ * byte, the highest bit is set when another byte follows. Signed numbers keep
+ * the sign in the lowest bit.
+ * 
+ * As long as eight bytes are left in the buffer, a number is decoded from a
+ * long read at once: the end of the number is found from the continuation
+ * bits and the seven bit groups are put together with a few shifts, without
+ * a branch per byte. Numbers longer than eight bytes and the last bytes of a
+ * buffer are decoded byte by byte.
+ * 
+ * @author benno
+ */
+public final class VarInt {
+
+	private static final long CONTINUATION_BITS = 0x8080808080808080L;
+	private static final long PAYLOAD_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+	private VarInt() {
+		super();
+	}
+
+	/**
+	 * @param buffer
+	 *            positioned at the number
+	 * @return the unsigned number, the buffer is positioned behind it
+	 */
+	public static long readUnsigned64(final ByteBuffer buffer) {
+		final int pos = buffer.position();
+		final int first = buffer.get(pos);
+		if (first >= 0) {
+			buffer.position(pos + 1);
+			return first;
+		}
+		if (buffer.limit() - pos < 8) {
+			return readUnsigned64Bytewise(buffer);
+		}
+		long word = buffer.getLong(pos);
+		if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+			word = Long.reverseBytes(word);
+		}
+		final long ends = ~word & CONTINUATION_BITS;
+		if (ends == 0) {
+			return readUnsigned64Bytewise(buffer);
+		}
+		// all bits up to the highest bit of the last byte of the number
+		final long mask = ends ^ (ends - 1);
+		buffer.position(pos + (Long.numberOfTrailingZeros(ends) >>> 3) + 1);
+		return compact(word & mask & PAYLOAD_BITS);
+	}
+
+	/**
+	 * @param buffer
+	 *            positioned at the number
+	 * @return the unsigned number, the buffer is positioned behind it
+	 */
+	public static int readUnsigned32(final ByteBuffer buffer) {
+		return (int) readUnsigned64(buffer);
+	}
+
+	/**
+	 * @param buffer
+	 *            positioned at the number
+	 * @return the signed number, the buffer is positioned behind it
+	 */
+	public static long readSigned64(final ByteBuffer buffer) {
+		final long u = readUnsigned64(buffer);
+		return (u >>> 1) ^ -(u & 1);
+	}
+
+	/**
+	 * @param buffer
+	 *            positioned at the number
+	 * @return the signed number, the buffer is positioned behind it
+	 */
+	public static int readSigned32(final ByteBuffer buffer) {
+		return (int) readSigned64(buffer);
+	}
+
+	/**
+	 * decodes delta coded signed numbers, as used for the references of ways
+	 * and the ids of relation members, until the end position is reached or
+	 * the target is full.
+	 * 
+	 * @param buffer
+	 *            positioned at the first delta
+	 * @param end
+	 *            position behind the last delta
+	 * @param base
+	 *            the value the first delta refers to
+	 * @param target
+	 *            gets the values
+	 * @param offset
+	 *            index of the first value within the target
+	 * @return index behind the last decoded value
+	 */
+	public static int readDeltas(final ByteBuffer buffer, final int end, final long base,
+			final long target[], final int offset) {
+		long last = base;
+		int i = offset;
+		while (i < target.length && buffer.position() < end) {
+			last += readSigned64(buffer);
+			target[i++] = last;
+		}
+		return i;
+	}
+
+	/**
+	 * the plain decoding, one byte after the other
+	 * 
+	 * @param buffer
+	 *            positioned at the number
+	 * @return the unsigned number, the buffer is positioned behind it
+	 */
+	public static long readUnsigned64Bytewise(final ByteBuffer buffer) {
+		int shift = 0;
+		byte b = buffer.get();
+		long ret = b & 0x7f;
+		while ((b & 0x80) == 0x80) {
+			shift += 7;
+			b = buffer.get();
+			ret += ((long) b & 0x7f) << shift;
+		}
+		return ret;
+	}
+
+	/**
+	 * puts the seven bit groups of the bytes of a little endian long together
+	 */
+	private static long compact(final long groups) {
+		long x = groups;
+		x = (x & 0x007f007f007f007fL) | ((x & 0x7f007f007f007f00L) >>> 1);
+		x = (x & 0x00003fff00003fffL) | ((x & 0x3fff00003fff0000L) >>> 2);
+		return (x & 0x000000000fffffffL) | ((x & 0x0fffffff00000000L) >>> 4);
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class BlockSourceTestCase {
+
+	private static final int NUMBER_OF_NODES = 500;
+
+	/**
+	 * writes a small o5m file containing nodes with increasing ids and
+	 * coordinates. Every tenth node has a tag.
+	 */
+	private File createFile() throws IOException {
+		final File f = File.createTempFile("blocks", ".o5m");
+		f.deleteOnExit();
+		final FileOutputStream out = new FileOutputStream(f);
+		out.write(new byte[] { (byte) 0xff, (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			final boolean tagged = i % 10 == 0;
+			// id delta 1, no version, lon delta +1, lat delta -1
+			final byte data[] = tagged ? new byte[] { 0x02, 0x00, 0x02, 0x01, 0x00, 0x61, 0x00,
+					0x62, 0x00 } : new byte[] { 0x02, 0x00, 0x02, 0x01 };
+			out.write(O5mReader.NODE_ENTRY);
+			out.write(data.length);
+			out.write(data);
+		}
+		out.write(O5mReader.END_OF_FILE);
+		out.close();
+		return f;
+	}
+
+	private List<long[]> read(final O5mBlockSource source) throws IOException {
+		final List<long[]> nodes = new ArrayList<>();
+		final O5mReader reader = new O5mReader();
+		try {
+			reader.read(source, new O5mHandler() {
+				@Override
+				public void newNode(final O5mNode node) {
+					nodes.add(new long[] { node.getNodeId(), node.getLat(), node.getLon(),
+							node.getProps().size() });
+				}
+
+				@Override
+				public void newWay(final O5mWay way) {
+				}
+
+				@Override
+				public void newRelation(final O5mRelation relation) {
+				}
+			});
+		} finally {
+			source.close();
+		}
+		return nodes;
+	}
+
+	private void check(final List<long[]> nodes) {
+		assertEquals(NUMBER_OF_NODES, nodes.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			final long node[] = nodes.get(i);
+			assertEquals(i + 1, node[0]);
+			assertEquals(-i - 1, node[1]);
+			assertEquals(i + 1, node[2]);
+			assertEquals(i % 10 == 0 ? 1 : 0, node[3]);
+		}
+	}
+
+	@Test
+	public void testStreamBlockSource() throws IOException {
+		check(read(new StreamBlockSource(createFile())));
+	}
+
+	@Test
+	public void testMappedBlockSource() throws IOException {
+		check(read(new MappedBlockSource(createFile())));
+	}
+
+	@Test
+	public void testMappedBlockSourceSmallWindow() throws IOException {
+		check(read(new MappedBlockSource(createFile(), 7)));
+	}
+
+	@Test
+	public void testBatchHandler() throws IOException {
+		final List<long[]> nodes = new ArrayList<>();
+		final O5mReader reader = new O5mReader();
+		final O5mBlockSource source = new MappedBlockSource(createFile());
+		try {
+			reader.read(source, new O5mBatchHandler() {
+				@Override
+				public void newNodes(final O5mNodeBatch batch) {
+					for (int i = 0; i < batch.size(); ++i) {
+						final int tags = batch.getTagEnd(i) - batch.getTagStart(i);
+						if (tags > 0) {
+							assertEquals("a", batch.getTagKey(batch.getTagStart(i)));
+							assertEquals("b", batch.getTagValue(batch.getTagStart(i)));
+						}
+						nodes.add(new long[] { batch.getIds()[i], batch.getLats()[i],
+								batch.getLons()[i], tags });
+					}
+				}
+
+				@Override
+				public void newNode(final O5mNode node) {
+					throw new IllegalStateException("nodes should come in batches");
+				}
+
+				@Override
+				public void newWay(final O5mWay way) {
+				}
+
+				@Override
+				public void newRelation(final O5mRelation relation) {
+				}
+			});
+		} finally {
+			source.close();
+		}
+		check(nodes);
+	}
+
+	@Test
+	public void testDeletedNodes() throws IOException {
+		final File f = File.createTempFile("change", ".o5c");
+		f.deleteOnExit();
+		final FileOutputStream out = new FileOutputStream(f);
+		out.write(new byte[] { (byte) 0xff, (byte) 0xe0, 0x04, 0x6f, 0x35, 0x63, 0x32 });
+		// node 1 and 3 with coordinates, node 2 without body is deleted
+		out.write(new byte[] { O5mReader.NODE_ENTRY, 0x04, 0x02, 0x00, 0x02, 0x01 });
+		out.write(new byte[] { O5mReader.NODE_ENTRY, 0x02, 0x02, 0x00 });
+		out.write(new byte[] { O5mReader.NODE_ENTRY, 0x04, 0x02, 0x00, 0x02, 0x01 });
+		out.write(O5mReader.END_OF_FILE);
+		out.close();
+		final List<Long> batched = new ArrayList<>();
+		final List<Long> deleted = new ArrayList<>();
+		final O5mBlockSource source = new StreamBlockSource(f);
+		try {
+			new O5mReader().read(source, new O5mBatchHandler() {
+				@Override
+				public void newNodes(final O5mNodeBatch batch) {
+					for (int i = 0; i < batch.size(); ++i) {
+						batched.add(Long.valueOf(batch.getIds()[i]));
+					}
+				}
+
+				@Override
+				public void newNode(final O5mNode node) {
+					assertTrue(node.isDeleted());
+					deleted.add(Long.valueOf(node.getNodeId()));
+				}
+
+				@Override
+				public void newWay(final O5mWay way) {
+				}
+
+				@Override
+				public void newRelation(final O5mRelation relation) {
+				}
+			});
+		} finally {
+			source.close();
+		}
+		assertEquals(2, batched.size());
+		assertEquals(Long.valueOf(1), batched.get(0));
+		assertEquals(Long.valueOf(3), batched.get(1));
+		assertEquals(1, deleted.size());
+		assertEquals(Long.valueOf(2), deleted.get(0));
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mm.o5m.reader.O5mRelation.RefType;
+
+import org.junit.Test;
+
+/**
+ * Deleted entities of a change file have to reach the handler with every
+ * reader, even when the nodes come in batches.
+ * 
+ * @author benno
+ */
+public class ChangeFileTestCase {
+
+	private static File createFile() throws IOException {
+		final File f = File.createTempFile("change", ".o5c");
+		f.deleteOnExit();
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			final O5mNode node = new O5mNode();
+			node.setMetadata(0, 0, 0, null, null);
+			node.set(1, 10, 20);
+			writer.writeNode(node);
+			node.set(2, 0, 0);
+			node.setDeleted();
+			writer.writeNode(node);
+			node.set(3, 30, 40);
+			writer.writeNode(node);
+			final O5mWay way = new O5mWay();
+			way.setMetadata(0, 0, 0, null, null);
+			way.set(10, new long[] { 1, 3 }, 2);
+			way.setDeleted();
+			writer.writeWay(way);
+			way.set(11, new long[] { 1, 3 }, 2);
+			writer.writeWay(way);
+			final O5mRelation relation = new O5mRelation();
+			relation.setMetadata(0, 0, 0, null, null);
+			relation.set(20);
+			relation.addRef(11, RefType.WAY, "outer");
+			relation.setDeleted();
+			writer.writeRelation(relation);
+		} finally {
+			writer.close();
+		}
+		return f;
+	}
+
+	/**
+	 * records the entities as id and deleted flag
+	 */
+	private static class RecordingHandler implements O5mBatchHandler {
+		private final List<String> entities = new ArrayList<>();
+
+		@Override
+		public void newNodes(final O5mNodeBatch batch) {
+			for (int i = 0; i < batch.size(); ++i) {
+				entities.add("n" + batch.getIds()[i]);
+			}
+		}
+
+		@Override
+		public void newNode(final O5mNode node) {
+			entities.add("n" + node.getNodeId() + (node.isDeleted() ? "-" : ""));
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+			entities.add("w" + way.getWayId() + (way.isDeleted() ? "-" : ""));
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			entities.add("r" + relation.getRelationId() + (relation.isDeleted() ? "-" : ""));
+		}
+
+		void check() {
+			assertEquals("[n1, n2-, n3, w10-, w11, r20-]", entities.toString());
+		}
+	}
+
+	@Test
+	public void testO5mReader() throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(createFile(), handler);
+		handler.check();
+	}
+
+	@Test
+	public void testPipelinedReader() throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		new PipelinedO5mReader().readFile(createFile(), handler);
+		handler.check();
+	}
+
+	@Test
+	public void testParallelReader() throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		new ParallelO5mReader(2).readFile(createFile(), handler);
+		handler.check();
+	}
+}
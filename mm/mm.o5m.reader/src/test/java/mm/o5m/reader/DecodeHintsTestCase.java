@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import mm.o5m.reader.O5mRelation.RefType;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class DecodeHintsTestCase {
+
+	/**
+	 * a node with author and tags, a way and a relation refering to the
+	 * strings of the node through the string table.
+	 */
+	private O5mBlockSource createSource() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { (byte) 0xff, (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		// id 1, version 1, timestamp 1, changeset 1, author 5/j, lon 0, lat
+		// 0, tags a=1 b=2
+		final byte node[] = new byte[] { 0x02, 0x01, 0x02, 0x02, 0x00, 0x05, 0x00, 0x6a, 0x00,
+				0x00, 0x00, 0x00, 0x61, 0x00, 0x31, 0x00, 0x00, 0x62, 0x00, 0x32, 0x00 };
+		write(out, O5mReader.NODE_ENTRY, node);
+		// id 1, no version, ref to node 1, tags a=1 b=2 from the table, c=3
+		final byte way[] = new byte[] { 0x02, 0x00, 0x01, 0x02, 0x02, 0x01, 0x00, 0x63, 0x00,
+				0x33, 0x00 };
+		write(out, O5mReader.WAY_ENTRY, way);
+		// id 1, no version, way 1 as outer, tag type=multipolygon
+		final ByteArrayOutputStream relation = new ByteArrayOutputStream();
+		relation.write(new byte[] { 0x02, 0x00, 0x09, 0x02, 0x00, 0x31, 0x6f, 0x75, 0x74, 0x65,
+				0x72, 0x00, 0x00 });
+		relation.write("type".getBytes("UTF-8"));
+		relation.write(0x00);
+		relation.write("multipolygon".getBytes("UTF-8"));
+		relation.write(0x00);
+		write(out, O5mReader.RELATION_ENTRY, relation.toByteArray());
+		out.write(O5mReader.END_OF_FILE);
+		return new StreamBlockSource(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	private void write(final ByteArrayOutputStream out, final int type, final byte data[]) {
+		out.write(type);
+		out.write(data.length);
+		out.write(data, 0, data.length);
+	}
+
+	private static class Collector implements SelectiveO5mHandler {
+		private final O5mDecodeHints hints;
+		final List<O5mDataObject> entities = new ArrayList<>();
+
+		Collector(final O5mDecodeHints hints) {
+			this.hints = hints;
+		}
+
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		@Override
+		public void newNode(final O5mNode node) {
+			entities.add(node.copy());
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+			entities.add(way.copy());
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			entities.add(relation.copy());
+		}
+	}
+
+	@Test
+	public void testEverything() throws IOException {
+		final Collector collector = new Collector(null);
+		new O5mReader().read(createSource(), collector);
+		assertEquals(3, collector.entities.size());
+		final O5mNode node = (O5mNode) collector.entities.get(0);
+		assertEquals("5", node.getUid());
+		assertEquals("j", node.getAuthor());
+		assertEquals(2, node.getTagCount());
+		final O5mWay way = (O5mWay) collector.entities.get(1);
+		final HashMap<String, String> props = new HashMap<>();
+		props.put("a", "1");
+		props.put("b", "2");
+		props.put("c", "3");
+		assertEquals(props, way.getProps());
+		final O5mRelation relation = (O5mRelation) collector.entities.get(2);
+		assertEquals("outer", relation.getRefs().get(0).getRole());
+	}
+
+	@Test
+	public void testSelective() throws IOException {
+		final O5mDecodeHints hints = new O5mDecodeHints();
+		hints.setNodes(false);
+		hints.setMetadata(false);
+		hints.setRoles(false);
+		hints.setKeys(new HashSet<>(Arrays.asList("b", "c", "type")));
+		final Collector collector = new Collector(hints);
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.read(createSource(), collector);
+		assertEquals(2, collector.entities.size());
+		final O5mWay way = (O5mWay) collector.entities.get(0);
+		final HashMap<String, String> props = new HashMap<>();
+		props.put("b", "2");
+		props.put("c", "3");
+		assertEquals(props, way.getProps());
+		assertEquals(Arrays.asList(Long.valueOf(1)), way.getRefs());
+		assertNull(way.getAuthor());
+		final O5mRelation relation = (O5mRelation) collector.entities.get(1);
+		assertEquals("multipolygon", relation.getProps().get("type"));
+		assertEquals(RefType.WAY, relation.getRefs().get(0).getType());
+		assertEquals(1, relation.getRefs().get(0).getId());
+		assertEquals("", relation.getRefs().get(0).getRole());
+	}
+
+	@Test
+	public void testSkipVarint() {
+		final ByteBuffer buffer = ByteBuffer.wrap(new byte[] { (byte) 0x81, (byte) 0x82, 0x03,
+				0x04 });
+		new O5mReader().skipVarint(buffer);
+		assertEquals(3, buffer.position());
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class O5mIndexTestCase {
+
+	private static final int NUMBER_OF_NODES = 100;
+	private static final int NUMBER_OF_WAYS = 10;
+
+	private long wayOffset;
+	private long relationOffset;
+	private long syncOffset;
+	private long jumpOffset;
+
+	/**
+	 * writes nodes, ways and a relation, each section starting with a reset.
+	 * There is a sync point between the nodes and a jump point in front of
+	 * the relations.
+	 */
+	private File createFile() throws IOException {
+		final File f = File.createTempFile("index", ".o5m");
+		f.deleteOnExit();
+		O5mIndex.getIndexFile(f).deleteOnExit();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { (byte) 0xff, (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			if (i == NUMBER_OF_NODES / 2) {
+				syncOffset = out.size();
+				write(out, O5mReader.SYNC_POINT, new byte[] { 0x00 });
+			}
+			// id delta 1, no version, lon and lat delta +1
+			write(out, O5mReader.NODE_ENTRY, new byte[] { 0x02, 0x00, 0x02, 0x02 });
+		}
+		wayOffset = out.size();
+		out.write(O5mReader.RESET);
+		for (int i = 0; i < NUMBER_OF_WAYS; ++i) {
+			// id delta 1, no version, ref to node delta 1, no tags
+			write(out, O5mReader.WAY_ENTRY, new byte[] { 0x02, 0x00, 0x01, 0x02 });
+		}
+		jumpOffset = out.size();
+		write(out, O5mReader.JUMP_POINT, new byte[] { 0x00 });
+		relationOffset = out.size();
+		out.write(O5mReader.RESET);
+		// id 1, no version, way 1 as outer
+		write(out, O5mReader.RELATION_ENTRY, new byte[] { 0x02, 0x00, 0x09, 0x02, 0x00, 0x31,
+				0x6f, 0x75, 0x74, 0x65, 0x72, 0x00 });
+		out.write(O5mReader.END_OF_FILE);
+		final FileOutputStream fout = new FileOutputStream(f);
+		out.writeTo(fout);
+		fout.close();
+		return f;
+	}
+
+	private void write(final ByteArrayOutputStream out, final int type, final byte data[]) {
+		out.write(type);
+		out.write(data.length);
+		out.write(data, 0, data.length);
+	}
+
+	private O5mReadStatistics readRelations(final File f) throws IOException {
+		final O5mDecodeHints hints = new O5mDecodeHints();
+		hints.setNodes(false);
+		hints.setWays(false);
+		final int relations[] = new int[1];
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, new SelectiveO5mHandler() {
+			@Override
+			public O5mDecodeHints getDecodeHints() {
+				return hints;
+			}
+
+			@Override
+			public void newNode(final O5mNode node) {
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+				assertEquals(1, relation.getRelationId());
+				assertEquals("outer", relation.getRefs().get(0).getRole());
+				relations[0]++;
+			}
+		});
+		assertEquals(1, relations[0]);
+		return reader.getStatistics();
+	}
+
+	@Test
+	public void testBuild() throws IOException {
+		final File f = createFile();
+		final O5mIndex index = O5mIndex.build(f);
+		assertEquals(wayOffset, index.getWayOffset());
+		assertEquals(relationOffset, index.getRelationOffset());
+		// behind the reset blocks
+		assertEquals(wayOffset + 1, index.getNodeEnd());
+		assertEquals(relationOffset + 1, index.getWayEnd());
+		assertArrayEquals(new long[] { syncOffset }, index.getSyncPoints());
+		assertArrayEquals(new long[] { jumpOffset }, index.getJumpPoints());
+	}
+
+	@Test
+	public void testSkipNodes() throws IOException {
+		final File f = createFile();
+		assertNull(O5mIndex.load(f));
+		// without index everything is read
+		O5mReadStatistics stats = readRelations(f);
+		assertEquals(NUMBER_OF_NODES, stats.getNodes());
+		assertEquals(NUMBER_OF_WAYS, stats.getWays());
+
+		O5mIndex.forFile(f);
+		final O5mIndex index = O5mIndex.load(f);
+		assertNotNull(index);
+		assertEquals(relationOffset, index.getRelationOffset());
+		stats = readRelations(f);
+		assertEquals(0, stats.getNodes());
+		assertEquals(0, stats.getWays());
+		assertEquals(1, stats.getRelations());
+	}
+
+	@Test
+	public void testSkipWays() throws IOException {
+		final File f = createFile();
+		O5mIndex.forFile(f);
+		final O5mDecodeHints hints = new O5mDecodeHints();
+		hints.setWays(false);
+		hints.setRelations(false);
+		final int nodes[] = new int[1];
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, new SelectiveO5mHandler() {
+			@Override
+			public O5mDecodeHints getDecodeHints() {
+				return hints;
+			}
+
+			@Override
+			public void newNode(final O5mNode node) {
+				nodes[0]++;
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		assertEquals(NUMBER_OF_NODES, nodes[0]);
+		final O5mReadStatistics stats = reader.getStatistics();
+		assertEquals(NUMBER_OF_NODES, stats.getNodes());
+		assertEquals(0, stats.getWays());
+		assertEquals(0, stats.getRelations());
+		assertEquals(wayOffset + 1, stats.getBytesRead());
+	}
+
+	/**
+	 * the readers store the index they collected while reading the whole file
+	 */
+	@Test
+	public void testWriteIndex() throws IOException {
+		final File f = createFile();
+		final O5mHandler handler = new O5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		};
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, handler);
+		assertNull(O5mIndex.load(f));
+		reader.setWriteIndex(true);
+		reader.readFile(f, handler);
+		assertIndex(f);
+
+		assertTrue(O5mIndex.getIndexFile(f).delete());
+		final PipelinedO5mReader pipelinedReader = new PipelinedO5mReader();
+		pipelinedReader.setWriteIndex(true);
+		pipelinedReader.readFile(f, handler);
+		assertIndex(f);
+
+		assertTrue(O5mIndex.getIndexFile(f).delete());
+		final ParallelO5mReader parallelReader = new ParallelO5mReader(2);
+		parallelReader.setSegmentSize(1);
+		parallelReader.setWriteIndex(true);
+		parallelReader.readFile(f, handler);
+		assertIndex(f);
+	}
+
+	private void assertIndex(final File f) throws IOException {
+		final O5mIndex index = O5mIndex.load(f);
+		assertNotNull(index);
+		final O5mIndex built = O5mIndex.build(f);
+		assertEquals(built.getWayOffset(), index.getWayOffset());
+		assertEquals(built.getRelationOffset(), index.getRelationOffset());
+		assertEquals(built.getNodeEnd(), index.getNodeEnd());
+		assertEquals(built.getWayEnd(), index.getWayEnd());
+		assertArrayEquals(built.getSyncPoints(), index.getSyncPoints());
+		assertArrayEquals(built.getJumpPoints(), index.getJumpPoints());
+	}
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mm.o5m.reader.O5mRelation.RefType;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class O5mWriterTestCase {
+
+	/** more distinct strings than the string table holds */
+	private static final int NUMBER_OF_NODES = 20000;
+	private static final String LONG_VALUE;
+
+	static {
+		final char chars[] = new char[300];
+		Arrays.fill(chars, 'x');
+		LONG_VALUE = new String(chars);
+	}
+
+	private static void write(final O5mWriter writer) throws IOException {
+		writer.writeBoundingBox(-10, -20, 10, 20);
+		final O5mNode node = new O5mNode();
+		for (int i = 1; i <= NUMBER_OF_NODES; ++i) {
+			node.set(3 * i, 520000000 + i * (i % 2 == 0 ? 1 : -1), -i);
+			if (i % 3 == 0) {
+				node.setMetadata(2, 1400000000L + i, 100 + i % 7, i % 2 == 0 ? "4711" : "",
+						"Sch\u00f6n");
+			} else {
+				node.setMetadata(0, 0, 0, null, null);
+			}
+			if (i == 5) {
+				node.setTags(new String[] { "note", LONG_VALUE }, 1);
+			} else {
+				node.setTags(new String[] { "highway", "road", "name", "n" + i }, 2);
+			}
+			writer.writeNode(node);
+		}
+		final O5mWay way = new O5mWay();
+		way.setMetadata(0, 0, 0, null, null);
+		way.setTags(new String[] { "highway", "road" }, 1);
+		way.set(10, new long[] { 3, 6, 9 }, 3);
+		writer.writeWay(way);
+		way.set(8, new long[] { 30, 3 }, 2);
+		writer.writeWay(way);
+		final O5mRelation relation = new O5mRelation();
+		relation.setMetadata(0, 0, 0, null, null);
+		relation.setTags(new String[] { "type", "multipolygon" }, 1);
+		relation.set(1);
+		relation.addRef(10, RefType.WAY, "outer");
+		relation.addRef(8, RefType.WAY, "inner");
+		relation.addRef(3, RefType.NODE, "");
+		relation.addRef(1000, RefType.RELATION, "sub");
+		writer.writeRelation(relation);
+	}
+
+	private static byte[] createFile() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final O5mWriter writer = new O5mWriter(out);
+		try {
+			write(writer);
+		} finally {
+			writer.close();
+		}
+		return out.toByteArray();
+	}
+
+	private static class RecordingHandler implements O5mHandler {
+		private final List<O5mNode> nodes = new ArrayList<>();
+		private final List<O5mWay> ways = new ArrayList<>();
+		private final List<O5mRelation> relations = new ArrayList<>();
+
+		@Override
+		public void newNode(final O5mNode node) {
+			nodes.add(node.copy());
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+			ways.add(way.copy());
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			relations.add(relation.copy());
+		}
+	}
+
+	private static RecordingHandler read(final byte data[]) throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.read(new StreamBlockSource(new ByteArrayInputStream(data)), handler);
+		return handler;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final RecordingHandler handler = read(createFile());
+		assertEquals(NUMBER_OF_NODES, handler.nodes.size());
+		for (int i = 1; i <= NUMBER_OF_NODES; ++i) {
+			final O5mNode node = handler.nodes.get(i - 1);
+			assertEquals(3 * i, node.getNodeId());
+			assertEquals(520000000 + i * (i % 2 == 0 ? 1 : -1), node.getLat());
+			assertEquals(-i, node.getLon());
+			if (i % 3 == 0) {
+				assertEquals(2, node.getVersion());
+				assertEquals(1400000000L + i, node.getTimeStamp());
+				assertEquals(100 + i % 7, node.getChangeSet());
+				assertEquals(i % 2 == 0 ? "4711" : "", node.getUid());
+				assertEquals("Sch\u00f6n", node.getAuthor());
+			} else {
+				assertEquals(0, node.getVersion());
+			}
+			if (i == 5) {
+				assertEquals(LONG_VALUE, node.getProps().get("note"));
+			} else {
+				assertEquals(2, node.getTagCount());
+				assertEquals("road", node.getProps().get("highway"));
+				assertEquals("n" + i, node.getProps().get("name"));
+			}
+		}
+		assertEquals(2, handler.ways.size());
+		assertEquals(10, handler.ways.get(0).getWayId());
+		assertEquals(Arrays.asList(3L, 6L, 9L), handler.ways.get(0).getRefs());
+		assertEquals(8, handler.ways.get(1).getWayId());
+		assertEquals(Arrays.asList(30L, 3L), handler.ways.get(1).getRefs());
+		assertEquals("road", handler.ways.get(1).getProps().get("highway"));
+
+		assertEquals(1, handler.relations.size());
+		final O5mRelation relation = handler.relations.get(0);
+		assertEquals(1, relation.getRelationId());
+		assertEquals("multipolygon", relation.getProps().get("type"));
+		assertEquals(4, relation.getRefs().size());
+		final long ids[] = { 10, 8, 3, 1000 };
+		final RefType types[] = { RefType.WAY, RefType.WAY, RefType.NODE, RefType.RELATION };
+		final String roles[] = { "outer", "inner", "", "sub" };
+		for (int i = 0; i < ids.length; ++i) {
+			assertEquals(ids[i], relation.getRefs().get(i).getId());
+			assertEquals(types[i], relation.getRefs().get(i).getType());
+			assertEquals(roles[i], relation.getRefs().get(i).getRole());
+		}
+	}
+
+	/**
+	 * reading into a writer copies the file byte by byte
+	 */
+	@Test
+	public void testCopy() throws IOException {
+		final byte data[] = createFile();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final O5mWriter writer = new O5mWriter(out);
+		writer.writeBoundingBox(-10, -20, 10, 20);
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.read(new StreamBlockSource(new ByteArrayInputStream(data)), writer);
+		writer.close();
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+	}
+
+	@Test
+	public void testSections() throws IOException {
+		final File f = File.createTempFile("writer", ".o5m");
+		f.deleteOnExit();
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			write(writer);
+		} finally {
+			writer.close();
+		}
+		final O5mIndex index = O5mIndex.build(f);
+		assertTrue(index.getWayOffset() > 0);
+		assertTrue(index.getRelationOffset() > index.getWayOffset());
+		final RecordingHandler handler = new RecordingHandler();
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, index.getWayOffset(), handler);
+		assertEquals(0, handler.nodes.size());
+		assertEquals(2, handler.ways.size());
+		assertEquals(1, handler.relations.size());
+	}
+
+	/**
+	 * the nodes get reset blocks of their own, which split them into
+	 * segments for the ParallelO5mReader
+	 */
+	@Test
+	public void testResetInterval() throws IOException {
+		final File f = File.createTempFile("writer", ".o5m");
+		f.deleteOnExit();
+		final O5mWriter writer = new O5mWriter(f);
+		writer.setResetInterval(4096);
+		try {
+			write(writer);
+		} finally {
+			writer.close();
+		}
+		int resets = 0;
+		final MappedBlockSource source = new MappedBlockSource(f);
+		try {
+			int blockType = source.nextBlock();
+			while (blockType >= 0 && blockType != O5mReader.END_OF_FILE) {
+				if (blockType == O5mReader.RESET) {
+					resets++;
+				}
+				blockType = source.nextBlock();
+			}
+		} finally {
+			source.close();
+		}
+		assertTrue(resets > 10);
+
+		final RecordingHandler handler = new RecordingHandler();
+		final ParallelO5mReader reader = new ParallelO5mReader(3);
+		reader.setSegmentSize(4096);
+		reader.readFile(f, handler);
+		final RecordingHandler expected = read(createFile());
+		assertEquals(NUMBER_OF_NODES, handler.nodes.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			assertEquals(expected.nodes.get(i).getNodeId(), handler.nodes.get(i).getNodeId());
+			assertEquals(expected.nodes.get(i).getLat(), handler.nodes.get(i).getLat());
+			assertEquals(expected.nodes.get(i).getProps(), handler.nodes.get(i).getProps());
+			assertEquals(expected.nodes.get(i).getAuthor(), handler.nodes.get(i).getAuthor());
+		}
+		assertEquals(2, handler.ways.size());
+		assertEquals(expected.ways.get(1).getRefs(), handler.ways.get(1).getRefs());
+		assertEquals(1, handler.relations.size());
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class ParallelO5mReaderTestCase {
+
+	private static final int NUMBER_OF_NODES = 10000;
+	private static final int RESET_INTERVAL = 50;
+
+	/**
+	 * writes an o5m file with a reset block in front of every 50 nodes. The
+	 * first node behind a reset carries a new tag, the others refer to it
+	 * through the string table.
+	 */
+	private File createFile() throws IOException {
+		final File f = File.createTempFile("parallel", ".o5m");
+		f.deleteOnExit();
+		final FileOutputStream out = new FileOutputStream(f);
+		out.write(new byte[] { (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			final ByteArrayOutputStream data = new ByteArrayOutputStream();
+			if (i % RESET_INTERVAL == 0) {
+				out.write(O5mReader.RESET);
+				// absolute id, no version, absolute lon and lat, inline tag k=v
+				final long id = i + 1;
+				writeSigned(data, id);
+				data.write(0x00);
+				writeSigned(data, id);
+				writeSigned(data, id);
+				data.write(new byte[] { 0x00, 0x6b, 0x00, 0x76, 0x00 });
+			} else {
+				// id delta 1, no version, lon and lat delta +1, tag from table
+				data.write(new byte[] { 0x02, 0x00, 0x02, 0x02, 0x01 });
+			}
+			out.write(O5mReader.NODE_ENTRY);
+			out.write(data.size());
+			data.writeTo(out);
+		}
+		out.write(O5mReader.END_OF_FILE);
+		out.close();
+		return f;
+	}
+
+	private void writeSigned(final ByteArrayOutputStream out, final long value) {
+		long u = value < 0 ? (~value << 1) | 1 : value << 1;
+		while (u >= 0x80) {
+			out.write((int) (u & 0x7f) | 0x80);
+			u >>>= 7;
+		}
+		out.write((int) u);
+	}
+
+	@Test
+	public void testOrdered() throws IOException {
+		final List<Long> ids = new ArrayList<>();
+		final int key = TagDictionary.getDefault().getId("k");
+		final int value = TagDictionary.getDefault().getId("v");
+		final ParallelO5mReader reader = new ParallelO5mReader(3);
+		reader.setSegmentSize(64);
+		reader.readFile(createFile(), new O5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				ids.add(Long.valueOf(node.getNodeId()));
+				assertEquals(node.getNodeId(), node.getLat());
+				assertEquals(node.getNodeId(), node.getLon());
+				assertEquals("v", node.getProps().get("k"));
+				assertTrue(node.hasTag(key, value));
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		assertEquals(NUMBER_OF_NODES, ids.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			assertEquals(i + 1, ids.get(i).longValue());
+		}
+	}
+
+	@Test
+	public void testUnordered() throws IOException {
+		final List<Long> ids = Collections.synchronizedList(new ArrayList<Long>());
+		final AtomicLong sum = new AtomicLong();
+		final ParallelO5mReader reader = new ParallelO5mReader(3);
+		reader.setSegmentSize(64);
+		reader.readFile(createFile(), new UnorderedO5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				ids.add(Long.valueOf(node.getNodeId()));
+				sum.addAndGet(node.getLat());
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		assertEquals(NUMBER_OF_NODES, ids.size());
+		assertEquals((long) NUMBER_OF_NODES * (NUMBER_OF_NODES + 1) / 2, sum.get());
+	}
+
+	/**
+	 * while the handler waits at the first node, the threads decode the
+	 * following segments until the shared budget is used up
+	 */
+	@Test
+	public void testDecodeAhead() throws IOException {
+		final List<Long> ids = new ArrayList<>();
+		final O5mReadStatistics stats = new O5mReadStatistics();
+		final AtomicLong ahead = new AtomicLong();
+		final AtomicLong bounded = new AtomicLong();
+		final ParallelO5mReader reader = new ParallelO5mReader(3);
+		reader.setSegmentSize(64);
+		reader.setStatistics(stats);
+		reader.readFile(createFile(), new O5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				if (ids.isEmpty()) {
+					try {
+						// far more than the 7 segments of 50 nodes a queue per
+						// segment allowed
+						final long timeout = System.currentTimeMillis() + 10000;
+						while (stats.getNodes() < 1000 && System.currentTimeMillis() < timeout) {
+							Thread.sleep(10);
+						}
+						ahead.set(stats.getNodes());
+						Thread.sleep(200);
+						bounded.set(stats.getNodes());
+					} catch (final InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				ids.add(Long.valueOf(node.getNodeId()));
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		assertTrue("decoded ahead: " + ahead.get(), ahead.get() >= 1000);
+		assertTrue("decoded ahead: " + bounded.get(), bounded.get() < NUMBER_OF_NODES);
+		assertEquals(NUMBER_OF_NODES, ids.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			assertEquals(i + 1, ids.get(i).longValue());
+		}
+	}
+
+	private static class CountingHandler implements O5mHandler {
+		private long nodes = 0;
+
+		@Override
+		public void newNode(final O5mNode node) {
+			nodes++;
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+		}
+	}
+
+	/**
+	 * the time spent in the handler is not counted as decoding time
+	 */
+	@Test
+	public void testHandleTime() throws IOException {
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(createFile(), new CountingHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				final long end = System.nanoTime() + 20000;
+				while (System.nanoTime() < end) {
+					// a slow handler
+				}
+			}
+		});
+		final O5mReadStatistics stats = reader.getStatistics();
+		assertTrue("handler " + stats.getHandleTimeMillis(), stats.getHandleTimeMillis() >= 100);
+		assertTrue("decoding " + stats.getDecodeTimeMillis(),
+				stats.getDecodeTimeMillis() < stats.getHandleTimeMillis() / 2);
+	}
+
+	@Test
+	public void testStatistics() throws IOException, JMException {
+		final File f = createFile();
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger finished = new AtomicInteger();
+		final O5mReadStatistics stats = new O5mReadStatistics();
+		stats.addListener(new O5mReadListener() {
+			@Override
+			public void readStarted(final O5mReadStatistics statistics) {
+				started.incrementAndGet();
+			}
+
+			@Override
+			public void progress(final O5mReadStatistics statistics) {
+				assertTrue(statistics.isRunning());
+			}
+
+			@Override
+			public void readFinished(final O5mReadStatistics statistics) {
+				finished.incrementAndGet();
+			}
+		});
+		stats.registerMBean("test");
+		try {
+			final ParallelO5mReader reader = new ParallelO5mReader(3);
+			reader.setSegmentSize(64);
+			reader.setStatistics(stats);
+			reader.readFile(f, new CountingHandler());
+			assertEquals(1, started.get());
+			assertEquals(1, finished.get());
+			assertEquals(NUMBER_OF_NODES, stats.getNodes());
+			// everything but the end of file byte
+			assertEquals(f.length() - 1, stats.getBytesRead());
+			final ObjectName name = new ObjectName(O5mReadStatistics.JMX_DOMAIN
+					+ ":type=O5mReadStatistics,name=\"test\"");
+			assertEquals(Long.valueOf(NUMBER_OF_NODES), ManagementFactory
+					.getPlatformMBeanServer().getAttribute(name, "Nodes"));
+		} finally {
+			stats.unregisterMBean();
+		}
+
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.setStatistics(stats);
+		reader.readFile(f, new CountingHandler());
+		assertEquals(2, started.get());
+		assertEquals(2, finished.get());
+		assertEquals(NUMBER_OF_NODES, stats.getNodes());
+		assertEquals(0, stats.getWays());
+		assertEquals(f.length() - 1, stats.getBytesRead());
+	}
+
+	/**
+	 * a file with a single reset block makes a single segment, it is read by
+	 * a PipelinedO5mReader, which calls an unordered handler on the calling
+	 * thread as well
+	 */
+	@Test
+	public void testSingleSegment() throws IOException {
+		final File f = File.createTempFile("single", ".o5m");
+		f.deleteOnExit();
+		final O5mWriter writer = new O5mWriter(f);
+		writer.setResetInterval(0);
+		try {
+			final O5mNode node = new O5mNode();
+			node.setMetadata(0, 0, 0, null, null);
+			node.setTags(new String[] { "k", "v" }, 1);
+			for (int i = 1; i <= NUMBER_OF_NODES; ++i) {
+				node.set(i, i, i);
+				writer.writeNode(node);
+			}
+		} finally {
+			writer.close();
+		}
+		final Thread caller = Thread.currentThread();
+		final List<Long> ids = new ArrayList<>();
+		final AtomicInteger otherThreads = new AtomicInteger();
+		final ParallelO5mReader reader = new ParallelO5mReader(3);
+		reader.setSegmentSize(64);
+		reader.readFile(f, new UnorderedO5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				if (Thread.currentThread() != caller) {
+					otherThreads.incrementAndGet();
+				}
+				ids.add(Long.valueOf(node.getNodeId()));
+				assertEquals("v", node.getProps().get("k"));
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		assertEquals(0, otherThreads.get());
+		assertEquals(NUMBER_OF_NODES, ids.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			assertEquals(i + 1, ids.get(i).longValue());
+		}
+		assertEquals(NUMBER_OF_NODES, reader.getStatistics().getNodes());
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class PipelinedO5mReaderTestCase {
+
+	private static final int NUMBER_OF_NODES = 20000;
+	private static final int NUMBER_OF_WAYS = 100;
+
+	/**
+	 * writes nodes with increasing ids and coordinates followed by ways
+	 * refering to them. Every tenth node has a tag.
+	 */
+	private File createFile() throws IOException {
+		final File f = File.createTempFile("pipelined", ".o5m");
+		f.deleteOnExit();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { (byte) 0xff, (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			// id delta 1, no version, lon delta +1, lat delta -1, tag a=b
+			final byte data[] = i % 10 == 0 ? new byte[] { 0x02, 0x00, 0x02, 0x01, 0x00, 0x61,
+					0x00, 0x62, 0x00 } : new byte[] { 0x02, 0x00, 0x02, 0x01 };
+			write(out, O5mReader.NODE_ENTRY, data);
+		}
+		out.write(O5mReader.RESET);
+		for (int i = 0; i < NUMBER_OF_WAYS; ++i) {
+			// id delta 1, no version, ref to node delta 1, no tags
+			write(out, O5mReader.WAY_ENTRY, new byte[] { 0x02, 0x00, 0x01, 0x02 });
+		}
+		out.write(O5mReader.END_OF_FILE);
+		final FileOutputStream fout = new FileOutputStream(f);
+		out.writeTo(fout);
+		fout.close();
+		return f;
+	}
+
+	private void write(final ByteArrayOutputStream out, final int type, final byte data[]) {
+		out.write(type);
+		out.write(data.length);
+		out.write(data, 0, data.length);
+	}
+
+	private static class Collector implements O5mHandler {
+		final List<long[]> nodes = new ArrayList<>();
+		final List<Long> ways = new ArrayList<>();
+
+		@Override
+		public void newNode(final O5mNode node) throws IOException {
+			nodes.add(new long[] { node.getNodeId(), node.getLat(), node.getLon(),
+					node.getTagCount() });
+		}
+
+		@Override
+		public void newWay(final O5mWay way) throws IOException {
+			ways.add(Long.valueOf(way.getWayId()));
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) throws IOException {
+		}
+	}
+
+	private void check(final Collector collector) {
+		assertEquals(NUMBER_OF_NODES, collector.nodes.size());
+		for (int i = 0; i < NUMBER_OF_NODES; ++i) {
+			final long node[] = collector.nodes.get(i);
+			assertEquals(i + 1, node[0]);
+			assertEquals(-i - 1, node[1]);
+			assertEquals(i + 1, node[2]);
+			assertEquals(i % 10 == 0 ? 1 : 0, node[3]);
+		}
+		assertEquals(NUMBER_OF_WAYS, collector.ways.size());
+		for (int i = 0; i < NUMBER_OF_WAYS; ++i) {
+			assertEquals(i + 1, collector.ways.get(i).longValue());
+		}
+	}
+
+	@Test
+	public void testSmallChunks() throws IOException {
+		final File f = createFile();
+		final Collector collector = new Collector();
+		final PipelinedO5mReader reader = new PipelinedO5mReader(64);
+		reader.readFile(f, collector);
+		check(collector);
+		assertEquals(NUMBER_OF_NODES, reader.getStatistics().getNodes());
+		assertEquals(f.length() - 1, reader.getStatistics().getBytesRead());
+	}
+
+	@Test
+	public void testMappedBatches() throws IOException {
+		final Collector collector = new Collector();
+		final PipelinedO5mReader reader = new PipelinedO5mReader();
+		reader.setMemoryMapped(true);
+		reader.readFile(createFile(), new O5mBatchHandler() {
+			@Override
+			public void newNodes(final O5mNodeBatch batch) {
+				for (int i = 0; i < batch.size(); ++i) {
+					collector.nodes.add(new long[] { batch.getIds()[i], batch.getLats()[i],
+							batch.getLons()[i], batch.getTagEnd(i) - batch.getTagStart(i) });
+				}
+			}
+
+			@Override
+			public void newNode(final O5mNode node) {
+				fail("nodes should come in batches");
+			}
+
+			@Override
+			public void newWay(final O5mWay way) throws IOException {
+				collector.newWay(way);
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		check(collector);
+	}
+
+	@Test(timeout = 10000)
+	public void testFailingHandler() throws IOException {
+		final PipelinedO5mReader reader = new PipelinedO5mReader(64);
+		try {
+			reader.readFile(createFile(), new Collector() {
+				@Override
+				public void newNode(final O5mNode node) throws IOException {
+					if (node.getNodeId() == 1000) {
+						throw new IOException("disk full");
+					}
+				}
+			});
+			fail("the error of the handler has to be thrown");
+		} catch (final IOException e) {
+			assertEquals("disk full", e.getMessage());
+		}
+		assertTrue(!reader.getStatistics().isRunning());
+	}
+
+	@Test(timeout = 10000)
+	public void testTruncatedFile() throws IOException {
+		final File f = createFile();
+		final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		raf.setLength(f.length() / 2);
+		raf.close();
+		try {
+			new PipelinedO5mReader(64).readFile(f, new Collector());
+			fail("the truncated block has to be reported");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage().contains("truncated"));
+		}
+	}
+}
@@ -20,9 +20,16 @@
 package mm.o5m.reader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -143,4 +150,112 @@ public class ValueReaderTestCase {
 		assertEquals(pair[1], "JohN");
 	}
 
+	/**
+	 * Test method for {@link mm.o5m.reader.O5mStringTable}. Equal strings
+	 * share one instance, pairs too long for the table are not stored and
+	 * the ids of the strings are looked up without adding them.
+	 */
+	@Test
+	public void testStringTable() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { 0x00, 0x6b, 0x00, 0x61, 0x00 });
+		out.write(new byte[] { 0x00, 0x6b, 0x00, 0x62, 0x00 });
+		out.write(0x00);
+		for (int i = 0; i < 300; ++i) {
+			out.write(0x6c);
+		}
+		out.write(new byte[] { 0x00, 0x78, 0x00, 0x01 });
+		final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		final O5mStringTable table = new O5mStringTable();
+		final int first = table.readPair(buffer);
+		final int second = table.readPair(buffer);
+		assertSame(table.getFirst(first), table.getFirst(second));
+		assertEquals("a", table.getSecond(first));
+		assertEquals("b", table.getSecond(second));
+		final TagDictionary dictionary = TagDictionary.getDefault();
+		final int b = dictionary.getId("b");
+		assertEquals(table.getFirstId(first), table.getFirstId(second));
+		assertEquals(b, table.getSecondId(second));
+		final int longPair = table.readPair(buffer);
+		assertEquals(300, table.getFirst(longPair).length());
+		assertEquals("x", table.getSecond(longPair));
+		// looking the strings up does not add them
+		final int size = dictionary.size();
+		assertEquals(-1, table.getFirstId(longPair));
+		table.getSecondId(longPair);
+		table.getSecondId(first);
+		assertEquals(size, dictionary.size());
+		assertEquals(second, table.readPair(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+
+	/**
+	 * An entity referring to the oldest entries of a full string table and
+	 * adding new strings afterwards. The new strings take the slots of the
+	 * oldest entries before the entity is handed over.
+	 */
+	@Test
+	public void testOldestSlots() throws IOException {
+		final File f = File.createTempFile("strings", ".o5m");
+		final FileOutputStream out = new FileOutputStream(f);
+		out.write(new byte[] { (byte) 0xe0, 0x04, 0x6f, 0x35, 0x6d, 0x32 });
+		out.write(O5mReader.RESET);
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (int i = 0; i <= O5mStringTable.SIZE; ++i) {
+			data.reset();
+			// id delta 1, no version, lon and lat delta 0
+			data.write(new byte[] { 0x02, 0x00, 0x00, 0x00 });
+			if (i < O5mStringTable.SIZE) {
+				data.write(0x00);
+				data.write(("k" + i).getBytes("UTF-8"));
+				data.write(new byte[] { 0x00, 0x76, 0x00 });
+			} else {
+				// the two oldest pairs, then two new ones
+				writeUnsigned(data, O5mStringTable.SIZE);
+				writeUnsigned(data, O5mStringTable.SIZE - 1);
+				data.write(new byte[] { 0x00, 0x61, 0x00, 0x78, 0x00 });
+				data.write(new byte[] { 0x00, 0x62, 0x00, 0x79, 0x00 });
+			}
+			out.write(O5mReader.NODE_ENTRY);
+			writeUnsigned(out, data.size());
+			data.writeTo(out);
+		}
+		out.write(O5mReader.END_OF_FILE);
+		out.close();
+
+		final Map<String, String> last = new HashMap<>();
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, new O5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				last.clear();
+				last.putAll(node.getProps());
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+			}
+		});
+		f.delete();
+		assertEquals(4, last.size());
+		assertEquals("v", last.get("k0"));
+		assertEquals("v", last.get("k1"));
+		assertEquals("x", last.get("a"));
+		assertEquals("y", last.get("b"));
+	}
+
+	private static void writeUnsigned(final OutputStream out, final int value)
+			throws IOException {
+		int u = value;
+		while (u >= 0x80) {
+			out.write(u & 0x7f | 0x80);
+			u >>>= 7;
+		}
+		out.write(u);
+	}
 }
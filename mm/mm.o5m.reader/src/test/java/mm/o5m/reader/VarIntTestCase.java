@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.o5m.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class VarIntTestCase {
+
+	private static void writeUnsigned(final ByteArrayOutputStream out, final long value) {
+		long u = value;
+		while ((u & ~0x7fL) != 0) {
+			out.write((int) (u & 0x7f) | 0x80);
+			u >>>= 7;
+		}
+		out.write((int) u);
+	}
+
+	private static void writeSigned(final ByteArrayOutputStream out, final long value) {
+		writeUnsigned(out, value < 0 ? (~value << 1) | 1 : value << 1);
+	}
+
+	/**
+	 * numbers of every length from one to ten bytes
+	 */
+	private static long[] createValues() {
+		final Random random = new Random(4711);
+		final long ret[] = new long[2000];
+		for (int i = 0; i < ret.length; ++i) {
+			final int bits = 1 + random.nextInt(63);
+			ret[i] = random.nextLong() >>> (64 - bits);
+		}
+		ret[0] = 0;
+		ret[1] = 127;
+		ret[2] = 128;
+		ret[3] = (1L << 56) - 1;
+		ret[4] = 1L << 56;
+		ret[5] = Long.MAX_VALUE;
+		return ret;
+	}
+
+	@Test
+	public void testUnsigned() {
+		final long values[] = createValues();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (final long value : values) {
+			writeUnsigned(out, value);
+		}
+		for (final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+				ByteOrder.LITTLE_ENDIAN }) {
+			final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(order);
+			for (final long value : values) {
+				assertEquals(value, VarInt.readUnsigned64(buffer));
+			}
+			assertEquals(0, buffer.remaining());
+		}
+	}
+
+	@Test
+	public void testSigned() {
+		final long values[] = createValues();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < values.length; ++i) {
+			writeSigned(out, i % 2 == 0 ? values[i] >> 1 : -(values[i] >> 1) - 1);
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		final O5mReader reader = new O5mReader();
+		for (int i = 0; i < values.length; ++i) {
+			final long expected = i % 2 == 0 ? values[i] >> 1 : -(values[i] >> 1) - 1;
+			if (i % 3 == 0) {
+				assertEquals(expected, VarInt.readSigned64(buffer));
+			} else {
+				assertEquals(expected, reader.readSigned64(buffer));
+			}
+		}
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void testDeltas() {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final long expected[] = new long[100];
+		long last = 1000;
+		for (int i = 0; i < expected.length; ++i) {
+			final long delta = i % 7 == 0 ? -50000 + i : 3 * i;
+			writeSigned(out, delta);
+			last += delta;
+			expected[i] = last;
+		}
+		out.write(0x55);
+		final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		final int end = buffer.limit() - 1;
+		final long target[] = new long[30];
+		final long values[] = new long[expected.length];
+		int count = 0;
+		long base = 1000;
+		while (buffer.position() < end) {
+			final int n = VarInt.readDeltas(buffer, end, base, target, 0);
+			System.arraycopy(target, 0, values, count, n);
+			count += n;
+			base = target[n - 1];
+		}
+		assertEquals(expected.length, count);
+		for (int i = 0; i < count; ++i) {
+			assertEquals(expected[i], values[i]);
+		}
+		assertEquals(0x55, buffer.get());
+	}
+}
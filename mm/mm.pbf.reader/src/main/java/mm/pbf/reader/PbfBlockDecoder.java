@@ -0,0 +1,683 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.pbf.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import mm.o5m.reader.O5mDataObject;
+import mm.o5m.reader.O5mDecodeHints;
+import mm.o5m.reader.O5mHandler;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.RefType;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.TagDictionary;
+
+/**
+ * Decodes the PrimitiveBlock of an OSMData blob and gives the entities to an
+ * O5mHandler. The coordinates are converted to the 100 nanodegrees of o5m,
+ * the timestamps to seconds. Like the o5m entities, the entities are reused
+ * and only valid during the call of the handler.
+ * 
+ * The strings of the block are only decoded when they are needed. A decoder
+ * is not thread safe, every thread decodes with a decoder of its own.
+ * 
+ * @author benno
+ */
+final class PbfBlockDecoder {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final RefType MEMBER_TYPES[] = { RefType.NODE, RefType.WAY,
+			RefType.RELATION };
+	private static final int UNKNOWN_ID = -2;
+
+	private final O5mNode node = new O5mNode();
+	private final O5mWay way = new O5mWay();
+	private final O5mRelation relation = new O5mRelation();
+	private final TagDictionary dictionary = TagDictionary.getDefault();
+	private O5mDecodeHints hints;
+
+	private ByteBuffer block;
+	private int stringStarts[] = new int[1024];
+	private int stringEnds[] = new int[1024];
+	private String strings[] = new String[1024];
+	private int stringIds[] = new int[1024];
+	private int stringCount = 0;
+	private int groupStarts[] = new int[16];
+	private int groupEnds[] = new int[16];
+	private int groupCount = 0;
+	private long granularity;
+	private long latOffset;
+	private long lonOffset;
+	private long dateGranularity;
+
+	private String tags[] = new String[32];
+	private int keys[] = new int[32];
+	private int keyCount = 0;
+	private int values[] = new int[32];
+	private int valueCount = 0;
+	private long refs[] = new long[256];
+	private int refCount = 0;
+	private int roles[] = new int[64];
+	private int roleCount = 0;
+	private int types[] = new int[64];
+	private int typeCount = 0;
+
+	private long nodes = 0;
+	private long ways = 0;
+	private long relations = 0;
+
+	/**
+	 * decodes a block
+	 * 
+	 * @param data
+	 *            the uncompressed PrimitiveBlock
+	 * @param handler
+	 *            gets the entities
+	 * @param hints
+	 *            the parts of the entities the handler wants
+	 * @throws IOException
+	 */
+	public void decode(final ByteBuffer data, final O5mHandler handler,
+			final O5mDecodeHints hints) throws IOException {
+		this.hints = hints;
+		block = data;
+		nodes = 0;
+		ways = 0;
+		relations = 0;
+		readBlock(new ProtoReader(data));
+		final ProtoReader reader = new ProtoReader(data);
+		for (int i = 0; i < groupCount; ++i) {
+			data.limit(groupEnds[i]);
+			data.position(groupStarts[i]);
+			readGroup(reader, handler);
+		}
+		Arrays.fill(strings, 0, stringCount, null);
+		block = null;
+	}
+
+	/**
+	 * @return number of nodes of the last block
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return number of ways of the last block
+	 */
+	public long getWays() {
+		return ways;
+	}
+
+	/**
+	 * @return number of relations of the last block
+	 */
+	public long getRelations() {
+		return relations;
+	}
+
+	/**
+	 * finds the string table and the groups. The granularities may follow the
+	 * groups, so the groups are decoded afterwards.
+	 */
+	private void readBlock(final ProtoReader reader) throws IOException {
+		stringCount = 0;
+		groupCount = 0;
+		granularity = 100;
+		latOffset = 0;
+		lonOffset = 0;
+		dateGranularity = 1000;
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				readStringTable(reader);
+				break;
+			case 2:
+				if (groupCount == groupStarts.length) {
+					groupStarts = Arrays.copyOf(groupStarts, 2 * groupCount);
+					groupEnds = Arrays.copyOf(groupEnds, 2 * groupCount);
+				}
+				groupEnds[groupCount] = reader.readLength();
+				groupStarts[groupCount] = reader.getBuffer().position();
+				reader.getBuffer().position(groupEnds[groupCount++]);
+				break;
+			case 17:
+				granularity = reader.readVarint();
+				break;
+			case 18:
+				dateGranularity = reader.readVarint();
+				break;
+			case 19:
+				latOffset = reader.readVarint();
+				break;
+			case 20:
+				lonOffset = reader.readVarint();
+				break;
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+	}
+
+	private void readStringTable(final ProtoReader reader) throws IOException {
+		final int limit = reader.pushLimit();
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			if (ProtoReader.fieldNumber(key) == 1) {
+				if (stringCount == stringStarts.length) {
+					stringStarts = Arrays.copyOf(stringStarts, 2 * stringCount);
+					stringEnds = Arrays.copyOf(stringEnds, 2 * stringCount);
+					strings = Arrays.copyOf(strings, 2 * stringCount);
+					stringIds = Arrays.copyOf(stringIds, 2 * stringCount);
+				}
+				stringEnds[stringCount] = reader.readLength();
+				stringStarts[stringCount] = reader.getBuffer().position();
+				stringIds[stringCount] = UNKNOWN_ID;
+				reader.getBuffer().position(stringEnds[stringCount++]);
+			} else {
+				reader.skip(key);
+			}
+		}
+		reader.popLimit(limit);
+	}
+
+	/**
+	 * @return the string of the string table
+	 */
+	private String string(final int index) throws IOException {
+		if (index < 0 || index >= stringCount) {
+			throw new IOException("String index " + index + " not in string table");
+		}
+		String ret = strings[index];
+		if (ret == null) {
+			final int start = stringStarts[index];
+			final int length = stringEnds[index] - start;
+			if (block.hasArray()) {
+				ret = new String(block.array(), block.arrayOffset() + start, length, UTF8);
+			} else {
+				final byte bytes[] = new byte[length];
+				for (int i = 0; i < length; ++i) {
+					bytes[i] = block.get(start + i);
+				}
+				ret = new String(bytes, UTF8);
+			}
+			strings[index] = ret;
+		}
+		return ret;
+	}
+
+	private boolean isKeyWanted(final int index) throws IOException {
+		if (hints.isAllKeys()) {
+			return true;
+		}
+		if (stringIds[index] == UNKNOWN_ID) {
+			stringIds[index] = dictionary.lookup(string(index));
+		}
+		return hints.isKeyWanted(stringIds[index]);
+	}
+
+	private void readGroup(final ProtoReader reader, final O5mHandler handler)
+			throws IOException {
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			final int field = ProtoReader.fieldNumber(key);
+			if (field == 1 && hints.isNodes()) {
+				readNode(reader, handler);
+			} else if (field == 2 && hints.isNodes()) {
+				readDenseNodes(reader, handler);
+			} else if (field == 3 && hints.isWays()) {
+				readWay(reader, handler);
+			} else if (field == 4 && hints.isRelations()) {
+				readRelation(reader, handler);
+			} else {
+				reader.skip(key);
+			}
+		}
+	}
+
+	private int lat(final long lat) {
+		return (int) ((latOffset + granularity * lat) / 100);
+	}
+
+	private int lon(final long lon) {
+		return (int) ((lonOffset + granularity * lon) / 100);
+	}
+
+	private void readNode(final ProtoReader reader, final O5mHandler handler)
+			throws IOException {
+		final int limit = reader.pushLimit();
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		keyCount = 0;
+		valueCount = 0;
+		node.setMetadata(0, 0, 0, null, null);
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				id = reader.readSigned();
+				break;
+			case 2:
+				readKeys(reader, key);
+				break;
+			case 3:
+				readValues(reader, key);
+				break;
+			case 4:
+				readInfo(reader, key, node);
+				break;
+			case 8:
+				lat = reader.readSigned();
+				break;
+			case 9:
+				lon = reader.readSigned();
+				break;
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+		reader.popLimit(limit);
+		node.set(id, lat(lat), lon(lon));
+		setTags(node, hints.isNodeTags());
+		nodes++;
+		handler.newNode(node);
+	}
+
+	/**
+	 * decodes the dense nodes. All values are stored column by column, so a
+	 * view is kept per column and the columns are read in parallel.
+	 */
+	private void readDenseNodes(final ProtoReader reader, final O5mHandler handler)
+			throws IOException {
+		final int limit = reader.pushLimit();
+		ByteBuffer ids = null;
+		ByteBuffer lats = null;
+		ByteBuffer lons = null;
+		ByteBuffer keysValues = null;
+		ByteBuffer info = null;
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				ids = reader.readBytes();
+				break;
+			case 5:
+				info = reader.readBytes();
+				break;
+			case 8:
+				lats = reader.readBytes();
+				break;
+			case 9:
+				lons = reader.readBytes();
+				break;
+			case 10:
+				keysValues = reader.readBytes();
+				break;
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+		reader.popLimit(limit);
+		if (ids == null || lats == null || lons == null) {
+			return;
+		}
+		final DenseInfo denseInfo = info != null && hints.isMetadata() ? new DenseInfo(info)
+				: null;
+		final ProtoReader idReader = new ProtoReader(ids);
+		final ProtoReader latReader = new ProtoReader(lats);
+		final ProtoReader lonReader = new ProtoReader(lons);
+		final ProtoReader tagReader = keysValues == null ? null : new ProtoReader(keysValues);
+		final boolean nodeTags = hints.isNodeTags();
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		while (idReader.hasRemaining()) {
+			id += idReader.readSigned();
+			lat += latReader.readSigned();
+			lon += lonReader.readSigned();
+			int tagCount = 0;
+			while (tagReader != null && tagReader.hasRemaining()) {
+				final int keyIndex = (int) tagReader.readVarint();
+				if (keyIndex == 0) {
+					break;
+				}
+				final int valueIndex = (int) tagReader.readVarint();
+				if (nodeTags && isKeyWanted(keyIndex)) {
+					if (2 * tagCount + 2 > tags.length) {
+						tags = Arrays.copyOf(tags, 2 * tags.length);
+					}
+					tags[2 * tagCount] = string(keyIndex);
+					tags[2 * tagCount + 1] = string(valueIndex);
+					tagCount++;
+				}
+			}
+			if (denseInfo == null) {
+				node.setMetadata(0, 0, 0, null, null);
+			} else {
+				denseInfo.next(node);
+			}
+			node.set(id, lat(lat), lon(lon));
+			node.setTags(tags, tagCount);
+			nodes++;
+			handler.newNode(node);
+		}
+	}
+
+	private void readWay(final ProtoReader reader, final O5mHandler handler) throws IOException {
+		final int limit = reader.pushLimit();
+		long id = 0;
+		keyCount = 0;
+		valueCount = 0;
+		refCount = 0;
+		way.setMetadata(0, 0, 0, null, null);
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				id = reader.readVarint();
+				break;
+			case 2:
+				readKeys(reader, key);
+				break;
+			case 3:
+				readValues(reader, key);
+				break;
+			case 4:
+				readInfo(reader, key, way);
+				break;
+			case 8:
+				readRefs(reader, key);
+				break;
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+		reader.popLimit(limit);
+		way.set(id, refs, refCount);
+		setTags(way, hints.isWayTags());
+		ways++;
+		handler.newWay(way);
+	}
+
+	private void readRelation(final ProtoReader reader, final O5mHandler handler)
+			throws IOException {
+		final int limit = reader.pushLimit();
+		long id = 0;
+		keyCount = 0;
+		valueCount = 0;
+		refCount = 0;
+		roleCount = 0;
+		typeCount = 0;
+		relation.setMetadata(0, 0, 0, null, null);
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				id = reader.readVarint();
+				break;
+			case 2:
+				readKeys(reader, key);
+				break;
+			case 3:
+				readValues(reader, key);
+				break;
+			case 4:
+				readInfo(reader, key, relation);
+				break;
+			case 8:
+				readRoles(reader, key);
+				break;
+			case 9:
+				readRefs(reader, key);
+				break;
+			case 10:
+				readTypes(reader, key);
+				break;
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+		reader.popLimit(limit);
+		if (refCount != typeCount || refCount != roleCount) {
+			throw new IOException("Members of relation " + id + " are inconsistent");
+		}
+		relation.set(id);
+		final boolean withRoles = hints.isRoles();
+		for (int i = 0; i < refCount; ++i) {
+			final RefType type = types[i] >= 0 && types[i] < MEMBER_TYPES.length
+					? MEMBER_TYPES[types[i]] : RefType.MAX;
+			relation.addRef(refs[i], type, withRoles ? string(roles[i]) : "");
+		}
+		setTags(relation, hints.isRelationTags());
+		relations++;
+		handler.newRelation(relation);
+	}
+
+	private void readInfo(final ProtoReader reader, final int key, final O5mDataObject entity)
+			throws IOException {
+		if (!hints.isMetadata()) {
+			reader.skip(key);
+			return;
+		}
+		final int limit = reader.pushLimit();
+		int version = 0;
+		long timeStamp = 0;
+		long changeSet = 0;
+		long uid = 0;
+		int userIndex = -1;
+		while (reader.hasRemaining()) {
+			final int field = reader.readKey();
+			switch (ProtoReader.fieldNumber(field)) {
+			case 1:
+				version = (int) reader.readVarint();
+				break;
+			case 2:
+				timeStamp = reader.readVarint();
+				break;
+			case 3:
+				changeSet = reader.readVarint();
+				break;
+			case 4:
+				uid = reader.readVarint();
+				break;
+			case 5:
+				userIndex = (int) reader.readVarint();
+				break;
+			default:
+				reader.skip(field);
+				break;
+			}
+		}
+		reader.popLimit(limit);
+		entity.setMetadata(version, timeStamp * dateGranularity / 1000, (int) changeSet,
+				uid == 0 ? "" : Long.toString(uid), userIndex < 0 ? "" : string(userIndex));
+	}
+
+	/**
+	 * sets the collected keys and values as tags of the entity
+	 */
+	private void setTags(final O5mDataObject entity, final boolean wanted)
+			throws IOException {
+		if (keyCount != valueCount) {
+			throw new IOException("Number of keys and values of the tags differ");
+		}
+		int tagCount = 0;
+		if (wanted) {
+			if (2 * keyCount > tags.length) {
+				tags = new String[2 * keyCount];
+			}
+			for (int i = 0; i < keyCount; ++i) {
+				if (isKeyWanted(keys[i])) {
+					tags[2 * tagCount] = string(keys[i]);
+					tags[2 * tagCount + 1] = string(values[i]);
+					tagCount++;
+				}
+			}
+		}
+		entity.setTags(tags, tagCount);
+	}
+
+	/*
+	 * the repeated fields are packed by all known writers, but a single
+	 * unpacked value is valid as well
+	 */
+
+	private void readKeys(final ProtoReader reader, final int key) throws IOException {
+		final int end = packedEnd(reader, key);
+		while (reader.getBuffer().position() < end) {
+			if (keyCount == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * keyCount);
+			}
+			keys[keyCount++] = (int) reader.readVarint();
+		}
+	}
+
+	private void readValues(final ProtoReader reader, final int key) throws IOException {
+		final int end = packedEnd(reader, key);
+		while (reader.getBuffer().position() < end) {
+			if (valueCount == values.length) {
+				values = Arrays.copyOf(values, 2 * valueCount);
+			}
+			values[valueCount++] = (int) reader.readVarint();
+		}
+	}
+
+	private void readRoles(final ProtoReader reader, final int key) throws IOException {
+		final int end = packedEnd(reader, key);
+		while (reader.getBuffer().position() < end) {
+			if (roleCount == roles.length) {
+				roles = Arrays.copyOf(roles, 2 * roleCount);
+			}
+			roles[roleCount++] = (int) reader.readVarint();
+		}
+	}
+
+	private void readTypes(final ProtoReader reader, final int key) throws IOException {
+		final int end = packedEnd(reader, key);
+		while (reader.getBuffer().position() < end) {
+			if (typeCount == types.length) {
+				types = Arrays.copyOf(types, 2 * typeCount);
+			}
+			types[typeCount++] = (int) reader.readVarint();
+		}
+	}
+
+	/**
+	 * reads the delta coded ids of way nodes or relation members
+	 */
+	private void readRefs(final ProtoReader reader, final int key) throws IOException {
+		final int end = packedEnd(reader, key);
+		long last = refCount == 0 ? 0 : refs[refCount - 1];
+		while (reader.getBuffer().position() < end) {
+			if (refCount == refs.length) {
+				refs = Arrays.copyOf(refs, 2 * refCount);
+			}
+			last += reader.readSigned();
+			refs[refCount++] = last;
+		}
+	}
+
+	/**
+	 * @return the position behind the values of a repeated field. For an
+	 *         unpacked field this is the position behind its single value, an
+	 *         empty packed field ends at the current position.
+	 */
+	private static int packedEnd(final ProtoReader reader, final int key) throws IOException {
+		if (ProtoReader.wireType(key) == ProtoReader.LENGTH_DELIMITED) {
+			return reader.readLength();
+		}
+		final ByteBuffer buffer = reader.getBuffer();
+		int end = buffer.position();
+		while (end < buffer.limit() && buffer.get(end) < 0) {
+			end++;
+		}
+		if (end == buffer.limit()) {
+			throw new IOException("Truncated varint at " + buffer.position());
+		}
+		return end + 1;
+	}
+
+	/**
+	 * The metadata of dense nodes, column by column and delta coded.
+	 */
+	private final class DenseInfo {
+		private ProtoReader versions = null;
+		private ProtoReader timeStamps = null;
+		private ProtoReader changeSets = null;
+		private ProtoReader uids = null;
+		private ProtoReader users = null;
+		private long timeStamp = 0;
+		private long changeSet = 0;
+		private long uid = 0;
+		private long user = 0;
+
+		public DenseInfo(final ByteBuffer info) throws IOException {
+			final ProtoReader reader = new ProtoReader(info);
+			while (reader.hasRemaining()) {
+				final int key = reader.readKey();
+				switch (ProtoReader.fieldNumber(key)) {
+				case 1:
+					versions = new ProtoReader(reader.readBytes());
+					break;
+				case 2:
+					timeStamps = new ProtoReader(reader.readBytes());
+					break;
+				case 3:
+					changeSets = new ProtoReader(reader.readBytes());
+					break;
+				case 4:
+					uids = new ProtoReader(reader.readBytes());
+					break;
+				case 5:
+					users = new ProtoReader(reader.readBytes());
+					break;
+				default:
+					reader.skip(key);
+					break;
+				}
+			}
+		}
+
+		public void next(final O5mNode target) throws IOException {
+			final int version = has(versions) ? (int) versions.readVarint() : 0;
+			timeStamp += has(timeStamps) ? timeStamps.readSigned() : 0;
+			changeSet += has(changeSets) ? changeSets.readSigned() : 0;
+			uid += has(uids) ? uids.readSigned() : 0;
+			user += has(users) ? users.readSigned() : 0;
+			target.setMetadata(version, timeStamp * dateGranularity / 1000, (int) changeSet,
+					uid == 0 ? "" : Long.toString(uid), users == null ? "" : string((int) user));
+		}
+
+		private boolean has(final ProtoReader column) {
+			return column != null && column.hasRemaining();
+		}
+	}
+}
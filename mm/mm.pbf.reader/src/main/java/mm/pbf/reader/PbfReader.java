@@ -0,0 +1,515 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.pbf.reader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import mm.o5m.reader.O5mBatchHandler;
+import mm.o5m.reader.O5mDecodeHints;
+import mm.o5m.reader.O5mHandler;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mNodeBatch;
+import mm.o5m.reader.O5mReadStatistics;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.SelectiveO5mHandler;
+import mm.o5m.reader.UnorderedO5mHandler;
+
+/**
+ * Reader for OSM PBF files giving the entities to the handlers of the o5m
+ * reader, so the pbf downloads can be used without converting them first.
+ * 
+ * The blobs of a pbf file do not depend on each other. One thread reads the
+ * blobs from the file, the blobs are inflated and decoded on a pool of
+ * threads, and the decoded entities are given to the handler in file order
+ * on the calling thread. Like with the ParallelO5mReader, a handler
+ * implementing UnorderedO5mHandler is called directly by the decoding
+ * threads instead, and nodes for an O5mBatchHandler are collected into
+ * batches by the decoding threads.
+ * 
+ * Raw and zlib compressed blobs are supported. The coordinates are converted
+ * to the 100 nanodegrees of o5m.
+ * 
+ * @author benno
+ */
+public class PbfReader {
+
+	/** largest BlobHeader allowed by the format */
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	/** largest Blob allowed by the format */
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	private static final Set<String> SUPPORTED_FEATURES = new HashSet<>(Arrays.asList(
+			"OsmSchema-V0.6", "DenseNodes"));
+	private static final List<Object> END_OF_FILE = Collections
+			.unmodifiableList(new ArrayList<Object>());
+	private static final int BATCH_SIZE = 4096;
+	/** the buffers are big, so every thread keeps its decoder and inflater */
+	private static final ThreadLocal<PbfBlockDecoder> DECODERS = new ThreadLocal<PbfBlockDecoder>() {
+		@Override
+		protected PbfBlockDecoder initialValue() {
+			return new PbfBlockDecoder();
+		}
+	};
+	private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+	};
+
+	private final int threads;
+	private O5mReadStatistics statistics = new O5mReadStatistics();
+
+	public PbfReader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads inflating and decoding blobs
+	 */
+	public PbfReader(final int threads) {
+		super();
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param statistics
+	 *            the statistics all decoding threads count in
+	 */
+	public void setStatistics(final O5mReadStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return the statistics of the last or current read
+	 */
+	public O5mReadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * reads the file
+	 * 
+	 * @param f
+	 *            the pbf file
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void readFile(final File f, final O5mHandler handler) throws IOException {
+		final InputStream in = new FileInputStream(f);
+		try {
+			read(in, handler);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * reads a pbf stream. The stream is not closed.
+	 * 
+	 * @param in
+	 *            the pbf data
+	 * @param handler
+	 *            gets the entities
+	 * @throws IOException
+	 */
+	public void read(final InputStream in, final O5mHandler handler) throws IOException {
+		final O5mReadStatistics stats = statistics;
+		final O5mDecodeHints hints = O5mDecodeHints.forHandler(handler);
+		final boolean ordered = !(handler instanceof UnorderedO5mHandler);
+		final boolean batchNodes = handler instanceof O5mBatchHandler;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r, "pbf decoder");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final BlockingQueue<Future<List<Object>>> blobs = new ArrayBlockingQueue<>(threads * 2);
+		final Thread blobReader = new Thread(new BlobReader(in, blobs, executor, ordered ? null
+				: handler, hints, batchNodes, stats), "pbf blob reader");
+		blobReader.setDaemon(true);
+		stats.start();
+		blobReader.start();
+		try {
+			List<Object> entities = take(blobs);
+			while (entities != END_OF_FILE) {
+				deliver(entities, handler);
+				entities = take(blobs);
+			}
+		} finally {
+			blobReader.interrupt();
+			executor.shutdownNow();
+			stats.finish();
+		}
+	}
+
+	private static List<Object> take(final BlockingQueue<Future<List<Object>>> blobs)
+			throws IOException {
+		try {
+			return blobs.take().get();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException("Reading was interrupted");
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Decoding a blob failed", e.getCause());
+		}
+	}
+
+	private static void deliver(final List<Object> entities, final O5mHandler handler)
+			throws IOException {
+		for (final Object entity : entities) {
+			if (entity instanceof O5mNodeBatch) {
+				((O5mBatchHandler) handler).newNodes((O5mNodeBatch) entity);
+			} else if (entity instanceof O5mNode) {
+				handler.newNode((O5mNode) entity);
+			} else if (entity instanceof O5mWay) {
+				handler.newWay((O5mWay) entity);
+			} else {
+				handler.newRelation((O5mRelation) entity);
+			}
+		}
+	}
+
+	/**
+	 * Reads the blobs of the stream and hands the data blobs over to the
+	 * decoding threads. The header blob is checked right away.
+	 */
+	private static class BlobReader implements Runnable {
+		private final DataInputStream in;
+		private final BlockingQueue<Future<List<Object>>> blobs;
+		private final ExecutorService executor;
+		private final O5mHandler directHandler;
+		private final O5mDecodeHints hints;
+		private final boolean batchNodes;
+		private final O5mReadStatistics stats;
+
+		public BlobReader(final InputStream in, final BlockingQueue<Future<List<Object>>> blobs,
+				final ExecutorService executor, final O5mHandler directHandler,
+				final O5mDecodeHints hints, final boolean batchNodes,
+				final O5mReadStatistics stats) {
+			super();
+			this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+			this.blobs = blobs;
+			this.executor = executor;
+			this.directHandler = directHandler;
+			this.hints = hints;
+			this.batchNodes = batchNodes;
+			this.stats = stats;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				try {
+					readBlobs();
+					blobs.put(done(END_OF_FILE, null));
+				} catch (final IOException | RuntimeException e) {
+					blobs.put(done(null, e));
+				}
+			} catch (final InterruptedException e) {
+				// the consumer gave up, nobody waits for further blobs
+			}
+		}
+
+		private void readBlobs() throws IOException, InterruptedException {
+			boolean first = true;
+			while (true) {
+				final long readStart = System.nanoTime();
+				final int headerSize;
+				try {
+					headerSize = in.readInt();
+				} catch (final EOFException e) {
+					return;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+					throw new IOException("Invalid blob header size " + headerSize);
+				}
+				final byte header[] = new byte[headerSize];
+				in.readFully(header);
+				final ProtoReader headerReader = new ProtoReader(ByteBuffer.wrap(header));
+				String type = null;
+				int dataSize = -1;
+				while (headerReader.hasRemaining()) {
+					final int key = headerReader.readKey();
+					switch (ProtoReader.fieldNumber(key)) {
+					case 1:
+						type = headerReader.readString();
+						break;
+					case 3:
+						dataSize = (int) headerReader.readVarint();
+						break;
+					default:
+						headerReader.skip(key);
+						break;
+					}
+				}
+				if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+					throw new IOException("Invalid blob header, type " + type + ", size "
+							+ dataSize);
+				}
+				final byte blob[] = new byte[dataSize];
+				in.readFully(blob);
+				stats.add(0, 0, 0, 4 + headerSize + dataSize,
+						System.nanoTime() - readStart, 0, 0);
+				if ("OSMHeader".equals(type)) {
+					checkHeader(inflate(blob));
+				} else if ("OSMData".equals(type)) {
+					if (first) {
+						throw new IOException("OSMHeader missing in front of the data");
+					}
+					final FutureTask<List<Object>> task = new FutureTask<>(new BlobDecoder(blob,
+							directHandler, hints, batchNodes, stats));
+					blobs.put(task);
+					executor.execute(task);
+				}
+				// blobs of unknown types are skipped
+				first = false;
+			}
+		}
+
+		private static void checkHeader(final ByteBuffer header) throws IOException {
+			final ProtoReader reader = new ProtoReader(header);
+			while (reader.hasRemaining()) {
+				final int key = reader.readKey();
+				if (ProtoReader.fieldNumber(key) == 4) {
+					final String feature = reader.readString();
+					if (!SUPPORTED_FEATURES.contains(feature)) {
+						throw new IOException("Unsupported required feature " + feature);
+					}
+				} else {
+					reader.skip(key);
+				}
+			}
+		}
+
+		private static Future<List<Object>> done(final List<Object> result,
+				final Exception error) {
+			final FutureTask<List<Object>> ret = new FutureTask<>(new Callable<List<Object>>() {
+				@Override
+				public List<Object> call() throws Exception {
+					if (error != null) {
+						throw error;
+					}
+					return result;
+				}
+			});
+			ret.run();
+			return ret;
+		}
+	}
+
+	/**
+	 * inflates a blob
+	 * 
+	 * @param blob
+	 *            the Blob message
+	 * @return the uncompressed data
+	 * @throws IOException
+	 *             for unsupported compressions
+	 */
+	static ByteBuffer inflate(final byte blob[]) throws IOException {
+		final ProtoReader reader = new ProtoReader(ByteBuffer.wrap(blob));
+		int rawSize = -1;
+		ByteBuffer zlib = null;
+		while (reader.hasRemaining()) {
+			final int key = reader.readKey();
+			switch (ProtoReader.fieldNumber(key)) {
+			case 1:
+				return reader.readBytes();
+			case 2:
+				rawSize = (int) reader.readVarint();
+				break;
+			case 3:
+				zlib = reader.readBytes();
+				break;
+			case 4:
+			case 5:
+			case 6:
+			case 7:
+				throw new IOException("Unsupported blob compression, field "
+						+ ProtoReader.fieldNumber(key));
+			default:
+				reader.skip(key);
+				break;
+			}
+		}
+		if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+			throw new IOException("Blob without data");
+		}
+		final byte data[] = new byte[rawSize];
+		final Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		inflater.setInput(zlib.array(), zlib.arrayOffset() + zlib.position(), zlib.remaining());
+		try {
+			int size = 0;
+			while (size < rawSize && !inflater.finished()) {
+				final int inflated = inflater.inflate(data, size, rawSize - size);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				size += inflated;
+			}
+			if (size != rawSize) {
+				throw new IOException("Blob inflated to " + size + " instead of " + rawSize
+						+ " bytes");
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt blob", e);
+		}
+		return ByteBuffer.wrap(data);
+	}
+
+	/**
+	 * Inflates and decodes a data blob on one of the threads. The entities are
+	 * copied into a list, unless the handler takes them directly.
+	 */
+	private static class BlobDecoder implements Callable<List<Object>>, SelectiveO5mHandler {
+		private final byte blob[];
+		private final O5mHandler directHandler;
+		private final O5mDecodeHints hints;
+		private final boolean batchNodes;
+		private final O5mReadStatistics stats;
+		private final List<Object> entities = new ArrayList<>();
+		private O5mNodeBatch batch = null;
+
+		public BlobDecoder(final byte blob[], final O5mHandler directHandler,
+				final O5mDecodeHints hints, final boolean batchNodes,
+				final O5mReadStatistics stats) {
+			super();
+			this.blob = blob;
+			this.directHandler = directHandler;
+			this.hints = hints;
+			this.batchNodes = batchNodes;
+			this.stats = stats;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public List<Object> call() throws IOException {
+			final long start = System.nanoTime();
+			final PbfBlockDecoder decoder = DECODERS.get();
+			decoder.decode(inflate(blob), directHandler == null ? this : directHandler, hints);
+			flush();
+			stats.add(decoder.getNodes(), decoder.getWays(), decoder.getRelations(), 0, 0,
+					System.nanoTime() - start, 0);
+			return entities;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		private void flush() {
+			if (batch != null) {
+				entities.add(batch);
+				batch = null;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode node) {
+			if (!batchNodes) {
+				entities.add(node.copy());
+				return;
+			}
+			if (batch == null) {
+				batch = new O5mNodeBatch(BATCH_SIZE);
+			}
+			batch.add(node);
+			if (batch.isFull()) {
+				flush();
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) {
+			flush();
+			entities.add(way.copy());
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			flush();
+			entities.add(relation.copy());
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.pbf.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import mm.o5m.reader.VarInt;
+
+/**
+ * Reads the wire format of protocol buffers from a ByteBuffer. Only the parts
+ * needed for the pbf messages are supported: varints, zigzag coded varints
+ * and length delimited fields, fixed size fields can only be skipped. The
+ * varints are coded like the numbers of o5m, so they are decoded by
+ * {@link VarInt}.
+ * 
+ * Embedded messages are read by limiting the buffer to the message with
+ * {@link #pushLimit(int)} and restoring the limit with
+ * {@link #popLimit(int)} afterwards, so no objects are created for them.
+ * 
+ * @author benno
+ */
+final class ProtoReader {
+
+	static final int VARINT = 0;
+	static final int FIXED64 = 1;
+	static final int LENGTH_DELIMITED = 2;
+	static final int FIXED32 = 5;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param buffer
+	 *            the message between position and limit
+	 */
+	public ProtoReader(final ByteBuffer buffer) {
+		super();
+		this.buffer = buffer;
+	}
+
+	/**
+	 * @return the buffer the reader works on
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return true if the current message has more fields
+	 */
+	public boolean hasRemaining() {
+		return buffer.hasRemaining();
+	}
+
+	/**
+	 * @return the key of the next field, use {@link #fieldNumber(int)} and
+	 *         {@link #wireType(int)} to split it
+	 */
+	public int readKey() {
+		return VarInt.readUnsigned32(buffer);
+	}
+
+	public static int fieldNumber(final int key) {
+		return key >>> 3;
+	}
+
+	public static int wireType(final int key) {
+		return key & 7;
+	}
+
+	/**
+	 * @return an unsigned varint, used for int32, int64, uint32, uint64, bool
+	 *         and enum fields
+	 */
+	public long readVarint() {
+		return VarInt.readUnsigned64(buffer);
+	}
+
+	/**
+	 * @return a zigzag coded varint, used for sint32 and sint64 fields
+	 */
+	public long readSigned() {
+		return VarInt.readSigned64(buffer);
+	}
+
+	/**
+	 * limits the buffer to the length delimited field at the position
+	 * 
+	 * @return the limit to restore when the field is read
+	 * @throws IOException
+	 *             if the field is longer than the enclosing message
+	 */
+	public int pushLimit() throws IOException {
+		final int length = (int) readVarint();
+		return pushLimit(length);
+	}
+
+	/**
+	 * limits the buffer to the next bytes
+	 * 
+	 * @param length
+	 *            number of bytes
+	 * @return the limit to restore when the bytes are read
+	 * @throws IOException
+	 *             if the bytes are longer than the enclosing message
+	 */
+	public int pushLimit(final int length) throws IOException {
+		final int limit = buffer.limit();
+		final int end = buffer.position() + length;
+		if (length < 0 || end > limit) {
+			throw new IOException("Truncated protobuf field at " + buffer.position());
+		}
+		buffer.limit(end);
+		return limit;
+	}
+
+	/**
+	 * skips the rest of the limited field and restores the limit
+	 * 
+	 * @param limit
+	 *            the limit returned by pushLimit
+	 */
+	public void popLimit(final int limit) {
+		buffer.position(buffer.limit());
+		buffer.limit(limit);
+	}
+
+	/**
+	 * @return the position behind the length delimited field at the position.
+	 *         The buffer is positioned at the content of the field.
+	 * @throws IOException
+	 *             if the field is longer than the enclosing message
+	 */
+	public int readLength() throws IOException {
+		final int length = (int) readVarint();
+		final int end = buffer.position() + length;
+		if (length < 0 || end > buffer.limit()) {
+			throw new IOException("Truncated protobuf field at " + buffer.position());
+		}
+		return end;
+	}
+
+	/**
+	 * @return the content of a length delimited field as a view of the buffer
+	 * @throws IOException
+	 */
+	public ByteBuffer readBytes() throws IOException {
+		final int end = readLength();
+		final ByteBuffer ret = buffer.duplicate();
+		ret.limit(end);
+		buffer.position(end);
+		return ret.slice();
+	}
+
+	/**
+	 * @return the content of a length delimited field as string
+	 * @throws IOException
+	 */
+	public String readString() throws IOException {
+		final int end = readLength();
+		final int start = buffer.position();
+		buffer.position(end);
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, end - start, UTF8);
+		}
+		final byte bytes[] = new byte[end - start];
+		for (int i = 0; i < bytes.length; ++i) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * skips the value of a field
+	 * 
+	 * @param key
+	 *            the key of the field
+	 * @throws IOException
+	 *             for unknown wire types
+	 */
+	public void skip(final int key) throws IOException {
+		switch (wireType(key)) {
+		case VARINT:
+			readVarint();
+			break;
+		case FIXED64:
+			buffer.position(buffer.position() + 8);
+			break;
+		case LENGTH_DELIMITED:
+			buffer.position(readLength());
+			break;
+		case FIXED32:
+			buffer.position(buffer.position() + 4);
+			break;
+		default:
+			throw new IOException("Unsupported protobuf wire type " + wireType(key) + " at "
+					+ buffer.position());
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.pbf.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import mm.o5m.reader.O5mBatchHandler;
+import mm.o5m.reader.O5mHandler;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mNodeBatch;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.RefType;
+import mm.o5m.reader.O5mWay;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class PbfReaderTestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String STRINGS[] = { "", "name", "a", "highway", "road", "type",
+			"multipolygon", "outer" };
+	private static final int NODE_BLOCKS = 20;
+	private static final int NODES_PER_BLOCK = 100;
+
+	/**
+	 * minimal protobuf writer
+	 */
+	private static class Message {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		Message varint(final long value) {
+			long v = value;
+			while ((v & ~0x7fL) != 0) {
+				out.write((int) ((v & 0x7f) | 0x80));
+				v >>>= 7;
+			}
+			out.write((int) v);
+			return this;
+		}
+
+		Message key(final int field, final int wireType) {
+			return varint(field << 3 | wireType);
+		}
+
+		Message varint(final int field, final long value) {
+			return key(field, 0).varint(value);
+		}
+
+		Message signed(final int field, final long value) {
+			return varint(field, value << 1 ^ value >> 63);
+		}
+
+		Message bytes(final int field, final byte data[]) {
+			key(field, 2).varint(data.length);
+			out.write(data, 0, data.length);
+			return this;
+		}
+
+		Message string(final int field, final String s) {
+			return bytes(field, s.getBytes(UTF8));
+		}
+
+		Message message(final int field, final Message m) {
+			return bytes(field, m.toByteArray());
+		}
+
+		Message packed(final int field, final long values[]) {
+			final Message m = new Message();
+			for (final long value : values) {
+				m.varint(value);
+			}
+			return bytes(field, m.toByteArray());
+		}
+
+		Message packedDeltas(final int field, final long values[]) {
+			final Message m = new Message();
+			long last = 0;
+			for (final long value : values) {
+				final long delta = value - last;
+				m.varint(delta << 1 ^ delta >> 63);
+				last = value;
+			}
+			return bytes(field, m.toByteArray());
+		}
+
+		byte[] toByteArray() {
+			return out.toByteArray();
+		}
+	}
+
+	private static void writeBlob(final DataOutputStream out, final String type,
+			final Message content, final boolean compressed) throws IOException {
+		final byte raw[] = content.toByteArray();
+		final Message blob = new Message();
+		if (compressed) {
+			final Deflater deflater = new Deflater();
+			deflater.setInput(raw);
+			deflater.finish();
+			final byte buffer[] = new byte[raw.length + 64];
+			final int size = deflater.deflate(buffer);
+			deflater.end();
+			final byte zlib[] = new byte[size];
+			System.arraycopy(buffer, 0, zlib, 0, size);
+			blob.varint(2, raw.length).bytes(3, zlib);
+		} else {
+			blob.bytes(1, raw);
+		}
+		final byte blobBytes[] = blob.toByteArray();
+		final byte header[] = new Message().string(1, type).varint(3, blobBytes.length)
+				.toByteArray();
+		out.writeInt(header.length);
+		out.write(header);
+		out.write(blobBytes);
+	}
+
+	private static Message block(final Message group) {
+		final Message strings = new Message();
+		for (final String s : STRINGS) {
+			strings.string(1, s);
+		}
+		// granularity behind the group, the reader has to take it anyway
+		return new Message().message(1, strings).message(2, group).varint(17, 100);
+	}
+
+	/**
+	 * writes a file with dense nodes in several blocks, a plain node, a way
+	 * and a relation
+	 */
+	private static byte[] createFile(final String feature) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		writeBlob(out, "OSMHeader", new Message().string(4, "OsmSchema-V0.6").string(4, feature),
+				false);
+		for (int b = 0; b < NODE_BLOCKS; ++b) {
+			final long ids[] = new long[NODES_PER_BLOCK];
+			final long lats[] = new long[NODES_PER_BLOCK];
+			final long lons[] = new long[NODES_PER_BLOCK];
+			final Message keysValues = new Message();
+			for (int i = 0; i < NODES_PER_BLOCK; ++i) {
+				final int id = b * NODES_PER_BLOCK + i + 1;
+				ids[i] = id;
+				// 100 nanodegree units with the default granularity
+				lats[i] = 52 * 10000000L + id;
+				lons[i] = -id;
+				if (id % 10 == 0) {
+					keysValues.varint(1).varint(2);
+				}
+				keysValues.varint(0);
+			}
+			final Message dense = new Message().packedDeltas(1, ids).packedDeltas(8, lats)
+					.packedDeltas(9, lons).bytes(10, keysValues.toByteArray());
+			writeBlob(out, "OSMData", block(new Message().message(2, dense)), b % 2 == 0);
+		}
+		final Message node = new Message().signed(1, 100000).packed(2, new long[] { 3 })
+				.packed(3, new long[] { 4 }).signed(8, -5).signed(9, 7);
+		writeBlob(out, "OSMData", block(new Message().message(1, node)), true);
+		final Message way = new Message().varint(1, 5).packed(2, new long[] { 3 })
+				.packed(3, new long[] { 4 }).packedDeltas(8, new long[] { 1, 2, 3 });
+		writeBlob(out, "unknown", new Message().string(1, "skipped"), false);
+		writeBlob(out, "OSMData", block(new Message().message(3, way)), true);
+		final Message relation = new Message().varint(1, 7).packed(2, new long[] { 5 })
+				.packed(3, new long[] { 6 }).packed(8, new long[] { 7, 0 })
+				.packedDeltas(9, new long[] { 5, 6 }).packed(10, new long[] { 1, 0 });
+		writeBlob(out, "OSMData", block(new Message().message(4, relation)), false);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static class RecordingHandler implements O5mHandler {
+		protected final List<long[]> nodes = new ArrayList<>();
+		protected final List<O5mWay> ways = new ArrayList<>();
+		protected final List<O5mRelation> relations = new ArrayList<>();
+
+		@Override
+		public void newNode(final O5mNode node) {
+			assertTrue(ways.isEmpty());
+			nodes.add(new long[] { node.getNodeId(), node.getLat(), node.getLon(),
+					node.getTagCount() });
+			if (node.getTagCount() > 0) {
+				final boolean plain = node.getNodeId() == 100000;
+				assertEquals(plain ? "highway" : "name", node.getTagKey(0));
+				assertEquals(plain ? "road" : "a", node.getTagValue(0));
+			}
+		}
+
+		@Override
+		public void newWay(final O5mWay way) {
+			ways.add(way.copy());
+		}
+
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			relations.add(relation.copy());
+		}
+
+		void check() {
+			assertEquals(NODE_BLOCKS * NODES_PER_BLOCK + 1, nodes.size());
+			for (int i = 0; i < NODE_BLOCKS * NODES_PER_BLOCK; ++i) {
+				final long node[] = nodes.get(i);
+				assertEquals(i + 1, node[0]);
+				assertEquals(52 * 10000000L + i + 1, node[1]);
+				assertEquals(-i - 1, node[2]);
+				assertEquals((i + 1) % 10 == 0 ? 1 : 0, node[3]);
+			}
+			final long plain[] = nodes.get(nodes.size() - 1);
+			assertEquals(100000, plain[0]);
+			assertEquals(-5, plain[1]);
+			assertEquals(7, plain[2]);
+
+			assertEquals(1, ways.size());
+			final O5mWay way = ways.get(0);
+			assertEquals(5, way.getWayId());
+			assertEquals(3, way.getRefCount());
+			assertEquals(3, way.getRef(2));
+			assertEquals("road", way.getProps().get("highway"));
+
+			assertEquals(1, relations.size());
+			final O5mRelation relation = relations.get(0);
+			assertEquals(7, relation.getRelationId());
+			assertEquals("multipolygon", relation.getProps().get("type"));
+			assertEquals(2, relation.getRefs().size());
+			assertEquals(RefType.WAY, relation.getRefs().get(0).getType());
+			assertEquals(5, relation.getRefs().get(0).getId());
+			assertEquals("outer", relation.getRefs().get(0).getRole());
+			assertEquals(RefType.NODE, relation.getRefs().get(1).getType());
+			assertEquals(6, relation.getRefs().get(1).getId());
+			assertEquals("", relation.getRefs().get(1).getRole());
+		}
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		final PbfReader reader = new PbfReader(4);
+		reader.read(new ByteArrayInputStream(createFile("DenseNodes")), handler);
+		handler.check();
+		assertEquals(NODE_BLOCKS * NODES_PER_BLOCK + 3, reader.getStatistics().getEntities());
+	}
+
+	@Test
+	public void testSingleThread() throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		new PbfReader(1).read(new ByteArrayInputStream(createFile("DenseNodes")), handler);
+		handler.check();
+	}
+
+	@Test
+	public void testBatchHandler() throws IOException {
+		final BatchHandler handler = new BatchHandler();
+		new PbfReader(3).read(new ByteArrayInputStream(createFile("DenseNodes")), handler);
+		handler.check();
+		assertTrue(handler.batches <= NODE_BLOCKS + 1);
+	}
+
+	private static class BatchHandler extends RecordingHandler implements O5mBatchHandler {
+		private int batches = 0;
+
+		@Override
+		public void newNodes(final O5mNodeBatch batch) {
+			batches++;
+			for (int i = 0; i < batch.size(); ++i) {
+				nodes.add(new long[] { batch.getIds()[i], batch.getLats()[i],
+						batch.getLons()[i], batch.getTagEnd(i) - batch.getTagStart(i) });
+			}
+		}
+
+		@Override
+		public void newNode(final O5mNode node) {
+			fail("nodes should come in batches");
+		}
+	}
+
+	@Test
+	public void testEmptyPackedFields() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		writeBlob(out, "OSMHeader", new Message().string(4, "OsmSchema-V0.6"), false);
+		final Message way = new Message().varint(1, 5).packed(2, new long[0])
+				.packed(3, new long[0]).packedDeltas(8, new long[] { 1, 2 });
+		final Message relation = new Message().varint(1, 7).packed(2, new long[0])
+				.packed(3, new long[0]).packed(8, new long[0]).packedDeltas(9, new long[0])
+				.packed(10, new long[0]);
+		writeBlob(out, "OSMData", block(new Message().message(3, way).message(4, relation)),
+				false);
+		out.close();
+		final RecordingHandler handler = new RecordingHandler();
+		new PbfReader(2).read(new ByteArrayInputStream(bytes.toByteArray()), handler);
+		assertEquals(1, handler.ways.size());
+		assertEquals(2, handler.ways.get(0).getRefCount());
+		assertTrue(handler.ways.get(0).getProps().isEmpty());
+		assertEquals(1, handler.relations.size());
+		assertTrue(handler.relations.get(0).getRefs().isEmpty());
+	}
+
+	@Test
+	public void testUnsupportedFeature() throws IOException {
+		try {
+			new PbfReader(2).read(new ByteArrayInputStream(createFile("HistoricalInformation")),
+					new RecordingHandler());
+			fail("unsupported features have to be reported");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage().contains("HistoricalInformation"));
+		}
+	}
+}
@@ -0,0 +1,529 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.tile.gen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import mm.io.Streamable;
+import mm.io.StreamableFactory;
+import mm.io.StreamableIterator;
+import mm.io.StreamableMerger;
+import mm.io.StreamableWriter;
+import mm.io.StreamableFilter.ID;
+import mm.io.StreamableFilter.IDFactory;
+import mm.io.StreamableFilter.SourceHandler;
+import mm.io.base.OffHeapBitSet;
+import mm.o5m.reader.O5mDecodeHints;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mReader;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.SelectiveO5mHandler;
+import mm.o5m.reader.TagDictionary;
+import mm.tile.gen.osm.Member;
+import mm.tile.gen.osm.Node;
+import mm.tile.gen.osm.Relation;
+import mm.tile.gen.osm.Way;
+import mm.tile.gen.resolve.RelationRelationResolver;
+import mm.tile.gen.resolve.RelationWayResolver;
+import mm.tile.gen.resolve.WayNodeResolver;
+
+/**
+ * Applies an o5c change file to the files kept by a {@link Generator}. The
+ * changes are merged into the id sorted node, way and relation stores, then
+ * only the touched entities are resolved again and merged into the results:
+ * <ul>
+ * <li>ways that changed or refer to a changed or deleted node</li>
+ * <li>relations that changed or have a touched way or relation as member,
+ * flattened together with their child relations</li>
+ * </ul>
+ * The change file has to be sorted by type and id, as osmconvert writes it.
+ * Relations that are no multipolygons any more are deleted.
+ * 
+ * With a bounding box, changed nodes outside of it are kept as simple nodes,
+ * so the ways crossing the border keep all their nodes. A touched way is
+ * dropped from the resolved ways when none of its nodes is inside of the box,
+ * but it stays in the way store, so it comes back when one of its nodes
+ * moves into the box. Ways that had no node in the box at the import are not
+ * in the store, they come back only when they change themselves. A changed
+ * way loses nodes outside of the box that neither the import nor a change
+ * file stored. The relations are clipped like at the import: they lose the
+ * members that are not kept, and relations without members left are
+ * dropped. A dropped relation comes back only when it changes itself.
+ * 
+ * @author benno
+ */
+public class ChangeApplier {
+
+	/** latitude of way nodes that have not been resolved */
+	private static final int UNRESOLVED = Integer.MIN_VALUE;
+
+	private static final SourceHandler<Node> NODE_HANDLER = new SourceHandler<Node>() {
+		@Override
+		public long getId(final Node instance) {
+			return instance.getId();
+		}
+	};
+
+	private static final SourceHandler<Way> WAY_HANDLER = new SourceHandler<Way>() {
+		@Override
+		public long getId(final Way instance) {
+			return instance.getId();
+		}
+	};
+
+	private static final SourceHandler<Relation> RELATION_HANDLER = new SourceHandler<Relation>() {
+		@Override
+		public long getId(final Relation instance) {
+			return instance.getId();
+		}
+	};
+
+	private final Generator generator;
+	private final File dataPath;
+	private final OffHeapBitSet touchedNodes = new OffHeapBitSet();
+	private final OffHeapBitSet touchedWays = new OffHeapBitSet();
+	private final OffHeapBitSet touchedRelations = new OffHeapBitSet();
+
+	public ChangeApplier(final Generator generator) {
+		super();
+		this.generator = generator;
+		this.dataPath = generator.dataPath;
+	}
+
+	/**
+	 * applies the change file
+	 * 
+	 * @param f
+	 *            the o5c file
+	 * @throws IOException
+	 */
+	public void apply(final File f) throws IOException {
+		if (!generator.wayFile.exists() || !generator.relationFile.exists()
+				|| !generator.resolvedWayFile.exists()) {
+			throw new IOException("No stores in " + dataPath
+					+ ", the import has to keep its stores");
+		}
+		final File nodeChanges = File.createTempFile("change", "nodes", dataPath);
+		final File simpleNodeChanges = File.createTempFile("change", "snodes", dataPath);
+		final File nodeDeletes = File.createTempFile("delete", "nodes", dataPath);
+		final File simpleNodeDeletes = File.createTempFile("delete", "snodes", dataPath);
+		final File wayChanges = File.createTempFile("change", "ways", dataPath);
+		final File wayDeletes = File.createTempFile("delete", "ways", dataPath);
+		final File relationChanges = File.createTempFile("change", "rel", dataPath);
+		final File relationDeletes = File.createTempFile("delete", "rel", dataPath);
+		final ChangeHandler handler = new ChangeHandler(nodeChanges, simpleNodeChanges,
+				nodeDeletes, simpleNodeDeletes, wayChanges, wayDeletes, relationChanges, relationDeletes);
+		try {
+			new O5mReader().readFile(f, handler);
+		} finally {
+			handler.close();
+		}
+
+		merge("Nodes", generator.nodeFile, nodeChanges, nodeDeletes, new Node.NodeFactory(),
+				NODE_HANDLER);
+		merge("Simple nodes", generator.simpleNodeFile, simpleNodeChanges, simpleNodeDeletes,
+				new Node.NodeFactory(), NODE_HANDLER);
+		merge("Ways", generator.wayFile, wayChanges, wayDeletes, new Way.WayFactory(),
+				WAY_HANDLER);
+		merge("Relations", generator.relationFile, relationChanges, relationDeletes,
+				new Relation.RelationFactory(), RELATION_HANDLER);
+		nodeChanges.delete();
+		simpleNodeChanges.delete();
+		nodeDeletes.delete();
+		simpleNodeDeletes.delete();
+		wayChanges.delete();
+		relationChanges.delete();
+
+		resolveWays(wayDeletes);
+		wayDeletes.delete();
+		if (generator.clip) {
+			final File droppedFile = File.createTempFile("dropped", "rel", dataPath);
+			final File deleteFile = File.createTempFile("delete", "rel", dataPath);
+			clipRelations(droppedFile);
+			mergeIds(relationDeletes, droppedFile, deleteFile);
+			resolveRelations(deleteFile);
+			droppedFile.delete();
+			deleteFile.delete();
+		} else {
+			resolveRelations(relationDeletes);
+		}
+		relationDeletes.delete();
+		RelationWayResolver.dropRelatedWays(generator.resolvedFilteredWayFile,
+				generator.resolvedRelationFile, generator.resolvedWayFile, dataPath);
+	}
+
+	/**
+	 * resolves the touched ways and merges them into the resolved ways
+	 */
+	private void resolveWays(final File wayDeletes) throws IOException {
+		final File touchedWayFile = File.createTempFile("touched", "ways", dataPath);
+		final File resolvedFile = File.createTempFile("resolved", "ways", dataPath);
+		final StreamableIterator<Way> wayIter = new StreamableIterator<>(generator.wayFile,
+				new Way.WayFactory());
+		final StreamableWriter<Way> wayWriter = new StreamableWriter<>(touchedWayFile);
+		long count = 0;
+		while (wayIter.hasNext()) {
+			final Way way = wayIter.next();
+			boolean touched = touchedWays.get(way.getId());
+			for (int i = 0; !touched && i < way.getNodes().size(); ++i) {
+				touched = touchedNodes.get(way.getNodes().get(i).getId());
+			}
+			if (touched) {
+				touchedWays.set(way.getId());
+				if (generator.clip) {
+					for (final Node node : way.getNodes()) {
+						node.setLat(UNRESOLVED);
+					}
+				}
+				wayWriter.writeStreamable(way);
+				count++;
+			}
+		}
+		wayIter.close();
+		wayWriter.close();
+		System.out.println("Touched ways : " + count);
+		WayNodeResolver.resolveNodes(resolvedFile, touchedWayFile, generator.simpleNodeFile,
+				dataPath);
+		touchedWayFile.delete();
+		if (generator.clip) {
+			final File clippedFile = File.createTempFile("clipped", "ways", dataPath);
+			final File droppedFile = File.createTempFile("dropped", "ways", dataPath);
+			final File deleteFile = File.createTempFile("delete", "ways", dataPath);
+			clipWays(resolvedFile, clippedFile, droppedFile);
+			mergeIds(wayDeletes, droppedFile, deleteFile);
+			merge("Resolved ways", generator.resolvedWayFile, clippedFile, deleteFile,
+					new Way.WayFactory(), WAY_HANDLER);
+			clippedFile.delete();
+			droppedFile.delete();
+			deleteFile.delete();
+		} else {
+			merge("Resolved ways", generator.resolvedWayFile, resolvedFile, wayDeletes,
+					new Way.WayFactory(), WAY_HANDLER);
+		}
+		resolvedFile.delete();
+	}
+
+	/**
+	 * removes the nodes that could not be resolved from the resolved ways.
+	 * Ways without a node inside of the bounding box or with less than two
+	 * nodes left are dropped.
+	 */
+	private void clipWays(final File resolvedFile, final File clippedFile,
+			final File droppedFile) throws IOException {
+		final StreamableIterator<Way> wayIter = new StreamableIterator<>(resolvedFile,
+				new Way.WayFactory());
+		final StreamableWriter<Way> wayWriter = new StreamableWriter<>(clippedFile);
+		final StreamableWriter<ID> idWriter = new StreamableWriter<>(droppedFile);
+		while (wayIter.hasNext()) {
+			final Way way = wayIter.next();
+			boolean inside = false;
+			for (int i = way.getNodes().size() - 1; i >= 0; --i) {
+				final Node node = way.getNodes().get(i);
+				if (node.getLat() == UNRESOLVED) {
+					way.getNodes().remove(i);
+				} else if (!generator.isOutside(node.getLat(), node.getLon())) {
+					inside = true;
+				}
+			}
+			if (!inside || way.getNodes().size() < 2) {
+				idWriter.writeStreamable(new ID(way.getId()));
+			} else {
+				wayWriter.writeStreamable(way);
+			}
+		}
+		wayIter.close();
+		wayWriter.close();
+		idWriter.close();
+	}
+
+	/**
+	 * clips the relation store like the import does, with the nodes inside of
+	 * the box and the resolved ways. The relations that lose members or are
+	 * dropped are touched.
+	 */
+	private void clipRelations(final File droppedFile) throws IOException {
+		final OffHeapBitSet keptNodes = new OffHeapBitSet();
+		final OffHeapBitSet keptWays = new OffHeapBitSet();
+		final StreamableIterator<Node> nodeIter = new StreamableIterator<>(generator.nodeFile,
+				new Node.NodeFactory());
+		while (nodeIter.hasNext()) {
+			keptNodes.set(nodeIter.next().getId());
+		}
+		nodeIter.close();
+		final StreamableIterator<Way> wayIter = new StreamableIterator<>(
+				generator.resolvedWayFile, new Way.WayFactory());
+		while (wayIter.hasNext()) {
+			final Way way = wayIter.next();
+			keptWays.set(way.getId());
+			for (final Node node : way.getNodes()) {
+				keptNodes.set(node.getId());
+			}
+		}
+		wayIter.close();
+		final StreamableWriter<ID> idWriter = new StreamableWriter<>(droppedFile);
+		final long dropped = generator.clipRelations(keptNodes, keptWays, touchedRelations,
+				idWriter);
+		idWriter.close();
+		System.out.println("Dropped outside of the bounding box : " + dropped + " relations");
+	}
+
+	/**
+	 * flattens and resolves the touched relations and merges them into the
+	 * resolved relations
+	 */
+	private void resolveRelations(final File relationDeletes) throws IOException {
+		// parents of touched relations are touched as well
+		long marked;
+		do {
+			marked = 0;
+			final StreamableIterator<Relation> relationIter = new StreamableIterator<>(
+					generator.relationFile, new Relation.RelationFactory());
+			while (relationIter.hasNext()) {
+				final Relation relation = relationIter.next();
+				if (!touchedRelations.get(relation.getId()) && isTouched(relation)) {
+					touchedRelations.set(relation.getId());
+					marked++;
+				}
+			}
+			relationIter.close();
+		} while (marked > 0);
+
+		// children are needed for flattening the touched relations
+		final OffHeapBitSet children = new OffHeapBitSet();
+		do {
+			marked = 0;
+			final StreamableIterator<Relation> relationIter = new StreamableIterator<>(
+					generator.relationFile, new Relation.RelationFactory());
+			while (relationIter.hasNext()) {
+				final Relation relation = relationIter.next();
+				if (touchedRelations.get(relation.getId()) || children.get(relation.getId())) {
+					for (final Member<Relation> member : relation.getRelations()) {
+						final long id = member.getRef().getId();
+						if (!touchedRelations.get(id) && !children.get(id)) {
+							children.set(id);
+							marked++;
+						}
+					}
+				}
+			}
+			relationIter.close();
+		} while (marked > 0);
+
+		final File touchedRelationFile = File.createTempFile("touched", "rel", dataPath);
+		final File resolvedFile = File.createTempFile("resolved", "rel", dataPath);
+		final StreamableIterator<Relation> relationIter = new StreamableIterator<>(
+				generator.relationFile, new Relation.RelationFactory());
+		final StreamableWriter<Relation> relationWriter = new StreamableWriter<>(
+				touchedRelationFile);
+		long count = 0;
+		while (relationIter.hasNext()) {
+			final Relation relation = relationIter.next();
+			if (touchedRelations.get(relation.getId()) || children.get(relation.getId())) {
+				relationWriter.writeStreamable(relation);
+				count++;
+			}
+		}
+		relationIter.close();
+		relationWriter.close();
+		System.out.println("Touched relations : " + count);
+		RelationRelationResolver.resolve(touchedRelationFile, dataPath);
+		RelationWayResolver.resolveWays(resolvedFile, touchedRelationFile,
+				generator.resolvedWayFile, dataPath);
+		merge("Resolved relations", generator.resolvedRelationFile, resolvedFile,
+				relationDeletes, new Relation.RelationFactory(), RELATION_HANDLER);
+		touchedRelationFile.delete();
+		resolvedFile.delete();
+	}
+
+	private boolean isTouched(final Relation relation) {
+		for (final Member<Way> member : relation.getWays()) {
+			if (touchedWays.get(member.getRef().getId())) {
+				return true;
+			}
+		}
+		for (final Member<Relation> member : relation.getRelations()) {
+			if (touchedRelations.get(member.getRef().getId())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * merges the changes into a store and replaces the store by the result
+	 */
+	private <T extends Streamable> void merge(final String name, final File store,
+			final File changes, final File deletes, final StreamableFactory<T> factory,
+			final SourceHandler<T> sourceHandler) throws IOException {
+		final File mergedFile = File.createTempFile("merged", "dat", dataPath);
+		final long counts[] = StreamableMerger.merge(store, changes, deletes, mergedFile,
+				factory, sourceHandler);
+		Files.move(mergedFile.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		System.out.println(name + " : " + counts[0] + " changed, " + counts[1] + " added, "
+				+ counts[2] + " deleted");
+	}
+
+	/**
+	 * writes the union of two sorted id files
+	 */
+	private static void mergeIds(final File first, final File second, final File dest)
+			throws IOException {
+		final StreamableIterator<ID> firstIter = new StreamableIterator<>(first, new IDFactory());
+		final StreamableIterator<ID> secondIter = new StreamableIterator<>(second,
+				new IDFactory());
+		final StreamableWriter<ID> idWriter = new StreamableWriter<>(dest);
+		ID firstId = firstIter.hasNext() ? firstIter.next() : null;
+		ID secondId = secondIter.hasNext() ? secondIter.next() : null;
+		while (firstId != null || secondId != null) {
+			if (secondId == null || (firstId != null && firstId.getId() <= secondId.getId())) {
+				if (secondId != null && firstId.getId() == secondId.getId()) {
+					secondId = secondIter.hasNext() ? secondIter.next() : null;
+				}
+				idWriter.writeStreamable(firstId);
+				firstId = firstIter.hasNext() ? firstIter.next() : null;
+			} else {
+				idWriter.writeStreamable(secondId);
+				secondId = secondIter.hasNext() ? secondIter.next() : null;
+			}
+		}
+		firstIter.close();
+		secondIter.close();
+		idWriter.close();
+	}
+
+	/**
+	 * Writes the changed entities and the ids of the deleted ones and marks
+	 * them as touched.
+	 */
+	private class ChangeHandler implements SelectiveO5mHandler {
+		private final StreamableWriter<Node> nodeWriter;
+		private final StreamableWriter<Node> sNodeWriter;
+		private final StreamableWriter<ID> nodeDeleteWriter;
+		private final StreamableWriter<ID> sNodeDeleteWriter;
+		private final StreamableWriter<Way> wayWriter;
+		private final StreamableWriter<ID> wayDeleteWriter;
+		private final StreamableWriter<Relation> relationWriter;
+		private final StreamableWriter<ID> relationDeleteWriter;
+		private final int typeKey = TagDictionary.getDefault().getId("type");
+		private final int multipolygonValue = TagDictionary.getDefault().getId("multipolygon");
+		private final O5mDecodeHints hints = new O5mDecodeHints();
+		private final Node node = new Node();
+
+		public ChangeHandler(final File nodeFile, final File simpleNodeFile,
+				final File nodeDeleteFile, final File simpleNodeDeleteFile, final File wayFile,
+				final File wayDeleteFile, final File relationFile, final File relationDeleteFile)
+				throws IOException {
+			nodeWriter = new StreamableWriter<>(nodeFile);
+			sNodeWriter = new StreamableWriter<>(simpleNodeFile);
+			nodeDeleteWriter = new StreamableWriter<>(nodeDeleteFile);
+			sNodeDeleteWriter = new StreamableWriter<>(simpleNodeDeleteFile);
+			wayWriter = new StreamableWriter<>(wayFile);
+			wayDeleteWriter = new StreamableWriter<>(wayDeleteFile);
+			relationWriter = new StreamableWriter<>(relationFile);
+			relationDeleteWriter = new StreamableWriter<>(relationDeleteFile);
+			hints.setMetadata(false);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode o5mNode) throws IOException {
+			final long id = o5mNode.getNodeId();
+			touchedNodes.set(id);
+			if (o5mNode.isDeleted()) {
+				nodeDeleteWriter.writeStreamable(new ID(id));
+				sNodeDeleteWriter.writeStreamable(new ID(id));
+				return;
+			}
+			node.getProps().clear();
+			node.setId(id);
+			node.setLat(o5mNode.getLat());
+			node.setLon(o5mNode.getLon());
+			// ways crossing the border of the box need the nodes outside as well
+			sNodeWriter.writeStreamable(node);
+			if (generator.isOutside(o5mNode.getLat(), o5mNode.getLon())) {
+				nodeDeleteWriter.writeStreamable(new ID(id));
+				return;
+			}
+			for (int i = 0; i < o5mNode.getTagCount(); ++i) {
+				node.addProperty(o5mNode.getTagKey(i), o5mNode.getTagValue(i));
+			}
+			nodeWriter.writeStreamable(node);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay o5mWay) throws IOException {
+			touchedWays.set(o5mWay.getWayId());
+			if (o5mWay.isDeleted()) {
+				wayDeleteWriter.writeStreamable(new ID(o5mWay.getWayId()));
+			} else {
+				wayWriter.writeStreamable(Generator.toWay(o5mWay));
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation o5mRelation) throws IOException {
+			touchedRelations.set(o5mRelation.getRelationId());
+			if (o5mRelation.isDeleted() || !o5mRelation.hasTag(typeKey, multipolygonValue)) {
+				relationDeleteWriter.writeStreamable(new ID(o5mRelation.getRelationId()));
+			} else {
+				relationWriter.writeStreamable(Generator.toRelation(o5mRelation));
+			}
+		}
+
+		public void close() throws IOException {
+			nodeWriter.close();
+			sNodeWriter.close();
+			nodeDeleteWriter.close();
+			sNodeDeleteWriter.close();
+			wayWriter.close();
+			wayDeleteWriter.close();
+			relationWriter.close();
+			relationDeleteWriter.close();
+		}
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 17.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.tile.gen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import mm.io.base.OffHeapBitSet;
+import mm.o5m.reader.O5mBatchHandler;
+import mm.o5m.reader.O5mDecodeHints;
+import mm.o5m.reader.O5mHandler;
+import mm.o5m.reader.O5mIndex;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mNodeBatch;
+import mm.o5m.reader.O5mReader;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.Reference;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.O5mWriter;
+import mm.o5m.reader.SelectiveO5mHandler;
+import mm.pbf.reader.PbfReader;
+
+/**
+ * Cuts the entities of a bounding box out of an o5m or pbf file into an o5m
+ * file, so a region can be extracted once and many maps can be generated from
+ * the small file.
+ * 
+ * The first pass only decodes ids, coordinates and references and marks the
+ * entities to keep in bit sets: the nodes inside of the box, the ways with at
+ * least one of them together with all their nodes, and the relations with a
+ * kept member. A relation can refer to a relation further back in the file,
+ * so the relations are read again until no further relation gets marked.
+ * With the {@link O5mIndex} of an o5m file these passes start behind the
+ * ways. Members outside of the box are not added. The last pass copies the
+ * marked entities to the {@link O5mWriter}, so the ways of the extract are
+ * complete.
+ * 
+ * @author benno
+ */
+public class Extractor {
+
+	private final int minLat;
+	private final int minLon;
+	private final int maxLat;
+	private final int maxLon;
+	private final OffHeapBitSet inside = new OffHeapBitSet();
+	private final OffHeapBitSet nodes = new OffHeapBitSet();
+	private final OffHeapBitSet ways = new OffHeapBitSet();
+	private final OffHeapBitSet relations = new OffHeapBitSet();
+
+	/**
+	 * @param minLat
+	 *            in degrees
+	 * @param minLon
+	 *            in degrees
+	 * @param maxLat
+	 *            in degrees
+	 * @param maxLon
+	 *            in degrees
+	 * @param margin
+	 *            in degrees, the box is extended by it
+	 */
+	public Extractor(final double minLat, final double minLon, final double maxLat,
+			final double maxLon, final double margin) {
+		this.minLat = Generator.toO5m(Math.max(-90, minLat - margin));
+		this.minLon = Generator.toO5m(Math.max(-180, minLon - margin));
+		this.maxLat = Generator.toO5m(Math.min(90, maxLat + margin));
+		this.maxLon = Generator.toO5m(Math.min(180, maxLon + margin));
+	}
+
+	/**
+	 * extracts the bounding box
+	 * 
+	 * @param in
+	 *            an o5m or, if the name ends with
+	 *            {@link Generator#PBF_EXTENSION}, a pbf file
+	 * @param out
+	 *            the o5m file to write
+	 * @throws IOException
+	 */
+	public void extract(final File in, final File out) throws IOException {
+		MarkingHandler marking = new MarkingHandler();
+		read(in, marking);
+		if (marking.marked > 0 && !in.getName().endsWith(Generator.PBF_EXTENSION)) {
+			O5mIndex.forFile(in);
+		}
+		while (marking.marked > 0) {
+			marking = new RelationMarkingHandler();
+			read(in, marking);
+		}
+		final CopyingHandler copy = new CopyingHandler(new O5mWriter(out));
+		try {
+			copy.writer.writeBoundingBox(minLat, minLon, maxLat, maxLon);
+			read(in, copy);
+		} finally {
+			copy.writer.close();
+		}
+		System.out.println("Extracted " + copy.nodeCount + " nodes, " + copy.wayCount
+				+ " ways and " + copy.relationCount + " relations into " + out);
+	}
+
+	private static void read(final File f, final O5mHandler handler) throws IOException {
+		if (f.getName().endsWith(Generator.PBF_EXTENSION)) {
+			new PbfReader().readFile(f, handler);
+		} else {
+			final O5mReader reader = new O5mReader();
+			reader.setMemoryMapped(true);
+			reader.readFile(f, handler);
+		}
+	}
+
+	/**
+	 * first pass, marks the entities to keep
+	 */
+	private class MarkingHandler implements O5mBatchHandler, SelectiveO5mHandler {
+		/** number of relations marked by this pass */
+		private long marked = 0;
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			final O5mDecodeHints hints = new O5mDecodeHints();
+			hints.setMetadata(false);
+			hints.setNodeTags(false);
+			hints.setWayTags(false);
+			hints.setRelationTags(false);
+			hints.setRoles(false);
+			return hints;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * mm.o5m.reader.O5mBatchHandler#newNodes(mm.o5m.reader.O5mNodeBatch)
+		 */
+		@Override
+		public void newNodes(final O5mNodeBatch batch) {
+			final long ids[] = batch.getIds();
+			final int lats[] = batch.getLats();
+			final int lons[] = batch.getLons();
+			for (int i = 0; i < batch.size(); ++i) {
+				mark(ids[i], lats[i], lons[i]);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode node) {
+			if (!node.isDeleted()) {
+				mark(node.getNodeId(), node.getLat(), node.getLon());
+			}
+		}
+
+		private void mark(final long id, final int lat, final int lon) {
+			if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+				inside.set(id);
+				nodes.set(id);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) {
+			final long refs[] = way.getRefIds();
+			final int count = way.getRefCount();
+			int i = 0;
+			while (i < count && !inside.get(refs[i])) {
+				i++;
+			}
+			if (i < count) {
+				ways.set(way.getWayId());
+				for (int j = 0; j < count; ++j) {
+					nodes.set(refs[j]);
+				}
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			if (relations.get(relation.getRelationId())) {
+				return;
+			}
+			final List<Reference> refs = relation.getRefs();
+			for (int i = 0; i < refs.size(); ++i) {
+				final Reference ref = refs.get(i);
+				final boolean kept;
+				switch (ref.getType()) {
+				case NODE:
+					kept = nodes.get(ref.getId());
+					break;
+				case WAY:
+					kept = ways.get(ref.getId());
+					break;
+				case RELATION:
+					kept = relations.get(ref.getId());
+					break;
+				default:
+					kept = false;
+				}
+				if (kept) {
+					relations.set(relation.getRelationId());
+					marked++;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * further pass over the relations only, marks the relations referring to
+	 * relations marked after them
+	 */
+	private class RelationMarkingHandler extends MarkingHandler {
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.tile.gen.Extractor.MarkingHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			final O5mDecodeHints hints = super.getDecodeHints();
+			hints.setNodes(false);
+			hints.setWays(false);
+			return hints;
+		}
+	}
+
+	/**
+	 * second pass, writes the marked entities
+	 */
+	private class CopyingHandler implements O5mHandler {
+		private final O5mWriter writer;
+		private long nodeCount = 0;
+		private long wayCount = 0;
+		private long relationCount = 0;
+
+		public CopyingHandler(final O5mWriter writer) {
+			this.writer = writer;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode node) throws IOException {
+			if (nodes.get(node.getNodeId())) {
+				writer.writeNode(node);
+				nodeCount++;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) throws IOException {
+			if (ways.get(way.getWayId())) {
+				writer.writeWay(way);
+				wayCount++;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) throws IOException {
+			if (relations.get(relation.getRelationId())) {
+				writer.writeRelation(relation);
+				relationCount++;
+			}
+		}
+	}
+}
@@ -21,15 +21,31 @@ package mm.tile.gen;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 
+import javax.management.JMException;
+
+import mm.io.StreamableIterator;
 import mm.io.StreamableWriter;
+import mm.io.StreamableFilter.ID;
+import mm.io.base.OffHeapBitSet;
+import mm.o5m.reader.ConsoleReadListener;
+import mm.o5m.reader.O5mBatchHandler;
+import mm.o5m.reader.O5mDecodeHints;
 import mm.o5m.reader.O5mHandler;
 import mm.o5m.reader.O5mNode;
-import mm.o5m.reader.O5mReader;
+import mm.o5m.reader.O5mNodeBatch;
+import mm.o5m.reader.O5mReadStatistics;
 import mm.o5m.reader.O5mRelation;
 import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.ParallelO5mReader;
+import mm.o5m.reader.PipelinedO5mReader;
+import mm.o5m.reader.SelectiveO5mHandler;
+import mm.o5m.reader.TagDictionary;
 import mm.o5m.reader.O5mRelation.Reference;
+import mm.pbf.reader.PbfReader;
 import mm.tile.gen.osm.Member;
 import mm.tile.gen.osm.Node;
 import mm.tile.gen.osm.Relation;
@@ -44,6 +60,8 @@ import mm.tile.gen.resolve.WayNodeResolver;
  */
 public class Generator {
 
+	public static final String PBF_EXTENSION = ".pbf";
+
 	protected final File dataPath;
 	protected final File nodeFile;
 	protected final File simpleNodeFile;
@@ -53,6 +71,13 @@ public class Generator {
 	protected final File resolvedFilteredWayFile;
 
 	protected final File resolvedRelationFile;
+	protected int readerThreads = 1;
+	protected boolean clip = false;
+	protected boolean keepStores = false;
+	protected int minLat;
+	protected int minLon;
+	protected int maxLat;
+	protected int maxLon;
 
 	public Generator(File dataPath) throws IOException {
 		this.dataPath = dataPath;
@@ -65,105 +90,344 @@ public class Generator {
 		resolvedRelationFile = new File(dataPath, "resrelation.dat");
 	}
 
+	/**
+	 * @param readerThreads
+	 *            number of threads decoding the input file. With more than one
+	 *            thread the ParallelO5mReader is used, otherwise the
+	 *            PipelinedO5mReader overlaps reading, decoding and writing.
+	 *            Pbf files are decoded with one thread per core unless more
+	 *            than one thread is given.
+	 */
+	public void setReaderThreads(final int readerThreads) {
+		this.readerThreads = readerThreads;
+	}
+
+	/**
+	 * @param keepStores
+	 *            true keeps the id sorted node, way and relation files after
+	 *            the import, so later change files can be applied with
+	 *            {@link #applyChanges(File)}
+	 */
+	public void setKeepStores(final boolean keepStores) {
+		this.keepStores = keepStores;
+	}
+
+	/**
+	 * Restricts the generated files to a bounding box plus the margin. Ways
+	 * are kept with all their nodes when at least one of their nodes is
+	 * inside the box, the other ways are dropped. Relations lose their
+	 * dropped members and are dropped when no member is left. The input is
+	 * read twice, the second pass only reads the nodes and writes the ones
+	 * inside of the box and the ones outside that kept ways refer to.
+	 * 
+	 * @param minLat
+	 *            in degrees
+	 * @param minLon
+	 *            in degrees
+	 * @param maxLat
+	 *            in degrees
+	 * @param maxLon
+	 *            in degrees
+	 * @param margin
+	 *            in degrees
+	 */
+	public void setBoundingBox(final double minLat, final double minLon, final double maxLat,
+			final double maxLon, final double margin) {
+		this.minLat = toO5m(Math.max(-90, minLat - margin));
+		this.minLon = toO5m(Math.max(-180, minLon - margin));
+		this.maxLat = toO5m(Math.min(90, maxLat + margin));
+		this.maxLon = toO5m(Math.min(180, maxLon + margin));
+		clip = true;
+	}
+
+	/**
+	 * o5m stores coordinates in 100 nanodegrees
+	 */
+	static int toO5m(final double degrees) {
+		return (int) Math.round(degrees * 1e7);
+	}
+
+	/**
+	 * reads an o5m or, if the name ends with {@link #PBF_EXTENSION}, a pbf
+	 * file and generates the resolved files
+	 * 
+	 * @param f
+	 *            the input file
+	 * @throws IOException
+	 */
 	public void readFile(final File f) throws IOException {
-		final O5mReader reader = new O5mReader();
-		final StreamableWriter<Node> nodeWriter = new StreamableWriter<>(nodeFile);
-		final StreamableWriter<Node> sNodeWriter = new StreamableWriter<>(simpleNodeFile);
-		final StreamableWriter<Way> wayWriter = new StreamableWriter<>(wayFile);
-		final StreamableWriter<Relation> relationWriter = new StreamableWriter<>(relationFile);
-
-		reader.readFile(f, new O5mHandler() {
-
-			@Override
-			public void newNode(final O5mNode o5mNode) {
-				try {
-					final Node node = new Node();
-					node.setId(o5mNode.getNodeId());
-					node.setLat(o5mNode.getLat());
-					node.setLon(o5mNode.getLon());
-					sNodeWriter.writeStreamable(node);
-					node.setProps(o5mNode.getProps());
-					nodeWriter.writeStreamable(node);
-				} catch (final IOException e) {
-					e.printStackTrace();
-				}
+		final RawFileHandler handler = new RawFileHandler();
+		// with the index of the first pass the node pass stops in front of the ways
+		read(f, handler, clip);
+		handler.close();
+		if (clip) {
+			final long dropped = clipRelations(handler.keptNodes, handler.keptWays, null,
+					null);
+			System.out.println("Dropped outside of the bounding box : " + dropped
+					+ " relations");
+			final ClipNodeHandler nodeHandler = new ClipNodeHandler(handler.keptNodes);
+			read(f, nodeHandler, false);
+			nodeHandler.close();
+		}
+		WayNodeResolver.resolveNodes(resolvedWayFile, wayFile, simpleNodeFile, dataPath);
+		// the relations are flattened in place, a kept store needs the raw ones
+		final File flatRelationFile = keepStores ? File.createTempFile("flat", "rel", dataPath)
+				: relationFile;
+		if (keepStores) {
+			Files.copy(relationFile.toPath(), flatRelationFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		RelationRelationResolver.resolve(flatRelationFile, dataPath);
+		RelationWayResolver.resolveWays(resolvedRelationFile, flatRelationFile, resolvedWayFile,
+				dataPath);
+		RelationWayResolver.dropRelatedWays(resolvedFilteredWayFile, resolvedRelationFile,
+				resolvedWayFile, dataPath);
+		flatRelationFile.delete();
+		if (!keepStores) {
+			simpleNodeFile.delete();
+			wayFile.delete();
+			resolvedWayFile.delete();
+		}
+		System.out.println(new Date());
+	}
+
+	/**
+	 * reads the file with the reader fitting to its type and the number of
+	 * threads. An o5m file read with writeIndex gets its index stored, if it
+	 * has none yet.
+	 */
+	private void read(final File f, final O5mHandler handler, final boolean writeIndex)
+			throws IOException {
+		final O5mReadStatistics statistics = new O5mReadStatistics();
+		statistics.addListener(new ConsoleReadListener());
+		try {
+			statistics.registerMBean(f.getName());
+		} catch (final JMException e) {
+			e.printStackTrace();
+		}
+		try {
+			if (f.getName().endsWith(PBF_EXTENSION)) {
+				final PbfReader reader = readerThreads > 1 ? new PbfReader(readerThreads)
+						: new PbfReader();
+				reader.setStatistics(statistics);
+				reader.readFile(f, handler);
+			} else if (readerThreads > 1) {
+				final ParallelO5mReader reader = new ParallelO5mReader(readerThreads);
+				reader.setStatistics(statistics);
+				reader.setWriteIndex(writeIndex);
+				reader.readFile(f, handler);
+			} else {
+				final PipelinedO5mReader reader = new PipelinedO5mReader();
+				reader.setMemoryMapped(true);
+				reader.setStatistics(statistics);
+				reader.setWriteIndex(writeIndex);
+				reader.readFile(f, handler);
+			}
+		} finally {
+			try {
+				statistics.unregisterMBean();
+			} catch (final JMException e) {
+				e.printStackTrace();
 			}
+		}
+	}
 
-			@Override
-			public void newWay(final O5mWay o5mWay) {
-				try {
-					final Way way = new Way();
-					way.setId(o5mWay.getWayId());
-					way.setProps(o5mWay.getProps());
-					for (final Long ref : o5mWay.getRefs()) {
-						final Node node = new Node();
-						node.setId(ref.longValue());
-						way.addNode(node);
-					}
-					wayWriter.writeStreamable(way);
-				} catch (final IOException e) {
-					e.printStackTrace();
-				}
+	/**
+	 * updates the generated files with an o5c change file. The stores of an
+	 * import with {@link #setKeepStores(boolean)} have to be in the data
+	 * path, they are updated as well, so the next change file can follow.
+	 * Only the ways and relations touched by the changes are resolved again.
+	 * The bounding box has to be the one of the import.
+	 * 
+	 * @param f
+	 *            the o5c file
+	 * @throws IOException
+	 */
+	public void applyChanges(final File f) throws IOException {
+		new ChangeApplier(this).apply(f);
+		System.out.println(new Date());
+	}
+
+	/**
+	 * @return true if a bounding box is set and the coordinates in o5m units
+	 *         are outside of it
+	 */
+	boolean isOutside(final int lat, final int lon) {
+		return clip && (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon);
+	}
+
+	/**
+	 * converts an o5m way into a raw way that only has the ids of its nodes.
+	 * 
+	 * @param o5mWay
+	 *            the decoded way
+	 * @return the raw way
+	 */
+	static Way toWay(final O5mWay o5mWay) {
+		final Way way = new Way();
+		way.setId(o5mWay.getWayId());
+		for (int i = 0; i < o5mWay.getTagCount(); ++i) {
+			way.addProperty(o5mWay.getTagKey(i), o5mWay.getTagValue(i));
+		}
+		final long refs[] = o5mWay.getRefIds();
+		for (int i = 0; i < o5mWay.getRefCount(); ++i) {
+			final Node wayNode = new Node();
+			wayNode.setId(refs[i]);
+			way.addNode(wayNode);
+		}
+		return way;
+	}
+
+	/**
+	 * converts an o5m relation into a raw relation whose members only have
+	 * their ids.
+	 * 
+	 * @param o5mRelation
+	 *            the decoded relation
+	 * @return the raw relation
+	 */
+	static Relation toRelation(final O5mRelation o5mRelation) {
+		final Relation relation = new Relation();
+		relation.setId(o5mRelation.getRelationId());
+		for (int i = 0; i < o5mRelation.getTagCount(); ++i) {
+			relation.addProperty(o5mRelation.getTagKey(i), o5mRelation.getTagValue(i));
+		}
+		for (final Reference ref : o5mRelation.getRefs()) {
+			switch (ref.getType()) {
+			case NODE:
+				final Node memberNode = new Node();
+				final Member<Node> nodeMember = new Member<>(memberNode);
+				memberNode.setId(ref.getId());
+				nodeMember.setRole(ref.getRole());
+				relation.addNode(nodeMember);
+				break;
+			case RELATION:
+				final Relation childRelation = new Relation();
+				final Member<Relation> relationMember = new Member<>(childRelation);
+				childRelation.setId(ref.getId());
+				relationMember.setRole(ref.getRole());
+				relation.addRelation(relationMember);
+				break;
+			case WAY:
+				final Way way = new Way();
+				final Member<Way> wayMember = new Member<>(way);
+				way.setId(ref.getId());
+				wayMember.setRole(ref.getRole());
+				relation.addWay(wayMember);
+				break;
+			case MAX:
+			default:
+				break;
 			}
+		}
+		return relation;
+	}
 
-			@Override
-			public void newRelation(final O5mRelation o5mRelation) {
-				try {
-					final Relation relation = new Relation();
-					relation.setId(o5mRelation.getRelationId());
-					relation.setProps(o5mRelation.getProps());
-					if ("multipolygon".equals(relation.getProperty("type"))) {
-						for (final Reference ref : o5mRelation.getRefs()) {
-							switch (ref.getType()) {
-							case NODE:
-								final Node node = new Node();
-								final Member<Node> nodeMember = new Member<>(node);
-								node.setId(ref.getId());
-								nodeMember.setRole(ref.getRole());
-								relation.addNode(nodeMember);
-								break;
-							case RELATION:
-								final Relation childRelation = new Relation();
-								final Member<Relation> relationMember = new Member<>(childRelation);
-								childRelation.setId(ref.getId());
-								relationMember.setRole(ref.getRole());
-								relation.addRelation(relationMember);
-								break;
-							case WAY:
-								final Way way = new Way();
-								final Member<Way> wayMember = new Member<>(way);
-								way.setId(ref.getId());
-								wayMember.setRole(ref.getRole());
-								relation.addWay(wayMember);
-								break;
-							case MAX:
-							default:
-								break;
-							}
-						}
-						relationWriter.writeStreamable(relation);
-					}
-				} catch (final IOException e) {
-					e.printStackTrace();
+	/**
+	 * drops the members outside of the bounding box from the raw relations
+	 * and the relations without members left. Node and way members stay when
+	 * they are kept, relation members when their relation stays. As a
+	 * relation may have a relation behind it as member, the relations are
+	 * read until no further relation stays, like the {@link Extractor} does.
+	 * 
+	 * @param keptNodes
+	 *            the nodes inside of the box and the nodes of kept ways
+	 * @param keptWays
+	 *            the ways with a node inside of the box
+	 * @param changed
+	 *            gets the relations that lost members or were dropped, may be
+	 *            null
+	 * @param droppedWriter
+	 *            gets the ids of the dropped relations, may be null
+	 * @return the number of dropped relations
+	 * @throws IOException
+	 */
+	long clipRelations(final OffHeapBitSet keptNodes, final OffHeapBitSet keptWays,
+			final OffHeapBitSet changed, final StreamableWriter<ID> droppedWriter)
+			throws IOException {
+		final OffHeapBitSet keptRelations = new OffHeapBitSet();
+		long marked;
+		do {
+			marked = 0;
+			final StreamableIterator<Relation> relationIter = new StreamableIterator<>(
+					relationFile, new Relation.RelationFactory());
+			while (relationIter.hasNext()) {
+				final Relation relation = relationIter.next();
+				if (!keptRelations.get(relation.getId())
+						&& isKept(relation, keptNodes, keptWays, keptRelations)) {
+					keptRelations.set(relation.getId());
+					marked++;
 				}
+			}
+			relationIter.close();
+		} while (marked > 0);
 
+		final File clippedFile = File.createTempFile("clipped", "rel", dataPath);
+		final StreamableIterator<Relation> relationIter = new StreamableIterator<>(
+				relationFile, new Relation.RelationFactory());
+		final StreamableWriter<Relation> relationWriter = new StreamableWriter<>(clippedFile);
+		long dropped = 0;
+		while (relationIter.hasNext()) {
+			final Relation relation = relationIter.next();
+			if (!keptRelations.get(relation.getId())) {
+				if (changed != null) {
+					changed.set(relation.getId());
+				}
+				if (droppedWriter != null) {
+					droppedWriter.writeStreamable(new ID(relation.getId()));
+				}
+				dropped++;
+				continue;
+			}
+			final int memberCount = relation.getNodes().size() + relation.getWays().size()
+					+ relation.getRelations().size();
+			for (int i = relation.getNodes().size() - 1; i >= 0; --i) {
+				if (!keptNodes.get(relation.getNodes().get(i).getRef().getId())) {
+					relation.getNodes().remove(i);
+				}
 			}
-		});
-		nodeWriter.close();
-		sNodeWriter.close();
-		wayWriter.close();
+			for (int i = relation.getWays().size() - 1; i >= 0; --i) {
+				if (!keptWays.get(relation.getWays().get(i).getRef().getId())) {
+					relation.getWays().remove(i);
+				}
+			}
+			for (int i = relation.getRelations().size() - 1; i >= 0; --i) {
+				if (!keptRelations.get(relation.getRelations().get(i).getRef().getId())) {
+					relation.getRelations().remove(i);
+				}
+			}
+			if (changed != null
+					&& memberCount != relation.getNodes().size() + relation.getWays().size()
+							+ relation.getRelations().size()) {
+				changed.set(relation.getId());
+			}
+			relationWriter.writeStreamable(relation);
+		}
+		relationIter.close();
 		relationWriter.close();
-		WayNodeResolver.resolveNodes(resolvedWayFile, wayFile, simpleNodeFile, dataPath);
-		RelationRelationResolver.resolve(relationFile, dataPath);
-		RelationWayResolver.resolveWays(resolvedRelationFile, relationFile, resolvedWayFile,
-				dataPath);
-		RelationWayResolver.dropRelatedWays(resolvedFilteredWayFile, resolvedRelationFile,
-				resolvedWayFile, dataPath);
-		simpleNodeFile.delete();
-		wayFile.delete();
-		relationFile.delete();
-		resolvedWayFile.delete();
-		System.out.println(new Date());
+		Files.move(clippedFile.toPath(), relationFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		return dropped;
+	}
+
+	private static boolean isKept(final Relation relation, final OffHeapBitSet keptNodes,
+			final OffHeapBitSet keptWays, final OffHeapBitSet keptRelations) {
+		for (final Member<Node> member : relation.getNodes()) {
+			if (keptNodes.get(member.getRef().getId())) {
+				return true;
+			}
+		}
+		for (final Member<Way> member : relation.getWays()) {
+			if (keptWays.get(member.getRef().getId())) {
+				return true;
+			}
+		}
+		for (final Member<Relation> member : relation.getRelations()) {
+			if (keptRelations.get(member.getRef().getId())) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public File getNodeFile() {
@@ -177,4 +441,263 @@ public class Generator {
 	public File getResolvedRelationFile() {
 		return resolvedRelationFile;
 	}
+
+	/**
+	 * Writes the entities of the o5m file to the raw files. The nodes come in
+	 * batches and a single Node is reused for writing them. With a bounding
+	 * box the simple nodes are written by the {@link ClipNodeHandler}, as the
+	 * nodes outside of the box the kept ways need are only known behind the
+	 * ways.
+	 */
+	protected class RawFileHandler implements SelectiveO5mHandler, O5mBatchHandler {
+		private final StreamableWriter<Node> nodeWriter = new StreamableWriter<>(nodeFile);
+		private final StreamableWriter<Node> sNodeWriter = clip ? null
+				: new StreamableWriter<Node>(simpleNodeFile);
+		private final StreamableWriter<Way> wayWriter = new StreamableWriter<>(wayFile);
+		private final StreamableWriter<Relation> relationWriter = new StreamableWriter<>(
+				relationFile);
+		private final int typeKey = TagDictionary.getDefault().getId("type");
+		private final int multipolygonValue = TagDictionary.getDefault().getId("multipolygon");
+		/** nodes inside of the box */
+		private final OffHeapBitSet insideNodes = new OffHeapBitSet();
+		/** nodes inside of the box and nodes of kept ways */
+		private final OffHeapBitSet keptNodes = new OffHeapBitSet();
+		private final OffHeapBitSet keptWays = new OffHeapBitSet();
+		private final O5mDecodeHints hints = new O5mDecodeHints();
+		private final Node node = new Node();
+		private long droppedNodeCount = 0;
+		private long droppedWayCount = 0;
+
+		public RawFileHandler() throws IOException {
+			hints.setMetadata(false);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mBatchHandler#newNodes(mm.o5m.reader.O5mNodeBatch)
+		 */
+		@Override
+		public void newNodes(final O5mNodeBatch batch) throws IOException {
+			final long ids[] = batch.getIds();
+			final int lats[] = batch.getLats();
+			final int lons[] = batch.getLons();
+			final int size = batch.size();
+			for (int i = 0; i < size; ++i) {
+				if (writeSimpleNode(ids[i], lats[i], lons[i])) {
+					for (int tag = batch.getTagStart(i); tag < batch.getTagEnd(i); ++tag) {
+						node.addProperty(batch.getTagKey(tag), batch.getTagValue(tag));
+					}
+					nodeWriter.writeStreamable(node);
+				}
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode o5mNode) throws IOException {
+			if (writeSimpleNode(o5mNode.getNodeId(), o5mNode.getLat(), o5mNode.getLon())) {
+				for (int i = 0; i < o5mNode.getTagCount(); ++i) {
+					node.addProperty(o5mNode.getTagKey(i), o5mNode.getTagValue(i));
+				}
+				nodeWriter.writeStreamable(node);
+			}
+		}
+
+		/**
+		 * writes a node without props to the simple node file and leaves it in
+		 * the reused node. With a bounding box the node is only marked.
+		 * 
+		 * @return false if the node is outside of the bounding box
+		 * @throws IOException
+		 */
+		private boolean writeSimpleNode(final long id, final int lat, final int lon)
+				throws IOException {
+			if (clip) {
+				if (isOutside(lat, lon)) {
+					droppedNodeCount++;
+					return false;
+				}
+				insideNodes.set(id);
+				keptNodes.set(id);
+			}
+			node.getProps().clear();
+			node.setId(id);
+			node.setLat(lat);
+			node.setLon(lon);
+			if (sNodeWriter != null) {
+				sNodeWriter.writeStreamable(node);
+			}
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay o5mWay) throws IOException {
+			if (clip) {
+				final long refs[] = o5mWay.getRefIds();
+				boolean inside = false;
+				for (int i = 0; !inside && i < o5mWay.getRefCount(); ++i) {
+					inside = insideNodes.get(refs[i]);
+				}
+				if (!inside) {
+					droppedWayCount++;
+					return;
+				}
+				keptWays.set(o5mWay.getWayId());
+				for (int i = 0; i < o5mWay.getRefCount(); ++i) {
+					keptNodes.set(refs[i]);
+				}
+			}
+			wayWriter.writeStreamable(toWay(o5mWay));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation o5mRelation) throws IOException {
+			if (!o5mRelation.hasTag(typeKey, multipolygonValue)) {
+				return;
+			}
+			// with a bounding box the relations are clipped behind the pass
+			relationWriter.writeStreamable(toRelation(o5mRelation));
+		}
+
+		/**
+		 * closes the raw files
+		 * 
+		 * @throws IOException
+		 */
+		public void close() throws IOException {
+			if (clip) {
+				System.out.println("Dropped outside of the bounding box : " + droppedNodeCount
+						+ " nodes, " + droppedWayCount + " ways");
+			}
+			nodeWriter.close();
+			if (sNodeWriter != null) {
+				sNodeWriter.close();
+			}
+			wayWriter.close();
+			relationWriter.close();
+		}
+	}
+
+	/**
+	 * Writes the simple nodes of the second pass with a bounding box, these
+	 * are the nodes inside of the box and the nodes of the kept ways.
+	 */
+	protected class ClipNodeHandler implements SelectiveO5mHandler, O5mBatchHandler {
+		private final StreamableWriter<Node> sNodeWriter = new StreamableWriter<>(simpleNodeFile);
+		private final OffHeapBitSet keptNodes;
+		private final O5mDecodeHints hints = new O5mDecodeHints();
+		private final Node node = new Node();
+
+		/**
+		 * @param keptNodes
+		 *            the nodes to write
+		 * @throws IOException
+		 */
+		public ClipNodeHandler(final OffHeapBitSet keptNodes) throws IOException {
+			this.keptNodes = keptNodes;
+			hints.setMetadata(false);
+			hints.setNodeTags(false);
+			hints.setWays(false);
+			hints.setRelations(false);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.SelectiveO5mHandler#getDecodeHints()
+		 */
+		@Override
+		public O5mDecodeHints getDecodeHints() {
+			return hints;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mBatchHandler#newNodes(mm.o5m.reader.O5mNodeBatch)
+		 */
+		@Override
+		public void newNodes(final O5mNodeBatch batch) throws IOException {
+			final long ids[] = batch.getIds();
+			final int lats[] = batch.getLats();
+			final int lons[] = batch.getLons();
+			final int size = batch.size();
+			for (int i = 0; i < size; ++i) {
+				writeNode(ids[i], lats[i], lons[i]);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newNode(mm.o5m.reader.O5mNode)
+		 */
+		@Override
+		public void newNode(final O5mNode o5mNode) throws IOException {
+			writeNode(o5mNode.getNodeId(), o5mNode.getLat(), o5mNode.getLon());
+		}
+
+		private void writeNode(final long id, final int lat, final int lon) throws IOException {
+			if (keptNodes.get(id)) {
+				node.setId(id);
+				node.setLat(lat);
+				node.setLon(lon);
+				sNodeWriter.writeStreamable(node);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newWay(mm.o5m.reader.O5mWay)
+		 */
+		@Override
+		public void newWay(final O5mWay way) {
+			// only nodes are read
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see mm.o5m.reader.O5mHandler#newRelation(mm.o5m.reader.O5mRelation)
+		 */
+		@Override
+		public void newRelation(final O5mRelation relation) {
+			// only nodes are read
+		}
+
+		/**
+		 * closes the simple node file
+		 * 
+		 * @throws IOException
+		 */
+		public void close() throws IOException {
+			sNodeWriter.close();
+		}
+	}
 }
@@ -23,8 +23,10 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
+import mm.io.base.MemoryBudget;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -33,7 +35,7 @@ import org.json.JSONObject;
  * @author benno
  * 
  */
-public class Member<T extends Streamable> implements Streamable {
+public class Member<T extends Streamable> implements Streamable, SizeEstimable {
 
 	private final T ref;
 	private String role = "";
@@ -43,6 +45,16 @@ public class Member<T extends Streamable> implements Streamable {
 		this.ref = ref;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		return MemoryBudget.OBJECT + 16 + MemoryBudget.sizeOf(role) + MemoryBudget.sizeOf(ref);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -25,15 +25,17 @@ import java.io.ObjectOutput;
 import java.util.HashMap;
 import java.util.Set;
 
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
 import mm.io.StreamableFactory;
+import mm.io.base.MemoryBudget;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class Node implements Streamable {
+public class Node implements Streamable, SizeEstimable {
 	/**
 	 * 
 	 */
@@ -133,6 +135,16 @@ public class Node implements Streamable {
 		props.putAll(node.getProps());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		return MemoryBudget.OBJECT + 32 + MemoryBudget.sizeOf(props);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
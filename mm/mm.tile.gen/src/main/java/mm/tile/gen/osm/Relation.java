@@ -27,9 +27,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
 import mm.io.StreamableFactory;
+import mm.io.base.MemoryBudget;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -39,7 +41,7 @@ import org.json.JSONObject;
  * @author benno
  * 
  */
-public class Relation implements Streamable {
+public class Relation implements Streamable, SizeEstimable {
 	/**
 	 * 
 	 */
@@ -165,6 +167,27 @@ public class Relation implements Streamable {
 		return bounds;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		long size = MemoryBudget.OBJECT + 48 + MemoryBudget.sizeOf(props) + 6
+				* MemoryBudget.OBJECT;
+		for (final Member<Node> member : nodes) {
+			size += MemoryBudget.REFERENCE + member.estimatedSize();
+		}
+		for (final Member<Way> member : ways) {
+			size += MemoryBudget.REFERENCE + member.estimatedSize();
+		}
+		for (final Member<Relation> member : relations) {
+			size += MemoryBudget.REFERENCE + member.estimatedSize();
+		}
+		return size;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -27,9 +27,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
+import mm.io.SizeEstimable;
 import mm.io.StreamIo;
 import mm.io.Streamable;
 import mm.io.StreamableFactory;
+import mm.io.base.MemoryBudget;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -39,7 +41,7 @@ import org.json.JSONObject;
  * @author benno
  * 
  */
-public class Way implements Streamable {
+public class Way implements Streamable, SizeEstimable {
 	/**
 	 * 
 	 */
@@ -136,6 +138,21 @@ public class Way implements Streamable {
 		return bounds;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mm.io.SizeEstimable#estimatedSize()
+	 */
+	@Override
+	public long estimatedSize() {
+		long size = MemoryBudget.OBJECT + 32 + MemoryBudget.sizeOf(props) + 2
+				* MemoryBudget.OBJECT + MemoryBudget.REFERENCE * nodes.size();
+		for (final Node node : nodes) {
+			size += node.estimatedSize();
+		}
+		return size;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -163,7 +180,6 @@ public class Way implements Streamable {
 	@Override
 	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
 		props.clear();
-		nodes.clear();
 		id = in.readLong();
 		int size = in.readInt();
 		for (int i = 0; i < size; ++i) {
@@ -172,7 +188,15 @@ public class Way implements Streamable {
 			props.put(key, value);
 		}
 		size = in.readInt();
-		for (int i = 0; i < size; ++i) {
+		// the nodes of a recycled way are refilled
+		final int reused = Math.min(size, nodes.size());
+		for (int i = 0; i < reused; ++i) {
+			nodes.get(i).readExternal(in);
+		}
+		if (nodes.size() > size) {
+			nodes.subList(size, nodes.size()).clear();
+		}
+		for (int i = reused; i < size; ++i) {
 			final Node node = new Node();
 			node.readExternal(in);
 			nodes.add(node);
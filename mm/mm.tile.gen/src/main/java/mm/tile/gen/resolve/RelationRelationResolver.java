@@ -51,7 +51,6 @@ import org.json.JSONException;
 public class RelationRelationResolver {
 	final File relationFile;
 	final File tempPath;
-	private final static int MAX_SIZE = 10000; 
 
 	private final ReferedHandler<Relation> manyHandler = new ReferedHandler<Relation>() {
 
@@ -170,7 +169,7 @@ public class RelationRelationResolver {
 		}
 		ReferenceResolver.resolveReferences(resultFile, manyRelationsFile, tempSomeReleationFile,
 				tempPath, new Relation.RelationFactory(), new Relation.RelationFactory(),
-				manyHandler, oneHandler, MAX_SIZE);
+				manyHandler, oneHandler);
 		tempSomeReleationFile.delete();
 		return resultFile;
 	}
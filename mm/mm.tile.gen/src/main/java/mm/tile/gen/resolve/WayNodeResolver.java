@@ -37,8 +37,6 @@ import mm.tile.gen.osm.Way;
  */
 public class WayNodeResolver {
 
-	private final int MAX_SIZE = 100000;
-
 	private final ReferedHandler<Node> manyHandler = new ReferedHandler<Node>() {
 
 		@Override
@@ -94,7 +92,7 @@ public class WayNodeResolver {
 	private void resolveNodes1(final File destFile, final File wayFile, final File nodeFile,
 			final File tempDir) throws IOException {
 		ReferenceResolver.resolveReferences(destFile, wayFile, nodeFile, tempDir,
-				new Way.WayFactory(), new Node.NodeFactory(), manyHandler, oneHandler, MAX_SIZE);
+				new Way.WayFactory(), new Node.NodeFactory(), manyHandler, oneHandler);
 	}
 
 	public static void resolveNodes(final File destFile, final File wayFile, final File nodeFile,
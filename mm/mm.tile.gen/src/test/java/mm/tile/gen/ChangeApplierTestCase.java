@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.tile.gen;
+
+import static mm.tile.gen.GeneratorTestCase.createDataPath;
+import static mm.tile.gen.GeneratorTestCase.delete;
+import static mm.tile.gen.GeneratorTestCase.readWays;
+import static mm.tile.gen.GeneratorTestCase.writeNode;
+import static mm.tile.gen.GeneratorTestCase.writeWay;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mm.io.StreamableIterator;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.RefType;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.O5mWriter;
+import mm.tile.gen.osm.Member;
+import mm.tile.gen.osm.Node;
+import mm.tile.gen.osm.Relation;
+import mm.tile.gen.osm.Way;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Applies change files to an import clipped to the box from 52 to 53 degrees
+ * latitude and 9 to 11 degrees longitude.
+ * 
+ * @author benno
+ */
+public class ChangeApplierTestCase {
+
+	private static final int INSIDE = 525000000;
+	private static final int SOUTH = 515000000;
+	private static final int NORTH = 535000000;
+	private static final int LON = 100000000;
+
+	private File dataPath;
+	private Generator generator;
+
+	/**
+	 * imports nodes 1 and 2 inside of the box and 3 to 6 outside. Way 10
+	 * crosses the border, way 11 is outside and way 12 inside. Relation 20
+	 * has the ways 10 and 11, relation 22 the way 12.
+	 */
+	@Before
+	public void importFile() throws IOException {
+		dataPath = createDataPath();
+		final File f = new File(dataPath, "import.o5m");
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			writeNodesAndWays(writer);
+			writeRelation(writer, 20, 10, 11);
+			writeRelation(writer, 22, 12);
+		} finally {
+			writer.close();
+		}
+		generator = createGenerator();
+		generator.setKeepStores(true);
+		generator.readFile(f);
+	}
+
+	@After
+	public void deleteFiles() {
+		delete(dataPath);
+	}
+
+	private Generator createGenerator() throws IOException {
+		final Generator ret = new Generator(dataPath);
+		ret.setBoundingBox(52, 9, 53, 11, 0);
+		return ret;
+	}
+
+	private static void writeNodesAndWays(final O5mWriter writer) throws IOException {
+		writeNode(writer, 1, INSIDE, LON, "amenity", "pub");
+		writeNode(writer, 2, INSIDE + 1000000, LON);
+		writeNode(writer, 3, SOUTH, LON);
+		writeNode(writer, 4, NORTH, LON);
+		writeNode(writer, 5, SOUTH - 10000000, LON);
+		writeNode(writer, 6, SOUTH - 10000000, LON + 1000000);
+		writeWay(writer, 10, 3, 1, 2, 4);
+		writeWay(writer, 11, 5, 6);
+		writeWay(writer, 12, 1, 2);
+	}
+
+	/**
+	 * writes a relation with a way and a relation as members
+	 */
+	private static void writeParent(final O5mWriter writer, final long id, final long way,
+			final long child) throws IOException {
+		final O5mRelation relation = new O5mRelation();
+		relation.setMetadata(0, 0, 0, null, null);
+		relation.setTags(new String[] { "type", "multipolygon" }, 1);
+		relation.set(id);
+		relation.addRef(way, RefType.WAY, "outer");
+		relation.addRef(child, RefType.RELATION, "");
+		writer.writeRelation(relation);
+	}
+
+	private static void writeRelation(final O5mWriter writer, final long id,
+			final long... ways) throws IOException {
+		final O5mRelation relation = new O5mRelation();
+		relation.setMetadata(0, 0, 0, null, null);
+		relation.setTags(new String[] { "type", "multipolygon" }, 1);
+		relation.set(id);
+		for (int i = 0; i < ways.length; ++i) {
+			relation.addRef(ways[i], RefType.WAY, i == 0 ? "outer" : "inner");
+		}
+		writer.writeRelation(relation);
+	}
+
+	private static void deleteNode(final O5mWriter writer, final long id) throws IOException {
+		final O5mNode node = new O5mNode();
+		node.setMetadata(0, 0, 0, null, null);
+		node.set(id, 0, 0);
+		node.setDeleted();
+		writer.writeNode(node);
+	}
+
+	private static void deleteWay(final O5mWriter writer, final long id) throws IOException {
+		final O5mWay way = new O5mWay();
+		way.setMetadata(0, 0, 0, null, null);
+		way.set(id, new long[0], 0);
+		way.setDeleted();
+		writer.writeWay(way);
+	}
+
+	private static void deleteRelation(final O5mWriter writer, final long id)
+			throws IOException {
+		final O5mRelation relation = new O5mRelation();
+		relation.setMetadata(0, 0, 0, null, null);
+		relation.set(id);
+		relation.setDeleted();
+		writer.writeRelation(relation);
+	}
+
+	private static String ids(final File f) throws IOException {
+		final List<Long> ret = new ArrayList<>();
+		final StreamableIterator<Node> iter = new StreamableIterator<>(f, new Node.NodeFactory());
+		while (iter.hasNext()) {
+			ret.add(Long.valueOf(iter.next().getId()));
+		}
+		iter.close();
+		return ret.toString();
+	}
+
+	private static List<Relation> readRelations(final File f) throws IOException {
+		final List<Relation> ret = new ArrayList<>();
+		final StreamableIterator<Relation> iter = new StreamableIterator<>(f,
+				new Relation.RelationFactory());
+		while (iter.hasNext()) {
+			ret.add(iter.next());
+		}
+		iter.close();
+		return ret;
+	}
+
+	/**
+	 * @return the ids of the relations with the ids of their way and relation
+	 *         members
+	 */
+	private static String members(final List<Relation> relations) {
+		final StringBuilder ret = new StringBuilder();
+		for (final Relation relation : relations) {
+			ret.append(relation.getId()).append(" w");
+			for (final Member<Way> member : relation.getWays()) {
+				ret.append(' ').append(member.getRef().getId());
+			}
+			ret.append(" r");
+			for (final Member<Relation> member : relation.getRelations()) {
+				ret.append(' ').append(member.getRef().getId());
+			}
+			ret.append(';');
+		}
+		return ret.toString();
+	}
+
+	private static String wayIds(final List<Way> ways) {
+		final List<Long> ret = new ArrayList<>();
+		for (final Way way : ways) {
+			ret.add(Long.valueOf(way.getId()));
+		}
+		return ret.toString();
+	}
+
+	@Test
+	public void testImport() throws IOException {
+		assertEquals("[1, 2]", ids(generator.nodeFile));
+		assertEquals("[1, 2, 3, 4]", ids(generator.simpleNodeFile));
+		assertEquals("[10, 12]", wayIds(readWays(generator.resolvedWayFile)));
+		final List<Relation> relations = readRelations(generator.resolvedRelationFile);
+		assertEquals(2, relations.size());
+		assertEquals(20, relations.get(0).getId());
+		assertEquals(1, relations.get(0).getWays().size());
+	}
+
+	/**
+	 * creates, modifies and deletes nodes, ways and relations
+	 */
+	@Test
+	public void testChanges() throws IOException {
+		final File f = new File(dataPath, "change.o5c");
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			writeNode(writer, 2, INSIDE + 2000000, LON);
+			deleteNode(writer, 3);
+			writeNode(writer, 4, INSIDE + 4000000, LON, "amenity", "cafe");
+			writeNode(writer, 7, INSIDE, LON + 1000000);
+			writeNode(writer, 8, INSIDE + 1000000, LON + 1000000);
+			writeWay(writer, 10, 1, 2, 4);
+			deleteWay(writer, 12);
+			writeWay(writer, 13, 7, 8);
+			writeRelation(writer, 20, 10, 13);
+			writeRelation(writer, 21, 13);
+			deleteRelation(writer, 22);
+		} finally {
+			writer.close();
+		}
+		createGenerator().applyChanges(f);
+
+		assertEquals("[1, 2, 4, 7, 8]", ids(generator.nodeFile));
+		assertEquals("[1, 2, 4, 7, 8]", ids(generator.simpleNodeFile));
+		final List<Way> ways = readWays(generator.resolvedWayFile);
+		assertEquals("[10, 13]", wayIds(ways));
+		final Way way = ways.get(0);
+		assertEquals(3, way.getNodes().size());
+		assertEquals(INSIDE + 2000000, way.getNodes().get(1).getLat());
+		assertEquals(INSIDE + 4000000, way.getNodes().get(2).getLat());
+		assertEquals(INSIDE + 1000000, ways.get(1).getNodes().get(1).getLat());
+
+		final List<Relation> relations = readRelations(generator.resolvedRelationFile);
+		assertEquals(2, relations.size());
+		assertEquals(20, relations.get(0).getId());
+		assertEquals(2, relations.get(0).getWays().size());
+		assertEquals(21, relations.get(1).getId());
+		assertEquals(1, relations.get(1).getWays().size());
+	}
+
+	/**
+	 * ways leave the resolved ways when all their nodes move out of the box
+	 * and come back with a node moving into the box
+	 */
+	@Test
+	public void testMoveAcrossBorder() throws IOException {
+		File f = new File(dataPath, "out.o5c");
+		O5mWriter writer = new O5mWriter(f);
+		try {
+			writeNode(writer, 1, SOUTH, LON);
+			writeNode(writer, 2, SOUTH, LON);
+		} finally {
+			writer.close();
+		}
+		createGenerator().applyChanges(f);
+		assertEquals("[]", ids(generator.nodeFile));
+		assertEquals("[]", wayIds(readWays(generator.resolvedWayFile)));
+
+		f = new File(dataPath, "in.o5c");
+		writer = new O5mWriter(f);
+		try {
+			writeNode(writer, 4, INSIDE, LON);
+		} finally {
+			writer.close();
+		}
+		createGenerator().applyChanges(f);
+		assertEquals("[4]", ids(generator.nodeFile));
+		final List<Way> ways = readWays(generator.resolvedWayFile);
+		assertEquals("[10]", wayIds(ways));
+		assertEquals(4, ways.get(0).getNodes().size());
+		assertEquals(SOUTH, ways.get(0).getNodes().get(1).getLat());
+		assertEquals(INSIDE, ways.get(0).getNodes().get(3).getLat());
+	}
+
+	/**
+	 * the changed relations are clipped like a fresh import of the changed
+	 * file clips them. Relation 24 only stays because of relation 26 behind
+	 * it, relation 25 is outside of the box.
+	 */
+	@Test
+	public void testClipRelations() throws IOException {
+		final File f = new File(dataPath, "change.o5c");
+		O5mWriter writer = new O5mWriter(f);
+		try {
+			writeRelation(writer, 20, 11, 12);
+			writeParent(writer, 24, 11, 26);
+			writeRelation(writer, 25, 11);
+			writeRelation(writer, 26, 12);
+		} finally {
+			writer.close();
+		}
+		createGenerator().applyChanges(f);
+
+		final File freshPath = createDataPath();
+		try {
+			final File fresh = new File(freshPath, "fresh.o5m");
+			writer = new O5mWriter(fresh);
+			try {
+				writeNodesAndWays(writer);
+				writeRelation(writer, 20, 11, 12);
+				writeRelation(writer, 22, 12);
+				writeParent(writer, 24, 11, 26);
+				writeRelation(writer, 25, 11);
+				writeRelation(writer, 26, 12);
+			} finally {
+				writer.close();
+			}
+			final Generator freshGenerator = new Generator(freshPath);
+			freshGenerator.setBoundingBox(52, 9, 53, 11, 0);
+			freshGenerator.setKeepStores(true);
+			freshGenerator.readFile(fresh);
+
+			assertEquals("20 w 12 r;22 w 12 r;24 w r 26;26 w 12 r;",
+					members(readRelations(freshGenerator.relationFile)));
+			assertEquals(members(readRelations(freshGenerator.relationFile)),
+					members(readRelations(generator.relationFile)));
+			assertEquals(members(readRelations(freshGenerator.resolvedRelationFile)),
+					members(readRelations(generator.resolvedRelationFile)));
+		} finally {
+			delete(freshPath);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.tile.gen;
+
+import static mm.tile.gen.GeneratorTestCase.createDataPath;
+import static mm.tile.gen.GeneratorTestCase.delete;
+import static mm.tile.gen.GeneratorTestCase.writeNode;
+import static mm.tile.gen.GeneratorTestCase.writeWay;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mm.o5m.reader.O5mHandler;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mReader;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.RefType;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.O5mWriter;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class ExtractorTestCase {
+
+	private static void writeRelation(final O5mWriter writer, final long id,
+			final RefType type, final long... refs) throws IOException {
+		final O5mRelation relation = new O5mRelation();
+		relation.setMetadata(0, 0, 0, null, null);
+		relation.setTags(new String[] { "type", "route" }, 1);
+		relation.set(id);
+		for (final long ref : refs) {
+			relation.addRef(ref, type, "");
+		}
+		writer.writeRelation(relation);
+	}
+
+	/**
+	 * nodes 1 and 2 are inside of the box from 52 to 53 degrees, the others
+	 * outside. Relation 19 refers to relation 21 behind it, relation 23 to
+	 * relation 19.
+	 */
+	private static File createFile(final File dataPath) throws IOException {
+		final File f = new File(dataPath, "planet.o5m");
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			writeNode(writer, 1, 525000000, 100000000, "amenity", "pub");
+			writeNode(writer, 2, 526000000, 101000000);
+			writeNode(writer, 3, 515000000, 100000000);
+			writeNode(writer, 4, 535000000, 100000000);
+			writeNode(writer, 5, 505000000, 100000000);
+			writeNode(writer, 6, 505000000, 101000000);
+			writeWay(writer, 10, 3, 1, 2, 4);
+			writeWay(writer, 11, 5, 6);
+			writeWay(writer, 12, 1, 2);
+			writeRelation(writer, 19, RefType.RELATION, 21);
+			writeRelation(writer, 20, RefType.WAY, 10, 11);
+			writeRelation(writer, 21, RefType.WAY, 12);
+			writeRelation(writer, 22, RefType.WAY, 11);
+			writeRelation(writer, 23, RefType.RELATION, 22, 19);
+			writeRelation(writer, 24, RefType.NODE, 5);
+		} finally {
+			writer.close();
+		}
+		return f;
+	}
+
+	private static String read(final File f) throws IOException {
+		final List<String> ret = new ArrayList<>();
+		final O5mReader reader = new O5mReader();
+		reader.setVerbose(false);
+		reader.readFile(f, new O5mHandler() {
+			@Override
+			public void newNode(final O5mNode node) {
+				ret.add("n" + node.getNodeId());
+			}
+
+			@Override
+			public void newWay(final O5mWay way) {
+				ret.add("w" + way.getWayId() + way.getRefs());
+			}
+
+			@Override
+			public void newRelation(final O5mRelation relation) {
+				ret.add("r" + relation.getRelationId());
+			}
+		});
+		return ret.toString();
+	}
+
+	@Test
+	public void testExtract() throws IOException {
+		final File dataPath = createDataPath();
+		try {
+			final File out = new File(dataPath, "extract.o5m");
+			new Extractor(52, 9, 53, 11, 0).extract(createFile(dataPath), out);
+			assertEquals("[n1, n2, n3, n4, w10[3, 1, 2, 4], w12[1, 2], r19, r20, r21, r23]",
+					read(out));
+		} finally {
+			delete(dataPath);
+		}
+	}
+}
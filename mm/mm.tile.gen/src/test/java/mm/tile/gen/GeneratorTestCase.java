@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2014 Benno Schön
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the 
+ * GNU General Public License as published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; 
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, 
+ * Boston, MA 02110, USA 
+ * 
+ * @since 18.10.2026
+ * @version 1.0
+ * @author benno
+ */
+package mm.tile.gen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mm.io.StreamableIterator;
+import mm.o5m.reader.O5mIndex;
+import mm.o5m.reader.O5mNode;
+import mm.o5m.reader.O5mRelation;
+import mm.o5m.reader.O5mRelation.RefType;
+import mm.o5m.reader.O5mWay;
+import mm.o5m.reader.O5mWriter;
+import mm.tile.gen.osm.Node;
+import mm.tile.gen.osm.Relation;
+import mm.tile.gen.osm.Way;
+
+import org.junit.Test;
+
+/**
+ * @author benno
+ * 
+ */
+public class GeneratorTestCase {
+
+	/**
+	 * creates an empty directory for the files of a generator
+	 */
+	static File createDataPath() throws IOException {
+		final File dataPath = File.createTempFile("generator", "");
+		dataPath.delete();
+		dataPath.mkdirs();
+		return dataPath;
+	}
+
+	static void delete(final File dir) {
+		final File files[] = dir.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	static List<Way> readWays(final File f) throws IOException {
+		final List<Way> ret = new ArrayList<>();
+		final StreamableIterator<Way> iter = new StreamableIterator<>(f, new Way.WayFactory());
+		while (iter.hasNext()) {
+			ret.add(iter.next());
+		}
+		iter.close();
+		return ret;
+	}
+
+	static void writeNode(final O5mWriter writer, final long id, final int lat, final int lon,
+			final String... tags) throws IOException {
+		final O5mNode node = new O5mNode();
+		node.setMetadata(0, 0, 0, null, null);
+		node.setTags(tags, tags.length / 2);
+		node.set(id, lat, lon);
+		writer.writeNode(node);
+	}
+
+	static void writeWay(final O5mWriter writer, final long id, final long... refs)
+			throws IOException {
+		final O5mWay way = new O5mWay();
+		way.setMetadata(0, 0, 0, null, null);
+		way.setTags(new String[] { "highway", "road" }, 1);
+		way.set(id, refs, refs.length);
+		writer.writeWay(way);
+	}
+
+	/**
+	 * nodes 1 and 2 are inside of the box from 52 to 53 degrees, the others
+	 * outside. Way 10 crosses the border, way 11 is outside, way 12 inside.
+	 */
+	static File createFile(final File dataPath) throws IOException {
+		final File f = new File(dataPath, "test.o5m");
+		final O5mWriter writer = new O5mWriter(f);
+		try {
+			writeNode(writer, 1, 525000000, 100000000, "amenity", "pub");
+			writeNode(writer, 2, 526000000, 101000000);
+			writeNode(writer, 3, 515000000, 100000000);
+			writeNode(writer, 4, 535000000, 100000000);
+			writeNode(writer, 5, 505000000, 100000000);
+			writeNode(writer, 6, 505000000, 101000000);
+			writeWay(writer, 10, 3, 1, 2, 4);
+			writeWay(writer, 11, 5, 6);
+			writeWay(writer, 12, 1, 2);
+			final O5mRelation relation = new O5mRelation();
+			relation.setMetadata(0, 0, 0, null, null);
+			relation.setTags(new String[] { "type", "multipolygon" }, 1);
+			relation.set(20);
+			relation.addRef(10, RefType.WAY, "outer");
+			relation.addRef(11, RefType.WAY, "outer");
+			writer.writeRelation(relation);
+		} finally {
+			writer.close();
+		}
+		return f;
+	}
+
+	@Test
+	public void testClip() throws IOException {
+		final File dataPath = createDataPath();
+		try {
+			final Generator generator = new Generator(dataPath);
+			generator.setBoundingBox(52, 9, 53, 11, 0);
+			generator.setKeepStores(true);
+			final File f = createFile(dataPath);
+			generator.readFile(f);
+			assertTrue(O5mIndex.getIndexFile(f).exists());
+			final List<Way> ways = readWays(generator.resolvedWayFile);
+			assertEquals(2, ways.size());
+			final Way crossing = ways.get(0);
+			assertEquals(10, crossing.getId());
+			assertEquals(4, crossing.getNodes().size());
+			final int lats[] = { 515000000, 525000000, 526000000, 535000000 };
+			for (int i = 0; i < lats.length; ++i) {
+				assertEquals(lats[i], crossing.getNodes().get(i).getLat());
+			}
+			assertEquals(12, ways.get(1).getId());
+			final StreamableIterator<Node> nodes = new StreamableIterator<>(
+					generator.simpleNodeFile, new Node.NodeFactory());
+			final List<Long> ids = new ArrayList<>();
+			while (nodes.hasNext()) {
+				ids.add(Long.valueOf(nodes.next().getId()));
+			}
+			nodes.close();
+			assertEquals("[1, 2, 3, 4]", ids.toString());
+			assertTrue(generator.getResolvedRelationFile().length() > 0);
+		} finally {
+			delete(dataPath);
+		}
+	}
+
+	/**
+	 * relation 20 only stays because of relation 21 behind it, relation 23
+	 * is outside of the box
+	 */
+	@Test
+	public void testClipRelations() throws IOException {
+		final File dataPath = createDataPath();
+		try {
+			final File f = new File(dataPath, "test.o5m");
+			final O5mWriter writer = new O5mWriter(f);
+			try {
+				writeNode(writer, 1, 525000000, 100000000);
+				writeNode(writer, 2, 526000000, 101000000);
+				writeNode(writer, 5, 505000000, 100000000);
+				writeNode(writer, 6, 505000000, 101000000);
+				writeWay(writer, 11, 5, 6);
+				writeWay(writer, 12, 1, 2);
+				final O5mRelation relation = new O5mRelation();
+				relation.setMetadata(0, 0, 0, null, null);
+				relation.setTags(new String[] { "type", "multipolygon" }, 1);
+				relation.set(20);
+				relation.addRef(11, RefType.WAY, "outer");
+				relation.addRef(21, RefType.RELATION, "");
+				writer.writeRelation(relation);
+				relation.set(21);
+				relation.addRef(12, RefType.WAY, "outer");
+				writer.writeRelation(relation);
+				relation.set(23);
+				relation.addRef(11, RefType.WAY, "outer");
+				writer.writeRelation(relation);
+			} finally {
+				writer.close();
+			}
+			final Generator generator = new Generator(dataPath);
+			generator.setBoundingBox(52, 9, 53, 11, 0);
+			generator.setKeepStores(true);
+			generator.readFile(f);
+			final StreamableIterator<Relation> iter = new StreamableIterator<>(
+					generator.relationFile, new Relation.RelationFactory());
+			final Relation parent = iter.next();
+			assertEquals(20, parent.getId());
+			assertEquals(0, parent.getWays().size());
+			assertEquals(1, parent.getRelations().size());
+			assertEquals(21, parent.getRelations().get(0).getRef().getId());
+			final Relation child = iter.next();
+			assertEquals(21, child.getId());
+			assertEquals(12, child.getWays().get(0).getRef().getId());
+			assertFalse(iter.hasNext());
+			iter.close();
+		} finally {
+			delete(dataPath);
+		}
+	}
+}